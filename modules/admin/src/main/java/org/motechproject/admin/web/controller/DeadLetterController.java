@@ -0,0 +1,89 @@
+package org.motechproject.admin.web.controller;
+
+import org.motechproject.event.deadletter.DeadLetter;
+import org.motechproject.event.deadletter.DeadLetterService;
+import org.motechproject.event.deadletter.ReplayStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Lists and replays events discarded after reaching the maximum redelivery count. Dead letters can be filtered
+ * by subject, listener and discard time, given in milliseconds since the epoch.
+ */
+@Controller
+public class DeadLetterController {
+
+    @Autowired
+    private DeadLetterService deadLetterService;
+
+    @RequestMapping(value = "/deadletters", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<DeadLetter> getDeadLetters(@RequestParam(required = false) String subject,
+                                           @RequestParam(required = false) String listener,
+                                           @RequestParam(required = false) Long from,
+                                           @RequestParam(required = false) Long to,
+                                           @RequestParam(defaultValue = "1") int page,
+                                           @RequestParam(defaultValue = "50") int pageSize) {
+        return deadLetterService.getDeadLetters(subject, listener, toDate(from), toDate(to), page, pageSize);
+    }
+
+    @RequestMapping(value = "/deadletters/count", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public long countDeadLetters(@RequestParam(required = false) String subject,
+                                 @RequestParam(required = false) String listener,
+                                 @RequestParam(required = false) Long from,
+                                 @RequestParam(required = false) Long to) {
+        return deadLetterService.countDeadLetters(subject, listener, toDate(from), toDate(to));
+    }
+
+    @RequestMapping(value = "/deadletters/replay", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ReplayStatus replay(@RequestParam(required = false) String subject,
+                               @RequestParam(required = false) String listener,
+                               @RequestParam(required = false) Long from,
+                               @RequestParam(required = false) Long to,
+                               @RequestParam(defaultValue = "0") int rate) {
+        return deadLetterService.replay(subject, listener, toDate(from), toDate(to), rate);
+    }
+
+    @RequestMapping(value = "/deadletters/replay", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ReplayStatus getReplayStatus() {
+        return deadLetterService.getReplayStatus();
+    }
+
+    @RequestMapping(value = "/deadletters/replay/cancel", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    public void cancelReplay() {
+        deadLetterService.cancelReplay();
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ResponseBody
+    public String handleReplayRunning(IllegalStateException e) {
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public String handleInvalidRequest(IllegalArgumentException e) {
+        return e.getMessage();
+    }
+
+    private Date toDate(Long millis) {
+        return (millis == null) ? null : new Date(millis);
+    }
+}
@@ -0,0 +1,43 @@
+package org.motechproject.admin.web.controller;
+
+import org.motechproject.event.metrics.EventMetricsService;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+/**
+ * Exposes the event pipeline statistics collected by the event module, for polling by the admin UI.
+ */
+@Controller
+public class EventMetricsController {
+
+    @Autowired
+    private EventMetricsService eventMetricsService;
+
+    @RequestMapping(value = "/events/metrics/subjects", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<SubjectMetrics> getSubjectMetrics() {
+        return eventMetricsService.getSubjectMetrics();
+    }
+
+    @RequestMapping(value = "/events/metrics/listeners", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<ListenerMetrics> getListenerMetrics() {
+        return eventMetricsService.getListenerMetrics();
+    }
+
+    @RequestMapping(value = "/events/metrics/reset", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    public void resetMetrics() {
+        eventMetricsService.reset();
+    }
+}
@@ -0,0 +1,92 @@
+package org.motechproject.admin.web;
+
+import org.hamcrest.text.StringContains;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.motechproject.admin.web.controller.DeadLetterController;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.deadletter.DeadLetter;
+import org.motechproject.event.deadletter.DeadLetterService;
+import org.motechproject.event.deadletter.ReplayStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.server.MockMvc;
+import org.springframework.test.web.server.request.MockMvcRequestBuilders;
+import org.springframework.test.web.server.setup.MockMvcBuilders;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.test.web.server.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.server.result.MockMvcResultMatchers.status;
+
+public class DeadLetterControllerTest {
+
+    MockMvc mockMvc;
+
+    @InjectMocks
+    DeadLetterController deadLetterController = new DeadLetterController();
+
+    @Mock
+    DeadLetterService deadLetterService;
+
+    @Before
+    public void before() {
+        initMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(deadLetterController).build();
+    }
+
+    @Test
+    public void shouldReturnFilteredDeadLetters() throws Exception {
+        DeadLetter deadLetter = new DeadLetter(42, "subject-1", "listener-1", new Date(), 3, new MotechEvent("subject-1"));
+        given(deadLetterService.getDeadLetters(eq("subject-1"), (String) isNull(), eq(new Date(1000)), (Date) isNull(), eq(2), eq(10)))
+                .willReturn(Arrays.asList(deadLetter));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/deadletters?subject=subject-1&from=1000&page=2&pageSize=10"))
+                .andExpect(status().isOk())
+                .andExpect(content().type(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(new StringContains("\"id\":42")))
+                .andExpect(content().string(new StringContains("\"listener\":\"listener-1\"")));
+    }
+
+    @Test
+    public void shouldStartReplay() throws Exception {
+        given(deadLetterService.replay(eq("subject-1"), (String) isNull(), (Date) isNull(), (Date) isNull(), eq(500)))
+                .willReturn(new ReplayStatus(true, new Date(), 500, 1000, 0, 0));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/deadletters/replay?subject=subject-1&rate=500"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(new StringContains("\"running\":true")))
+                .andExpect(content().string(new StringContains("\"total\":1000")));
+    }
+
+    @Test
+    public void shouldReturnConflictIfReplayIsRunning() throws Exception {
+        given(deadLetterService.replay(anyString(), anyString(), any(Date.class), any(Date.class), anyInt()))
+                .willThrow(new IllegalStateException("running"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/deadletters/replay?subject=subject-1&listener=listener-1&from=1&to=2"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void shouldCancelReplay() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/deadletters/replay/cancel"))
+                .andExpect(status().isOk());
+
+        verify(deadLetterService).cancelReplay();
+    }
+}
@@ -0,0 +1,59 @@
+package org.motechproject.scheduler.contract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BulkJobResult is the class which contains the outcome of scheduling or unscheduling many jobs at once.
+ * Jobs are handled independently, so some of them may fail while the others succeed.
+ */
+public class BulkJobResult {
+    private final List<String> succeeded = new ArrayList<>();
+    private final List<String> unchanged = new ArrayList<>();
+    private final Map<String, String> failures = new LinkedHashMap<>();
+
+    public void addSucceeded(String jobId) {
+        succeeded.add(jobId);
+    }
+
+    public void addUnchanged(String jobId) {
+        unchanged.add(jobId);
+    }
+
+    public void addFailure(String jobId, String error) {
+        failures.put(jobId, error);
+    }
+
+    /**
+     * @return the IDs of the jobs handled successfully
+     */
+    public List<String> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    /**
+     * @return the IDs of the jobs left as they were, because they were already scheduled as given
+     */
+    public List<String> getUnchanged() {
+        return Collections.unmodifiableList(unchanged);
+    }
+
+    /**
+     * @return the error messages of the jobs which failed, by job ID
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkJobResult{succeeded=%d, unchanged=%d, failures=%s}", succeeded.size(), unchanged.size(), failures);
+    }
+}
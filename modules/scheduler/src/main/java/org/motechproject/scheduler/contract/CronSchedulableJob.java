@@ -2,7 +2,6 @@ package org.motechproject.scheduler.contract;
 
 import org.motechproject.event.MotechEvent;
 
-import java.io.Serializable;
 import java.util.Date;
 import java.util.Objects;
 
@@ -14,7 +13,7 @@ import java.util.Objects;
  *         Date: 16/02/11
  *         Time: 1:43 PM
  */
-public class CronSchedulableJob implements Serializable {
+public class CronSchedulableJob implements TransientSchedulableJob {
 
     private static final long serialVersionUID = 1L;
 
@@ -23,6 +22,7 @@ public class CronSchedulableJob implements Serializable {
     private Date startTime;
     private Date endTime;
     private boolean ignorePastFiresAtStart;
+    private boolean inMemory;
 
     public CronSchedulableJob(MotechEvent motechEvent, String cronExpression, Date startTime, Date endTime) {
         this(motechEvent, cronExpression, startTime, endTime, false);
@@ -33,6 +33,10 @@ public class CronSchedulableJob implements Serializable {
     }
 
     public CronSchedulableJob(MotechEvent motechEvent, String cronExpression, Date startTime, Date endTime, boolean ignorePastFiresAtStart) {
+        this(motechEvent, cronExpression, startTime, endTime, ignorePastFiresAtStart, false);
+    }
+
+    public CronSchedulableJob(MotechEvent motechEvent, String cronExpression, Date startTime, Date endTime, boolean ignorePastFiresAtStart, boolean inMemory) {
         if (motechEvent == null) {
             throw new IllegalArgumentException("MotechEvent can not be null");
         }
@@ -45,6 +49,7 @@ public class CronSchedulableJob implements Serializable {
         this.startTime = startTime;
         this.endTime = endTime;
         this.ignorePastFiresAtStart = ignorePastFiresAtStart;
+        this.inMemory = inMemory;
     }
 
     public Date getStartTime() {
@@ -67,6 +72,11 @@ public class CronSchedulableJob implements Serializable {
         return ignorePastFiresAtStart;
     }
 
+    @Override
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -5,7 +5,6 @@ import org.motechproject.commons.date.model.DayOfWeek;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.event.MotechEvent;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,7 +13,7 @@ import static org.springframework.util.CollectionUtils.isEmpty;
 /**
  * Job that is scheduled on particular days of week
  */
-public final class DayOfWeekSchedulableJob implements Serializable {
+public final class DayOfWeekSchedulableJob implements TransientSchedulableJob {
 
     private static final long serialVersionUID = 1L;
 
@@ -24,8 +23,13 @@ public final class DayOfWeekSchedulableJob implements Serializable {
     private final List<DayOfWeek> days;
     private Time time;
     private boolean ignorePastFiresAtStart;
+    private boolean inMemory;
 
     public DayOfWeekSchedulableJob(MotechEvent motechEvent, LocalDate start, LocalDate end, List<DayOfWeek> days, Time time, boolean ignorePastFiresAtStart) {
+        this(motechEvent, start, end, days, time, ignorePastFiresAtStart, false);
+    }
+
+    public DayOfWeekSchedulableJob(MotechEvent motechEvent, LocalDate start, LocalDate end, List<DayOfWeek> days, Time time, boolean ignorePastFiresAtStart, boolean inMemory) {
         if (motechEvent == null || hasNoDates(start, end) || isEmpty(days)) {
             throw new IllegalArgumentException("null/empty arguments");
         }
@@ -35,6 +39,7 @@ public final class DayOfWeekSchedulableJob implements Serializable {
         this.time = time;
         this.days = days;
         this.ignorePastFiresAtStart = ignorePastFiresAtStart;
+        this.inMemory = inMemory;
     }
 
     public DayOfWeekSchedulableJob(MotechEvent motechEvent, LocalDate start, LocalDate end, List<DayOfWeek> days, Time time) {
@@ -65,6 +70,11 @@ public final class DayOfWeekSchedulableJob implements Serializable {
         return ignorePastFiresAtStart;
     }
 
+    @Override
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
     public List<Integer> getCronDays() {
         List<Integer> cronDays = new ArrayList<>();
         for (DayOfWeek day : days) {
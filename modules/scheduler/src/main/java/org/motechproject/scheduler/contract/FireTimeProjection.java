@@ -0,0 +1,118 @@
+package org.motechproject.scheduler.contract;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FireTimeProjection is the class which holds the number of times the scheduled jobs will fire in a period,
+ * per event subject and per time bucket. The period is split into buckets of equal length, starting at the
+ * start date; the last bucket may end after the end date.
+ *
+ * @see org.motechproject.scheduler.service.MotechSchedulerService#projectFireTimes
+ */
+
+public class FireTimeProjection {
+    private final Date startDate;
+    private final Date endDate;
+    private final long bucketMillis;
+    private final Map<String, long[]> countsBySubject;
+
+    public FireTimeProjection(Date startDate, Date endDate, long bucketMillis, Map<String, long[]> countsBySubject) {
+        this.startDate = new Date(startDate.getTime());
+        this.endDate = new Date(endDate.getTime());
+        this.bucketMillis = bucketMillis;
+        this.countsBySubject = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : countsBySubject.entrySet()) {
+            this.countsBySubject.put(entry.getKey(), Arrays.copyOf(entry.getValue(), entry.getValue().length));
+        }
+    }
+
+    public Date getStartDate() {
+        return new Date(startDate.getTime());
+    }
+
+    public Date getEndDate() {
+        return new Date(endDate.getTime());
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * @return the number of buckets the period is split into
+     */
+    public int getBucketCount() {
+        return getBucketCount(startDate, endDate, bucketMillis);
+    }
+
+    /**
+     * @param bucket the index of the bucket
+     * @return the start of the bucket
+     */
+    public Date getBucketStart(int bucket) {
+        return new Date(startDate.getTime() + bucket * bucketMillis);
+    }
+
+    /**
+     * @return the subjects of the jobs firing in the period
+     */
+    public Set<String> getSubjects() {
+        return Collections.unmodifiableSet(countsBySubject.keySet());
+    }
+
+    /**
+     * @param subject the event subject
+     * @return the number of fires of the jobs with the given subject in each bucket, all zeros for unknown subjects
+     */
+    public long[] getCounts(String subject) {
+        long[] counts = countsBySubject.get(subject);
+        return (counts == null) ? new long[getBucketCount()] : Arrays.copyOf(counts, counts.length);
+    }
+
+    /**
+     * @param subject the event subject
+     * @return the number of fires of the jobs with the given subject in the period
+     */
+    public long getTotal(String subject) {
+        long total = 0;
+        for (long count : getCounts(subject)) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of fires of all jobs in the period
+     */
+    public long getTotal() {
+        long total = 0;
+        for (String subject : countsBySubject.keySet()) {
+            total += getTotal(subject);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of buckets a period is split into.
+     *
+     * @param startDate    the start of the period
+     * @param endDate      the end of the period, inclusive
+     * @param bucketMillis the length of a bucket in milliseconds
+     * @return the number of buckets
+     */
+    public static int getBucketCount(Date startDate, Date endDate, long bucketMillis) {
+        long buckets = (endDate.getTime() - startDate.getTime()) / bucketMillis + 1;
+        return (int) Math.min(buckets, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FireTimeProjection{startDate=%s, endDate=%s, bucketMillis=%d, subjects=%s}",
+                startDate, endDate, bucketMillis, countsBySubject.keySet());
+    }
+}
@@ -0,0 +1,41 @@
+package org.motechproject.scheduler.contract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JobsSearchResult is the class which contains a page of scheduled jobs, together with the number of all jobs
+ * matching the search.
+ *
+ * @see JobsSearchSettings
+ */
+
+public class JobsSearchResult {
+    private final List<JobBasicInfo> rows;
+    private final long total;
+
+    public JobsSearchResult(List<JobBasicInfo> rows, long total) {
+        this.rows = new ArrayList<>(rows);
+        this.total = total;
+    }
+
+    /**
+     * @return the jobs of the requested page
+     */
+    public List<JobBasicInfo> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * @return the number of jobs matching the search, on all pages
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JobsSearchResult{total=%d, rows=%s}", total, rows);
+    }
+}
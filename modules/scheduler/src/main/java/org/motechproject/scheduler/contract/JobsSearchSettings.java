@@ -0,0 +1,124 @@
+package org.motechproject.scheduler.contract;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JobsSearchSettings is the class which tells which page of scheduled jobs should be returned, how the jobs
+ * should be filtered and in which order. Filters which are not set match all jobs.
+ *
+ * @see JobBasicInfo
+ */
+
+public class JobsSearchSettings {
+    private String name;
+    private Date timeFrom;
+    private Date timeTo;
+    private Set<String> activities;
+    private Set<String> statuses;
+    private String sortColumn;
+    private boolean ascending = true;
+    private int page = 1;
+    private int pageSize = Integer.MAX_VALUE;
+
+    /**
+     * @return the part of the name the jobs must contain
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the time after which the jobs must start
+     */
+    public Date getTimeFrom() {
+        return timeFrom;
+    }
+
+    public void setTimeFrom(Date timeFrom) {
+        this.timeFrom = timeFrom;
+    }
+
+    /**
+     * @return the time before which the jobs must start
+     */
+    public Date getTimeTo() {
+        return timeTo;
+    }
+
+    public void setTimeTo(Date timeTo) {
+        this.timeTo = timeTo;
+    }
+
+    /**
+     * @return the accepted activities, one of the {@code JobBasicInfo.ACTIVITY_*} values each
+     */
+    public Set<String> getActivities() {
+        return activities;
+    }
+
+    public void setActivities(Set<String> activities) {
+        this.activities = (activities == null) ? null : new HashSet<>(activities);
+    }
+
+    /**
+     * @return the accepted statuses, one of the {@code JobBasicInfo.STATUS_*} values each
+     */
+    public Set<String> getStatuses() {
+        return statuses;
+    }
+
+    public void setStatuses(Set<String> statuses) {
+        this.statuses = (statuses == null) ? null : new HashSet<>(statuses);
+    }
+
+    /**
+     * @return the name of the {@link JobBasicInfo} field the jobs are sorted by
+     */
+    public String getSortColumn() {
+        return sortColumn;
+    }
+
+    public void setSortColumn(String sortColumn) {
+        this.sortColumn = sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public void setAscending(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    /**
+     * @return the number of the page to return, starting from 1
+     */
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JobsSearchSettings{name='%s', timeFrom=%s, timeTo=%s, activities=%s, statuses=%s, " +
+                "sortColumn='%s', ascending=%s, page=%d, pageSize=%d}", name, timeFrom, timeTo, activities, statuses,
+                sortColumn, ascending, page, pageSize);
+    }
+}
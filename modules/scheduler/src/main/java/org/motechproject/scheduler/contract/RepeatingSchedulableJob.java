@@ -3,13 +3,12 @@ package org.motechproject.scheduler.contract;
 import org.apache.commons.lang.ObjectUtils;
 import org.motechproject.event.MotechEvent;
 
-import java.io.Serializable;
 import java.util.Date;
 
 /**
  * Schedulable Job - a data carrier class for a scheduled job that can be fired set number of times
  */
-public class RepeatingSchedulableJob implements Serializable {
+public class RepeatingSchedulableJob implements TransientSchedulableJob {
     private static final long serialVersionUID = 1L;
 
     private MotechEvent motechEvent;
@@ -19,6 +18,7 @@ public class RepeatingSchedulableJob implements Serializable {
     private Long repeatIntervalInMilliSeconds;
     private boolean ignorePastFiresAtStart;
     private boolean useOriginalFireTimeAfterMisfire;
+    private boolean inMemory;
 
     public RepeatingSchedulableJob() {
         endTime = null;
@@ -112,6 +112,16 @@ public class RepeatingSchedulableJob implements Serializable {
         return this;
     }
 
+    @Override
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    public RepeatingSchedulableJob setInMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "RepeatingSchedulableJob [motechEvent=" + motechEvent
@@ -2,7 +2,6 @@ package org.motechproject.scheduler.contract;
 
 import org.motechproject.event.MotechEvent;
 
-import java.io.Serializable;
 import java.util.Date;
 
 /**
@@ -14,12 +13,13 @@ import java.util.Date;
  * Date: 16/02/11
  * Time: 1:43 PM
  */
-public final class RunOnceSchedulableJob implements Serializable {
+public final class RunOnceSchedulableJob implements TransientSchedulableJob {
 
     private static final long serialVersionUID = 1L;
 
     private MotechEvent motechEvent;
     private Date startDate;
+    private boolean inMemory;
 
     /**
      * Constructor
@@ -29,6 +29,18 @@ public final class RunOnceSchedulableJob implements Serializable {
      * @throws IllegalArgumentException if motechEvent or startDate is null or startDate is in past
      */
     public RunOnceSchedulableJob(MotechEvent motechEvent, Date startDate) {
+        this(motechEvent, startDate, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param motechEvent - event data message that will be send by Motech Scheduler when this job is fired
+     * @param startDate   - date and time when the job fill be fired
+     * @param inMemory    - true if the job may be kept in memory only, see {@link TransientSchedulableJob#isInMemory()}
+     * @throws IllegalArgumentException if motechEvent or startDate is null or startDate is in past
+     */
+    public RunOnceSchedulableJob(MotechEvent motechEvent, Date startDate, boolean inMemory) {
 
         if (motechEvent == null) {
             throw new IllegalArgumentException("MotechEvent can not be null");
@@ -40,6 +52,7 @@ public final class RunOnceSchedulableJob implements Serializable {
 
         this.motechEvent = motechEvent;
         this.startDate = startDate;
+        this.inMemory = inMemory;
     }
 
     public MotechEvent getMotechEvent() {
@@ -50,6 +63,11 @@ public final class RunOnceSchedulableJob implements Serializable {
         return startDate;
     }
 
+    @Override
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,18 @@
+package org.motechproject.scheduler.contract;
+
+import org.motechproject.event.MotechEvent;
+
+import java.io.Serializable;
+
+/**
+ * Common type of all jobs which can be scheduled through the
+ * {@link org.motechproject.scheduler.service.MotechSchedulerService}, used when scheduling jobs of different
+ * kinds together.
+ */
+public interface SchedulableJob extends Serializable {
+
+    /**
+     * @return the event sent when the job is fired, carrying the job ID
+     */
+    MotechEvent getMotechEvent();
+}
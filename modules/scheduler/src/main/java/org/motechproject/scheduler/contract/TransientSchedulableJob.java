@@ -0,0 +1,15 @@
+package org.motechproject.scheduler.contract;
+
+/**
+ * Schedulable job which can be kept in memory only. Jobs kept in memory are not written to the database, which
+ * makes scheduling and firing them cheaper, but they are lost when the scheduler is restarted. They are only kept in
+ * memory when the hybrid job store is enabled with the <code>scheduler.jobStore.hybrid</code> setting, otherwise
+ * they are stored like all other jobs. Jobs not implementing this interface are always stored.
+ */
+public interface TransientSchedulableJob extends SchedulableJob {
+
+    /**
+     * @return true if the job may be kept in memory only
+     */
+    boolean isInMemory();
+}
@@ -1,8 +1,18 @@
 package org.motechproject.scheduler.factory;
 
+import org.apache.commons.lang.StringUtils;
 import org.motechproject.scheduler.exception.SchedulerInstantiationException;
 import org.motechproject.scheduler.exception.SchedulerShutdownException;
+import org.motechproject.scheduler.metrics.impl.MisfireMetricsListener;
+import org.motechproject.scheduler.metrics.impl.SchedulerMetricsRegistry;
+import org.motechproject.scheduler.service.impl.HybridJobStore;
+import org.motechproject.scheduler.service.impl.JobPayloads;
+import org.motechproject.scheduler.service.impl.MotechScheduledJob;
+import org.motechproject.scheduler.service.impl.ScheduledEventPublisher;
 import org.quartz.Scheduler;
+import org.quartz.TriggerListener;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.jdbcjobstore.JobStoreTX;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +23,8 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import static java.lang.Boolean.getBoolean;
@@ -29,6 +41,8 @@ public class MotechSchedulerFactoryBean {
 
     private Properties schedulerProperties;
 
+    private SchedulerMetricsRegistry schedulerMetricsRegistry;
+
     private Logger log = LoggerFactory.getLogger(MotechSchedulerFactoryBean.class);
 
     @Autowired
@@ -40,16 +54,27 @@ public class MotechSchedulerFactoryBean {
     @PostConstruct
     public void init() {
         schedulerFactoryBean = new SchedulerFactoryBean();
-        schedulerFactoryBean.setQuartzProperties(schedulerProperties);
+        schedulerFactoryBean.setQuartzProperties(getQuartzProperties());
         schedulerFactoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(schedulerProperties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
         schedulerFactoryBean.setApplicationContextSchedulerContextKey("applicationContext");
         schedulerFactoryBean.setApplicationContext(applicationContext);
+        schedulerFactoryBean.setSchedulerContextAsMap(getSchedulerContext());
+        if (schedulerMetricsRegistry != null) {
+            schedulerFactoryBean.setGlobalTriggerListeners(new TriggerListener[]{new MisfireMetricsListener(schedulerMetricsRegistry)});
+        }
         try {
             schedulerFactoryBean.afterPropertiesSet();
-            schedulerFactoryBean.getScheduler().start();
+            Scheduler scheduler = schedulerFactoryBean.getScheduler();
+            HybridJobStore hybridJobStore = HybridJobStore.takeInitialized();
+            if (hybridJobStore != null) {
+                scheduler.getContext().put(HybridJobStore.CONTEXT_KEY, hybridJobStore);
+            }
+            scheduler.start();
         } catch (Exception e) {
             log.error("Failed to instantiate scheduler with configuration from quartz.properties");
             throw new SchedulerInstantiationException(e);
+        } finally {
+            HybridJobStore.takeInitialized();
         }
     }
 
@@ -63,6 +88,11 @@ public class MotechSchedulerFactoryBean {
         }
     }
 
+    @Autowired(required = false)
+    public void setSchedulerMetricsRegistry(SchedulerMetricsRegistry schedulerMetricsRegistry) {
+        this.schedulerMetricsRegistry = schedulerMetricsRegistry;
+    }
+
     public SchedulerFactoryBean getQuartzSchedulerFactoryBean() {
         return schedulerFactoryBean;
     }
@@ -71,6 +101,52 @@ public class MotechSchedulerFactoryBean {
         return getQuartzSchedulerFactoryBean().getScheduler();
     }
 
+    /**
+     * Returns the objects shared by all fired jobs, so that they are not looked up on every fire.
+     */
+    private Map<String, Object> getSchedulerContext() {
+        Map<String, Object> schedulerContext = new HashMap<>();
+        schedulerContext.put(MotechScheduledJob.EVENT_PUBLISHER_KEY, new ScheduledEventPublisher(applicationContext));
+        schedulerContext.put(MotechScheduledJob.PAYLOADS_KEY, new JobPayloads());
+        if (schedulerMetricsRegistry != null) {
+            schedulerContext.put(MotechScheduledJob.METRICS_KEY, schedulerMetricsRegistry);
+        }
+        return schedulerContext;
+    }
+
+    /**
+     * Returns the properties of the Quartz scheduler. When the hybrid job store is enabled, jobs scheduled
+     * as in memory are kept in a {@link HybridJobStore}, which stores other jobs like the configured
+     * {@link JobStoreTX}. In clustered mode, every node needs its own instance id, which is generated
+     * unless one is configured.
+     */
+    private Properties getQuartzProperties() {
+        Properties quartzProperties = new Properties();
+        quartzProperties.putAll(schedulerProperties);
+        String jobStoreClass = quartzProperties.getProperty("org.quartz.jobStore.class");
+        boolean hybrid = Boolean.parseBoolean(quartzProperties.getProperty("scheduler.jobStore.hybrid"));
+        boolean clustered = Boolean.parseBoolean(quartzProperties.getProperty("org.quartz.jobStore.isClustered"));
+
+        if (hybrid) {
+            if (JobStoreTX.class.getName().equals(jobStoreClass)) {
+                quartzProperties.setProperty("org.quartz.jobStore.class", HybridJobStore.class.getName());
+            } else {
+                log.warn("The hybrid job store can only replace " + JobStoreTX.class.getName() + ", all jobs will be stored by " + jobStoreClass);
+            }
+        }
+
+        if (clustered) {
+            if (StringUtils.isBlank(quartzProperties.getProperty("org.quartz.scheduler.instanceId"))) {
+                quartzProperties.setProperty("org.quartz.scheduler.instanceId", StdSchedulerFactory.AUTO_GENERATE_INSTANCE_ID);
+            }
+            if (hybrid) {
+                log.warn("Jobs scheduled as in memory are only fired by the node which scheduled them, and are not recovered by other nodes of the cluster");
+            }
+        }
+
+        return quartzProperties;
+    }
+
     private boolean getBooleanWithDefault(String s, boolean defaultValue) {
         return s != null ? getBoolean(s) : defaultValue;
     }
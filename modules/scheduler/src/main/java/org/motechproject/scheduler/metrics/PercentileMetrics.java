@@ -0,0 +1,54 @@
+package org.motechproject.scheduler.metrics;
+
+/**
+ * Percentiles of the durations recorded in a recent time window, in milliseconds. The percentiles are estimated
+ * from a histogram, so they may be up to a quarter above the exact values, but never above the maximum.
+ */
+public class PercentileMetrics {
+
+    private final long windowSeconds;
+    private final long count;
+    private final long p50Millis;
+    private final long p90Millis;
+    private final long p99Millis;
+    private final long maxMillis;
+
+    public PercentileMetrics(long windowSeconds, long count, long p50Millis, long p90Millis, long p99Millis, long maxMillis) {
+        this.windowSeconds = windowSeconds;
+        this.count = count;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * @return the length of the window the durations were recorded in
+     */
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * @return the number of durations recorded in the window
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getP50Millis() {
+        return p50Millis;
+    }
+
+    public long getP90Millis() {
+        return p90Millis;
+    }
+
+    public long getP99Millis() {
+        return p99Millis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+}
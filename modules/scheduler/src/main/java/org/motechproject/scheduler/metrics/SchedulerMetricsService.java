@@ -0,0 +1,54 @@
+package org.motechproject.scheduler.metrics;
+
+import org.motechproject.event.metrics.LatencyMetrics;
+
+import javax.management.MXBean;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides statistics of the jobs fired by the scheduler: how many were fired, by which scheduler instance, and how
+ * late their events were sent compared to their scheduled fire times. Per event subject, it also tells how long the jobs took
+ * to publish their events, how many failed or misfired, and the percentiles of the lag and execution time in the
+ * last minute. The statistics are also available over JMX, under {@link #OBJECT_NAME}.
+ */
+@MXBean
+public interface SchedulerMetricsService {
+
+    String OBJECT_NAME = "org.motechproject.scheduler:type=SchedulerMetrics";
+
+    /**
+     * Returns the number of jobs fired since the start or the last reset.
+     *
+     * @return the number of fired jobs
+     */
+    long getFiredCount();
+
+    /**
+     * Returns the number of jobs fired by each scheduler instance of this node since the start or the last reset.
+     * In clustered mode, the instance ids tell which nodes fired the jobs.
+     *
+     * @return the number of fired jobs, by scheduler instance id
+     */
+    Map<String, Long> getFiredCountByInstance();
+
+    /**
+     * Returns the distribution of the delays between the scheduled fire times of the jobs and the times their
+     * events were sent.
+     *
+     * @return the fire lag distribution
+     */
+    LatencyMetrics getFireLag();
+
+    /**
+     * Returns the statistics of every event subject fired since the start or the last reset.
+     *
+     * @return the statistics, one entry per subject
+     */
+    List<SchedulerSubjectMetrics> getSubjectMetrics();
+
+    /**
+     * Clears all statistics.
+     */
+    void reset();
+}
@@ -0,0 +1,84 @@
+package org.motechproject.scheduler.metrics;
+
+import org.motechproject.event.metrics.LatencyMetrics;
+
+/**
+ * Statistics of the jobs firing events with a single subject.
+ */
+public class SchedulerSubjectMetrics {
+
+    private final String subject;
+    private final long firedCount;
+    private final long failureCount;
+    private final long misfireCount;
+    private final LatencyMetrics fireLag;
+    private final LatencyMetrics executionTime;
+    private final PercentileMetrics recentFireLag;
+    private final PercentileMetrics recentExecutionTime;
+
+    public SchedulerSubjectMetrics(String subject, long firedCount, long failureCount, long misfireCount,
+                                   LatencyMetrics fireLag, LatencyMetrics executionTime,
+                                   PercentileMetrics recentFireLag, PercentileMetrics recentExecutionTime) {
+        this.subject = subject;
+        this.firedCount = firedCount;
+        this.failureCount = failureCount;
+        this.misfireCount = misfireCount;
+        this.fireLag = fireLag;
+        this.executionTime = executionTime;
+        this.recentFireLag = recentFireLag;
+        this.recentExecutionTime = recentExecutionTime;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the number of fired jobs
+     */
+    public long getFiredCount() {
+        return firedCount;
+    }
+
+    /**
+     * @return the number of fired jobs whose event could not be published
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return the number of times a trigger missed its fire time and was handled by its misfire policy
+     */
+    public long getMisfireCount() {
+        return misfireCount;
+    }
+
+    /**
+     * @return the delays between the scheduled and the actual fire times
+     */
+    public LatencyMetrics getFireLag() {
+        return fireLag;
+    }
+
+    /**
+     * @return the time the jobs took to publish their events
+     */
+    public LatencyMetrics getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * @return the percentiles of the fire lag in the recent window
+     */
+    public PercentileMetrics getRecentFireLag() {
+        return recentFireLag;
+    }
+
+    /**
+     * @return the percentiles of the execution time in the recent window
+     */
+    public PercentileMetrics getRecentExecutionTime() {
+        return recentExecutionTime;
+    }
+}
@@ -0,0 +1,28 @@
+package org.motechproject.scheduler.metrics.impl;
+
+import org.quartz.Trigger;
+import org.quartz.listeners.TriggerListenerSupport;
+
+/**
+ * Counts the triggers which missed their fire times in the {@link SchedulerMetricsRegistry}.
+ */
+public class MisfireMetricsListener extends TriggerListenerSupport {
+
+    public static final String NAME = "schedulerMetricsMisfireListener";
+
+    private final SchedulerMetricsRegistry schedulerMetricsRegistry;
+
+    public MisfireMetricsListener(SchedulerMetricsRegistry schedulerMetricsRegistry) {
+        this.schedulerMetricsRegistry = schedulerMetricsRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void triggerMisfired(Trigger trigger) {
+        schedulerMetricsRegistry.recordMisfire(trigger.getJobKey().getName());
+    }
+}
@@ -0,0 +1,127 @@
+package org.motechproject.scheduler.metrics.impl;
+
+import org.motechproject.scheduler.metrics.PercentileMetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of the durations recorded in the last window of time. The window is split into slices, and the slice
+ * of the current time is cleared and reused once the window has moved past it, so that old durations drop out
+ * without any background work. Durations are counted in buckets growing by a quarter, from exact values below
+ * four milliseconds up to about fifty days.
+ */
+class RollingHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 32;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int PERCENT = 100;
+    private static final int P50 = 50;
+    private static final int P90 = 90;
+    private static final int P99 = 99;
+
+    private final long windowMillis;
+    private final long sliceMillis;
+    private final Slice[] slices;
+
+    RollingHistogram(long windowMillis, int sliceCount) {
+        this.windowMillis = windowMillis;
+        this.sliceMillis = windowMillis / sliceCount;
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice();
+        }
+    }
+
+    void record(long now, long millis) {
+        long epoch = now / sliceMillis;
+        Slice slice = slices[(int) (epoch % slices.length)];
+        slice.roll(epoch);
+        slice.counts.incrementAndGet(getBucket(millis));
+
+        long currentMax = slice.max.get();
+        while (millis > currentMax && !slice.max.compareAndSet(currentMax, millis)) {
+            currentMax = slice.max.get();
+        }
+    }
+
+    PercentileMetrics snapshot(long now) {
+        long epoch = now / sliceMillis;
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        long max = 0;
+
+        for (Slice slice : slices) {
+            long sliceEpoch = slice.epoch;
+            if (sliceEpoch > epoch - slices.length && sliceEpoch <= epoch) {
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    long bucketCount = slice.counts.get(i);
+                    counts[i] += bucketCount;
+                    count += bucketCount;
+                }
+                max = Math.max(max, slice.max.get());
+            }
+        }
+
+        return new PercentileMetrics(windowMillis / 1000, count, getPercentile(counts, count, P50, max),
+                getPercentile(counts, count, P90, max), getPercentile(counts, count, P99, max), max);
+    }
+
+    static int getBucket(long millis) {
+        if (millis < SUB_BUCKETS) {
+            return (int) Math.max(millis, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(millis);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) ((millis >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1L) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static long getPercentile(long[] counts, long count, int percent, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (count * percent + PERCENT - 1) / PERCENT;
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static class Slice {
+        private volatile long epoch = -1;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong max = new AtomicLong();
+
+        void roll(long currentEpoch) {
+            if (epoch != currentEpoch) {
+                synchronized (this) {
+                    if (epoch != currentEpoch) {
+                        for (int i = 0; i < BUCKET_COUNT; i++) {
+                            counts.set(i, 0);
+                        }
+                        max.set(0);
+                        epoch = currentEpoch;
+                    }
+                }
+            }
+        }
+    }
+}
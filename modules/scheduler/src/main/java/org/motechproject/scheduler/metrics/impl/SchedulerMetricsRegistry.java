@@ -0,0 +1,247 @@
+package org.motechproject.scheduler.metrics.impl;
+
+import org.motechproject.event.metrics.LatencyMetrics;
+import org.motechproject.scheduler.metrics.SchedulerMetricsService;
+import org.motechproject.scheduler.metrics.SchedulerSubjectMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects the scheduler statistics in memory and registers them with the platform MBean server. Recording only
+ * updates atomic counters, so it can be called on every fired job. Subjects beyond the first few hundred are
+ * counted together, under {@link #OTHER}.
+ */
+@Component("schedulerMetricsRegistry")
+public class SchedulerMetricsRegistry implements SchedulerMetricsService {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    public static final String OTHER = "other";
+
+    // every subject keeps two rolling histograms, so fewer subjects are tracked than in the event metrics
+    private static final int MAX_SUBJECTS = 500;
+    private static final long WINDOW_MILLIS = 60000;
+    private static final int WINDOW_SLICES = 6;
+
+    private volatile Counters counters = new Counters();
+
+    private ObjectName objectName;
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            mBeanServer.registerMBean(new StandardMBean(this, SchedulerMetricsService.class, true), name);
+            objectName = name;
+        } catch (InstanceAlreadyExistsException e) {
+            log.warn("Scheduler metrics MBean already registered as " + OBJECT_NAME);
+        } catch (JMException e) {
+            log.error("Unable to register scheduler metrics MBean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.error("Unable to unregister scheduler metrics MBean", e);
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Records a fired job.
+     *
+     * @param instanceId        the id of the scheduler instance which fired the job
+     * @param subject           the subject of the event of the job
+     * @param scheduledFireTime the time the job was scheduled to fire at, in milliseconds since the epoch
+     * @param fireTime          the time the event of the job was sent at, in milliseconds since the epoch
+     */
+    public void recordFired(String instanceId, String subject, long scheduledFireTime, long fireTime) {
+        long lag = Math.max(0, fireTime - scheduledFireTime);
+        Counters current = counters;
+        current.fired.incrementAndGet();
+        current.getInstanceCounter(instanceId).incrementAndGet();
+        current.lag.record(lag);
+
+        SubjectCounters subjectCounters = current.getSubject(subject);
+        subjectCounters.fired.incrementAndGet();
+        subjectCounters.lag.record(lag);
+        subjectCounters.recentLag.record(System.currentTimeMillis(), lag);
+    }
+
+    /**
+     * Records the publishing of the event of a fired job.
+     *
+     * @param subject the subject of the event
+     * @param nanos   the time it took to publish the event, in nanoseconds
+     * @param failed  true if the event could not be published
+     */
+    public void recordExecution(String subject, long nanos, boolean failed) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        SubjectCounters subjectCounters = counters.getSubject(subject);
+        subjectCounters.executionTime.record(millis);
+        subjectCounters.recentExecutionTime.record(System.currentTimeMillis(), millis);
+        if (failed) {
+            subjectCounters.failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a trigger which missed its fire time. Misfires are handled before the job is loaded, so the subject
+     * is found from the job name, which starts with the subject followed by a dash: the longest subject already
+     * seen which the name starts with is used, otherwise the name up to its first dash.
+     *
+     * @param jobName the name of the job of the trigger
+     */
+    public void recordMisfire(String jobName) {
+        Counters current = counters;
+        current.getSubject(current.findSubject(jobName)).misfires.incrementAndGet();
+    }
+
+    @Override
+    public long getFiredCount() {
+        return counters.fired.get();
+    }
+
+    @Override
+    public Map<String, Long> getFiredCountByInstance() {
+        Map<String, Long> firedCounts = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.firedByInstance.entrySet()) {
+            firedCounts.put(entry.getKey(), entry.getValue().get());
+        }
+        return firedCounts;
+    }
+
+    @Override
+    public LatencyMetrics getFireLag() {
+        return counters.lag.snapshot();
+    }
+
+    @Override
+    public List<SchedulerSubjectMetrics> getSubjectMetrics() {
+        long now = System.currentTimeMillis();
+        Map<String, SubjectCounters> subjects = counters.subjects;
+        List<SchedulerSubjectMetrics> metrics = new ArrayList<>(subjects.size());
+        for (Map.Entry<String, SubjectCounters> entry : subjects.entrySet()) {
+            SubjectCounters subjectCounters = entry.getValue();
+            metrics.add(new SchedulerSubjectMetrics(entry.getKey(), subjectCounters.fired.get(),
+                    subjectCounters.failures.get(), subjectCounters.misfires.get(), subjectCounters.lag.snapshot(),
+                    subjectCounters.executionTime.snapshot(), subjectCounters.recentLag.snapshot(now),
+                    subjectCounters.recentExecutionTime.snapshot(now)));
+        }
+        return metrics;
+    }
+
+    @Override
+    public void reset() {
+        counters = new Counters();
+    }
+
+    private static class Counters {
+        private final AtomicLong fired = new AtomicLong();
+        private final ConcurrentMap<String, AtomicLong> firedByInstance = new ConcurrentHashMap<>();
+        private final Latency lag = new Latency();
+        private final ConcurrentMap<String, SubjectCounters> subjects = new ConcurrentHashMap<>();
+
+        AtomicLong getInstanceCounter(String instanceId) {
+            AtomicLong counter = firedByInstance.get(instanceId);
+            if (counter == null) {
+                AtomicLong created = new AtomicLong();
+                counter = firedByInstance.putIfAbsent(instanceId, created);
+                if (counter == null) {
+                    counter = created;
+                }
+            }
+            return counter;
+        }
+
+        SubjectCounters getSubject(String subject) {
+            String key = (subject == null) ? OTHER : subject;
+            SubjectCounters subjectCounters = subjects.get(key);
+            if (subjectCounters == null) {
+                if (subjects.size() >= MAX_SUBJECTS) {
+                    key = OTHER;
+                }
+                SubjectCounters created = new SubjectCounters();
+                subjectCounters = subjects.putIfAbsent(key, created);
+                if (subjectCounters == null) {
+                    subjectCounters = created;
+                }
+            }
+            return subjectCounters;
+        }
+
+        String findSubject(String jobName) {
+            String found = null;
+            for (String subject : subjects.keySet()) {
+                if (jobName.startsWith(subject + "-") && (found == null || subject.length() > found.length())) {
+                    found = subject;
+                }
+            }
+            if (found == null) {
+                int dash = jobName.indexOf('-');
+                found = (dash < 0) ? jobName : jobName.substring(0, dash);
+            }
+            return found;
+        }
+    }
+
+    private static class SubjectCounters {
+        private final AtomicLong fired = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong misfires = new AtomicLong();
+        private final Latency lag = new Latency();
+        private final Latency executionTime = new Latency();
+        private final RollingHistogram recentLag = new RollingHistogram(WINDOW_MILLIS, WINDOW_SLICES);
+        private final RollingHistogram recentExecutionTime = new RollingHistogram(WINDOW_MILLIS, WINDOW_SLICES);
+    }
+
+    private static class Latency {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(LatencyMetrics.getBucketCount());
+
+        void record(long millis) {
+            count.incrementAndGet();
+            total.addAndGet(millis);
+            buckets.incrementAndGet(LatencyMetrics.getBucket(millis));
+
+            long currentMax = max.get();
+            while (millis > currentMax && !max.compareAndSet(currentMax, millis)) {
+                currentMax = max.get();
+            }
+        }
+
+        LatencyMetrics snapshot() {
+            long[] histogram = new long[buckets.length()];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = buckets.get(i);
+            }
+            return new LatencyMetrics(count.get(), total.get(), max.get(), histogram);
+        }
+    }
+}
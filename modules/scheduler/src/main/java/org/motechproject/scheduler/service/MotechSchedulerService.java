@@ -1,14 +1,20 @@
 package org.motechproject.scheduler.service;
 
 import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.BulkJobResult;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
+import org.motechproject.scheduler.contract.FireTimeProjection;
 import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsSearchResult;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -41,18 +47,27 @@ import java.util.List;
 public interface MotechSchedulerService {
     String JOB_ID_KEY = "JobID";
 
+    /**
+     * Parameter set to true on the event of a job fired again by another node of a clustered scheduler, because the
+     * node running it died. The dead node may have published the event already, so listeners can receive it twice.
+     */
+    String RECOVERED_KEY = "Recovered";
+
     /**
      * Schedules the given schedulable job. The Job ID by which the job will be referencing in the future should be provided
      * in an Instance of MotechEvent in SchedulableJob (see MotechEvent.jobId)
      *
-     * If a job with the same job ID as the given exists, this job will be unscheduled and the given schedulable job will be scheduled
+     * If a job with the same job ID as the given exists, it is updated in place: its trigger is replaced only if the schedule
+     * changed and its data only if the event parameters changed, so rescheduling an unchanged job writes nothing.
+     * A paused job is resumed, as if it was scheduled anew
      *
      * @param cronSchedulableJob
      */
     void scheduleJob(CronSchedulableJob cronSchedulableJob);
 
     /**
-     * Same as scheduleJob, except that it would update existing job if one exists instead of creating a new one
+     * Same as scheduleJob, except that an existing job which can not be read is replaced by the given one instead of
+     * failing the call
      *
      * @param cronSchedulableJob
      */
@@ -106,6 +121,36 @@ public interface MotechSchedulerService {
      */
     void scheduleDayOfWeekJob(DayOfWeekSchedulableJob dayOfWeekSchedulableJob);
 
+    /**
+     * Schedules all the given jobs, of any kind. Existing jobs with the same job IDs are replaced. The jobs are
+     * stored in chunks, each written in a single job store transaction, which is much faster than scheduling
+     * them one by one. A job which can not be scheduled does not stop the others.
+     *
+     * @param schedulableJobs the jobs to schedule
+     * @return the IDs of the scheduled jobs and the errors of the jobs which could not be scheduled
+     */
+    BulkJobResult scheduleJobs(Collection<? extends SchedulableJob> schedulableJobs);
+
+    /**
+     * Schedules all the given jobs, of any kind, updating existing jobs with the same job IDs in place. Jobs whose
+     * schedule and event parameters did not change are not written at all, jobs whose parameters changed alone keep
+     * their triggers, and the other jobs are stored in chunks as by {@link #scheduleJobs(Collection)}. Paused jobs
+     * are resumed, whether they changed or not.
+     *
+     * @param schedulableJobs the jobs to schedule or update
+     * @return the IDs of the written and of the unchanged jobs, and the errors of the jobs which could not be scheduled
+     */
+    BulkJobResult rescheduleJobs(Collection<? extends SchedulableJob> schedulableJobs);
+
+    /**
+     * Unschedules all the jobs with the given job IDs, in chunks written in a single job store transaction each.
+     * Jobs which do not exist are ignored.
+     *
+     * @param jobIds the IDs of the jobs to unschedule
+     * @return the IDs of the unscheduled jobs and the errors of the jobs which could not be unscheduled
+     */
+    BulkJobResult unscheduleJobs(Collection<? extends JobId> jobIds);
+
     /**
      * Unschedules a job with the given job ID
      *  @param subject : String representing domain operation eg. "pill-reminder", "outbox-call" or motechEvent.getSubject()
@@ -153,7 +198,29 @@ public interface MotechSchedulerService {
 
     List<Date> getScheduledJobTimingsWithPrefix(String subject, String externalJobIdPrefix, Date startDate, Date endDate);
 
+    /**
+     * Counts how many times the scheduled jobs will fire between the given dates, per event subject and per time
+     * bucket. The jobs are read in pages and their fire times are counted in parallel, without building the lists of
+     * fire times, so that the fires of a large number of jobs can be projected at once.
+     *
+     * @param subjects     the subjects of the jobs to count, all jobs are counted if null or empty
+     * @param startDate    the start of the period
+     * @param endDate      the end of the period, inclusive
+     * @param bucketMillis the length of the time buckets in milliseconds
+     * @return the number of fires per subject and bucket
+     */
+    FireTimeProjection projectFireTimes(Collection<String> subjects, Date startDate, Date endDate, long bucketMillis);
+
     List<JobBasicInfo> getScheduledJobsBasicInfo();
 
+    /**
+     * Returns one page of the scheduled jobs, filtered and sorted as given. With a JDBC job store the search is done
+     * by the database, and only the triggers of the jobs on the returned page are loaded.
+     *
+     * @param jobsSearchSettings the filters, order and page of the search
+     * @return the jobs on the requested page, with the number of all matching jobs
+     */
+    JobsSearchResult getScheduledJobsBasicInfo(JobsSearchSettings jobsSearchSettings);
+
     JobDetailedInfo getScheduledJobDetailedInfo(JobBasicInfo jobBasicInfo);
 }
@@ -0,0 +1,253 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Quartz thread pool which starts new threads when jobs are waiting to run, up to {@link #getMaxThreadCount()},
+ * and stops the threads above {@link #getMinThreadCount()} once they have been idle for
+ * {@link #getKeepAliveSeconds()}. Unlike the <code>SimpleThreadPool</code>, which keeps a fixed number of threads,
+ * it can absorb the backlog of many triggers firing at the same time without keeping all threads when idle.
+ * <p>
+ * It is configured through the <code>org.quartz.threadPool.*</code> properties, for example
+ * <code>org.quartz.threadPool.maxThreadCount</code>. The <code>threadCount</code> property of the
+ * <code>SimpleThreadPool</code>, which Spring's <code>SchedulerFactoryBean</code> always sets, is taken as the
+ * maximum thread count unless that is set as well.
+ */
+public class ElasticThreadPool implements ThreadPool {
+    private final Logger logger = LoggerFactory.getLogger(ElasticThreadPool.class);
+
+    private int minThreadCount = 1;
+    private int maxThreadCount = 10;
+    private boolean maxThreadCountSet;
+    private int keepAliveSeconds = 60;
+    private boolean makeThreadsDaemons;
+    private String threadNamePrefix;
+    private String instanceName = "MotechScheduler";
+
+    private final Object availableLock = new Object();
+    private int busyCount;
+    private boolean shutdown;
+
+    private ThreadPoolExecutor executor;
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (minThreadCount < 0 || maxThreadCount < 1 || minThreadCount > maxThreadCount) {
+            throw new SchedulerConfigException(String.format("Thread counts must satisfy 0 <= minThreadCount (%d) <= maxThreadCount (%d) and maxThreadCount >= 1", minThreadCount, maxThreadCount));
+        }
+
+        executor = new ThreadPoolExecutor(minThreadCount, maxThreadCount, keepAliveSeconds, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new WorkerThreadFactory(), new HandOffPolicy());
+        executor.prestartAllCoreThreads();
+    }
+
+    @Override
+    public boolean runInThread(final Runnable runnable) {
+        if (runnable == null) {
+            return false;
+        }
+
+        synchronized (availableLock) {
+            while (busyCount >= maxThreadCount && !shutdown) {
+                waitForAvailableThread();
+            }
+            if (shutdown) {
+                return false;
+            }
+            busyCount++;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                    } finally {
+                        released();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            released();
+            logger.error("Unable to run job in the scheduler thread pool: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        synchronized (availableLock) {
+            while (busyCount >= maxThreadCount && !shutdown) {
+                waitForAvailableThread();
+            }
+            return maxThreadCount - busyCount;
+        }
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        synchronized (availableLock) {
+            shutdown = true;
+            availableLock.notifyAll();
+        }
+
+        if (executor == null) {
+            return;
+        }
+        if (waitForJobsToComplete) {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    logger.debug("Waiting for scheduler jobs to complete");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the maximum number of threads, which is the number of jobs that can run at the same time.
+     */
+    @Override
+    public int getPoolSize() {
+        return maxThreadCount;
+    }
+
+    /**
+     * @return the number of threads currently started
+     */
+    public int getCurrentPoolSize() {
+        return (executor == null) ? 0 : executor.getPoolSize();
+    }
+
+    /**
+     * @return the number of threads currently running jobs
+     */
+    public int getBusyCount() {
+        synchronized (availableLock) {
+            return busyCount;
+        }
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+        // threads are named after the instance name
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        this.instanceName = schedName;
+    }
+
+    public int getMinThreadCount() {
+        return minThreadCount;
+    }
+
+    public void setMinThreadCount(int minThreadCount) {
+        this.minThreadCount = minThreadCount;
+    }
+
+    public int getMaxThreadCount() {
+        return maxThreadCount;
+    }
+
+    public void setMaxThreadCount(int maxThreadCount) {
+        this.maxThreadCount = maxThreadCount;
+        this.maxThreadCountSet = true;
+    }
+
+    /**
+     * Sets the maximum thread count, unless it is set through {@link #setMaxThreadCount(int)}, which takes precedence
+     * whatever the order of the calls.
+     */
+    public void setThreadCount(int threadCount) {
+        if (!maxThreadCountSet) {
+            this.maxThreadCount = threadCount;
+        }
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public void setKeepAliveSeconds(int keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    public boolean isMakeThreadsDaemons() {
+        return makeThreadsDaemons;
+    }
+
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons) {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    public String getThreadNamePrefix() {
+        return (threadNamePrefix == null) ? instanceName + "_Worker" : threadNamePrefix;
+    }
+
+    public void setThreadNamePrefix(String threadNamePrefix) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    private void released() {
+        synchronized (availableLock) {
+            busyCount--;
+            availableLock.notifyAll();
+        }
+    }
+
+    private void waitForAvailableThread() {
+        try {
+            availableLock.wait(500);
+        } catch (InterruptedException e) {
+            logger.debug("Interrupted while waiting for an available thread");
+        }
+    }
+
+    /**
+     * A free thread may not poll for work yet when a job is handed to the pool at its maximum size, as threads
+     * are released just before they return to the pool. The job is then handed to the first thread polling.
+     */
+    private static class HandOffPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("The scheduler thread pool is shut down");
+            }
+            try {
+                executor.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while handing the job to the scheduler thread pool", e);
+            }
+        }
+    }
+
+    private class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, getThreadNamePrefix() + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(makeThreadsDaemons);
+            return thread;
+        }
+    }
+}
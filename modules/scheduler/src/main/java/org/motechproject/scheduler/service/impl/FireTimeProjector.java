@@ -0,0 +1,327 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.scheduler.contract.FireTimeProjection;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Counts the fire times of many triggers at once. With a JDBC job store, the schedules of the stored triggers are
+ * read page by page, a single query per page; other triggers are listed by key and loaded one by one. Each page is
+ * projected by a pool of threads, each counting the fires of its page into its own buckets, which are added up as
+ * the pages complete. Only a few pages are in progress at any time, so the memory used
+ * depends on the number of subjects and buckets, not on the number of triggers.
+ */
+public class FireTimeProjector {
+    private final Logger logger = LoggerFactory.getLogger(FireTimeProjector.class);
+
+    private final Scheduler scheduler;
+    private final TriggerKeyFinder triggerKeyFinder;
+    private final int pageSize;
+    private final int threadCount;
+
+    public FireTimeProjector(Scheduler scheduler, TriggerKeyFinder triggerKeyFinder, int pageSize, int threadCount) {
+        this.scheduler = scheduler;
+        this.triggerKeyFinder = triggerKeyFinder;
+        this.pageSize = pageSize;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Counts the fires of the triggers of the given group between the given dates.
+     *
+     * @param group        the trigger group
+     * @param subjects     the subjects to count the fires of, all subjects if empty
+     * @param startDate    the start of the period
+     * @param endDate      the end of the period, inclusive
+     * @param bucketMillis the length of a bucket in milliseconds
+     * @return the number of fires per subject and bucket
+     * @throws SchedulerException if the triggers can not be read
+     */
+    public FireTimeProjection project(String group, Collection<String> subjects, Date startDate, Date endDate,
+                                      long bucketMillis) throws SchedulerException {
+        Projection projection = new Projection(subjects, startDate.getTime(), endDate.getTime(), bucketMillis);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            PageRunner pageRunner = new PageRunner(executor, projection);
+            if (triggerKeyFinder.isJdbcStore() && projectStoredPages(group, pageRunner)) {
+                GroupMatcher<TriggerKey> matcher = GroupMatcher.triggerGroupEquals(group);
+                submitInPages(HybridJobStore.getInMemoryTriggerKeys(scheduler, matcher), pageRunner);
+            } else {
+                submitInPages(scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group)), pageRunner);
+            }
+            pageRunner.awaitAll();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new FireTimeProjection(startDate, endDate, bucketMillis, projection.counts);
+    }
+
+    /**
+     * Projects the stored triggers, reading their keys page by page from the database. Returns false when the
+     * keys can not be read before any page is projected, so that the triggers can be listed the usual way.
+     */
+    private boolean projectStoredPages(String group, PageRunner pageRunner) throws SchedulerException {
+        String lastName = "";
+        boolean firstPage = true;
+        while (true) {
+            List<Trigger> page;
+            try {
+                page = triggerKeyFinder.findTriggerPage(group, lastName, pageSize);
+            } catch (SQLException e) {
+                if (firstPage) {
+                    logger.error("Can not select triggers page by page, listing all triggers: " + e.getMessage(), e);
+                    return false;
+                }
+                throw new SchedulerException("Can not select the triggers after " + lastName, e);
+            }
+            firstPage = false;
+
+            if (!page.isEmpty()) {
+                pageRunner.submitTriggers(page);
+                lastName = page.get(page.size() - 1).getKey().getName();
+            }
+            if (page.size() < pageSize) {
+                return true;
+            }
+        }
+    }
+
+    private void submitInPages(Collection<TriggerKey> triggerKeys, PageRunner pageRunner) throws SchedulerException {
+        List<TriggerKey> page = new ArrayList<>(pageSize);
+        for (TriggerKey triggerKey : triggerKeys) {
+            page.add(triggerKey);
+            if (page.size() >= pageSize) {
+                pageRunner.submitKeys(page);
+                page = new ArrayList<>(pageSize);
+            }
+        }
+        if (!page.isEmpty()) {
+            pageRunner.submitKeys(page);
+        }
+    }
+
+    /**
+     * Counts the fires of the given trigger between the given times into the buckets. Simple triggers fire at a
+     * fixed interval, so their fires are counted bucket by bucket; the others are asked for each next fire time.
+     */
+    static void countFires(Trigger trigger, long startTime, long endTime, long bucketMillis, long[] counts) {
+        Date nextFireTime = trigger.getNextFireTime();
+        if (nextFireTime == null) {
+            return;
+        }
+
+        long fireTime = nextFireTime.getTime();
+        if (fireTime < startTime) {
+            Date firstFireTime = trigger.getFireTimeAfter(new Date(startTime - 1));
+            if (firstFireTime == null) {
+                return;
+            }
+            fireTime = firstFireTime.getTime();
+        }
+
+        if (trigger instanceof SimpleTrigger) {
+            SimpleTrigger simpleTrigger = (SimpleTrigger) trigger;
+            long interval = simpleTrigger.getRepeatInterval();
+            long lastTime = endTime;
+            if (trigger.getEndTime() != null) {
+                lastTime = Math.min(lastTime, trigger.getEndTime().getTime());
+            }
+            if (simpleTrigger.getRepeatCount() != SimpleTrigger.REPEAT_INDEFINITELY && interval > 0) {
+                lastTime = Math.min(lastTime, trigger.getStartTime().getTime() + simpleTrigger.getRepeatCount() * interval);
+            }
+            if (interval <= 0 || simpleTrigger.getRepeatCount() == 0) {
+                lastTime = Math.min(lastTime, fireTime);
+            }
+
+            long step = Math.max(interval, 1);
+            while (fireTime <= lastTime) {
+                // all fires up to the end of the bucket are counted at once
+                int bucket = (int) ((fireTime - startTime) / bucketMillis);
+                long bucketEnd = Math.min(startTime + (bucket + 1) * bucketMillis - 1, lastTime);
+                long fires = (bucketEnd - fireTime) / step + 1;
+                counts[bucket] += fires;
+                fireTime += fires * step;
+            }
+        } else {
+            while (fireTime <= endTime) {
+                counts[(int) ((fireTime - startTime) / bucketMillis)]++;
+                Date followingFireTime = trigger.getFireTimeAfter(new Date(fireTime));
+                if (followingFireTime == null) {
+                    return;
+                }
+                fireTime = followingFireTime.getTime();
+            }
+        }
+    }
+
+    /**
+     * Submits pages to the executor, keeping only a few of them in progress, and adds up their counts.
+     */
+    private class PageRunner {
+        private final CompletionService<Map<String, long[]>> completionService;
+        private final Projection projection;
+        private final int maxInProgress = threadCount * 2;
+        private int inProgress;
+
+        PageRunner(ExecutorService executor, Projection projection) {
+            this.completionService = new ExecutorCompletionService<>(executor);
+            this.projection = projection;
+        }
+
+        void submitTriggers(final List<Trigger> page) throws SchedulerException {
+            submit(new Callable<Map<String, long[]>>() {
+                @Override
+                public Map<String, long[]> call() {
+                    return projection.project(page);
+                }
+            });
+        }
+
+        void submitKeys(final List<TriggerKey> page) throws SchedulerException {
+            submit(new Callable<Map<String, long[]>>() {
+                @Override
+                public Map<String, long[]> call() throws SchedulerException {
+                    return projection.project(projection.load(page));
+                }
+            });
+        }
+
+        private void submit(Callable<Map<String, long[]>> task) throws SchedulerException {
+            while (inProgress >= maxInProgress) {
+                awaitOne();
+            }
+            completionService.submit(task);
+            inProgress++;
+        }
+
+        void awaitAll() throws SchedulerException {
+            while (inProgress > 0) {
+                awaitOne();
+            }
+        }
+
+        private void awaitOne() throws SchedulerException {
+            try {
+                projection.add(completionService.take().get());
+                inProgress--;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SchedulerException("Interrupted while projecting fire times", e);
+            } catch (ExecutionException e) {
+                throw new SchedulerException("Can not project fire times: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private class Projection {
+        private final List<String> subjects;
+        private final long startTime;
+        private final long endTime;
+        private final long bucketMillis;
+        private final int bucketCount;
+        private final Map<String, long[]> counts = new HashMap<>();
+
+        Projection(Collection<String> subjects, long startTime, long endTime, long bucketMillis) {
+            this.subjects = new ArrayList<>(subjects);
+            // longer subjects first, so that a job is counted for the most specific subject its name starts with
+            Collections.sort(this.subjects, new Comparator<String>() {
+                @Override
+                public int compare(String first, String second) {
+                    return second.length() - first.length();
+                }
+            });
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.bucketMillis = bucketMillis;
+            this.bucketCount = FireTimeProjection.getBucketCount(new Date(startTime), new Date(endTime), bucketMillis);
+        }
+
+        /**
+         * Loads the triggers of the given keys whose fires are counted.
+         */
+        List<Trigger> load(List<TriggerKey> page) throws SchedulerException {
+            List<Trigger> triggers = new ArrayList<>(page.size());
+            for (TriggerKey triggerKey : page) {
+                if (getSubject(triggerKey.getName()) != null) {
+                    Trigger trigger = scheduler.getTrigger(triggerKey);
+                    if (trigger != null) {
+                        triggers.add(trigger);
+                    }
+                }
+            }
+            return triggers;
+        }
+
+        Map<String, long[]> project(List<Trigger> page) {
+            Map<String, long[]> pageCounts = new HashMap<>();
+            for (Trigger trigger : page) {
+                String subject = getSubject(trigger.getKey().getName());
+                if (subject == null) {
+                    continue;
+                }
+
+                long[] subjectCounts = pageCounts.get(subject);
+                if (subjectCounts == null) {
+                    subjectCounts = new long[bucketCount];
+                    pageCounts.put(subject, subjectCounts);
+                }
+                countFires(trigger, startTime, endTime, bucketMillis, subjectCounts);
+            }
+            return pageCounts;
+        }
+
+        void add(Map<String, long[]> pageCounts) {
+            for (Map.Entry<String, long[]> entry : pageCounts.entrySet()) {
+                long[] subjectCounts = counts.get(entry.getKey());
+                if (subjectCounts == null) {
+                    counts.put(entry.getKey(), entry.getValue());
+                } else {
+                    for (int i = 0; i < subjectCounts.length; i++) {
+                        subjectCounts[i] += entry.getValue()[i];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Job names start with the subject of their event, followed by a dash. Without a list of subjects, the name
+         * is taken up to the first dash.
+         */
+        private String getSubject(String jobName) {
+            if (subjects.isEmpty()) {
+                int dash = jobName.indexOf('-');
+                return (dash < 0) ? jobName : jobName.substring(0, dash);
+            }
+            for (String subject : subjects) {
+                if (jobName.startsWith(subject) && jobName.length() > subject.length() && jobName.charAt(subject.length()) == '-') {
+                    return subject;
+                }
+            }
+            return null;
+        }
+    }
+}
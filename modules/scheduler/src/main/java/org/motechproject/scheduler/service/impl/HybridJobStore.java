@@ -0,0 +1,665 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.quartz.Calendar;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.JobStoreTX;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Job store keeping the jobs flagged with {@link #IN_MEMORY_KEY} in memory, in a {@link RAMJobStore}, and all other
+ * jobs in the database, like the {@link JobStoreTX} it extends. Jobs kept in memory are scheduled and fired without
+ * any database access or locking, but are lost when the scheduler is restarted.
+ * <p>
+ * Triggers are acquired from both stores and fired in the order of their fire times. The database is not queried
+ * for triggers to fire while it is known to have none due before the ones found in memory. This is only known when
+ * the scheduler is not clustered, as then all changes to the database go through this store.
+ * <p>
+ * Jobs of both stores share the key space, a job can not be scheduled in memory with the key of a stored job and
+ * the other way round. The jobs kept in memory are not listed in the jobs grid, which is paged by the database.
+ * <p>
+ * Quartz does not expose the job store of a scheduler, so the store is handed over to the thread creating the
+ * scheduler, see {@link #takeInitialized()}, which puts it in the context of its scheduler under
+ * {@link #CONTEXT_KEY}.
+ */
+public class HybridJobStore extends JobStoreTX {
+
+    /**
+     * Key of the job data flag marking jobs which should be kept in memory.
+     */
+    public static final String IN_MEMORY_KEY = "motechInMemoryJob";
+
+    /**
+     * Key of the hybrid job store in the context of its scheduler.
+     */
+    public static final String CONTEXT_KEY = "motechHybridJobStore";
+
+    private static final ThreadLocal<HybridJobStore> INITIALIZED = new ThreadLocal<>();
+
+    private final RAMJobStore memoryStore = new RAMJobStore();
+
+    private final Object idleLock = new Object();
+    private long storedChanges;
+    private volatile long storedIdleUntil;
+
+    /**
+     * Returns the keys of the triggers kept in memory by the hybrid job store of the given scheduler.
+     *
+     * @param scheduler the scheduler
+     * @param matcher   the matcher of the trigger groups
+     * @return the keys of the matching triggers, empty if the scheduler does not use the hybrid job store
+     * @throws SchedulerException if the keys can not be read
+     */
+    public static Set<TriggerKey> getInMemoryTriggerKeys(Scheduler scheduler, GroupMatcher<TriggerKey> matcher)
+            throws SchedulerException {
+        HybridJobStore jobStore = (HybridJobStore) scheduler.getContext().get(CONTEXT_KEY);
+        return (jobStore == null) ? Collections.<TriggerKey>emptySet() : jobStore.memoryStore.getTriggerKeys(matcher);
+    }
+
+    /**
+     * Returns the hybrid job store last initialized by the current thread, and forgets it. Quartz initializes the
+     * job store on the thread creating the scheduler, which can then add the store to the context of the scheduler.
+     *
+     * @return the job store, null if no hybrid job store was initialized by the current thread
+     */
+    public static HybridJobStore takeInitialized() {
+        HybridJobStore jobStore = INITIALIZED.get();
+        INITIALIZED.remove();
+        return jobStore;
+    }
+
+    public static boolean isInMemory(JobDetail jobDetail) {
+        return jobDetail != null && Boolean.TRUE.equals(jobDetail.getJobDataMap().get(IN_MEMORY_KEY));
+    }
+
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler signaler) throws SchedulerConfigException {
+        super.initialize(loadHelper, signaler);
+        memoryStore.setMisfireThreshold(getMisfireThreshold());
+        memoryStore.initialize(loadHelper, signaler);
+        INITIALIZED.set(this);
+    }
+
+    @Override
+    public void schedulerStarted() throws SchedulerException {
+        super.schedulerStarted();
+        memoryStore.schedulerStarted();
+    }
+
+    @Override
+    public void schedulerPaused() {
+        super.schedulerPaused();
+        memoryStore.schedulerPaused();
+    }
+
+    @Override
+    public void schedulerResumed() {
+        super.schedulerResumed();
+        memoryStore.schedulerResumed();
+    }
+
+    @Override
+    public void shutdown() {
+        memoryStore.shutdown();
+        super.shutdown();
+    }
+
+    @Override
+    protected void recoverJobs() throws JobPersistenceException {
+        super.recoverJobs();
+        storedChanged();
+    }
+
+    @Override
+    protected RecoverMisfiredJobsResult doRecoverMisfires() throws JobPersistenceException {
+        RecoverMisfiredJobsResult result = super.doRecoverMisfires();
+        // misfired triggers are given new fire times in the database, which may be due before the ones in memory
+        if (result.getProcessedMisfiredTriggerCount() > 0) {
+            storedChanged();
+        }
+        return result;
+    }
+
+    @Override
+    public void setInstanceId(String instanceId) {
+        super.setInstanceId(instanceId);
+        memoryStore.setInstanceId(instanceId);
+    }
+
+    @Override
+    public void setInstanceName(String instanceName) {
+        super.setInstanceName(instanceName);
+        memoryStore.setInstanceName(instanceName);
+    }
+
+    @Override
+    public void setThreadPoolSize(int poolSize) {
+        super.setThreadPoolSize(poolSize);
+        memoryStore.setThreadPoolSize(poolSize);
+    }
+
+    @Override
+    public void storeJobAndTrigger(JobDetail newJob, OperableTrigger newTrigger) throws JobPersistenceException {
+        if (isInMemory(newJob)) {
+            assertNotStored(newJob.getKey());
+            memoryStore.storeJobAndTrigger(newJob, newTrigger);
+        } else {
+            assertNotInMemory(newJob.getKey());
+            super.storeJobAndTrigger(newJob, newTrigger);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public void storeJob(JobDetail newJob, boolean replaceExisting) throws JobPersistenceException {
+        if (isInMemory(newJob)) {
+            if (replaceExisting) {
+                removeStoredJob(newJob.getKey());
+            } else {
+                assertNotStored(newJob.getKey());
+            }
+            memoryStore.storeJob(newJob, replaceExisting);
+        } else {
+            if (replaceExisting) {
+                memoryStore.removeJob(newJob.getKey());
+            } else {
+                assertNotInMemory(newJob.getKey());
+            }
+            super.storeJob(newJob, replaceExisting);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public void storeJobsAndTriggers(Map<JobDetail, List<Trigger>> triggersAndJobs, boolean replace)
+            throws JobPersistenceException {
+        Map<JobDetail, List<Trigger>> inMemory = new LinkedHashMap<>();
+        Map<JobDetail, List<Trigger>> stored = new LinkedHashMap<>();
+        for (Map.Entry<JobDetail, List<Trigger>> entry : triggersAndJobs.entrySet()) {
+            (isInMemory(entry.getKey()) ? inMemory : stored).put(entry.getKey(), entry.getValue());
+        }
+
+        if (!inMemory.isEmpty()) {
+            List<JobKey> jobKeys = getJobKeys(inMemory.keySet());
+            if (replace) {
+                removeStoredJobs(jobKeys);
+            } else {
+                for (JobKey jobKey : jobKeys) {
+                    assertNotStored(jobKey);
+                }
+            }
+            memoryStore.storeJobsAndTriggers(inMemory, replace);
+        }
+
+        if (!stored.isEmpty()) {
+            List<JobKey> jobKeys = getJobKeys(stored.keySet());
+            if (replace) {
+                memoryStore.removeJobs(jobKeys);
+            } else {
+                for (JobKey jobKey : jobKeys) {
+                    assertNotInMemory(jobKey);
+                }
+            }
+            super.storeJobsAndTriggers(stored, replace);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public boolean removeJob(JobKey jobKey) throws JobPersistenceException {
+        return memoryStore.removeJob(jobKey) || removeStoredJob(jobKey);
+    }
+
+    @Override
+    public boolean removeJobs(List<JobKey> jobKeys) throws JobPersistenceException {
+        List<JobKey> stored = new ArrayList<>();
+        boolean allFound = true;
+        for (JobKey jobKey : jobKeys) {
+            if (memoryStore.checkExists(jobKey)) {
+                allFound &= memoryStore.removeJob(jobKey);
+            } else {
+                stored.add(jobKey);
+            }
+        }
+        return removeStoredJobs(stored) && allFound;
+    }
+
+    @Override
+    public JobDetail retrieveJob(JobKey jobKey) throws JobPersistenceException {
+        JobDetail jobDetail = memoryStore.retrieveJob(jobKey);
+        return (jobDetail == null) ? super.retrieveJob(jobKey) : jobDetail;
+    }
+
+    @Override
+    public void storeTrigger(OperableTrigger newTrigger, boolean replaceExisting) throws JobPersistenceException {
+        if (memoryStore.checkExists(newTrigger.getJobKey())) {
+            memoryStore.storeTrigger(newTrigger, replaceExisting);
+        } else {
+            super.storeTrigger(newTrigger, replaceExisting);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public boolean removeTrigger(TriggerKey triggerKey) throws JobPersistenceException {
+        if (memoryStore.checkExists(triggerKey)) {
+            return memoryStore.removeTrigger(triggerKey);
+        }
+        boolean removed = super.removeTrigger(triggerKey);
+        storedChanged();
+        return removed;
+    }
+
+    @Override
+    public boolean removeTriggers(List<TriggerKey> triggerKeys) throws JobPersistenceException {
+        List<TriggerKey> stored = new ArrayList<>();
+        boolean allFound = true;
+        for (TriggerKey triggerKey : triggerKeys) {
+            if (memoryStore.checkExists(triggerKey)) {
+                allFound &= memoryStore.removeTrigger(triggerKey);
+            } else {
+                stored.add(triggerKey);
+            }
+        }
+
+        if (!stored.isEmpty()) {
+            allFound &= super.removeTriggers(stored);
+            storedChanged();
+        }
+        return allFound;
+    }
+
+    @Override
+    public boolean replaceTrigger(TriggerKey triggerKey, OperableTrigger newTrigger) throws JobPersistenceException {
+        if (memoryStore.checkExists(triggerKey)) {
+            return memoryStore.replaceTrigger(triggerKey, newTrigger);
+        }
+        boolean replaced = super.replaceTrigger(triggerKey, newTrigger);
+        storedChanged();
+        return replaced;
+    }
+
+    @Override
+    public OperableTrigger retrieveTrigger(TriggerKey triggerKey) throws JobPersistenceException {
+        OperableTrigger trigger = memoryStore.retrieveTrigger(triggerKey);
+        return (trigger == null) ? super.retrieveTrigger(triggerKey) : trigger;
+    }
+
+    @Override
+    public boolean checkExists(JobKey jobKey) throws JobPersistenceException {
+        return memoryStore.checkExists(jobKey) || super.checkExists(jobKey);
+    }
+
+    @Override
+    public boolean checkExists(TriggerKey triggerKey) throws JobPersistenceException {
+        return memoryStore.checkExists(triggerKey) || super.checkExists(triggerKey);
+    }
+
+    @Override
+    public void clearAllSchedulingData() throws JobPersistenceException {
+        memoryStore.clearAllSchedulingData();
+        super.clearAllSchedulingData();
+        storedChanged();
+    }
+
+    @Override
+    public void storeCalendar(String calName, Calendar calendar, boolean replaceExisting, boolean updateTriggers)
+            throws JobPersistenceException {
+        super.storeCalendar(calName, calendar, replaceExisting, updateTriggers);
+        memoryStore.storeCalendar(calName, calendar, true, updateTriggers);
+        storedChanged();
+    }
+
+    @Override
+    public boolean removeCalendar(String calName) throws JobPersistenceException {
+        memoryStore.removeCalendar(calName);
+        return super.removeCalendar(calName);
+    }
+
+    @Override
+    public int getNumberOfJobs() throws JobPersistenceException {
+        return memoryStore.getNumberOfJobs() + super.getNumberOfJobs();
+    }
+
+    @Override
+    public int getNumberOfTriggers() throws JobPersistenceException {
+        return memoryStore.getNumberOfTriggers() + super.getNumberOfTriggers();
+    }
+
+    @Override
+    public Set<JobKey> getJobKeys(GroupMatcher<JobKey> matcher) throws JobPersistenceException {
+        Set<JobKey> jobKeys = new HashSet<>(memoryStore.getJobKeys(matcher));
+        jobKeys.addAll(super.getJobKeys(matcher));
+        return jobKeys;
+    }
+
+    @Override
+    public Set<TriggerKey> getTriggerKeys(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException {
+        Set<TriggerKey> triggerKeys = new HashSet<>(memoryStore.getTriggerKeys(matcher));
+        triggerKeys.addAll(super.getTriggerKeys(matcher));
+        return triggerKeys;
+    }
+
+    @Override
+    public List<String> getJobGroupNames() throws JobPersistenceException {
+        return union(memoryStore.getJobGroupNames(), super.getJobGroupNames());
+    }
+
+    @Override
+    public List<String> getTriggerGroupNames() throws JobPersistenceException {
+        return union(memoryStore.getTriggerGroupNames(), super.getTriggerGroupNames());
+    }
+
+    @Override
+    public List<OperableTrigger> getTriggersForJob(JobKey jobKey) throws JobPersistenceException {
+        return memoryStore.checkExists(jobKey) ? memoryStore.getTriggersForJob(jobKey) : super.getTriggersForJob(jobKey);
+    }
+
+    @Override
+    public Trigger.TriggerState getTriggerState(TriggerKey triggerKey) throws JobPersistenceException {
+        return memoryStore.checkExists(triggerKey) ? memoryStore.getTriggerState(triggerKey) : super.getTriggerState(triggerKey);
+    }
+
+    @Override
+    public void pauseTrigger(TriggerKey triggerKey) throws JobPersistenceException {
+        if (memoryStore.checkExists(triggerKey)) {
+            memoryStore.pauseTrigger(triggerKey);
+        } else {
+            super.pauseTrigger(triggerKey);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public Set<String> pauseTriggers(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException {
+        Set<String> groups = new HashSet<>(memoryStore.pauseTriggers(matcher));
+        groups.addAll(super.pauseTriggers(matcher));
+        storedChanged();
+        return groups;
+    }
+
+    @Override
+    public void pauseJob(JobKey jobKey) throws JobPersistenceException {
+        if (memoryStore.checkExists(jobKey)) {
+            memoryStore.pauseJob(jobKey);
+        } else {
+            super.pauseJob(jobKey);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public Set<String> pauseJobs(GroupMatcher<JobKey> matcher) throws JobPersistenceException {
+        Set<String> groups = new HashSet<>(memoryStore.pauseJobs(matcher));
+        groups.addAll(super.pauseJobs(matcher));
+        storedChanged();
+        return groups;
+    }
+
+    @Override
+    public void resumeTrigger(TriggerKey triggerKey) throws JobPersistenceException {
+        if (memoryStore.checkExists(triggerKey)) {
+            memoryStore.resumeTrigger(triggerKey);
+        } else {
+            super.resumeTrigger(triggerKey);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public Set<String> resumeTriggers(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException {
+        Set<String> groups = new HashSet<>(memoryStore.resumeTriggers(matcher));
+        groups.addAll(super.resumeTriggers(matcher));
+        storedChanged();
+        return groups;
+    }
+
+    @Override
+    public Set<String> getPausedTriggerGroups() throws JobPersistenceException {
+        Set<String> groups = new HashSet<>(memoryStore.getPausedTriggerGroups());
+        groups.addAll(super.getPausedTriggerGroups());
+        return groups;
+    }
+
+    @Override
+    public void resumeJob(JobKey jobKey) throws JobPersistenceException {
+        if (memoryStore.checkExists(jobKey)) {
+            memoryStore.resumeJob(jobKey);
+        } else {
+            super.resumeJob(jobKey);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public Set<String> resumeJobs(GroupMatcher<JobKey> matcher) throws JobPersistenceException {
+        Set<String> groups = new HashSet<>(memoryStore.resumeJobs(matcher));
+        groups.addAll(super.resumeJobs(matcher));
+        storedChanged();
+        return groups;
+    }
+
+    @Override
+    public void pauseAll() throws JobPersistenceException {
+        memoryStore.pauseAll();
+        super.pauseAll();
+        storedChanged();
+    }
+
+    @Override
+    public void resumeAll() throws JobPersistenceException {
+        memoryStore.resumeAll();
+        super.resumeAll();
+        storedChanged();
+    }
+
+    @Override
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow)
+            throws JobPersistenceException {
+        List<OperableTrigger> inMemory = memoryStore.acquireNextTriggers(noLaterThan, maxCount, timeWindow);
+        if (!inMemory.isEmpty() && lastFireTime(inMemory) <= storedIdleUntil) {
+            return inMemory;
+        }
+
+        long changes = getStoredChanges();
+        List<OperableTrigger> stored;
+        try {
+            stored = super.acquireNextTriggers(noLaterThan, maxCount, timeWindow);
+        } catch (JobPersistenceException e) {
+            for (OperableTrigger trigger : inMemory) {
+                memoryStore.releaseAcquiredTrigger(trigger);
+            }
+            throw e;
+        }
+
+        if (stored.isEmpty()) {
+            storedIdle(changes, noLaterThan + timeWindow);
+            return inMemory;
+        } else if (inMemory.isEmpty()) {
+            return stored;
+        }
+
+        return merge(inMemory, stored, maxCount, timeWindow);
+    }
+
+    @Override
+    public void releaseAcquiredTrigger(OperableTrigger trigger) throws JobPersistenceException {
+        if (memoryStore.checkExists(trigger.getKey())) {
+            memoryStore.releaseAcquiredTrigger(trigger);
+        } else {
+            super.releaseAcquiredTrigger(trigger);
+            storedChanged();
+        }
+    }
+
+    @Override
+    public List<TriggerFiredResult> triggersFired(List<OperableTrigger> triggers) throws JobPersistenceException {
+        List<OperableTrigger> inMemory = new ArrayList<>();
+        List<OperableTrigger> stored = new ArrayList<>();
+        boolean[] isInMemory = new boolean[triggers.size()];
+        for (int i = 0; i < triggers.size(); i++) {
+            isInMemory[i] = memoryStore.checkExists(triggers.get(i).getKey());
+            (isInMemory[i] ? inMemory : stored).add(triggers.get(i));
+        }
+
+        if (stored.isEmpty()) {
+            return memoryStore.triggersFired(inMemory);
+        }
+
+        List<TriggerFiredResult> storedResults = super.triggersFired(stored);
+        storedChanged();
+        if (inMemory.isEmpty()) {
+            return storedResults;
+        }
+
+        // both stores return one result per trigger, in the order of the given triggers
+        List<TriggerFiredResult> inMemoryResults = memoryStore.triggersFired(inMemory);
+        List<TriggerFiredResult> results = new ArrayList<>(triggers.size());
+        int memoryIndex = 0;
+        int storedIndex = 0;
+        for (boolean fromMemory : isInMemory) {
+            results.add(fromMemory ? inMemoryResults.get(memoryIndex++) : storedResults.get(storedIndex++));
+        }
+        return results;
+    }
+
+    @Override
+    public void triggeredJobComplete(OperableTrigger trigger, JobDetail jobDetail,
+                                     Trigger.CompletedExecutionInstruction triggerInstCode) throws JobPersistenceException {
+        if (isInMemory(jobDetail)) {
+            memoryStore.triggeredJobComplete(trigger, jobDetail, triggerInstCode);
+        } else {
+            super.triggeredJobComplete(trigger, jobDetail, triggerInstCode);
+            storedChanged();
+        }
+    }
+
+    /**
+     * Merges the triggers acquired from both stores, keeping the ones which fire first, within the batch time window
+     * of the first one. The others are released back to their stores.
+     */
+    private List<OperableTrigger> merge(List<OperableTrigger> inMemory, List<OperableTrigger> stored, int maxCount,
+                                        long timeWindow) throws JobPersistenceException {
+        List<OperableTrigger> triggers = new ArrayList<>(inMemory.size() + stored.size());
+        triggers.addAll(inMemory);
+        triggers.addAll(stored);
+        Collections.sort(triggers, new Trigger.TriggerTimeComparator());
+
+        Set<OperableTrigger> inMemorySet = Collections.newSetFromMap(new HashMap<OperableTrigger, Boolean>());
+        inMemorySet.addAll(inMemory);
+
+        long batchEnd = triggers.get(0).getNextFireTime().getTime() + timeWindow;
+        List<OperableTrigger> acquired = new ArrayList<>(maxCount);
+        for (OperableTrigger trigger : triggers) {
+            if (acquired.size() < maxCount && trigger.getNextFireTime().getTime() <= batchEnd) {
+                acquired.add(trigger);
+            } else if (inMemorySet.contains(trigger)) {
+                memoryStore.releaseAcquiredTrigger(trigger);
+            } else {
+                super.releaseAcquiredTrigger(trigger);
+                storedChanged();
+            }
+        }
+        return acquired;
+    }
+
+    private long lastFireTime(List<OperableTrigger> triggers) {
+        long last = Long.MIN_VALUE;
+        for (OperableTrigger trigger : triggers) {
+            last = Math.max(last, trigger.getNextFireTime().getTime());
+        }
+        return last;
+    }
+
+    private long getStoredChanges() {
+        synchronized (idleLock) {
+            return storedChanges;
+        }
+    }
+
+    /**
+     * Remembers that no stored trigger fires before the given time, unless the database was changed since the
+     * triggers were acquired, or other schedulers of the cluster may change it.
+     */
+    private void storedIdle(long changesBeforeAcquire, long idleUntil) {
+        if (isClustered()) {
+            return;
+        }
+        synchronized (idleLock) {
+            if (storedChanges == changesBeforeAcquire) {
+                storedIdleUntil = idleUntil;
+            }
+        }
+    }
+
+    private void storedChanged() {
+        synchronized (idleLock) {
+            storedChanges++;
+            storedIdleUntil = 0;
+        }
+    }
+
+    private boolean removeStoredJob(JobKey jobKey) throws JobPersistenceException {
+        boolean removed = super.removeJob(jobKey);
+        storedChanged();
+        return removed;
+    }
+
+    private boolean removeStoredJobs(List<JobKey> jobKeys) throws JobPersistenceException {
+        if (jobKeys.isEmpty()) {
+            return true;
+        }
+        boolean removed = super.removeJobs(jobKeys);
+        storedChanged();
+        return removed;
+    }
+
+    private void assertNotStored(JobKey jobKey) throws JobPersistenceException {
+        if (super.checkExists(jobKey)) {
+            throw new ObjectAlreadyExistsException(String.format("Unable to store Job : '%s', because one already exists with this identification.", jobKey));
+        }
+    }
+
+    private void assertNotInMemory(JobKey jobKey) throws JobPersistenceException {
+        if (memoryStore.checkExists(jobKey)) {
+            throw new ObjectAlreadyExistsException(String.format("Unable to store Job : '%s', because one already exists with this identification.", jobKey));
+        }
+    }
+
+    private List<JobKey> getJobKeys(Collection<JobDetail> jobDetails) {
+        List<JobKey> jobKeys = new ArrayList<>(jobDetails.size());
+        for (JobDetail jobDetail : jobDetails) {
+            jobKeys.add(jobDetail.getKey());
+        }
+        return jobKeys;
+    }
+
+    private List<String> union(Collection<String> first, Collection<String> second) {
+        Set<String> union = new LinkedHashSet<>(first);
+        union.addAll(second);
+        return new ArrayList<>(union);
+    }
+}
@@ -0,0 +1,142 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.quartz.CalendarIntervalTrigger;
+import org.quartz.CronTrigger;
+import org.quartz.JobDetail;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * What has to be written to turn a scheduled job into the same job built anew, so that scheduling a job again does
+ * not write its trigger or its data when they did not change.
+ */
+enum JobChange {
+
+    /**
+     * The job is scheduled as given, nothing has to be written.
+     */
+    NONE,
+
+    /**
+     * Only the job data changed, the job has to be replaced, keeping its trigger.
+     */
+    JOB_DATA,
+
+    /**
+     * Only the schedule changed, the trigger has to be replaced, keeping the job.
+     */
+    SCHEDULE,
+
+    /**
+     * The job is new, moves between the job stores or changed altogether, both the job and the trigger have to be
+     * stored.
+     */
+    ALL;
+
+    /**
+     * Compares the scheduled job with the job built anew. The schedules are the same if they fire at the same times
+     * from now on, so a start time moved past the fire times which are already gone, as when past fires are ignored,
+     * is not a change.
+     *
+     * @param existingTrigger the trigger of the scheduled job, null if there is none
+     * @param existingJob the scheduled job, null if there is none
+     * @param trigger the trigger built anew
+     * @param jobDetail the job built anew
+     * @param now the current time
+     * @return what has to be written
+     */
+    static JobChange between(Trigger existingTrigger, JobDetail existingJob, Trigger trigger, JobDetail jobDetail, Date now) {
+        if (existingTrigger == null || existingJob == null || !existingJob.getKey().equals(jobDetail.getKey())
+                || !existingJob.getJobClass().equals(jobDetail.getJobClass())
+                || HybridJobStore.isInMemory(existingJob) != HybridJobStore.isInMemory(jobDetail)) {
+            return ALL;
+        }
+
+        boolean sameJobData = isSameJobData(existingJob, jobDetail);
+        boolean sameSchedule = isSameSchedule(existingTrigger, trigger, now);
+        if (sameJobData) {
+            return sameSchedule ? NONE : SCHEDULE;
+        }
+        return sameSchedule ? JOB_DATA : ALL;
+    }
+
+    /**
+     * @return true if the trigger of the scheduled job is replaced
+     */
+    boolean writesSchedule() {
+        return this == SCHEDULE || this == ALL;
+    }
+
+    /**
+     * Returns the change which also replaces the trigger of the scheduled job, as when its schedule changed.
+     *
+     * @return {@link #SCHEDULE} for {@link #NONE}, {@link #ALL} for {@link #JOB_DATA}, the change itself otherwise
+     */
+    JobChange withSchedule() {
+        if (this == NONE) {
+            return SCHEDULE;
+        } else if (this == JOB_DATA) {
+            return ALL;
+        }
+        return this;
+    }
+
+    private static boolean isSameJobData(JobDetail existingJob, JobDetail jobDetail) {
+        if (!ObjectUtils.equals(existingJob.getDescription(), jobDetail.getDescription())
+                || existingJob.requestsRecovery() != jobDetail.requestsRecovery()) {
+            return false;
+        }
+
+        Map<String, Object> existingData = existingJob.getJobDataMap().getWrappedMap();
+        Map<String, Object> data = jobDetail.getJobDataMap().getWrappedMap();
+        if (existingData.size() != data.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            // deep, as compact parameters are kept as arrays
+            if (!existingData.containsKey(entry.getKey()) || !Objects.deepEquals(existingData.get(entry.getKey()), entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameSchedule(Trigger existingTrigger, Trigger trigger, Date now) {
+        if (!existingTrigger.getClass().equals(trigger.getClass()) || !isSameRecurrence(existingTrigger, trigger)
+                || existingTrigger.getMisfireInstruction() != trigger.getMisfireInstruction()
+                || existingTrigger.getPriority() != trigger.getPriority()
+                || !ObjectUtils.equals(existingTrigger.getCalendarName(), trigger.getCalendarName())
+                || !ObjectUtils.equals(existingTrigger.getEndTime(), trigger.getEndTime())
+                || !ObjectUtils.equals(existingTrigger.getFinalFireTime(), trigger.getFinalFireTime())) {
+            return false;
+        }
+
+        if (existingTrigger.getStartTime().equals(trigger.getStartTime())) {
+            return true;
+        }
+        Date nextFireTime = existingTrigger.getNextFireTime();
+        return nextFireTime != null && nextFireTime.after(now) && nextFireTime.equals(trigger.getFireTimeAfter(now));
+    }
+
+    private static boolean isSameRecurrence(Trigger existingTrigger, Trigger trigger) {
+        if (trigger instanceof CronTrigger) {
+            CronTrigger existingCron = (CronTrigger) existingTrigger;
+            CronTrigger cron = (CronTrigger) trigger;
+            return existingCron.getCronExpression().equals(cron.getCronExpression())
+                    && existingCron.getTimeZone().getID().equals(cron.getTimeZone().getID());
+        } else if (trigger instanceof SimpleTrigger) {
+            return ((SimpleTrigger) existingTrigger).getRepeatInterval() == ((SimpleTrigger) trigger).getRepeatInterval();
+        } else if (trigger instanceof CalendarIntervalTrigger) {
+            CalendarIntervalTrigger existingInterval = (CalendarIntervalTrigger) existingTrigger;
+            CalendarIntervalTrigger interval = (CalendarIntervalTrigger) trigger;
+            return existingInterval.getRepeatInterval() == interval.getRepeatInterval()
+                    && existingInterval.getRepeatIntervalUnit() == interval.getRepeatIntervalUnit();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,221 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.queue.BinaryMotechEventCodec;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.JobKey.jobKey;
+import static org.quartz.TriggerBuilder.newTrigger;
+import static org.quartz.TriggerKey.triggerKey;
+
+/**
+ * Stores the parameters of scheduled events in the job data maps of their jobs. By default, every parameter is an
+ * entry of the map, which the JDBC job store writes with Java serialization. In compact mode, string parameters
+ * stay entries of the map and all other parameters are encoded together by the {@link BinaryMotechEventCodec},
+ * which makes the stored jobs smaller and cheaper to read when they fire.
+ * <p>
+ * Jobs can also share their payload: the encoded parameters are then stored once, by a payload job named after
+ * their hash, and each job only keeps its name. Every job using a payload also has a reference trigger, which never
+ * fires, on the payload job. The payload job is not durable, so Quartz deletes it together with its last reference
+ * trigger, in the same transaction. Shared payloads never change, so they are read once and cached.
+ */
+public class JobPayloads {
+
+    /**
+     * Key of the encoded parameters in the job data map.
+     */
+    public static final String PAYLOAD_KEY = "motechPayload";
+
+    /**
+     * Key of the name of the shared payload job in the job data map.
+     */
+    public static final String PAYLOAD_REF_KEY = "motechPayloadRef";
+
+    /**
+     * Group of the shared payload jobs.
+     */
+    public static final String PAYLOAD_GROUP = "motechPayloads";
+
+    /**
+     * Group of the reference triggers of the shared payload jobs.
+     */
+    public static final String PAYLOAD_REF_GROUP = "motechPayloadRefs";
+
+    private static final String RELEASE_PREFIX = "release:";
+    private static final String PAYLOAD_SUBJECT = "motechPayload";
+    private static final Date NEVER = new DateTime(9999, 12, 31, 0, 0, DateTimeZone.UTC).toDate();
+
+    private static final BinaryMotechEventCodec CODEC = new BinaryMotechEventCodec();
+
+    private static final int CACHE_SIZE = 1000;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, byte[]> sharedPayloads = Collections.synchronizedMap(
+            new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Puts the parameters into the given job data map, keeping the strings as entries and encoding the rest.
+     *
+     * @param jobDataMap the job data map of the job
+     * @param parameters the parameters of the event
+     */
+    public static void putCompact(JobDataMap jobDataMap, Map<String, Object> parameters) {
+        Map<String, Object> encoded = new HashMap<>();
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            if (parameter.getValue() instanceof String) {
+                jobDataMap.put(parameter.getKey(), parameter.getValue());
+            } else {
+                encoded.put(parameter.getKey(), parameter.getValue());
+            }
+        }
+        if (!encoded.isEmpty()) {
+            jobDataMap.put(PAYLOAD_KEY, encode(encoded));
+        }
+    }
+
+    /**
+     * Builds the payload job holding the given parameters, to be shared by all jobs with the same parameters.
+     *
+     * @param parameters the parameters of the event
+     * @return the payload job, named after the hash of the encoded parameters
+     */
+    public static JobDetail newSharedPayload(Map<String, Object> parameters) {
+        // sorted, so that equal parameters are encoded, and named, the same way
+        byte[] payload = encode(new TreeMap<>(parameters));
+        JobDetail payloadJob = newJob(MotechScheduledJob.class)
+                .withIdentity(jobKey(hash(payload), PAYLOAD_GROUP))
+                .build();
+        payloadJob.getJobDataMap().put(PAYLOAD_KEY, payload);
+        return payloadJob;
+    }
+
+    /**
+     * Returns the key of the reference trigger of the given job on its shared payload.
+     *
+     * @param jobName the name of the job using the payload
+     * @return the key of the reference trigger
+     */
+    public static TriggerKey getReferenceKey(String jobName) {
+        return triggerKey(jobName, PAYLOAD_REF_GROUP);
+    }
+
+    /**
+     * Builds the reference trigger of the given job on the given shared payload job. It never fires, it only keeps
+     * the payload job from being deleted, and must be stored together with the job.
+     *
+     * @param jobName    the name of the job using the payload
+     * @param payloadJob the shared payload job
+     * @return the reference trigger
+     */
+    public static Trigger newReference(String jobName, JobDetail payloadJob) {
+        return newReference(getReferenceKey(jobName), payloadJob.getKey());
+    }
+
+    /**
+     * Deletes the given shared payload job if no job refers to it anymore, which happens when a job is stored with
+     * another payload, as its reference trigger is then moved to the new payload job. A release trigger is added to
+     * the payload job and removed again, so that Quartz checks for the remaining references in the transaction
+     * removing it, while other jobs may be stored with the same payload.
+     *
+     * @param scheduler   the scheduler storing the payload jobs
+     * @param payloadName the name of the payload job
+     * @throws SchedulerException if the release trigger can not be removed
+     */
+    public static void release(Scheduler scheduler, String payloadName) throws SchedulerException {
+        TriggerKey releaseKey = triggerKey(RELEASE_PREFIX + payloadName, PAYLOAD_REF_GROUP);
+        try {
+            scheduler.scheduleJob(newReference(releaseKey, jobKey(payloadName, PAYLOAD_GROUP)));
+        } catch (SchedulerException e) {
+            // the payload job is already deleted, or being released by another caller
+            return;
+        }
+        scheduler.unscheduleJob(releaseKey);
+    }
+
+    /**
+     * Returns the parameters stored in the given job data map, with the internal entries removed. The map of a job
+     * using a shared payload only holds the reference to it, its parameters are read from the payload job.
+     *
+     * @param scheduler  the scheduler storing the payload jobs
+     * @param jobDataMap the job data map of the job
+     * @return the parameters of the event, in a new map
+     * @throws SchedulerException if the shared payload of the job can not be read
+     */
+    public Map<String, Object> getParameters(Scheduler scheduler, JobDataMap jobDataMap) throws SchedulerException {
+        Map<String, Object> parameters = new HashMap<>(jobDataMap.getWrappedMap());
+        parameters.remove(HybridJobStore.IN_MEMORY_KEY);
+
+        Object payload = parameters.remove(PAYLOAD_KEY);
+        if (payload instanceof byte[]) {
+            parameters.putAll(decode((byte[]) payload));
+        }
+
+        Object ref = parameters.remove(PAYLOAD_REF_KEY);
+        if (ref instanceof String) {
+            parameters.putAll(decode(getSharedPayload(scheduler, (String) ref)));
+        }
+        return parameters;
+    }
+
+    private byte[] getSharedPayload(Scheduler scheduler, String ref) throws SchedulerException {
+        byte[] payload = sharedPayloads.get(ref);
+        if (payload == null) {
+            JobKey payloadKey = jobKey(ref, PAYLOAD_GROUP);
+            JobDetail payloadJob = scheduler.getJobDetail(payloadKey);
+            if (payloadJob == null) {
+                throw new SchedulerException("The shared payload of the job does not exist: " + payloadKey);
+            }
+            payload = (byte[]) payloadJob.getJobDataMap().get(PAYLOAD_KEY);
+            sharedPayloads.put(ref, payload);
+        }
+        return payload;
+    }
+
+    private static Trigger newReference(TriggerKey key, JobKey payloadKey) {
+        return newTrigger().withIdentity(key).forJob(payloadKey).startAt(NEVER).build();
+    }
+
+    private static byte[] encode(Map<String, Object> parameters) {
+        return CODEC.encode(new MotechEvent(PAYLOAD_SUBJECT, parameters));
+    }
+
+    private static Map<String, Object> decode(byte[] payload) {
+        return CODEC.decode(payload).getParameters();
+    }
+
+    private static String hash(byte[] payload) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(payload);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
@@ -2,8 +2,9 @@ package org.motechproject.scheduler.service.impl;
 
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
+import org.motechproject.scheduler.metrics.impl.SchedulerMetricsRegistry;
+import org.motechproject.scheduler.service.MotechSchedulerService;
 import org.quartz.Job;
-import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -21,23 +22,50 @@ import java.util.Map;
  */
 public class MotechScheduledJob implements Job {
 
+    /**
+     * Key of the {@link ScheduledEventPublisher} in the scheduler context.
+     */
+    public static final String EVENT_PUBLISHER_KEY = "eventPublisher";
+
+    /**
+     * Key of the {@link SchedulerMetricsRegistry} in the scheduler context.
+     */
+    public static final String METRICS_KEY = "schedulerMetrics";
+
+    /**
+     * Key of the {@link JobPayloads} in the scheduler context.
+     */
+    public static final String PAYLOADS_KEY = "jobPayloads";
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     @Override
-    @SuppressWarnings("unchecked")
     public void execute(JobExecutionContext jobExecutionContext) throws JobExecutionException {
 
         log.info("executing...");
 
         try {
-            JobDetail jobDetail = jobExecutionContext.getJobDetail();
-            JobDataMap jobDataMap = jobDetail.getJobDataMap();
+            SchedulerContext schedulerContext;
+            try {
+                schedulerContext = jobExecutionContext.getScheduler().getContext();
+            } catch (SchedulerException e) {
+                log.error("Can not execute job. Can not get Scheduler Context", e);
+                return;
+            }
+
+            JobPayloads jobPayloads = (JobPayloads) schedulerContext.get(PAYLOADS_KEY);
+            if (jobPayloads == null) {
+                jobPayloads = new JobPayloads();
+            }
 
+            JobDetail jobDetail = jobExecutionContext.getJobDetail();
             String jobId = jobDetail.getKey().getName();
-            String eventType = jobDataMap.getString(MotechEvent.EVENT_TYPE_KEY_NAME);
-            Map<String, Object> params = jobDataMap.getWrappedMap();
-            params.remove(MotechEvent.EVENT_TYPE_KEY_NAME);
+            Map<String, Object> params = jobPayloads.getParameters(jobExecutionContext.getScheduler(), jobDetail.getJobDataMap());
+            String eventType = (String) params.remove(MotechEvent.EVENT_TYPE_KEY_NAME);
             params.put("JobID", jobId);
+            if (jobExecutionContext.isRecovering()) {
+                params.put(MotechSchedulerService.RECOVERED_KEY, true);
+            }
 
             MotechEvent motechEvent = new MotechEvent(eventType, params);
             Trigger trigger = jobExecutionContext.getTrigger();
@@ -46,19 +74,57 @@ public class MotechScheduledJob implements Job {
 
             log.info("Sending Motech Event Message: " + motechEvent);
 
-            SchedulerContext schedulerContext;
+            SchedulerMetricsRegistry metrics = (SchedulerMetricsRegistry) schedulerContext.get(METRICS_KEY);
+            long startTime = System.nanoTime();
+            boolean failed = true;
             try {
-                schedulerContext = jobExecutionContext.getScheduler().getContext();
-            } catch (SchedulerException e) {
-                log.error("Can not execute job. Can not get Scheduler Context", e);
-                return;
+                ScheduledEventPublisher eventPublisher = (ScheduledEventPublisher) schedulerContext.get(EVENT_PUBLISHER_KEY);
+                if (eventPublisher != null) {
+                    eventPublisher.publish(motechEvent);
+                } else {
+                    ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get("applicationContext");
+                    EventRelay eventRelay = applicationContext.getBean(EventRelay.class);
+                    eventRelay.sendEventMessage(motechEvent);
+                }
+                failed = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JobExecutionException("Interrupted while publishing the event of job " + jobId, e);
+            } catch (RuntimeException e) {
+                throw new JobExecutionException("Unable to publish the event of job " + jobId, e);
+            } finally {
+                if (metrics != null) {
+                    // the lag runs until the event is sent, so that it includes waiting for the batch of events
+                    metrics.recordFired(jobExecutionContext.getScheduler().getSchedulerInstanceId(), eventType,
+                            jobExecutionContext.getScheduledFireTime().getTime(), System.currentTimeMillis());
+                    metrics.recordExecution(eventType, System.nanoTime() - startTime, failed);
+                }
+                if (!trigger.mayFireAgain()) {
+                    releaseSharedPayload(jobExecutionContext);
+                }
             }
-            ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get("applicationContext");
-            EventRelay eventRelay = applicationContext.getBean(EventRelay.class);
-            eventRelay.sendEventMessage(motechEvent);
 
+        } catch (JobExecutionException e) {
+            log.error("Job execution failed.", e);
+            throw e;
         } catch (Exception e) {
             log.error("Job execution failed.", e);
         }
     }
+
+    /**
+     * Removes the reference trigger of a job firing for the last time from its shared payload, so that the payload
+     * is deleted if no other job uses it. The job itself is deleted by Quartz once it has fired.
+     */
+    private void releaseSharedPayload(JobExecutionContext jobExecutionContext) {
+        JobDetail jobDetail = jobExecutionContext.getJobDetail();
+        if (!jobDetail.getJobDataMap().containsKey(JobPayloads.PAYLOAD_REF_KEY)) {
+            return;
+        }
+        try {
+            jobExecutionContext.getScheduler().unscheduleJob(JobPayloads.getReferenceKey(jobDetail.getKey().getName()));
+        } catch (SchedulerException e) {
+            log.error("Can not release the shared payload of job " + jobDetail.getKey(), e);
+        }
+    }
 }
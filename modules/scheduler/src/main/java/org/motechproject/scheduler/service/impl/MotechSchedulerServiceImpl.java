@@ -7,17 +7,24 @@ import org.joda.time.format.DateTimeFormat;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.BulkJobResult;
 import org.motechproject.scheduler.contract.CronJobId;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.EventInfo;
+import org.motechproject.scheduler.contract.FireTimeProjection;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
 import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsSearchResult;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.contract.RepeatingJobId;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceJobId;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
+import org.motechproject.scheduler.contract.TransientSchedulableJob;
+import org.motechproject.scheduler.domain.JobBasicInfoComparator;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerService;
@@ -26,9 +33,12 @@ import org.quartz.CalendarIntervalScheduleBuilder;
 import org.quartz.CalendarIntervalTrigger;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
+import org.quartz.JobBuilder;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
 import org.quartz.JobKey;
+import org.quartz.ObjectAlreadyExistsException;
 import org.quartz.ScheduleBuilder;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
@@ -46,9 +56,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -73,11 +87,19 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public static final String JOB_GROUP_NAME = "default";
     private static final int MAX_REPEAT_COUNT = 999999;
     private static final int MILLISECOND = 1000;
+    private static final int DEFAULT_BULK_CHUNK_SIZE = 500;
+    private static final int DEFAULT_PROJECTION_THREADS = 4;
+    private static final int MAX_PROJECTION_BUCKETS = 100000;
     private static final String LOG_SUBJECT_EXTERNALID = "subject: %s, externalId: %s";
+    private static final String PAYLOAD_COMPACT = "compact";
+    private static final String PAYLOAD_SHARED = "shared";
 
     private SettingsFacade schedulerSettings;
 
     private Scheduler scheduler;
+    private TriggerKeyFinder triggerKeyFinder;
+    private Boolean clustered;
+    private JobPayloads jobPayloads = new JobPayloads();
 
     private Map<String, Integer> cronTriggerMisfirePolicies;
     private Map<String, Integer> simpleTriggerMisfirePolicies;
@@ -110,15 +132,18 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleJob(CronSchedulableJob cronSchedulableJob) {
         logObjectIfNotNull(cronSchedulableJob);
 
+        updateJob(prepareCronJob(cronSchedulableJob), false);
+    }
+
+    private PreparedJob prepareCronJob(CronSchedulableJob cronSchedulableJob) {
         MotechEvent motechEvent = assertCronJob(cronSchedulableJob);
 
         JobId jobId = new CronJobId(motechEvent);
 
-        JobDetail jobDetail = newJob(MotechScheduledJob.class)
-                .withIdentity(jobKey(jobId.value(), JOB_GROUP_NAME))
-                .build();
+        JobDetail jobDetail = newMotechJob(jobId).build();
 
-        putMotechEventDataToJobDataMap(jobDetail.getJobDataMap(), motechEvent);
+        JobDetail payloadJob = putMotechEventDataToJobDataMap(jobDetail, motechEvent, cronSchedulableJob.isInMemory());
+        putStorageToJobDataMap(jobDetail.getJobDataMap(), cronSchedulableJob);
 
         CronScheduleBuilder cronSchedule;
         try {
@@ -140,18 +165,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .endAt(cronSchedulableJob.getEndTime())
                 .build();
 
-        Trigger existingTrigger;
-        try {
-            existingTrigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
-        } catch (SchedulerException e) {
-            String errorMessage = format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage());
-            logger.error(errorMessage, e);
-            throw new MotechSchedulerException(errorMessage, e);
-        }
-        if (existingTrigger != null) {
-            unscheduleJob(jobId.value());
-        }
-
         DateTime now = now();
 
         if (cronSchedulableJob.isIgnorePastFiresAtStart() && newDateTime(cronSchedulableJob.getStartTime()).isBefore(now)) {
@@ -170,7 +183,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .build();
         }
 
-        scheduleJob(jobDetail, trigger);
+        return new PreparedJob(jobId, jobDetail, trigger, payloadJob);
     }
 
     private MotechEvent assertCronJob(CronSchedulableJob cronSchedulableJob) {
@@ -201,15 +214,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void safeScheduleJob(CronSchedulableJob cronSchedulableJob) {
         logObjectIfNotNull(cronSchedulableJob);
 
-        assertCronJob(cronSchedulableJob);
-
-        JobId jobId = new CronJobId(cronSchedulableJob.getMotechEvent());
-        try {
-            unscheduleJob(jobId.value());
-        } catch (MotechSchedulerException e) {
-            logger.error(e.getMessage());
-        }
-        scheduleJob(cronSchedulableJob);
+        updateJob(prepareCronJob(cronSchedulableJob), true);
     }
 
     @Override
@@ -221,6 +226,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         JobId jobId = new CronJobId(motechEvent);
         Trigger trigger;
+        JobDetail existingJob;
 
         try {
             trigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
@@ -230,6 +236,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 logger.error(errorMessage);
                 throw new MotechSchedulerException(errorMessage);
             }
+            existingJob = scheduler.getJobDetail(trigger.getJobKey());
 
         } catch (SchedulerException e) {
             String errorMessage = "Can not update the job: " + jobId +
@@ -238,16 +245,15 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             throw new MotechSchedulerException(errorMessage, e);
         }
 
-        try {
-            scheduler.deleteJob(jobKey(jobId.value(), JOB_GROUP_NAME));
-        } catch (SchedulerException e) {
-            handleException(String.format("Can not update the job: %s.\n Can not delete old instance of the job %s", jobId, e.getMessage()), e);
+        // the job stays where it is stored, and keeps its trigger
+        boolean inMemory = HybridJobStore.isInMemory(existingJob);
+        JobDetail jobDetail = newMotechJob(jobId).build();
+        JobDetail payloadJob = putMotechEventDataToJobDataMap(jobDetail, motechEvent, inMemory);
+        if (inMemory) {
+            jobDetail.getJobDataMap().put(HybridJobStore.IN_MEMORY_KEY, true);
         }
 
-        JobDetail jobDetail = newJob(MotechScheduledJob.class).withIdentity(jobId.value(), JOB_GROUP_NAME).build();
-        putMotechEventDataToJobDataMap(jobDetail.getJobDataMap(), motechEvent);
-
-        scheduleJob(jobDetail, trigger);
+        updateJob(new PreparedJob(jobId, jobDetail, trigger, payloadJob), false);
     }
 
     @Override
@@ -295,6 +301,17 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .build();
 
         try {
+            if (newTrigger.getCronExpression().equals(trigger.getCronExpression()) && !isStuck(trigger.getKey())) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(format("The job: %s is already scheduled with the cron expression: %s", jobId, cronExpression));
+                }
+                // a new trigger would not be paused, so neither is the one kept
+                if (scheduler.getTriggerState(trigger.getKey()) == Trigger.TriggerState.PAUSED) {
+                    scheduler.resumeTrigger(trigger.getKey());
+                }
+                return;
+            }
+
             scheduler.rescheduleJob(triggerKey(jobId.value(), JOB_GROUP_NAME), newTrigger);
         } catch (SchedulerException e) {
             handleException(String.format("Can not reschedule the job: %s %s", jobId, e.getMessage()), e);
@@ -310,6 +327,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleRepeatingJob(RepeatingSchedulableJob repeatingSchedulableJob) {
         logObjectIfNotNull(repeatingSchedulableJob);
 
+        PreparedJob job = prepareRepeatingJob(repeatingSchedulableJob);
+        scheduleJob(job);
+    }
+
+    private PreparedJob prepareRepeatingJob(RepeatingSchedulableJob repeatingSchedulableJob) {
         MotechEvent motechEvent = assertArgumentNotNull(repeatingSchedulableJob);
 
         Date jobStartTime = repeatingSchedulableJob.getStartTime();
@@ -329,11 +351,10 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
 
         JobId jobId = new RepeatingJobId(motechEvent);
-        JobDetail jobDetail = newJob(MotechScheduledJob.class)
-                .withIdentity(jobKey(jobId.value(), JOB_GROUP_NAME))
-                .build();
+        JobDetail jobDetail = newMotechJob(jobId).build();
 
-        putMotechEventDataToJobDataMap(jobDetail.getJobDataMap(), motechEvent);
+        JobDetail payloadJob = putMotechEventDataToJobDataMap(jobDetail, motechEvent, repeatingSchedulableJob.isInMemory());
+        putStorageToJobDataMap(jobDetail.getJobDataMap(), repeatingSchedulableJob);
 
         ScheduleBuilder scheduleBuilder;
         if (!repeatingSchedulableJob.isUseOriginalFireTimeAfterMisfire()) {
@@ -355,7 +376,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
 
         Trigger trigger = buildJobDetail(repeatingSchedulableJob, jobStartTime, jobEndTime, jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger);
+        return new PreparedJob(jobId, jobDetail, trigger, payloadJob);
     }
 
     private Trigger buildJobDetail(RepeatingSchedulableJob repeatingSchedulableJob, Date jobStartTime, Date jobEndTime, JobId jobId, JobDetail jobDetail, ScheduleBuilder scheduleBuilder) {
@@ -429,19 +450,18 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void safeScheduleRepeatingJob(RepeatingSchedulableJob repeatingSchedulableJob) {
         logObjectIfNotNull(repeatingSchedulableJob);
 
-        assertArgumentNotNull(repeatingSchedulableJob);
-        try {
-            unscheduleJob(new RepeatingJobId(repeatingSchedulableJob.getMotechEvent()).value());
-        } catch (MotechSchedulerException e) {
-            logger.error(e.getMessage());
-        }
-        scheduleRepeatingJob(repeatingSchedulableJob);
+        updateJob(prepareRepeatingJob(repeatingSchedulableJob), true);
     }
 
     @Override
     public void scheduleRunOnceJob(RunOnceSchedulableJob schedulableJob) {
         logObjectIfNotNull(schedulableJob);
 
+        PreparedJob job = prepareRunOnceJob(schedulableJob);
+        scheduleJob(job);
+    }
+
+    private PreparedJob prepareRunOnceJob(RunOnceSchedulableJob schedulableJob) {
         assertArgumentNotNull("RunOnceSchedulableJob", schedulableJob);
         MotechEvent motechEvent = schedulableJob.getMotechEvent();
 
@@ -457,11 +477,10 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
 
         JobId jobId = new RunOnceJobId(motechEvent);
-        JobDetail jobDetail = newJob(MotechScheduledJob.class)
-                .withIdentity(jobId.value(), JOB_GROUP_NAME)
-                .build();
+        JobDetail jobDetail = newMotechJob(jobId).build();
 
-        putMotechEventDataToJobDataMap(jobDetail.getJobDataMap(), motechEvent);
+        JobDetail payloadJob = putMotechEventDataToJobDataMap(jobDetail, motechEvent, schedulableJob.isInMemory());
+        putStorageToJobDataMap(jobDetail.getJobDataMap(), schedulableJob);
 
         SimpleScheduleBuilder simpleSchedule = simpleSchedule()
                 .withRepeatCount(0)
@@ -475,7 +494,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .startAt(jobStartDate)
                 .build();
 
-        scheduleJob(jobDetail, trigger);
+        return new PreparedJob(jobId, jobDetail, trigger, payloadJob);
     }
 
     private MotechEvent assertArgumentNotNull(RepeatingSchedulableJob repeatingSchedulableJob) {
@@ -488,21 +507,18 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
     public void safeScheduleRunOnceJob(RunOnceSchedulableJob schedulableJob) {
         logObjectIfNotNull(schedulableJob);
-        assertArgumentNotNull("RunOnceSchedulableJob", schedulableJob);
 
-        JobId jobId = new RunOnceJobId(schedulableJob.getMotechEvent());
-        try {
-            unscheduleJob(jobId.value());
-        } catch (MotechSchedulerException e) {
-            logger.error(e.getMessage());
-        }
-        scheduleRunOnceJob(schedulableJob);
+        updateJob(prepareRunOnceJob(schedulableJob), true);
     }
 
     @Override
     public void scheduleDayOfWeekJob(DayOfWeekSchedulableJob dayOfWeekSchedulableJob) {
         logObjectIfNotNull(dayOfWeekSchedulableJob);
 
+        scheduleJob(toCronJob(dayOfWeekSchedulableJob));
+    }
+
+    private CronSchedulableJob toCronJob(DayOfWeekSchedulableJob dayOfWeekSchedulableJob) {
         MotechEvent motechEvent = dayOfWeekSchedulableJob.getMotechEvent();
         LocalDate start = dayOfWeekSchedulableJob.getStartDate();
         LocalDate end = dayOfWeekSchedulableJob.getEndDate();
@@ -510,9 +526,335 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         CronScheduleBuilder cronScheduleBuilder = CronScheduleBuilder.atHourAndMinuteOnGivenDaysOfWeek(time.getHour(), time.getMinute(), dayOfWeekSchedulableJob.getCronDays().toArray(new Integer[0]));
         CronTriggerImpl cronTrigger = (CronTriggerImpl) cronScheduleBuilder.build();
-        CronSchedulableJob cronSchedulableJob = new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(), start.toDate(), end.toDate(), dayOfWeekSchedulableJob.isIgnorePastFiresAtStart());
+        return new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(), start.toDate(), end.toDate(), dayOfWeekSchedulableJob.isIgnorePastFiresAtStart(),
+                dayOfWeekSchedulableJob.isInMemory());
+    }
+
+    @Override
+    public BulkJobResult scheduleJobs(Collection<? extends SchedulableJob> schedulableJobs) {
+        assertArgumentNotNull("SchedulableJobs", schedulableJobs);
+        if (logger.isDebugEnabled()) {
+            logger.debug(format("Scheduling %d jobs", schedulableJobs.size()));
+        }
+
+        return scheduleJobs(schedulableJobs, false);
+    }
+
+    @Override
+    public BulkJobResult rescheduleJobs(Collection<? extends SchedulableJob> schedulableJobs) {
+        assertArgumentNotNull("SchedulableJobs", schedulableJobs);
+        if (logger.isDebugEnabled()) {
+            logger.debug(format("Rescheduling %d jobs", schedulableJobs.size()));
+        }
+
+        return scheduleJobs(schedulableJobs, true);
+    }
+
+    private BulkJobResult scheduleJobs(Collection<? extends SchedulableJob> schedulableJobs, boolean incremental) {
+        BulkJobResult result = new BulkJobResult();
+        int chunkSize = getBulkChunkSize();
+        // keyed by job ID, so that a job given twice is scheduled once, as given last
+        Map<String, PreparedJob> chunk = new LinkedHashMap<>();
+
+        for (SchedulableJob schedulableJob : schedulableJobs) {
+            PreparedJob job;
+            try {
+                job = prepareJob(schedulableJob);
+            } catch (RuntimeException e) {
+                result.addFailure(describeJob(schedulableJob), e.getMessage());
+                continue;
+            }
+
+            chunk.remove(job.jobId.value());
+            chunk.put(job.jobId.value(), job);
+            if (chunk.size() >= chunkSize) {
+                storeChunk(chunk.values(), incremental, result);
+                chunk.clear();
+            }
+        }
+        storeChunk(chunk.values(), incremental, result);
+
+        return result;
+    }
+
+    @Override
+    public BulkJobResult unscheduleJobs(Collection<? extends JobId> jobIds) {
+        assertArgumentNotNull("JobIds", jobIds);
+        if (logger.isDebugEnabled()) {
+            logger.debug(format("Unscheduling %d jobs", jobIds.size()));
+        }
+
+        List<TriggerKey> triggerKeys = new ArrayList<>(jobIds.size());
+        for (JobId jobId : jobIds) {
+            triggerKeys.add(triggerKey(jobId.value(), JOB_GROUP_NAME));
+        }
+
+        BulkJobResult result = new BulkJobResult();
+        for (List<TriggerKey> chunk : chunks(triggerKeys)) {
+            unscheduleChunk(chunk, result);
+        }
+        return result;
+    }
+
+    private PreparedJob prepareJob(SchedulableJob schedulableJob) {
+        if (schedulableJob instanceof CronSchedulableJob) {
+            return prepareCronJob((CronSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof RepeatingSchedulableJob) {
+            return prepareRepeatingJob((RepeatingSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof RunOnceSchedulableJob) {
+            return prepareRunOnceJob((RunOnceSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof DayOfWeekSchedulableJob) {
+            return prepareCronJob(toCronJob((DayOfWeekSchedulableJob) schedulableJob));
+        }
+
+        String errorMessage = "Unsupported SchedulableJob: " + schedulableJob;
+        logger.error(errorMessage);
+        throw new IllegalArgumentException(errorMessage);
+    }
+
+    private String describeJob(SchedulableJob schedulableJob) {
+        if (schedulableJob == null || schedulableJob.getMotechEvent() == null) {
+            return String.valueOf(schedulableJob);
+        } else if (schedulableJob instanceof RepeatingSchedulableJob) {
+            return new RepeatingJobId(schedulableJob.getMotechEvent()).value();
+        } else if (schedulableJob instanceof RunOnceSchedulableJob) {
+            return new RunOnceJobId(schedulableJob.getMotechEvent()).value();
+        } else {
+            return new CronJobId(schedulableJob.getMotechEvent()).value();
+        }
+    }
+
+    private void storeChunk(Collection<PreparedJob> jobs, boolean incremental, BulkJobResult result) {
+        if (incremental) {
+            rescheduleChunk(jobs, result);
+        } else {
+            scheduleChunk(jobs, result);
+        }
+    }
+
+    /**
+     * Compares the jobs of a chunk with the scheduled ones. Unchanged jobs are skipped and jobs whose data changed
+     * alone are replaced one by one, keeping their triggers. Both are resumed if they were paused. The other jobs are stored together, as by
+     * {@link #scheduleChunk(Collection, BulkJobResult)}.
+     */
+    private void rescheduleChunk(Collection<PreparedJob> jobs, BulkJobResult result) {
+        Date now = now().toDate();
+        List<PreparedJob> changed = new ArrayList<>();
+
+        for (PreparedJob job : jobs) {
+            try {
+                JobChange change = getChange(job, now);
+                if (change == JobChange.NONE) {
+                    resumeIfPaused(job);
+                    result.addUnchanged(job.jobId.value());
+                } else if (change == JobChange.JOB_DATA) {
+                    replaceJobData(job);
+                    resumeIfPaused(job);
+                    result.addSucceeded(job.jobId.value());
+                } else {
+                    changed.add(job);
+                }
+            } catch (SchedulerException e) {
+                logger.error(format("Can not reschedule the job: %s %s", job.jobId, e.getMessage()), e);
+                result.addFailure(job.jobId.value(), e.getMessage());
+            }
+        }
+
+        scheduleChunk(changed, result);
+    }
+
+    /**
+     * Stores the jobs of a chunk, replacing existing jobs with the same IDs, in a single job store transaction.
+     * If the chunk fails, its jobs are stored one by one, so that only the failing jobs are reported.
+     */
+    private void scheduleChunk(Collection<PreparedJob> jobs, BulkJobResult result) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+
+        try {
+            storeJobs(jobs);
+            for (PreparedJob job : jobs) {
+                result.addSucceeded(job.jobId.value());
+            }
+            return;
+        } catch (SchedulerException e) {
+            logger.error(format("Can not schedule %d jobs at once, scheduling them one by one: %s", jobs.size(), e.getMessage()), e);
+        }
+
+        for (PreparedJob job : jobs) {
+            try {
+                storeJobs(Collections.singletonList(job));
+                result.addSucceeded(job.jobId.value());
+            } catch (SchedulerException e) {
+                logger.error(format("Can not schedule the job: %s %s", job.jobId, e.getMessage()), e);
+                result.addFailure(job.jobId.value(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stores the jobs with their triggers, replacing existing jobs with the same IDs, in a single job store
+     * transaction. The shared payload jobs they refer to are stored in the same transaction, with the reference
+     * triggers of the jobs, so that a payload can not be deleted before the jobs using it are stored. Payloads the
+     * jobs were using before are released once the jobs no longer refer to them.
+     */
+    private void storeJobs(Collection<PreparedJob> jobs) throws SchedulerException {
+        Map<String, String> previousPayloads = findPreviousPayloads(jobs);
+
+        Map<JobKey, List<Trigger>> references = new LinkedHashMap<>();
+        Map<JobDetail, List<Trigger>> triggersAndJobs = new LinkedHashMap<>();
+        for (PreparedJob job : jobs) {
+            if (job.payloadJob != null) {
+                List<Trigger> payloadReferences = references.get(job.payloadJob.getKey());
+                if (payloadReferences == null) {
+                    payloadReferences = new ArrayList<>();
+                    references.put(job.payloadJob.getKey(), payloadReferences);
+                    triggersAndJobs.put(job.payloadJob, payloadReferences);
+                }
+                payloadReferences.add(JobPayloads.newReference(job.jobId.value(), job.payloadJob));
+            }
+        }
+        for (PreparedJob job : jobs) {
+            triggersAndJobs.put(job.jobDetail, Collections.singletonList(job.trigger));
+        }
+
+        scheduler.scheduleJobs(triggersAndJobs, true);
+        releasePayloads(jobs, previousPayloads);
+    }
+
+    /**
+     * Returns the names of the shared payload jobs used by the stored jobs with the IDs of the given jobs, if the
+     * given jobs use a shared payload as well.
+     */
+    private Map<String, String> findPreviousPayloads(Collection<PreparedJob> jobs) throws SchedulerException {
+        List<String> jobNames = new ArrayList<>();
+        for (PreparedJob job : jobs) {
+            if (job.payloadJob != null) {
+                jobNames.add(job.jobId.value());
+            }
+        }
+        return jobNames.isEmpty() ? Collections.<String, String>emptyMap() : getTriggerKeyFinder().findPayloadRefs(jobNames);
+    }
+
+    private void releasePayloads(Collection<PreparedJob> jobs, Map<String, String> previousPayloads) {
+        for (PreparedJob job : jobs) {
+            String previousPayload = previousPayloads.get(job.jobId.value());
+            if (previousPayload != null && !previousPayload.equals(job.payloadJob.getKey().getName())) {
+                try {
+                    JobPayloads.release(scheduler, previousPayload);
+                } catch (SchedulerException e) {
+                    logger.error(format("Can not release the payload: %s %s", previousPayload, e.getMessage()), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of the triggers together with the keys of the reference triggers the jobs may have on their
+     * shared payloads, so that the payloads are deleted with their last jobs.
+     */
+    private List<TriggerKey> withPayloadReferences(List<TriggerKey> triggerKeys) {
+        if (!PAYLOAD_SHARED.equals(getPayloadMode())) {
+            return triggerKeys;
+        }
+
+        List<TriggerKey> keys = new ArrayList<>(triggerKeys.size() * 2);
+        for (TriggerKey triggerKey : triggerKeys) {
+            keys.add(triggerKey);
+            keys.add(JobPayloads.getReferenceKey(triggerKey.getName()));
+        }
+        return keys;
+    }
+
+    /**
+     * Removes the triggers of a chunk, with their jobs, in a single job store transaction. If the chunk fails, its
+     * triggers are removed one by one, so that only the failing jobs are reported.
+     */
+    private void unscheduleChunk(List<TriggerKey> triggerKeys, BulkJobResult result) {
+        if (triggerKeys.isEmpty()) {
+            return;
+        }
+
+        try {
+            scheduler.unscheduleJobs(withPayloadReferences(triggerKeys));
+            for (TriggerKey triggerKey : triggerKeys) {
+                result.addSucceeded(triggerKey.getName());
+            }
+            return;
+        } catch (SchedulerException e) {
+            logger.error(format("Can not unschedule %d jobs at once, unscheduling them one by one: %s", triggerKeys.size(), e.getMessage()), e);
+        }
+
+        for (TriggerKey triggerKey : triggerKeys) {
+            try {
+                scheduler.unscheduleJobs(withPayloadReferences(Collections.singletonList(triggerKey)));
+                result.addSucceeded(triggerKey.getName());
+            } catch (SchedulerException e) {
+                logger.error(format("Can not unschedule the job: %s %s", triggerKey.getName(), e.getMessage()), e);
+                result.addFailure(triggerKey.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private <T> List<List<T>> chunks(List<T> keys) {
+        int chunkSize = getBulkChunkSize();
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i += chunkSize) {
+            chunks.add(keys.subList(i, Math.min(i + chunkSize, keys.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Starts building a job with the given ID. Jobs of a clustered scheduler request recovery, so that the jobs
+     * running on a node which dies are fired again by another node rather than lost. Their events are delivered at
+     * least once: a job which published its event before its node died publishes it again, marked with
+     * {@link MotechSchedulerService#RECOVERED_KEY}.
+     */
+    private JobBuilder newMotechJob(JobId jobId) {
+        return newJob(MotechScheduledJob.class)
+                .withIdentity(jobKey(jobId.value(), JOB_GROUP_NAME))
+                .requestRecovery(isClustered());
+    }
+
+    private boolean isClustered() {
+        if (clustered == null) {
+            try {
+                clustered = scheduler.getMetaData().isJobStoreClustered();
+            } catch (SchedulerException e) {
+                handleException("Can not read the scheduler metadata " + e.getMessage(), e);
+            }
+        }
+        return clustered;
+    }
+
+    private TriggerKeyFinder getTriggerKeyFinder() {
+        if (triggerKeyFinder == null) {
+            triggerKeyFinder = new TriggerKeyFinder(scheduler, schedulerSettings.getProperty("org.quartz.jobStore.dataSource"),
+                    schedulerSettings.getProperty("org.quartz.jobStore.tablePrefix"));
+        }
+        return triggerKeyFinder;
+    }
+
+    private int getBulkChunkSize() {
+        String chunkSize = schedulerSettings.getProperty("scheduler.bulk.chunk.size");
+        try {
+            return StringUtils.isBlank(chunkSize) ? DEFAULT_BULK_CHUNK_SIZE : Math.max(1, Integer.parseInt(chunkSize.trim()));
+        } catch (NumberFormatException e) {
+            logger.error("Invalid scheduler.bulk.chunk.size: " + chunkSize);
+            return DEFAULT_BULK_CHUNK_SIZE;
+        }
+    }
 
-        scheduleJob(cronSchedulableJob);
+    private int getProjectionThreads() {
+        String threads = schedulerSettings.getProperty("scheduler.projection.threads");
+        try {
+            return StringUtils.isBlank(threads) ? DEFAULT_PROJECTION_THREADS : Math.max(1, Integer.parseInt(threads.trim()));
+        } catch (NumberFormatException e) {
+            logger.error("Invalid scheduler.projection.threads: " + threads);
+            return DEFAULT_PROJECTION_THREADS;
+        }
     }
 
     @Override
@@ -595,36 +937,22 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
         try {
             assertArgumentNotNull("ScheduledJobID", jobId);
-            scheduler.unscheduleJob(triggerKey(jobId, JOB_GROUP_NAME));
+            scheduler.unscheduleJobs(withPayloadReferences(Collections.singletonList(triggerKey(jobId, JOB_GROUP_NAME))));
         } catch (SchedulerException e) {
             handleException(String.format("Can not unschedule the job: %s %s", jobId, e.getMessage()), e);
         }
     }
 
-    private void safeUnscheduleJob(String jobId) {
-        if (logger.isDebugEnabled()) {
-            logger.debug(jobId);
-        }
-        try {
-            assertArgumentNotNull("ScheduledJobID", jobId);
-            scheduler.unscheduleJob(triggerKey(jobId, JOB_GROUP_NAME));
-        } catch (SchedulerException e) {
-            logger.error(e.getMessage());
-        }
-    }
-
     @Override
     public void safeUnscheduleAllJobs(String jobIdPrefix) {
         try {
             if (logger.isDebugEnabled()) {
                 logger.debug(format("Safe unscheduling the Jobs given jobIdPrefix: %s", jobIdPrefix));
             }
-            List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    safeUnscheduleJob(triggerName);
-                }
+            List<TriggerKey> triggerKeys = getTriggerKeyFinder().findByNamePrefix(JOB_GROUP_NAME, jobIdPrefix);
+            BulkJobResult result = new BulkJobResult();
+            for (List<TriggerKey> chunk : chunks(triggerKeys)) {
+                unscheduleChunk(chunk, result);
             }
         } catch (SchedulerException e) {
             logger.error(e.getMessage());
@@ -655,8 +983,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     /*
-     * Loads all triggers and then loops over them to find the applicable trigger using string comparison. This
-     * will work regardless of the jobId being cron or repeating.
+     * Looks up the triggers whose names start with the job ID built from the prefix, through the trigger name
+     * index of the job store. This will work regardless of the jobId being cron or repeating.
      */
     @Override
     public List<Date> getScheduledJobTimingsWithPrefix(
@@ -665,13 +993,13 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         JobId jobId = new CronJobId(subject, externalJobIdPrefix);
         List<Date> messageTimings = new ArrayList<>();
         try {
-            List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>(
-                    scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            for (TriggerKey triggerKey : triggerKeys) {
-                if (StringUtils.isNotEmpty(externalJobIdPrefix) && triggerKey.getName().contains(jobId.value())) {
+            if (StringUtils.isNotEmpty(externalJobIdPrefix)) {
+                for (TriggerKey triggerKey : getTriggerKeyFinder().findByNamePrefix(JOB_GROUP_NAME, jobId.value())) {
                     Trigger trigger = scheduler.getTrigger(triggerKey);
-                    messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
-                            (OperableTrigger) trigger, new BaseCalendar(), startDate, endDate));
+                    if (trigger != null) {
+                        messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
+                                (OperableTrigger) trigger, new BaseCalendar(), startDate, endDate));
+                    }
                 }
             }
 
@@ -684,35 +1012,44 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         return messageTimings;
     }
 
+    @Override
+    public FireTimeProjection projectFireTimes(Collection<String> subjects, Date startDate, Date endDate, long bucketMillis) {
+        assertArgumentNotNull("Start date", startDate);
+        assertArgumentNotNull("End date", endDate);
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Bucket length must be positive: " + bucketMillis);
+        }
+        if (endDate.before(startDate)) {
+            throw new IllegalArgumentException(format("End date %s is before start date %s", endDate, startDate));
+        }
+        if ((endDate.getTime() - startDate.getTime()) / bucketMillis >= MAX_PROJECTION_BUCKETS) {
+            throw new IllegalArgumentException(format("Too many buckets of %d ms between %s and %s, at most %d are allowed",
+                    bucketMillis, startDate, endDate, MAX_PROJECTION_BUCKETS));
+        }
+
+        Collection<String> projectedSubjects = (subjects == null) ? Collections.<String>emptyList() : subjects;
+        FireTimeProjection projection = null;
+        try {
+            projection = new FireTimeProjector(scheduler, getTriggerKeyFinder(), getBulkChunkSize(), getProjectionThreads())
+                    .project(JOB_GROUP_NAME, projectedSubjects, startDate, endDate, bucketMillis);
+        } catch (SchedulerException e) {
+            handleException(String.format("Can not project fire times of subjects %s for dates : %s %s %s",
+                    projectedSubjects, startDate, endDate, e.getMessage()), e);
+        }
+        return projection;
+    }
+
     @Override
     public List<JobBasicInfo> getScheduledJobsBasicInfo() {
         List<JobBasicInfo> result = new ArrayList<>();
 
         try {
             for (String groupName : scheduler.getJobGroupNames()) {
+                if (JobPayloads.PAYLOAD_GROUP.equals(groupName)) {
+                    continue;
+                }
                 for (JobKey jobKey : scheduler.getJobKeys(GroupMatcher.jobGroupEquals(groupName))) {
-                    Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
-                    String jobName = jobKey.getName();
-                    String jobType = getJobType(jobKey);
-                    String activity = getJobActivity(jobKey);
-                    String info = getJobInfo(jobKey, jobType);
-                    String status = getJobStatus(jobKey);
-                    String startDate = getStartDate(jobKey);
-                    String nextFireDate = DateTimeFormat.forPattern("Y-MM-dd HH:mm:ss").print(trigger.getNextFireTime().getTime());
-                    String endDate = getEndDate(jobKey, jobType);
-
-                    result.add(
-                            new JobBasicInfo(
-                                    activity,
-                                    status,
-                                    jobName,
-                                    startDate,
-                                    nextFireDate,
-                                    endDate,
-                                    jobType,
-                                    info
-                            )
-                    );
+                    result.add(getJobBasicInfo(scheduler.getTriggersOfJob(jobKey).get(0)));
                 }
             }
         } catch (SchedulerException e) {
@@ -722,6 +1059,32 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         return result;
     }
 
+    @Override
+    public JobsSearchResult getScheduledJobsBasicInfo(JobsSearchSettings jobsSearchSettings) {
+        try {
+            TriggerKeyFinder finder = getTriggerKeyFinder();
+            if (finder.isJdbcStore()) {
+                long currentTime = now().getMillis();
+                try {
+                    List<JobBasicInfo> rows = new ArrayList<>();
+                    for (TriggerKey triggerKey : finder.search(jobsSearchSettings, currentTime)) {
+                        Trigger trigger = scheduler.getTrigger(triggerKey);
+                        if (trigger != null) {
+                            rows.add(getJobBasicInfo(trigger));
+                        }
+                    }
+                    return new JobsSearchResult(rows, finder.count(jobsSearchSettings, currentTime));
+                } catch (SQLException e) {
+                    logger.error("Can not search the jobs in the database, searching them in memory: " + e.getMessage(), e);
+                }
+            }
+        } catch (SchedulerException e) {
+            logger.error(e.toString());
+        }
+
+        return searchJobsInMemory(jobsSearchSettings);
+    }
+
     @Override
     public JobDetailedInfo getScheduledJobDetailedInfo(JobBasicInfo jobBasicInfo) {
         JobDetailedInfo jobDetailedInfo = new JobDetailedInfo();
@@ -735,7 +1098,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                         String subject;
 
                         eventInfo.setParameters(
-                                scheduler.getJobDetail(jobKey).getJobDataMap().getWrappedMap()
+                                jobPayloads.getParameters(scheduler, scheduler.getJobDetail(jobKey).getJobDataMap())
                         );
 
                         if (eventInfo.getParameters().containsKey(MotechEvent.EVENT_TYPE_KEY_NAME)) {
@@ -765,52 +1128,226 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (logger.isDebugEnabled()) {
                 logger.debug(jobIdPrefix);
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    unscheduleJob(triggerName);
-                }
+            List<TriggerKey> triggerKeys = getTriggerKeyFinder().findByNamePrefix(JOB_GROUP_NAME, jobIdPrefix);
+            for (List<TriggerKey> chunk : chunks(triggerKeys)) {
+                scheduler.unscheduleJobs(withPayloadReferences(chunk));
             }
         } catch (SchedulerException e) {
             handleException(String.format("Can not unschedule jobs given jobIdPrefix: %s %s", jobIdPrefix, e.getMessage()), e);
         }
     }
 
-    private void scheduleJob(JobDetail jobDetail, Trigger trigger) {
+    /**
+     * Schedules the job, updating an existing job with the same ID in place: its trigger is replaced only if the
+     * schedule changed and its data only if the parameters changed, so that an unchanged job is not written at all.
+     * As when the job was scheduled anew, a paused job is resumed, either by its new trigger or explicitly.
+     *
+     * @param safe if the existing job can not be read, replace it with the given one instead of failing
+     */
+    private void updateJob(PreparedJob job, boolean safe) {
+        try {
+            JobChange change;
+            try {
+                change = getChange(job, now().toDate());
+            } catch (SchedulerException e) {
+                if (!safe) {
+                    throw e;
+                }
+                logger.error(format("Can not read the existing job: %s, replacing it %s", job.jobId, e.getMessage()));
+                change = JobChange.ALL;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug(format("Updating the job: %s, change: %s", job.jobId, change));
+            }
+
+            if (change == JobChange.NONE) {
+                resumeIfPaused(job);
+            } else if (change == JobChange.JOB_DATA) {
+                replaceJobData(job);
+                resumeIfPaused(job);
+            } else if (change == JobChange.SCHEDULE) {
+                scheduler.rescheduleJob(job.trigger.getKey(), job.trigger);
+            } else if (change == JobChange.ALL) {
+                storeJobs(Collections.singletonList(job));
+            }
+        } catch (SchedulerException e) {
+            handleException(String.format("Can not schedule the job:\n %s\n%s\n%s", job.jobDetail.toString(), job.trigger.toString(), e.getMessage()), e);
+        }
+    }
+
+    private void resumeIfPaused(PreparedJob job) throws SchedulerException {
+        if (scheduler.getTriggerState(job.trigger.getKey()) == Trigger.TriggerState.PAUSED) {
+            scheduler.resumeTrigger(job.trigger.getKey());
+        }
+    }
+
+    /**
+     * Compares the job with the scheduled one. A trigger which is kept by the change but is stuck is written anew,
+     * as it was before jobs were updated in place.
+     */
+    private JobChange getChange(PreparedJob job, Date now) throws SchedulerException {
+        Trigger existingTrigger = scheduler.getTrigger(job.trigger.getKey());
+        JobDetail existingJob = (existingTrigger == null) ? null : scheduler.getJobDetail(existingTrigger.getJobKey());
+        JobChange change = JobChange.between(existingTrigger, existingJob, job.trigger, job.jobDetail, now);
+        if (!change.writesSchedule() && isStuck(job.trigger.getKey())) {
+            return change.withSchedule();
+        }
+        return change;
+    }
+
+    /**
+     * Checks if the trigger will not fire again unless it is replaced: it is in error, or blocked while no instance
+     * of its job runs on this node. Replacing a trigger whose job still runs on another node is harmless, as the job
+     * store blocks the new trigger again until the job completes.
+     */
+    private boolean isStuck(TriggerKey triggerKey) throws SchedulerException {
+        Trigger.TriggerState state = scheduler.getTriggerState(triggerKey);
+        if (state == Trigger.TriggerState.ERROR) {
+            return true;
+        }
+        if (state != Trigger.TriggerState.BLOCKED) {
+            return false;
+        }
+        for (JobExecutionContext context : scheduler.getCurrentlyExecutingJobs()) {
+            if (context.getTrigger().getKey().equals(triggerKey)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the data of the job, keeping its trigger. The reference trigger of the job is stored with its shared
+     * payload before the job, so that the payload is not deleted once the job refers to it.
+     */
+    private void replaceJobData(PreparedJob job) throws SchedulerException {
+        if (job.payloadJob == null) {
+            scheduler.addJob(job.jobDetail, true);
+            return;
+        }
+
+        Map<String, String> previousPayloads = findPreviousPayloads(Collections.singletonList(job));
+        Map<JobDetail, List<Trigger>> payloadAndReference = new HashMap<>();
+        payloadAndReference.put(job.payloadJob,
+                Collections.singletonList(JobPayloads.newReference(job.jobId.value(), job.payloadJob)));
+        scheduler.scheduleJobs(payloadAndReference, true);
+        scheduler.addJob(job.jobDetail, true);
+        releasePayloads(Collections.singletonList(job), previousPayloads);
+    }
+
+    private void scheduleJob(PreparedJob job) {
         if (logger.isDebugEnabled()) {
-            logger.debug("Scheduling job:" + jobDetail);
+            logger.debug("Scheduling job:" + job.jobDetail);
         }
         try {
-            scheduler.scheduleJob(jobDetail, trigger);
+            if (job.payloadJob == null) {
+                scheduler.scheduleJob(job.jobDetail, job.trigger);
+            } else if (scheduler.checkExists(job.jobDetail.getKey())) {
+                throw new ObjectAlreadyExistsException(job.jobDetail);
+            } else {
+                // stored with replacing, as the reference trigger of a job unscheduled without it may be left over
+                storeJobs(Collections.singletonList(job));
+            }
         } catch (SchedulerException e) {
-            handleException(String.format("Can not schedule the job:\n %s\n%s\n%s", jobDetail.toString(), trigger.toString(), e.getMessage()), e);
+            handleException(String.format("Can not schedule the job:\n %s\n%s\n%s", job.jobDetail.toString(), job.trigger.toString(), e.getMessage()), e);
         }
     }
 
-    private void putMotechEventDataToJobDataMap(JobDataMap jobDataMap, MotechEvent motechEvent) {
-        jobDataMap.putAll(motechEvent.getParameters());
+    /**
+     * Puts the parameters of the event into the job data map of the job, as configured by
+     * <code>scheduler.jobData.payload</code>. Jobs kept in memory are never serialized, so they always keep their
+     * parameters as they are.
+     *
+     * @return the shared payload job the job refers to, null if the job holds its own parameters
+     */
+    private JobDetail putMotechEventDataToJobDataMap(JobDetail jobDetail, MotechEvent motechEvent, boolean inMemory) {
+        JobDataMap jobDataMap = jobDetail.getJobDataMap();
+        String payloadMode = inMemory ? null : getPayloadMode();
+        JobDetail payloadJob = null;
+
+        if (PAYLOAD_SHARED.equals(payloadMode)) {
+            Map<String, Object> parameters = new HashMap<>(motechEvent.getParameters());
+            // the job ID is set from the job name when the job fires, it would keep jobs from sharing their payload
+            parameters.remove(JOB_ID_KEY);
+            payloadJob = JobPayloads.newSharedPayload(parameters);
+            jobDataMap.put(JobPayloads.PAYLOAD_REF_KEY, payloadJob.getKey().getName());
+        } else if (PAYLOAD_COMPACT.equals(payloadMode)) {
+            JobPayloads.putCompact(jobDataMap, motechEvent.getParameters());
+        } else {
+            jobDataMap.putAll(motechEvent.getParameters());
+        }
+
         jobDataMap.put(MotechEvent.EVENT_TYPE_KEY_NAME, motechEvent.getSubject());
+        return payloadJob;
+    }
+
+    private String getPayloadMode() {
+        return StringUtils.trimToEmpty(schedulerSettings.getProperty("scheduler.jobData.payload"));
     }
 
-    private List<String> extractTriggerNames(List<TriggerKey> triggerKeys) {
-        List<String> names = new ArrayList<>();
-        for (TriggerKey key : triggerKeys) {
-            names.add(key.getName());
+    private void putStorageToJobDataMap(JobDataMap jobDataMap, TransientSchedulableJob schedulableJob) {
+        if (schedulableJob.isInMemory()) {
+            jobDataMap.put(HybridJobStore.IN_MEMORY_KEY, true);
         }
-        return names;
     }
 
-    private String getStartDate(JobKey jobKey) throws SchedulerException {
-        Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
+    private JobsSearchResult searchJobsInMemory(JobsSearchSettings settings) {
+        List<JobBasicInfo> matching = new ArrayList<>();
+        for (JobBasicInfo job : getScheduledJobsBasicInfo()) {
+            if (matches(job, settings)) {
+                matching.add(job);
+            }
+        }
+
+        if (StringUtils.isNotEmpty(settings.getSortColumn())) {
+            Collections.sort(matching, new JobBasicInfoComparator(settings.isAscending(), settings.getSortColumn()));
+        }
 
+        long from = (long) (Math.max(settings.getPage(), 1) - 1) * settings.getPageSize();
+        int fromIndex = (int) Math.min(from, matching.size());
+        int toIndex = (int) Math.min(from + settings.getPageSize(), matching.size());
+
+        return new JobsSearchResult(matching.subList(fromIndex, toIndex), matching.size());
+    }
+
+    private boolean matches(JobBasicInfo job, JobsSearchSettings settings) {
+        DateTime startTime = DateTimeFormat.forPattern("Y-MM-dd HH:mm:ss").parseDateTime(job.getStartDate());
+
+        return (settings.getTimeFrom() == null || startTime.isAfter(settings.getTimeFrom().getTime()))
+                && (settings.getTimeTo() == null || startTime.isBefore(settings.getTimeTo().getTime()))
+                && (settings.getActivities() == null || settings.getActivities().contains(job.getActivity()))
+                && (settings.getStatuses() == null || settings.getStatuses().contains(job.getStatus()))
+                && (StringUtils.isEmpty(settings.getName()) || job.getName().contains(settings.getName()));
+    }
+
+    /**
+     * Builds the basic information about the job of the given trigger. The trigger is the only one read from the
+     * job store, together with its state.
+     */
+    private JobBasicInfo getJobBasicInfo(Trigger trigger) throws SchedulerException {
+        JobKey jobKey = trigger.getJobKey();
+        String jobType = getJobType(jobKey);
+        String startDate = getStartDate(trigger);
+        String nextFireDate = DateTimeFormat.forPattern("Y-MM-dd HH:mm:ss").print(trigger.getNextFireTime().getTime());
+
+        return new JobBasicInfo(
+                getJobActivity(trigger),
+                getJobStatus(scheduler.getTriggerState(trigger.getKey())),
+                jobKey.getName(),
+                startDate,
+                nextFireDate,
+                getEndDate(trigger, jobType, startDate),
+                jobType,
+                getJobInfo(trigger, jobType)
+        );
+    }
+
+    private String getStartDate(Trigger trigger) {
         return DateTimeFormat.forPattern("Y-MM-dd HH:mm:ss").print(trigger.getStartTime().getTime());
     }
 
-    private String getEndDate(JobKey jobKey, String jobType) throws SchedulerException {
-        Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
+    private String getEndDate(Trigger trigger, String jobType, String startDate) {
         DateTime endDateTime = new DateTime(trigger.getEndTime());
-        String startDate = getStartDate(jobKey);
         String endDate;
 
         if (!endDateTime.isAfterNow()) {
@@ -826,22 +1363,19 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         return endDate;
     }
 
-    private String getJobStatus(JobKey jobKey) throws SchedulerException {
-        TriggerKey triggerKey = scheduler.getTriggersOfJob(jobKey).get(0).getKey();
-
-        if (scheduler.getTriggerState(triggerKey) == Trigger.TriggerState.ERROR) {
+    private String getJobStatus(Trigger.TriggerState triggerState) {
+        if (triggerState == Trigger.TriggerState.ERROR) {
             return JobBasicInfo.STATUS_ERROR;
-        } else if (scheduler.getTriggerState(triggerKey) == Trigger.TriggerState.BLOCKED) {
+        } else if (triggerState == Trigger.TriggerState.BLOCKED) {
             return JobBasicInfo.STATUS_BLOCKED;
-        } else if (scheduler.getTriggerState(triggerKey) == Trigger.TriggerState.PAUSED) {
+        } else if (triggerState == Trigger.TriggerState.PAUSED) {
             return JobBasicInfo.STATUS_PAUSED;
         } else {
             return JobBasicInfo.STATUS_OK;
         }
     }
 
-    private String getJobActivity(JobKey jobKey) throws SchedulerException {
-        Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
+    private String getJobActivity(Trigger trigger) {
         DateTime startDateTime = new DateTime(trigger.getStartTime());
         DateTime endDateTime = new DateTime(trigger.getEndTime());
 
@@ -854,7 +1388,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
-    private String getJobType(JobKey jobKey) throws SchedulerException {
+    private String getJobType(JobKey jobKey) {
         if (jobKey.getName().endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
             return JobBasicInfo.JOBTYPE_RUNONCE;
         } else if (jobKey.getName().endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
@@ -864,9 +1398,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
-    private String getJobInfo(JobKey jobKey, String jobType) throws SchedulerException {
-        Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
-
+    private String getJobInfo(Trigger trigger, String jobType) {
         if (jobType.equals(JobBasicInfo.JOBTYPE_REPEATING)) {
             Integer timesTriggered = 0;
             String repeatMaxCount = "-";
@@ -912,4 +1444,21 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             logger.debug(obj.toString());
         }
     }
+
+    /**
+     * Job and trigger built from a schedulable job, ready to be stored by Quartz.
+     */
+    private static class PreparedJob {
+        private final JobId jobId;
+        private final JobDetail jobDetail;
+        private final Trigger trigger;
+        private final JobDetail payloadJob;
+
+        PreparedJob(JobId jobId, JobDetail jobDetail, Trigger trigger, JobDetail payloadJob) {
+            this.jobId = jobId;
+            this.jobDetail = jobDetail;
+            this.trigger = trigger;
+            this.payloadJob = payloadJob;
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.springframework.context.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes the events of fired jobs. Jobs firing at the same time publish their events together, with a single
+ * {@link EventRelay#sendEventMessages(java.util.Collection)} call: while one job thread sends a batch, the events
+ * of other job threads are collected and sent by the first of them once the batch is sent. Every job still waits
+ * until its own event is sent, so a job fails if its event could not be published.
+ * <p>
+ * The {@link EventRelay} is looked up in the application context when the first event is published, and reused
+ * for all later events.
+ */
+public class ScheduledEventPublisher {
+
+    private final ApplicationContext applicationContext;
+    private volatile EventRelay eventRelay;
+
+    private final Object lock = new Object();
+    private List<PendingEvent> pending = new ArrayList<>();
+    private boolean sending;
+
+    public ScheduledEventPublisher(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Sends the given event, together with the events of jobs fired at the same time.
+     *
+     * @param motechEvent the event to send
+     * @throws InterruptedException if the thread is interrupted while waiting for its event to be sent
+     */
+    public void publish(MotechEvent motechEvent) throws InterruptedException {
+        PendingEvent event = new PendingEvent(motechEvent);
+        List<PendingEvent> batch;
+
+        synchronized (lock) {
+            pending.add(event);
+            while (sending && !event.sent) {
+                lock.wait();
+            }
+            if (event.sent) {
+                event.rethrowFailure();
+                return;
+            }
+            sending = true;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+
+        RuntimeException failure = null;
+        boolean completed = false;
+        try {
+            List<MotechEvent> events = new ArrayList<>(batch.size());
+            for (PendingEvent pendingEvent : batch) {
+                events.add(pendingEvent.motechEvent);
+            }
+            getEventRelay().sendEventMessages(events);
+            completed = true;
+        } catch (RuntimeException e) {
+            failure = e;
+            completed = true;
+        } finally {
+            if (!completed) {
+                failure = new IllegalStateException("Sending the events of fired jobs failed");
+            }
+            synchronized (lock) {
+                for (PendingEvent pendingEvent : batch) {
+                    pendingEvent.sent = true;
+                    pendingEvent.failure = failure;
+                }
+                sending = false;
+                lock.notifyAll();
+            }
+        }
+
+        event.rethrowFailure();
+    }
+
+    private EventRelay getEventRelay() {
+        if (eventRelay == null) {
+            eventRelay = applicationContext.getBean(EventRelay.class);
+        }
+        return eventRelay;
+    }
+
+    private static class PendingEvent {
+        private final MotechEvent motechEvent;
+        private boolean sent;
+        private RuntimeException failure;
+
+        PendingEvent(MotechEvent motechEvent) {
+            this.motechEvent = motechEvent;
+        }
+
+        void rethrowFailure() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
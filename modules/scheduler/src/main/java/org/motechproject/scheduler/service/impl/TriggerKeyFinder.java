@@ -0,0 +1,465 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.scheduler.contract.JobBasicInfo;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
+import org.motechproject.scheduler.contract.RepeatingJobId;
+import org.motechproject.scheduler.contract.RunOnceJobId;
+import org.quartz.CalendarIntervalScheduleBuilder;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.DateBuilder;
+import org.quartz.ScheduleBuilder;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.Constants;
+import org.quartz.impl.jdbcjobstore.JobStoreSupport;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.quartz.TriggerKey.triggerKey;
+
+/**
+ * Finds the keys of the triggers whose names start with a given prefix. With a JDBC job store, the names are
+ * selected with a <code>LIKE 'prefix%'</code> query on the triggers table, which is answered from its primary key
+ * index, so the cost depends on the number of matching triggers rather than on all triggers in the store.
+ * Other job stores, and JDBC stores whose data source can not be reached directly, are scanned.
+ * <p>
+ * With a JDBC job store, it also searches the triggers the way the jobs grid does: the activity, status and type
+ * of the jobs are computed by the query, so that filtering, sorting and paging are all done by the database.
+ * Jobs kept in memory by the {@link HybridJobStore} are not part of the search. The schedules of the stored
+ * triggers can also be read page by page, a page at a time, to project their fire times.
+ * <p>
+ * It also finds the shared payload jobs, see {@link JobPayloads}, which jobs are using, from their reference
+ * triggers.
+ */
+public class TriggerKeyFinder {
+    private final Logger logger = LoggerFactory.getLogger(TriggerKeyFinder.class);
+
+    private static final String DEFAULT_TABLE_PREFIX = "QRTZ_";
+    private static final char LIKE_ESCAPE = '!';
+
+    private final Scheduler scheduler;
+    private final String dataSource;
+    private final String selectByPrefix;
+    private final String selectTriggerPage;
+    private final String selectPayloadRefs;
+    private final String triggersTable;
+
+    /**
+     * @param scheduler   the scheduler owning the triggers
+     * @param dataSource  the name of the Quartz data source of the job store, null if the store is not a JDBC store
+     * @param tablePrefix the prefix of the Quartz tables
+     */
+    public TriggerKeyFinder(Scheduler scheduler, String dataSource, String tablePrefix) {
+        this.scheduler = scheduler;
+        this.dataSource = dataSource;
+        String prefix = StringUtils.defaultIfEmpty(tablePrefix, DEFAULT_TABLE_PREFIX);
+        this.triggersTable = prefix + "TRIGGERS";
+        this.selectByPrefix = String.format("SELECT TRIGGER_NAME FROM %s WHERE SCHED_NAME = ? AND TRIGGER_GROUP = ? " +
+                "AND TRIGGER_NAME LIKE ? ESCAPE '%s'", triggersTable, LIKE_ESCAPE);
+        this.selectTriggerPage = String.format("SELECT t.TRIGGER_NAME, t.TRIGGER_TYPE, t.START_TIME, t.END_TIME, " +
+                "t.NEXT_FIRE_TIME, s.REPEAT_COUNT, s.REPEAT_INTERVAL, c.CRON_EXPRESSION, c.TIME_ZONE_ID, " +
+                "p.STR_PROP_1, p.STR_PROP_2, p.INT_PROP_1, p.BOOL_PROP_1, p.BOOL_PROP_2 FROM %1$s t " +
+                "LEFT JOIN %2$s s ON s.SCHED_NAME = t.SCHED_NAME AND s.TRIGGER_NAME = t.TRIGGER_NAME AND s.TRIGGER_GROUP = t.TRIGGER_GROUP " +
+                "LEFT JOIN %3$s c ON c.SCHED_NAME = t.SCHED_NAME AND c.TRIGGER_NAME = t.TRIGGER_NAME AND c.TRIGGER_GROUP = t.TRIGGER_GROUP " +
+                "LEFT JOIN %4$s p ON p.SCHED_NAME = t.SCHED_NAME AND p.TRIGGER_NAME = t.TRIGGER_NAME AND p.TRIGGER_GROUP = t.TRIGGER_GROUP " +
+                "WHERE t.SCHED_NAME = ? AND t.TRIGGER_GROUP = ? AND t.TRIGGER_NAME > ? ORDER BY t.TRIGGER_NAME LIMIT ?",
+                triggersTable, prefix + "SIMPLE_TRIGGERS", prefix + "CRON_TRIGGERS", prefix + "SIMPROP_TRIGGERS");
+        this.selectPayloadRefs = String.format("SELECT TRIGGER_NAME, JOB_NAME FROM %s WHERE SCHED_NAME = ? " +
+                "AND TRIGGER_GROUP = ? AND TRIGGER_NAME IN (%%s)", triggersTable);
+    }
+
+    /**
+     * Returns the keys of the triggers of the given group whose names start with the given prefix.
+     *
+     * @param group  the trigger group
+     * @param prefix the prefix of the trigger names, nothing is found for an empty prefix
+     * @return the keys of the matching triggers
+     * @throws SchedulerException if the triggers can not be read
+     */
+    public List<TriggerKey> findByNamePrefix(String group, String prefix) throws SchedulerException {
+        if (StringUtils.isEmpty(prefix)) {
+            return new ArrayList<>();
+        }
+
+        if (isJdbcStore()) {
+            try {
+                return selectByNamePrefix(group, prefix);
+            } catch (SQLException e) {
+                logger.error("Can not select triggers by name prefix, scanning all triggers: " + e.getMessage(), e);
+            }
+        }
+
+        return scanByNamePrefix(group, prefix);
+    }
+
+    /**
+     * Returns the keys of the triggers on the requested page of the search, in the requested order.
+     *
+     * @param settings the filters, order and page of the search
+     * @param now      the current time, in milliseconds since the epoch, which decides on the activity of the jobs
+     * @return the keys of the triggers on the page
+     * @throws SQLException       if the triggers can not be selected
+     * @throws SchedulerException if the scheduler can not be accessed
+     */
+    public List<TriggerKey> search(JobsSearchSettings settings, long now) throws SQLException, SchedulerException {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT TRIGGER_NAME, TRIGGER_GROUP FROM ").append(triggersTable);
+        appendFilters(sql, parameters, settings, now);
+        appendOrder(sql, settings, now);
+
+        long offset = (long) (Math.max(settings.getPage(), 1) - 1) * settings.getPageSize();
+        sql.append(" LIMIT ? OFFSET ?");
+        parameters.add(settings.getPageSize());
+        parameters.add(offset);
+
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        try (Connection connection = DBConnectionManager.getInstance().getConnection(dataSource);
+             PreparedStatement statement = prepare(connection, sql.toString(), parameters);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                triggerKeys.add(triggerKey(resultSet.getString(1), resultSet.getString(2)));
+            }
+        }
+        return triggerKeys;
+    }
+
+    /**
+     * Returns the number of triggers matching the filters of the search, on all pages.
+     *
+     * @param settings the filters of the search
+     * @param now      the current time, in milliseconds since the epoch, which decides on the activity of the jobs
+     * @return the number of matching triggers
+     * @throws SQLException       if the triggers can not be counted
+     * @throws SchedulerException if the scheduler can not be accessed
+     */
+    public long count(JobsSearchSettings settings, long now) throws SQLException, SchedulerException {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM ").append(triggersTable);
+        appendFilters(sql, parameters, settings, now);
+
+        try (Connection connection = DBConnectionManager.getInstance().getConnection(dataSource);
+             PreparedStatement statement = prepare(connection, sql.toString(), parameters);
+             ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Returns the stored triggers of the given group whose names come after the given name, in the order of their
+     * names. Following pages are read by passing the last name of the previous page, which reads them from the
+     * primary key index however many triggers are stored.
+     * <p>
+     * The schedules of the simple, cron and calendar interval triggers on the page are read by a single query, the
+     * triggers are rebuilt from them with their next fire times, without their job data. Triggers of other types
+     * are loaded from the scheduler one by one.
+     *
+     * @param group     the trigger group
+     * @param afterName the name after which the page starts, empty for the first page
+     * @param pageSize  the maximum number of triggers to return
+     * @return the triggers on the page
+     * @throws SQLException       if the triggers can not be selected
+     * @throws SchedulerException if the scheduler can not be accessed
+     */
+    public List<Trigger> findTriggerPage(String group, String afterName, int pageSize) throws SQLException, SchedulerException {
+        List<Trigger> triggers = new ArrayList<>();
+        List<TriggerKey> otherTriggerKeys = new ArrayList<>();
+
+        try (Connection connection = DBConnectionManager.getInstance().getConnection(dataSource);
+             PreparedStatement statement = connection.prepareStatement(selectTriggerPage)) {
+            statement.setString(1, scheduler.getSchedulerName());
+            statement.setString(2, group);
+            statement.setString(3, afterName);
+            statement.setInt(4, pageSize);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    TriggerKey triggerKey = triggerKey(resultSet.getString(1), group);
+                    ScheduleBuilder<?> schedule = getSchedule(resultSet);
+                    if (schedule == null) {
+                        otherTriggerKeys.add(triggerKey);
+                    } else {
+                        triggers.add(buildTrigger(triggerKey, schedule, resultSet));
+                    }
+                }
+            }
+        }
+
+        for (TriggerKey triggerKey : otherTriggerKeys) {
+            Trigger trigger = scheduler.getTrigger(triggerKey);
+            if (trigger != null) {
+                triggers.add(trigger);
+            }
+        }
+        return triggers;
+    }
+
+    /**
+     * Returns the names of the shared payload jobs the given jobs are using, as found by their reference triggers.
+     * With a JDBC job store, the reference triggers are selected with a single query on their primary key, other
+     * job stores are read trigger by trigger.
+     *
+     * @param jobNames the names of the jobs
+     * @return the names of the payload jobs, by the names of the jobs using them, without the jobs using none
+     * @throws SchedulerException if the triggers can not be read
+     */
+    public Map<String, String> findPayloadRefs(Collection<String> jobNames) throws SchedulerException {
+        if (jobNames.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        if (isJdbcStore()) {
+            try {
+                return selectPayloadRefs(jobNames);
+            } catch (SQLException e) {
+                logger.error("Can not select payload references, reading them one by one: " + e.getMessage(), e);
+            }
+        }
+
+        return readPayloadRefs(jobNames);
+    }
+
+    /**
+     * @return true if the triggers are kept in a database which can be queried directly
+     * @throws SchedulerException if the scheduler can not be accessed
+     */
+    public boolean isJdbcStore() throws SchedulerException {
+        return StringUtils.isNotBlank(dataSource)
+                && JobStoreSupport.class.isAssignableFrom(scheduler.getMetaData().getJobStoreClass());
+    }
+
+    private List<TriggerKey> selectByNamePrefix(String group, String prefix) throws SQLException, SchedulerException {
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+
+        try (Connection connection = DBConnectionManager.getInstance().getConnection(dataSource);
+             PreparedStatement statement = connection.prepareStatement(selectByPrefix)) {
+            statement.setString(1, scheduler.getSchedulerName());
+            statement.setString(2, group);
+            statement.setString(3, escapeLike(prefix) + "%");
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    triggerKeys.add(triggerKey(resultSet.getString(1), group));
+                }
+            }
+        }
+
+        // triggers kept in memory by the hybrid job store are not in the table
+        GroupMatcher<TriggerKey> matcher = GroupMatcher.triggerGroupEquals(group);
+        for (TriggerKey triggerKey : HybridJobStore.getInMemoryTriggerKeys(scheduler, matcher)) {
+            if (triggerKey.getName().startsWith(prefix)) {
+                triggerKeys.add(triggerKey);
+            }
+        }
+
+        return triggerKeys;
+    }
+
+    private ScheduleBuilder<?> getSchedule(ResultSet resultSet) throws SQLException {
+        String type = resultSet.getString(2);
+        if (Constants.TTYPE_SIMPLE.equals(type)) {
+            return SimpleScheduleBuilder.simpleSchedule()
+                    .withRepeatCount(resultSet.getInt(6))
+                    .withIntervalInMilliseconds(resultSet.getLong(7));
+        } else if (Constants.TTYPE_CRON.equals(type)) {
+            return CronScheduleBuilder.cronSchedule(resultSet.getString(8))
+                    .inTimeZone(getTimeZone(resultSet.getString(9)));
+        } else if (Constants.TTYPE_CAL_INT.equals(type)) {
+            return CalendarIntervalScheduleBuilder.calendarIntervalSchedule()
+                    .withInterval(resultSet.getInt(12), DateBuilder.IntervalUnit.valueOf(resultSet.getString(10)))
+                    .inTimeZone(getTimeZone(resultSet.getString(11)))
+                    .preserveHourOfDayAcrossDaylightSavings(resultSet.getBoolean(13))
+                    .skipDayIfHourDoesNotExist(resultSet.getBoolean(14));
+        }
+        return null;
+    }
+
+    private Trigger buildTrigger(TriggerKey triggerKey, ScheduleBuilder<?> schedule, ResultSet resultSet) throws SQLException {
+        long endTime = resultSet.getLong(4);
+        long nextFireTime = resultSet.getLong(5);
+
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+                .withIdentity(triggerKey)
+                .withSchedule(schedule)
+                .startAt(new Date(resultSet.getLong(3)))
+                .endAt((endTime > 0) ? new Date(endTime) : null)
+                .build();
+        // as the job store does, so that the trigger continues from where it is
+        trigger.setNextFireTime((nextFireTime > 0) ? new Date(nextFireTime) : null);
+        return trigger;
+    }
+
+    private TimeZone getTimeZone(String timeZoneId) {
+        return StringUtils.isBlank(timeZoneId) ? TimeZone.getDefault() : TimeZone.getTimeZone(timeZoneId);
+    }
+
+    private Map<String, String> selectPayloadRefs(Collection<String> jobNames) throws SQLException, SchedulerException {
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(scheduler.getSchedulerName());
+        parameters.add(JobPayloads.PAYLOAD_REF_GROUP);
+        parameters.addAll(jobNames);
+        String sql = String.format(selectPayloadRefs, StringUtils.repeat("?", ", ", jobNames.size()));
+
+        Map<String, String> payloadRefs = new HashMap<>();
+        try (Connection connection = DBConnectionManager.getInstance().getConnection(dataSource);
+             PreparedStatement statement = prepare(connection, sql, parameters);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                payloadRefs.put(resultSet.getString(1), resultSet.getString(2));
+            }
+        }
+        return payloadRefs;
+    }
+
+    private Map<String, String> readPayloadRefs(Collection<String> jobNames) throws SchedulerException {
+        Map<String, String> payloadRefs = new HashMap<>();
+        for (String jobName : jobNames) {
+            Trigger reference = scheduler.getTrigger(JobPayloads.getReferenceKey(jobName));
+            if (reference != null) {
+                payloadRefs.put(jobName, reference.getJobKey().getName());
+            }
+        }
+        return payloadRefs;
+    }
+
+    private List<TriggerKey> scanByNamePrefix(String group, String prefix) throws SchedulerException {
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        for (TriggerKey triggerKey : scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group))) {
+            if (triggerKey.getName().startsWith(prefix)) {
+                triggerKeys.add(triggerKey);
+            }
+        }
+        return triggerKeys;
+    }
+
+    private void appendFilters(StringBuilder sql, List<Object> parameters, JobsSearchSettings settings, long now)
+            throws SchedulerException {
+        sql.append(" WHERE SCHED_NAME = ? AND TRIGGER_GROUP <> ?");
+        parameters.add(scheduler.getSchedulerName());
+        parameters.add(JobPayloads.PAYLOAD_REF_GROUP);
+
+        if (StringUtils.isNotEmpty(settings.getName())) {
+            sql.append(" AND JOB_NAME LIKE ? ESCAPE '").append(LIKE_ESCAPE).append('\'');
+            parameters.add("%" + escapeLike(settings.getName()) + "%");
+        }
+        if (settings.getTimeFrom() != null) {
+            sql.append(" AND START_TIME > ?");
+            parameters.add(settings.getTimeFrom().getTime());
+        }
+        if (settings.getTimeTo() != null) {
+            sql.append(" AND START_TIME < ?");
+            parameters.add(settings.getTimeTo().getTime());
+        }
+        appendIn(sql, parameters, activityColumn(now), settings.getActivities());
+        appendIn(sql, parameters, statusColumn(), settings.getStatuses());
+    }
+
+    private void appendIn(StringBuilder sql, List<Object> parameters, String column, Collection<String> values) {
+        if (values == null) {
+            return;
+        }
+        if (values.isEmpty()) {
+            sql.append(" AND 1 = 0");
+            return;
+        }
+
+        List<String> placeholders = new ArrayList<>(values.size());
+        for (String value : values) {
+            placeholders.add("?");
+            parameters.add(value);
+        }
+        sql.append(" AND ").append(column).append(" IN (").append(StringUtils.join(placeholders, ", ")).append(')');
+    }
+
+    private void appendOrder(StringBuilder sql, JobsSearchSettings settings, long now) {
+        sql.append(" ORDER BY ");
+
+        if (StringUtils.isNotEmpty(settings.getSortColumn())) {
+            String direction = settings.isAscending() ? " ASC" : " DESC";
+            String column = sortColumn(settings.getSortColumn(), now);
+            // jobs without a value, like the ones without an end date, are placed after the others, as in the jobs grid
+            sql.append("CASE WHEN ").append(column).append(" IS NULL THEN 1 ELSE 0 END").append(direction).append(", ")
+                    .append(column).append(direction).append(", ");
+        }
+
+        sql.append("JOB_NAME ASC");
+    }
+
+    private String sortColumn(String field, long now) {
+        switch (field) {
+            case "status":
+                return statusColumn();
+            case "name":
+                return "JOB_NAME";
+            case "startDate":
+                return "START_TIME";
+            case "nextFireDate":
+                return "NEXT_FIRE_TIME";
+            case "endDate":
+                return String.format("CASE WHEN END_TIME > %d THEN END_TIME WHEN JOB_NAME LIKE '%%%s' THEN START_TIME END",
+                        now, RunOnceJobId.SUFFIX_RUNONCEJOBID);
+            case "jobType":
+                return String.format("CASE WHEN JOB_NAME LIKE '%%%s' THEN '%s' WHEN JOB_NAME LIKE '%%%s' THEN '%s' ELSE '%s' END",
+                        RunOnceJobId.SUFFIX_RUNONCEJOBID, JobBasicInfo.JOBTYPE_RUNONCE,
+                        RepeatingJobId.SUFFIX_REPEATJOBID, JobBasicInfo.JOBTYPE_REPEATING, JobBasicInfo.JOBTYPE_CRON);
+            case "activity":
+            default:
+                return activityColumn(now);
+        }
+    }
+
+    private String activityColumn(long now) {
+        return String.format("CASE WHEN START_TIME > %d THEN '%s' WHEN END_TIME > 0 AND END_TIME < %d THEN '%s' ELSE '%s' END",
+                now, JobBasicInfo.ACTIVITY_NOTSTARTED, now, JobBasicInfo.ACTIVITY_FINISHED, JobBasicInfo.ACTIVITY_ACTIVE);
+    }
+
+    private String statusColumn() {
+        return String.format("CASE WHEN TRIGGER_STATE = '%s' THEN '%s' WHEN TRIGGER_STATE = '%s' THEN '%s' " +
+                "WHEN TRIGGER_STATE IN ('%s', '%s') THEN '%s' ELSE '%s' END",
+                Constants.STATE_ERROR, JobBasicInfo.STATUS_ERROR, Constants.STATE_BLOCKED, JobBasicInfo.STATUS_BLOCKED,
+                Constants.STATE_PAUSED, Constants.STATE_PAUSED_BLOCKED, JobBasicInfo.STATUS_PAUSED, JobBasicInfo.STATUS_OK);
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, List<Object> parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+        return statement;
+    }
+
+    private String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
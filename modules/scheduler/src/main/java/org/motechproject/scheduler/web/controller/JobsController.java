@@ -1,11 +1,11 @@
 package org.motechproject.scheduler.web.controller;
 
-import org.joda.time.DateTime;
+import org.apache.commons.lang.StringUtils;
 import org.joda.time.format.DateTimeFormat;
+import org.motechproject.scheduler.contract.JobsSearchResult;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.service.MotechSchedulerService;
-import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
-import org.motechproject.scheduler.domain.JobBasicInfoComparator;
 import org.motechproject.scheduler.web.domain.JobsRecords;
 import org.motechproject.scheduler.web.domain.JobsGridSettings;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,16 +14,17 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * JobsController is the Spring Framework Controller, its used by view layer for getting information about
  * scheduled jobs and about event associated with given Job. The methods of controller return JobsRecords class
- * for jobs data and JobDetailedInfo class for event data. The internal methods of this class performs
- * filtering and sorting of jobs information. The class also stores the most recent JobsRecords for information which
- * job event data should be returned.
+ * for jobs data and JobDetailedInfo class for event data. The filtering, sorting and paging of jobs information
+ * is left to the scheduler service, so that only the requested page of jobs is loaded. The class also stores
+ * the most recent JobsRecords for information which job event data should be returned.
  *
  * @see JobsRecords
  * @see JobDetailedInfo
@@ -39,49 +40,26 @@ public class JobsController {
     @RequestMapping({ "/jobs" })
     @ResponseBody
     public JobsRecords retrieveJobInfo(JobsGridSettings jobsGridSettings) {
-        List<JobBasicInfo> allJobsBasicInfos = motechSchedulerService.getScheduledJobsBasicInfo();
-        List<JobBasicInfo> filteredJobsBasicInfos = null;
-        Boolean sortAscending = true;
-        DateTime dateFrom;
-        DateTime dateTo;
+        JobsSearchSettings jobsSearchSettings = new JobsSearchSettings();
+        int page = (jobsGridSettings.getPage() == null) ? 1 : Math.max(jobsGridSettings.getPage(), 1);
 
         if (jobsGridSettings.getSortDirection() != null) {
-            sortAscending = "asc".equals(jobsGridSettings.getSortDirection());
+            jobsSearchSettings.setAscending("asc".equals(jobsGridSettings.getSortDirection()));
         }
 
-        if (!jobsGridSettings.getTimeFrom().isEmpty()) {
-            dateFrom = DateTimeFormat.forPattern("Y-MM-dd HH:mm:ss")
-                    .parseDateTime(jobsGridSettings.getTimeFrom());
-        } else {
-            dateFrom = getMinDateTime();
-        }
-
-        if (!jobsGridSettings.getTimeTo().isEmpty()) {
-            dateTo = DateTimeFormat.forPattern("Y-MM-dd HH:mm:ss")
-                    .parseDateTime(jobsGridSettings.getTimeTo());
-        } else {
-            dateTo = getMaxDateTime();
-        }
-
-        filteredJobsBasicInfos = filterJobsByDates(allJobsBasicInfos, dateFrom, dateTo);
+        jobsSearchSettings.setTimeFrom(parseDate(jobsGridSettings.getTimeFrom()));
+        jobsSearchSettings.setTimeTo(parseDate(jobsGridSettings.getTimeTo()));
+        jobsSearchSettings.setActivities(parseValues(jobsGridSettings.getActivity()));
+        jobsSearchSettings.setStatuses(parseValues(jobsGridSettings.getStatus()));
+        jobsSearchSettings.setName(jobsGridSettings.getName());
+        jobsSearchSettings.setSortColumn(jobsGridSettings.getSortColumn());
+        jobsSearchSettings.setPage(page);
+        jobsSearchSettings.setPageSize(jobsGridSettings.getRows());
 
-        filteredJobsBasicInfos = filterJobsByStates(
-                filteredJobsBasicInfos, jobsGridSettings.getActivity(), jobsGridSettings.getStatus()
-        );
-
-        filteredJobsBasicInfos = filterJobsByName(filteredJobsBasicInfos, jobsGridSettings.getName());
-
-        if (!jobsGridSettings.getSortColumn().isEmpty()) {
-            Collections.sort(
-                    filteredJobsBasicInfos, new JobBasicInfoComparator(
-                        sortAscending,
-                        jobsGridSettings.getSortColumn()
-                    )
-            );
-        }
+        JobsSearchResult jobsSearchResult = motechSchedulerService.getScheduledJobsBasicInfo(jobsSearchSettings);
 
         previousJobsRecords = new JobsRecords(
-            jobsGridSettings.getPage(), jobsGridSettings.getRows(), filteredJobsBasicInfos
+            page, jobsGridSettings.getRows(), jobsSearchResult.getTotal(), jobsSearchResult.getRows()
         );
 
         return previousJobsRecords;
@@ -97,50 +75,19 @@ public class JobsController {
         }
     }
 
-    private List<JobBasicInfo> filterJobsByDates(List<JobBasicInfo> jobs, DateTime dateFrom, DateTime dateTo) {
-        List<JobBasicInfo> filteredJobs = new ArrayList<>();
-
-        for (JobBasicInfo job : jobs) {
-            DateTime jobStartTime = DateTimeFormat.forPattern("Y-MM-dd HH:mm:ss")
-                    .parseDateTime(job.getStartDate());
-
-            if (jobStartTime.isAfter(dateFrom) && jobStartTime.isBefore(dateTo)) {
-                filteredJobs.add(job);
-            }
-        }
-
-        return filteredJobs;
-    }
-
-    private List<JobBasicInfo> filterJobsByStates(List<JobBasicInfo> jobs, String activityFilter, String statusFilter) {
-        List<JobBasicInfo> filteredJobs = new ArrayList<>();
-
-        for (JobBasicInfo job : jobs) {
-            if (activityFilter.contains(job.getActivity()) && statusFilter.contains(job.getStatus())) {
-                filteredJobs.add(job);
-            }
+    private Date parseDate(String date) {
+        if (StringUtils.isEmpty(date)) {
+            return null;
         }
 
-        return filteredJobs;
+        return DateTimeFormat.forPattern("Y-MM-dd HH:mm:ss").parseDateTime(date).toDate();
     }
 
-    private List<JobBasicInfo> filterJobsByName(List<JobBasicInfo> jobs, String namePartial) {
-        List<JobBasicInfo> filteredJobs = new ArrayList<>();
-
-        for (JobBasicInfo job : jobs) {
-            if (job.getName().contains(namePartial)) {
-                filteredJobs.add(job);
-            }
+    private Set<String> parseValues(String values) {
+        if (values == null) {
+            return null;
         }
 
-        return filteredJobs;
-    }
-
-    private DateTime getMinDateTime() {
-        return new DateTime(Long.MIN_VALUE);
-    }
-
-    private DateTime getMaxDateTime() {
-        return new DateTime(Long.MAX_VALUE);
+        return new HashSet<>(Arrays.asList(StringUtils.split(values, ',')));
     }
 }
@@ -0,0 +1,42 @@
+package org.motechproject.scheduler.web.controller;
+
+import org.motechproject.scheduler.metrics.SchedulerMetricsService;
+import org.motechproject.scheduler.metrics.SchedulerSubjectMetrics;
+import org.motechproject.scheduler.web.domain.SchedulerMetricsRecords;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * SchedulerMetricsController is the Spring Framework Controller, its used by view layer and monitoring for getting
+ * the statistics of the fired jobs, such as how late the jobs of each subject fired in the last minute. The same
+ * statistics are available over JMX.
+ *
+ * @see SchedulerMetricsService
+ * */
+
+@Controller
+public class SchedulerMetricsController {
+    @Autowired
+    private SchedulerMetricsService schedulerMetricsService;
+
+    @RequestMapping({ "/metrics" })
+    @ResponseBody
+    public SchedulerMetricsRecords retrieveMetrics() {
+        List<SchedulerSubjectMetrics> subjects = schedulerMetricsService.getSubjectMetrics();
+        Collections.sort(subjects, new Comparator<SchedulerSubjectMetrics>() {
+            @Override
+            public int compare(SchedulerSubjectMetrics first, SchedulerSubjectMetrics second) {
+                return first.getSubject().compareTo(second.getSubject());
+            }
+        });
+
+        return new SchedulerMetricsRecords(schedulerMetricsService.getFiredCount(),
+                schedulerMetricsService.getFiredCountByInstance(), schedulerMetricsService.getFireLag(), subjects);
+    }
+}
@@ -24,6 +24,14 @@ public class JobsRecords {
         this.rows = new ArrayList<>(allRecords);
     }
 
+    public JobsRecords(Integer page, Integer rows, long records, List<JobBasicInfo> pageRecords) {
+        this.page = page;
+        this.records = (int) Math.min(records, Integer.MAX_VALUE);
+        this.total = (this.records <= rows) ? 1 : (this.records + rows - 1) / rows;
+
+        this.rows = new ArrayList<>(pageRecords);
+    }
+
     public Integer getPage() {
         return page;
     }
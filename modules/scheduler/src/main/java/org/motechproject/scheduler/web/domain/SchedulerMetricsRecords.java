@@ -0,0 +1,47 @@
+package org.motechproject.scheduler.web.domain;
+
+import org.motechproject.event.metrics.LatencyMetrics;
+import org.motechproject.scheduler.metrics.SchedulerSubjectMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SchedulerMetricsRecords is the class which wraps the scheduler statistics for view layer, with the subjects
+ * ordered by name.
+ *
+ * @see org.motechproject.scheduler.metrics.SchedulerMetricsService
+ * */
+
+public class SchedulerMetricsRecords {
+    private long firedCount;
+    private Map<String, Long> firedCountByInstance;
+    private LatencyMetrics fireLag;
+    private List<SchedulerSubjectMetrics> subjects;
+
+    public SchedulerMetricsRecords(long firedCount, Map<String, Long> firedCountByInstance, LatencyMetrics fireLag,
+                                   List<SchedulerSubjectMetrics> subjects) {
+        this.firedCount = firedCount;
+        this.firedCountByInstance = new HashMap<>(firedCountByInstance);
+        this.fireLag = fireLag;
+        this.subjects = new ArrayList<>(subjects);
+    }
+
+    public long getFiredCount() {
+        return firedCount;
+    }
+
+    public Map<String, Long> getFiredCountByInstance() {
+        return firedCountByInstance;
+    }
+
+    public LatencyMetrics getFireLag() {
+        return fireLag;
+    }
+
+    public List<SchedulerSubjectMetrics> getSubjects() {
+        return subjects;
+    }
+}
@@ -1,6 +1,7 @@
 package org.motechproject.scheduler;
 
 import org.joda.time.DateTime;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -8,7 +9,11 @@ import org.motechproject.commons.api.NanoStopWatch;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.scheduler.contract.BulkJobResult;
+import org.motechproject.scheduler.contract.JobId;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
+import org.motechproject.scheduler.contract.RunOnceJobId;
+import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerService;
 import org.motechproject.scheduler.service.impl.MotechSchedulerServiceImpl;
@@ -23,13 +28,18 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.motechproject.commons.date.util.DateUtil.now;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -50,7 +60,13 @@ public class JobStorePerformanceAssessment {
 
     @Before
     public void setup() throws IOException {
-        jdbcSchedulerFactoryBean = new MotechSchedulerFactoryBean(applicationContext, new Properties());
+        jdbcSchedulerFactoryBean = new MotechSchedulerFactoryBean(applicationContext, jdbcSettingsFacade.getProperties("quartz-jdbc.properties"));
+        jdbcSchedulerFactoryBean.init();
+    }
+
+    @After
+    public void tearDown() {
+        jdbcSchedulerFactoryBean.shutdown();
     }
 
     @Test
@@ -58,6 +74,132 @@ public class JobStorePerformanceAssessment {
         scheduleJobs(jdbcSchedulerFactoryBean, jdbcSettingsFacade);
     }
 
+    /**
+     * Compares the throughput of scheduling and unscheduling jobs one by one with the bulk operations. Scheduling
+     * one by one is only measured up to 10k jobs, as 100k jobs take too long that way.
+     */
+    @Test
+    public void bulkSchedulingThroughputInJdbcStore() throws Exception {
+        Scheduler scheduler = jdbcSchedulerFactoryBean.getQuartzScheduler();
+        scheduler.standby();
+        MotechSchedulerServiceImpl schedulerService = new MotechSchedulerServiceImpl(jdbcSchedulerFactoryBean, jdbcSettingsFacade);
+
+        for (int jobCount : new int[]{1000, 10000, 100000}) {
+            List<RunOnceSchedulableJob> jobs = createRunOnceJobs(jobCount);
+            List<JobId> jobIds = new ArrayList<>(jobCount);
+            for (RunOnceSchedulableJob job : jobs) {
+                jobIds.add(new RunOnceJobId(job.getMotechEvent()));
+            }
+
+            if (jobCount <= 10000) {
+                scheduler.clear();
+                NanoStopWatch timeToSchedule = new NanoStopWatch().start();
+                for (RunOnceSchedulableJob job : jobs) {
+                    schedulerService.scheduleRunOnceJob(job);
+                }
+                printThroughput("Scheduling one by one", jobCount, timeToSchedule.duration());
+
+                NanoStopWatch timeToUnschedule = new NanoStopWatch().start();
+                for (JobId jobId : jobIds) {
+                    schedulerService.unscheduleJob(jobId);
+                }
+                printThroughput("Unscheduling one by one", jobCount, timeToUnschedule.duration());
+            }
+
+            scheduler.clear();
+            NanoStopWatch timeToSchedule = new NanoStopWatch().start();
+            BulkJobResult scheduled = schedulerService.scheduleJobs(jobs);
+            printThroughput("Scheduling in bulk", jobCount, timeToSchedule.duration());
+            assertTrue(scheduled.isSuccessful());
+            assertEquals(jobCount, scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals("default")).size());
+
+            NanoStopWatch timeToUnschedule = new NanoStopWatch().start();
+            BulkJobResult unscheduled = schedulerService.unscheduleJobs(jobIds);
+            printThroughput("Unscheduling in bulk", jobCount, timeToUnschedule.duration());
+            assertTrue(unscheduled.isSuccessful());
+            assertEquals(0, scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals("default")).size());
+        }
+    }
+
+    /**
+     * Compares the rate at which jobs are fired when they are stored in the database with the rate when they are
+     * kept in memory by the hybrid job store. Both are measured with 50k other triggers scheduled in the same store.
+     */
+    @Test
+    public void firingThroughputInHybridStore() throws Exception {
+        jdbcSchedulerFactoryBean.shutdown();
+        Properties hybridProperties = new Properties();
+        hybridProperties.putAll(jdbcSettingsFacade.getProperties("quartz-jdbc.properties"));
+        hybridProperties.setProperty("scheduler.jobStore.hybrid", "true");
+        jdbcSchedulerFactoryBean = new MotechSchedulerFactoryBean(applicationContext, hybridProperties);
+        jdbcSchedulerFactoryBean.init();
+
+        Scheduler scheduler = jdbcSchedulerFactoryBean.getQuartzScheduler();
+        MotechSchedulerServiceImpl schedulerService = new MotechSchedulerServiceImpl(jdbcSchedulerFactoryBean, jdbcSettingsFacade);
+        int activeCount = 50000;
+        int firedCount = 5000;
+
+        for (boolean inMemory : new boolean[]{false, true}) {
+            scheduler.standby();
+            scheduler.clear();
+            assertTrue(schedulerService.scheduleJobs(createRunOnceJobs(activeCount, inMemory)).isSuccessful());
+
+            final CountDownLatch fired = new CountDownLatch(firedCount);
+            eventListenerRegistryService.registerListener(new EventListener() {
+                @Override
+                public void handle(MotechEvent event) {
+                    fired.countDown();
+                }
+
+                @Override
+                public String getIdentifier() {
+                    return "fire_rate_listener";
+                }
+            }, "fire_rate_event");
+
+            try {
+                List<RunOnceSchedulableJob> jobs = new ArrayList<>(firedCount);
+                Date startDate = now().plusSeconds(1).toDate();
+                for (int i = 0; i < firedCount; i++) {
+                    Map<String, Object> params = new HashMap<>();
+                    params.put(MotechSchedulerService.JOB_ID_KEY, "fired_job_" + i);
+                    jobs.add(new RunOnceSchedulableJob(new MotechEvent("fire_rate_event", params), startDate, inMemory));
+                }
+                assertTrue(schedulerService.scheduleJobs(jobs).isSuccessful());
+
+                NanoStopWatch timeToFire = new NanoStopWatch().start();
+                scheduler.start();
+                assertTrue(fired.await(10, TimeUnit.MINUTES));
+                printThroughput(inMemory ? "Firing in memory" : "Firing from database", firedCount, timeToFire.duration());
+            } finally {
+                eventListenerRegistryService.clearListenersForBean("fire_rate_listener");
+            }
+        }
+        scheduler.standby();
+        scheduler.clear();
+    }
+
+    private List<RunOnceSchedulableJob> createRunOnceJobs(int jobCount) {
+        return createRunOnceJobs(jobCount, false);
+    }
+
+    private List<RunOnceSchedulableJob> createRunOnceJobs(int jobCount, boolean inMemory) {
+        Date startDate = now().plusYears(1).toDate();
+        List<RunOnceSchedulableJob> jobs = new ArrayList<>(jobCount);
+        for (int i = 0; i < jobCount; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("foo", "bar");
+            params.put(MotechSchedulerService.JOB_ID_KEY, "bulk_job_" + i);
+            jobs.add(new RunOnceSchedulableJob(new MotechEvent("test_event", params), startDate, inMemory));
+        }
+        return jobs;
+    }
+
+    private void printThroughput(String operation, int jobCount, long nanos) {
+        long millis = Math.max(1, nanos / 1000000L);
+        System.out.println(format("%s %d jobs: %dms, %d jobs/s", operation, jobCount, millis, jobCount * 1000L / millis));
+    }
+
     private void scheduleJobs(MotechSchedulerFactoryBean schedulerFactoryBean, SettingsFacade settings) throws InterruptedException, SchedulerException {
         Scheduler scheduler = schedulerFactoryBean.getQuartzScheduler();
         scheduler.clear();
@@ -0,0 +1,64 @@
+package org.motechproject.scheduler.domain;
+
+import org.junit.Test;
+import org.motechproject.scheduler.contract.JobBasicInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class JobBasicInfoComparatorTest {
+    private JobBasicInfo cronJob = new JobBasicInfo(
+            JobBasicInfo.ACTIVITY_ACTIVE, JobBasicInfo.STATUS_OK, "myCronJobEvent-myJobIdKey_CronJob",
+            "2002-01-01 00:00:00", "2010-01-01 00:00:00", "-", "Cron", "0 0 10 * * ?"
+    );
+
+    private JobBasicInfo dayOfWeekJob = new JobBasicInfo(
+            JobBasicInfo.ACTIVITY_FINISHED, JobBasicInfo.STATUS_PAUSED, "myDayOfWeekEvent-myJobIdKey_DayOfWeek",
+            "2001-01-01 00:00:00", "2010-01-01 00:00:00", "2011-01-01 00:00:00", "Cron", "0 10 12 ? * 4,5"
+    );
+
+    private JobBasicInfo repeatingJob = new JobBasicInfo(
+            JobBasicInfo.ACTIVITY_NOTSTARTED, JobBasicInfo.STATUS_BLOCKED, "myRepeatingJobEvent-myJobIdKey_RepeatingJob-repeat",
+            "2003-01-01 00:00:00", "2010-01-01 00:00:00", "2010-01-01 00:00:00", JobBasicInfo.JOBTYPE_REPEATING, "2 / 12"
+    );
+
+    private JobBasicInfo runOnceJob = new JobBasicInfo(
+            JobBasicInfo.ACTIVITY_NOTSTARTED, JobBasicInfo.STATUS_ERROR, "myRunOnceEvent-myJobIdKey_RunOnce-runonce",
+            "2004-01-01 00:00:00", "2010-01-01 00:00:00", "-", JobBasicInfo.JOBTYPE_RUNONCE, "-"
+    );
+
+    @Test
+    public void shouldSortJobsByStartDate() {
+        List<JobBasicInfo> jobs = getJobs();
+
+        Collections.sort(jobs, new JobBasicInfoComparator(true, "startDate"));
+
+        assertEquals(asList(dayOfWeekJob, cronJob, repeatingJob, runOnceJob), jobs);
+    }
+
+    @Test
+    public void shouldSortJobsByEndDateWithJobsWithoutEndDateLast() {
+        List<JobBasicInfo> jobs = getJobs();
+
+        Collections.sort(jobs, new JobBasicInfoComparator(true, "endDate"));
+
+        assertEquals(asList(repeatingJob, dayOfWeekJob, cronJob, runOnceJob), jobs);
+    }
+
+    @Test
+    public void shouldSortJobsDescending() {
+        List<JobBasicInfo> jobs = getJobs();
+
+        Collections.sort(jobs, new JobBasicInfoComparator(false, "status"));
+
+        assertEquals(asList(dayOfWeekJob, cronJob, runOnceJob, repeatingJob), jobs);
+    }
+
+    private List<JobBasicInfo> getJobs() {
+        return new ArrayList<>(asList(cronJob, dayOfWeekJob, repeatingJob, runOnceJob));
+    }
+}
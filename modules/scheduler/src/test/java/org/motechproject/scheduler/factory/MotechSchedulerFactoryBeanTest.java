@@ -0,0 +1,65 @@
+package org.motechproject.scheduler.factory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.scheduler.service.impl.ElasticThreadPool;
+import org.quartz.SchedulerException;
+import org.quartz.SchedulerMetaData;
+import org.quartz.simpl.RAMJobStore;
+import org.springframework.context.ApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Starts the scheduler through Spring's <code>SchedulerFactoryBean</code> with the shipped quartz.properties, the
+ * job store aside, as the test resources hold a quartz.properties of their own.
+ */
+public class MotechSchedulerFactoryBeanTest {
+
+    MotechSchedulerFactoryBean schedulerFactoryBean;
+
+    @Before
+    public void setUp() throws IOException {
+        Properties properties = new Properties();
+        URL classes = ElasticThreadPool.class.getProtectionDomain().getCodeSource().getLocation();
+        try (InputStream in = new URL(classes, "quartz.properties").openStream()) {
+            properties.load(in);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("org.quartz.jobStore.") || name.startsWith("org.quartz.dataSource.")) {
+                properties.remove(name);
+            }
+        }
+        properties.setProperty("org.quartz.jobStore.class", RAMJobStore.class.getName());
+        properties.setProperty("org.quartz.scheduler.instanceName", "MotechSchedulerFactoryBeanTest");
+
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getClassLoader()).thenReturn(getClass().getClassLoader());
+        schedulerFactoryBean = new MotechSchedulerFactoryBean(applicationContext, properties);
+    }
+
+    @After
+    public void tearDown() {
+        schedulerFactoryBean.shutdown();
+    }
+
+    @Test
+    public void shouldStartSchedulerWithElasticThreadPoolOfShippedConfiguration() throws SchedulerException {
+        schedulerFactoryBean.init();
+
+        SchedulerMetaData metaData = schedulerFactoryBean.getQuartzScheduler().getMetaData();
+        assertTrue(metaData.isStarted());
+        assertEquals(ElasticThreadPool.class, metaData.getThreadPoolClass());
+        // the maximum thread count of quartz.properties, not the thread count Spring adds
+        assertEquals(20, metaData.getThreadPoolSize());
+    }
+}
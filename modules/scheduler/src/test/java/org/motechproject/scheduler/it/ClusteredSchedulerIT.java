@@ -0,0 +1,300 @@
+package org.motechproject.scheduler.it;
+
+import org.h2.tools.RunScript;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.metrics.impl.SchedulerMetricsRegistry;
+import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.motechproject.scheduler.service.impl.MotechScheduledJob;
+import org.motechproject.scheduler.service.impl.MotechSchedulerServiceImpl;
+import org.motechproject.scheduler.service.impl.ScheduledEventPublisher;
+import org.motechproject.server.config.SettingsFacade;
+import org.quartz.SchedulerException;
+import org.quartz.utils.ConnectionProvider;
+import org.springframework.context.ApplicationContext;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.motechproject.commons.date.util.DateUtil.now;
+
+/**
+ * Runs two clustered scheduler nodes against an embedded database and checks that every job fires exactly once,
+ * also when one of the nodes goes down before running its jobs. Jobs running on a node which dies are fired again
+ * by the other node, so their events are delivered at least once.
+ */
+public class ClusteredSchedulerIT {
+
+    private static final String DATABASE_URL = "jdbc:h2:mem:clusteredSchedulerIT;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000";
+    private static final String SCHEMA = "sql/create_db_schema_quartz_v2.1.sql";
+    private static final String SUBJECT = "cluster_event";
+    private static final String TEST_JOB_KEY = "clusterTestJob";
+    private static final int THREAD_COUNT = 5;
+
+    private MotechSchedulerFactoryBean firstNode;
+    private MotechSchedulerFactoryBean secondNode;
+    private SchedulerMetricsRegistry firstNodeMetrics = new SchedulerMetricsRegistry();
+    private SchedulerMetricsRegistry secondNodeMetrics = new SchedulerMetricsRegistry();
+    private ApplicationContext applicationContext;
+    private final CountDownLatch deadNodeReleased = new CountDownLatch(1);
+
+    private final Map<String, Integer> fireCounts = new HashMap<>();
+    private final Map<String, Integer> recoveredFireCounts = new HashMap<>();
+
+    /**
+     * Creates the shipped MySQL schema. Its flags, written as '0' and '1' by MySQL, are booleans in H2.
+     */
+    @BeforeClass
+    public static void createSchema() throws SQLException, IOException {
+        String schema = new String(Files.readAllBytes(Paths.get(SCHEMA)), StandardCharsets.UTF_8).replace("VARCHAR(1)", "BOOLEAN");
+        try (Connection connection = DriverManager.getConnection(DATABASE_URL)) {
+            RunScript.execute(connection, new StringReader(schema));
+        }
+    }
+
+    @Before
+    public void setUp() throws SchedulerException {
+        applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getClassLoader()).thenReturn(getClass().getClassLoader());
+
+        firstNode = startNode("node1", firstNodeMetrics);
+        secondNode = startNode("node2", secondNodeMetrics);
+        firstNode.getQuartzScheduler().clear();
+    }
+
+    @After
+    public void tearDown() throws SchedulerException {
+        deadNodeReleased.countDown();
+        try {
+            secondNode.getQuartzScheduler().clear();
+        } finally {
+            firstNode.shutdown();
+            secondNode.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldFireEveryJobOnceOnOneOfTheNodes() throws InterruptedException {
+        int jobCount = 100;
+        scheduleJobs(firstNode, "job", jobCount, 3);
+
+        waitForFires(jobCount);
+
+        assertFiredOnce("job", jobCount);
+        assertEquals(jobCount, firstNodeMetrics.getFiredCount() + secondNodeMetrics.getFiredCount());
+        assertEquals(firstNodeMetrics.getFiredCount(), (long) firstNodeMetrics.getFiredCountByInstance().get("node1"));
+        assertEquals(secondNodeMetrics.getFiredCount(), (long) secondNodeMetrics.getFiredCountByInstance().get("node2"));
+    }
+
+    @Test
+    public void shouldFireJobsOfStoppedNodeOnOtherNode() throws InterruptedException, SchedulerException {
+        int jobCount = 50;
+        scheduleJobs(firstNode, "failover_job", jobCount, 5);
+        firstNode.getQuartzScheduler().shutdown(false);
+
+        waitForFires(jobCount);
+
+        assertFiredOnce("failover_job", jobCount);
+        assertEquals(0, firstNodeMetrics.getFiredCount());
+        assertEquals(jobCount, secondNodeMetrics.getFiredCount());
+    }
+
+    @Test
+    public void shouldRecoverJobsRunningOnNodeWhichDiesBeforePublishing() throws InterruptedException, SchedulerException {
+        int jobCount = 20;
+        killFirstNodeWhileRunningJobs("recovery_job", jobCount, false);
+
+        waitForFires(jobCount);
+
+        assertFiredOnce("recovery_job", jobCount);
+        assertEquals(0, firstNodeMetrics.getFiredCount());
+        assertEquals(jobCount, secondNodeMetrics.getFiredCount());
+        // the jobs running on the dead node, which had not published anything yet
+        assertEquals(THREAD_COUNT, recoveredFireCounts.size());
+    }
+
+    @Test
+    public void shouldPublishAgainEventsOfJobsWhoseNodeDiedAfterPublishing() throws InterruptedException, SchedulerException {
+        int jobCount = 20;
+        killFirstNodeWhileRunningJobs("published_job", jobCount, true);
+
+        waitForFires(jobCount + THREAD_COUNT);
+
+        synchronized (fireCounts) {
+            assertEquals(jobCount, fireCounts.size());
+            assertEquals(THREAD_COUNT, recoveredFireCounts.size());
+            for (Map.Entry<String, Integer> fireCount : fireCounts.entrySet()) {
+                // published by the dead node, and again by the node which recovered it
+                int expected = recoveredFireCounts.containsKey(fireCount.getKey()) ? 2 : 1;
+                assertEquals("Job " + fireCount.getKey() + " fired wrong number of times", Integer.valueOf(expected), fireCount.getValue());
+            }
+        }
+        assertEquals(jobCount, secondNodeMetrics.getFiredCount());
+    }
+
+    /**
+     * Lets the first node take all the jobs, and stops it while its jobs hang publishing their events, as if the
+     * node froze mid-execution. It stops checking in with its jobs still running and the rest of its triggers
+     * acquired.
+     */
+    private void killFirstNodeWhileRunningJobs(String jobIdPrefix, int jobCount, final boolean published)
+            throws SchedulerException, InterruptedException {
+        final CountDownLatch executing = new CountDownLatch(THREAD_COUNT);
+        firstNode.getQuartzScheduler().getContext().put(MotechScheduledJob.EVENT_PUBLISHER_KEY,
+                new ScheduledEventPublisher(applicationContext) {
+                    @Override
+                    public void publish(MotechEvent motechEvent) {
+                        if (published) {
+                            countFire(motechEvent);
+                        }
+                        executing.countDown();
+                        // a frozen node does not complete its jobs, not even when its thread pool interrupts them
+                        while (true) {
+                            try {
+                                deadNodeReleased.await();
+                                throw new IllegalStateException("The node is dead");
+                            } catch (InterruptedException e) {
+                                continue;
+                            }
+                        }
+                    }
+                });
+        secondNode.getQuartzScheduler().standby();
+
+        scheduleJobs(firstNode, jobIdPrefix, jobCount, 3);
+        assertTrue(executing.await(30, TimeUnit.SECONDS));
+        firstNode.getQuartzScheduler().shutdown(false);
+        secondNode.getQuartzScheduler().start();
+    }
+
+    private MotechSchedulerFactoryBean startNode(String instanceId, SchedulerMetricsRegistry metrics) throws SchedulerException {
+        String dataSource = instanceId + "DS";
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "MotechClusterIT");
+        properties.setProperty("org.quartz.scheduler.instanceId", instanceId);
+        properties.setProperty("org.quartz.scheduler.idleWaitTime", "1000");
+        properties.setProperty("org.quartz.threadPool.class", "org.motechproject.scheduler.service.impl.ElasticThreadPool");
+        properties.setProperty("org.quartz.threadPool.maxThreadCount", String.valueOf(THREAD_COUNT));
+        properties.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "10");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.impl.jdbcjobstore.JobStoreTX");
+        properties.setProperty("org.quartz.jobStore.driverDelegateClass", "org.quartz.impl.jdbcjobstore.StdJDBCDelegate");
+        properties.setProperty("org.quartz.jobStore.tablePrefix", "QRTZ_");
+        properties.setProperty("org.quartz.jobStore.dataSource", dataSource);
+        properties.setProperty("org.quartz.jobStore.isClustered", "true");
+        properties.setProperty("org.quartz.jobStore.clusterCheckinInterval", "1000");
+        properties.setProperty("org.quartz.dataSource." + dataSource + ".connectionProvider.class", EmbeddedConnectionProvider.class.getName());
+        properties.setProperty("org.quartz.dataSource." + dataSource + ".URL", DATABASE_URL);
+        properties.setProperty("scheduler.jobStore.hybrid", "false");
+
+        MotechSchedulerFactoryBean node = new MotechSchedulerFactoryBean(applicationContext, properties);
+        node.setSchedulerMetricsRegistry(metrics);
+        node.init();
+        node.getQuartzScheduler().getContext().put(MotechScheduledJob.EVENT_PUBLISHER_KEY,
+                new ScheduledEventPublisher(applicationContext) {
+                    @Override
+                    public void publish(MotechEvent motechEvent) {
+                        countFire(motechEvent);
+                    }
+                });
+        return node;
+    }
+
+    private void countFire(MotechEvent event) {
+        String jobId = (String) event.getParameters().get(TEST_JOB_KEY);
+        synchronized (fireCounts) {
+            increment(fireCounts, jobId);
+            if (Boolean.TRUE.equals(event.getParameters().get(MotechSchedulerService.RECOVERED_KEY))) {
+                increment(recoveredFireCounts, jobId);
+            }
+            fireCounts.notifyAll();
+        }
+    }
+
+    private void increment(Map<String, Integer> counts, String jobId) {
+        Integer count = counts.get(jobId);
+        counts.put(jobId, (count == null) ? 1 : count + 1);
+    }
+
+    private void scheduleJobs(MotechSchedulerFactoryBean node, String jobIdPrefix, int jobCount, int delaySeconds) {
+        Date startDate = now().plusSeconds(delaySeconds).toDate();
+        List<RunOnceSchedulableJob> jobs = new ArrayList<>(jobCount);
+        for (int i = 0; i < jobCount; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, jobIdPrefix + i);
+            params.put(TEST_JOB_KEY, jobIdPrefix + i);
+            jobs.add(new RunOnceSchedulableJob(new MotechEvent(SUBJECT, params), startDate));
+        }
+        assertTrue(new MotechSchedulerServiceImpl(node, mock(SettingsFacade.class)).scheduleJobs(jobs).isSuccessful());
+    }
+
+    private void waitForFires(int fireCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60000;
+        synchronized (fireCounts) {
+            while (totalFires() < fireCount && System.currentTimeMillis() < deadline) {
+                fireCounts.wait(1000);
+            }
+        }
+        // give duplicate fires a chance to show up
+        Thread.sleep(3000);
+    }
+
+    private int totalFires() {
+        int total = 0;
+        for (Integer count : fireCounts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    private void assertFiredOnce(String jobIdPrefix, int jobCount) {
+        synchronized (fireCounts) {
+            assertEquals(jobCount, fireCounts.size());
+            for (int i = 0; i < jobCount; i++) {
+                assertEquals("Job " + jobIdPrefix + i + " fired wrong number of times", Integer.valueOf(1), fireCounts.get(jobIdPrefix + i));
+            }
+        }
+    }
+
+    /**
+     * Connects every node to the embedded database, which needs no connection pool.
+     */
+    public static class EmbeddedConnectionProvider implements ConnectionProvider {
+        private String url;
+
+        public void setURL(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return DriverManager.getConnection(url);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -11,12 +11,17 @@ import org.motechproject.commons.date.model.Time;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.scheduler.contract.BulkJobResult;
+import org.motechproject.scheduler.contract.CronJobId;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
+import org.motechproject.scheduler.contract.JobsSearchResult;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerService;
@@ -38,6 +43,7 @@ import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +58,7 @@ import static org.motechproject.commons.date.util.DateUtil.now;
 import static org.motechproject.scheduler.IdGenerator.id;
 import static org.motechproject.scheduler.TimeFaker.fakeNow;
 import static org.motechproject.scheduler.TimeFaker.stopFakingTime;
+import static org.quartz.JobKey.jobKey;
 import static org.quartz.TriggerKey.triggerKey;
 
 @RunWith(PaxExam.class)
@@ -520,6 +527,24 @@ public class MotechSchedulerServiceImplIT extends BasePaxIT {
         assertNull(scheduler.getTrigger(triggerKey("test_event3-job_id", "default")));
     }
 
+    @Test
+    public void shouldOnlyUnscheduleJobsStartingWithTheGivenJobIdPrefix() throws SchedulerException {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, "job_id");
+
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event_2", params), "0 0 12 * * ?"));
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("x_test_event_2", params), "0 0 13 * * ?"));
+
+        try {
+            schedulerService.unscheduleAllJobs("test_event_2");
+
+            assertNull(scheduler.getTrigger(triggerKey("test_event_2-job_id", "default")));
+            assertNotNull(scheduler.getTrigger(triggerKey("x_test_event_2-job_id", "default")));
+        } finally {
+            schedulerService.unscheduleAllJobs("x_test_event_2");
+        }
+    }
+
     @Test
     public void shouldGetJobTimes() {
         try {
@@ -631,6 +656,32 @@ public class MotechSchedulerServiceImplIT extends BasePaxIT {
         }
     }
 
+    @Test
+    public void shouldSearchScheduledJobsBasicInfoPage() throws SchedulerException {
+        for (int i = 0; i < 5; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "job_id_" + i);
+            schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event_2", params), "0 0 12 * * ?"));
+        }
+        scheduler.pauseJob(jobKey("test_event_2-job_id_0", "default"));
+
+        JobsSearchSettings jobsSearchSettings = new JobsSearchSettings();
+        jobsSearchSettings.setName("test_event_2-job_id_");
+        jobsSearchSettings.setStatuses(new HashSet<>(asList(JobBasicInfo.STATUS_OK)));
+        jobsSearchSettings.setSortColumn("name");
+        jobsSearchSettings.setAscending(false);
+        jobsSearchSettings.setPage(2);
+        jobsSearchSettings.setPageSize(3);
+
+        JobsSearchResult jobsSearchResult = schedulerService.getScheduledJobsBasicInfo(jobsSearchSettings);
+
+        assertEquals(4, jobsSearchResult.getTotal());
+        assertEquals(1, jobsSearchResult.getRows().size());
+        assertEquals("test_event_2-job_id_1", jobsSearchResult.getRows().get(0).getName());
+        assertEquals(JobBasicInfo.JOBTYPE_CRON, jobsSearchResult.getRows().get(0).getJobType());
+        assertEquals("0 0 12 * * ?", jobsSearchResult.getRows().get(0).getInfo());
+    }
+
     @Test
     public void shouldGetScheduledJobDetailedInfo() {
         try {
@@ -662,6 +713,70 @@ public class MotechSchedulerServiceImplIT extends BasePaxIT {
         }
     }
 
+    @Test
+    public void shouldScheduleJobsOfAllKindsInBulk() throws SchedulerException {
+        DateTime tomorrow = now().plusDays(1);
+
+        List<SchedulableJob> jobs = new ArrayList<>();
+        jobs.add(new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_cron")), "0 0 10 * * ?"));
+        jobs.add(new RepeatingSchedulableJob(new MotechEvent("test_event", jobParams("bulk_repeating")),
+                tomorrow.toDate(), null, 3, (long) DateTimeConstants.MILLIS_PER_DAY, false));
+        jobs.add(new RunOnceSchedulableJob(new MotechEvent("test_event", jobParams("bulk_runonce")), tomorrow.toDate()));
+        jobs.add(new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_invalid")), "invalid cron"));
+
+        BulkJobResult result = schedulerService.scheduleJobs(jobs);
+
+        assertEquals(3, result.getSucceeded().size());
+        assertEquals(1, result.getFailures().size());
+        assertNotNull(scheduler.getTrigger(triggerKey("test_event-bulk_cron", "default")));
+        assertNotNull(scheduler.getTrigger(triggerKey("test_event-bulk_repeating-repeat", "default")));
+        assertNotNull(scheduler.getTrigger(triggerKey("test_event-bulk_runonce-runonce", "default")));
+        assertNull(scheduler.getTrigger(triggerKey("test_event-bulk_invalid", "default")));
+    }
+
+    @Test
+    public void shouldReplaceExistingJobsWhenSchedulingInBulk() throws SchedulerException {
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_replaced")), "0 0 10 * * ?"));
+        schedulerService.scheduleJobs(asList(
+                new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_replaced")), "0 0 12 * * ?")));
+
+        assertEquals(12, getFireTimes("test_event-bulk_replaced").get(0).getHourOfDay());
+    }
+
+    @Test
+    public void shouldOnlyWriteChangedJobsWhenReschedulingInBulk() throws SchedulerException {
+        schedulerService.scheduleJobs(asList(
+                new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_unchanged")), "0 0 10 * * ?"),
+                new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_rescheduled")), "0 0 10 * * ?")));
+
+        BulkJobResult result = schedulerService.rescheduleJobs(asList(
+                new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_unchanged")), "0 0 10 * * ?"),
+                new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_rescheduled")), "0 0 12 * * ?")));
+
+        assertEquals(asList("test_event-bulk_unchanged"), result.getUnchanged());
+        assertEquals(asList("test_event-bulk_rescheduled"), result.getSucceeded());
+        assertEquals(10, getFireTimes("test_event-bulk_unchanged").get(0).getHourOfDay());
+        assertEquals(12, getFireTimes("test_event-bulk_rescheduled").get(0).getHourOfDay());
+    }
+
+    @Test
+    public void shouldUnscheduleJobsInBulk() throws SchedulerException {
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_first")), "0 0 10 * * ?"));
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event", jobParams("bulk_second")), "0 0 10 * * ?"));
+
+        BulkJobResult result = schedulerService.unscheduleJobs(asList(
+                new CronJobId("test_event", "bulk_first"), new CronJobId("test_event", "bulk_second")));
+
+        assertTrue(result.isSuccessful());
+        assertNull(scheduler.getTrigger(triggerKey("test_event-bulk_first", "default")));
+        assertNull(scheduler.getTrigger(triggerKey("test_event-bulk_second", "default")));
+    }
+
+    private Map<String, Object> jobParams(String jobId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, jobId);
+        return params;
+    }
 
     private List<DateTime> getFireTimes(String triggerKey) throws SchedulerException {
         Trigger trigger = scheduler.getTrigger(triggerKey(triggerKey, "default"));
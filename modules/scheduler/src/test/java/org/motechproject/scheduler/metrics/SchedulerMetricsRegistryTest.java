@@ -0,0 +1,115 @@
+package org.motechproject.scheduler.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.scheduler.metrics.impl.SchedulerMetricsRegistry;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SchedulerMetricsRegistryTest {
+
+    private SchedulerMetricsRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new SchedulerMetricsRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        registry.unregisterMBean();
+    }
+
+    @Test
+    public void shouldRecordFireLagAndExecutionsPerSubject() {
+        for (int lag = 1; lag <= 100; lag++) {
+            registry.recordFired("node", "subject", 1000, 1000 + lag);
+        }
+        registry.recordExecution("subject", TimeUnit.MILLISECONDS.toNanos(3), false);
+        registry.recordExecution("subject", TimeUnit.MILLISECONDS.toNanos(20000), true);
+        registry.recordFired("node", "other.subject", 1000, 900);
+
+        Map<String, SchedulerSubjectMetrics> metrics = bySubject(registry.getSubjectMetrics());
+
+        assertEquals(101, registry.getFiredCount());
+        SchedulerSubjectMetrics subject = metrics.get("subject");
+        assertEquals(100, subject.getFiredCount());
+        assertEquals(1, subject.getFailureCount());
+        assertEquals(100, subject.getFireLag().getMaxMillis());
+        assertEquals(2, subject.getExecutionTime().getCount());
+
+        PercentileMetrics recentLag = subject.getRecentFireLag();
+        assertEquals(60, recentLag.getWindowSeconds());
+        assertEquals(100, recentLag.getCount());
+        assertInRange(50, recentLag.getP50Millis());
+        assertInRange(90, recentLag.getP90Millis());
+        assertInRange(99, recentLag.getP99Millis());
+        assertEquals(100, recentLag.getMaxMillis());
+        assertEquals(20000, subject.getRecentExecutionTime().getMaxMillis());
+
+        assertEquals(0, metrics.get("other.subject").getFireLag().getMaxMillis());
+    }
+
+    @Test
+    public void shouldAttributeMisfiresToLongestKnownSubject() {
+        registry.recordFired("node", "campaign", 0, 0);
+        registry.recordFired("node", "campaign-reminder", 0, 0);
+
+        registry.recordMisfire("campaign-reminder-patient1-runonce");
+        registry.recordMisfire("campaign-patient2");
+        registry.recordMisfire("unknown-patient3");
+
+        Map<String, SchedulerSubjectMetrics> metrics = bySubject(registry.getSubjectMetrics());
+
+        assertEquals(1, metrics.get("campaign-reminder").getMisfireCount());
+        assertEquals(1, metrics.get("campaign").getMisfireCount());
+        assertEquals(1, metrics.get("unknown").getMisfireCount());
+    }
+
+    @Test
+    public void shouldClearMetricsOnReset() {
+        registry.recordFired("node", "subject", 0, 10);
+
+        registry.reset();
+
+        assertEquals(0, registry.getFiredCount());
+        assertTrue(registry.getSubjectMetrics().isEmpty());
+    }
+
+    @Test
+    public void shouldExposeSubjectMetricsOverJmx() throws Exception {
+        registry.registerMBean();
+        registry.recordFired("node", "subject", 0, 10);
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        CompositeData[] subjects = (CompositeData[]) mBeanServer.getAttribute(
+                new ObjectName(SchedulerMetricsService.OBJECT_NAME), "SubjectMetrics");
+
+        assertEquals(1, subjects.length);
+        assertEquals("subject", subjects[0].get("subject"));
+        assertEquals(10L, ((CompositeData) subjects[0].get("recentFireLag")).get("maxMillis"));
+    }
+
+    private void assertInRange(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, actual >= expected && actual <= expected * 5 / 4);
+    }
+
+    private Map<String, SchedulerSubjectMetrics> bySubject(List<SchedulerSubjectMetrics> metrics) {
+        Map<String, SchedulerSubjectMetrics> bySubject = new HashMap<>();
+        for (SchedulerSubjectMetrics subjectMetrics : metrics) {
+            bySubject.put(subjectMetrics.getSubject(), subjectMetrics);
+        }
+        return bySubject;
+    }
+}
@@ -0,0 +1,102 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticThreadPoolTest {
+
+    ElasticThreadPool threadPool;
+
+    @Before
+    public void setUp() throws Exception {
+        threadPool = new ElasticThreadPool();
+        threadPool.setMinThreadCount(1);
+        threadPool.setMaxThreadCount(3);
+        threadPool.setKeepAliveSeconds(1);
+        threadPool.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        threadPool.shutdown(false);
+    }
+
+    @Test
+    public void shouldGrowUpToMaxThreadCountAndShrinkWhenIdle() throws InterruptedException {
+        assertEquals(1, threadPool.getCurrentPoolSize());
+        assertEquals(3, threadPool.blockForAvailableThreads());
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(threadPool.runInThread(new BlockingJob(started, release)));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(3, threadPool.getCurrentPoolSize());
+        assertEquals(3, threadPool.getBusyCount());
+
+        release.countDown();
+        for (int i = 0; i < 50 && threadPool.getBusyCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(3, threadPool.blockForAvailableThreads());
+
+        for (int i = 0; i < 50 && threadPool.getCurrentPoolSize() > 1; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, threadPool.getCurrentPoolSize());
+    }
+
+    @Test
+    public void shouldRunJobsOnFreedThreadsWhenAllThreadsAreBusy() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            threadPool.runInThread(new BlockingJob(started, release));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        CountDownLatch finished = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(threadPool.runInThread(new BlockingJob(finished, new CountDownLatch(0))));
+        }
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(threadPool.getCurrentPoolSize() <= 3);
+    }
+
+    @Test
+    public void shouldNotRunJobsAfterShutdown() {
+        threadPool.shutdown(true);
+
+        assertFalse(threadPool.runInThread(new BlockingJob(new CountDownLatch(1), new CountDownLatch(0))));
+    }
+
+    private static class BlockingJob implements Runnable {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingJob(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
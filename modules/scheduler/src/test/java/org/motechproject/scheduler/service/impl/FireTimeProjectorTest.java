@@ -0,0 +1,151 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.scheduler.contract.FireTimeProjection;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerContext;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.OperableTrigger;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.quartz.CronScheduleBuilder.cronSchedule;
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+public class FireTimeProjectorTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final Date START = new Date(1400000000000L / HOUR * HOUR);
+    private static final Date END = new Date(START.getTime() + 4 * HOUR - 1);
+
+    Scheduler scheduler;
+    TriggerKeyFinder triggerKeyFinder;
+    Set<TriggerKey> triggerKeys = new HashSet<>();
+
+    @Before
+    public void setUp() throws SchedulerException {
+        scheduler = mock(Scheduler.class);
+        triggerKeyFinder = mock(TriggerKeyFinder.class);
+        when(triggerKeyFinder.isJdbcStore()).thenReturn(false);
+        when(scheduler.getTriggerKeys(any(GroupMatcher.class))).thenReturn(triggerKeys);
+    }
+
+    @Test
+    public void shouldCountFiresOfRepeatingJobsPerSubjectAndBucket() throws SchedulerException {
+        // every 15 minutes from the start, 16 fires in the period
+        addTrigger(newTrigger().withIdentity("sms-1-repeat", "default").startAt(START)
+                .withSchedule(simpleSchedule().withIntervalInMinutes(15).repeatForever()).build());
+        // 3 fires in total, starting half an hour in
+        addTrigger(newTrigger().withIdentity("sms-2-repeat", "default").startAt(new Date(START.getTime() + HOUR / 2))
+                .withSchedule(simpleSchedule().withIntervalInHours(1).withRepeatCount(2)).build());
+        // fires once, after the period
+        addTrigger(newTrigger().withIdentity("call-1-runonce", "default").startAt(new Date(END.getTime() + 1)).build());
+
+        FireTimeProjection projection = new FireTimeProjector(scheduler, triggerKeyFinder, 2, 2)
+                .project("default", Collections.<String>emptyList(), START, END, HOUR);
+
+        assertEquals(4, projection.getBucketCount());
+        assertArrayEquals(new long[]{5, 5, 5, 4}, projection.getCounts("sms"));
+        assertEquals(0, projection.getTotal("call"));
+        assertEquals(19, projection.getTotal());
+    }
+
+    @Test
+    public void shouldCountFiresOfCronJobsForGivenSubjectsOnly() throws SchedulerException {
+        addTrigger(newTrigger().withIdentity("sms.reminder-1", "default").startAt(START)
+                .withSchedule(cronSchedule("0 0/30 * * * ?")).build());
+        addTrigger(newTrigger().withIdentity("sms-1", "default").startAt(START)
+                .withSchedule(cronSchedule("0 0 * * * ?")).build());
+        addTrigger(newTrigger().withIdentity("call-1", "default").startAt(START)
+                .withSchedule(cronSchedule("0 0 * * * ?")).build());
+
+        FireTimeProjection projection = new FireTimeProjector(scheduler, triggerKeyFinder, 10, 1)
+                .project("default", Arrays.asList("sms", "sms.reminder"), START, END, 2 * HOUR);
+
+        assertEquals(new HashSet<>(Arrays.asList("sms", "sms.reminder")), projection.getSubjects());
+        assertArrayEquals(new long[]{4, 4}, projection.getCounts("sms.reminder"));
+        assertArrayEquals(new long[]{2, 2}, projection.getCounts("sms"));
+    }
+
+    @Test
+    public void shouldReadStoredTriggersPageByPageWithoutLoadingThemOneByOne() throws Exception {
+        Trigger runOnce = storedTrigger(newTrigger().withIdentity("call-1-runonce", "default")
+                .startAt(new Date(END.getTime() + 1)).build());
+        Trigger everyQuarter = storedTrigger(newTrigger().withIdentity("sms-1-repeat", "default").startAt(START)
+                .withSchedule(simpleSchedule().withIntervalInMinutes(15).repeatForever()).build());
+        Trigger hourly = storedTrigger(newTrigger().withIdentity("sms-2-repeat", "default").startAt(new Date(START.getTime() + HOUR / 2))
+                .withSchedule(simpleSchedule().withIntervalInHours(1).withRepeatCount(2)).build());
+        when(triggerKeyFinder.isJdbcStore()).thenReturn(true);
+        when(triggerKeyFinder.findTriggerPage("default", "", 2)).thenReturn(Arrays.asList(runOnce, everyQuarter));
+        when(triggerKeyFinder.findTriggerPage("default", "sms-1-repeat", 2)).thenReturn(Arrays.asList(hourly));
+        when(scheduler.getContext()).thenReturn(new SchedulerContext());
+
+        FireTimeProjection projection = new FireTimeProjector(scheduler, triggerKeyFinder, 2, 2)
+                .project("default", Collections.<String>emptyList(), START, END, HOUR);
+
+        assertArrayEquals(new long[]{5, 5, 5, 4}, projection.getCounts("sms"));
+        assertEquals(19, projection.getTotal());
+        verify(triggerKeyFinder, times(2)).findTriggerPage(anyString(), anyString(), anyInt());
+        verify(scheduler, never()).getTrigger(any(TriggerKey.class));
+    }
+
+    @Test
+    public void shouldReadAllPagesWhenLastPageIsFull() throws Exception {
+        Trigger first = storedTrigger(newTrigger().withIdentity("sms-1", "default").startAt(START).build());
+        Trigger second = storedTrigger(newTrigger().withIdentity("sms-2", "default").startAt(START).build());
+        when(triggerKeyFinder.isJdbcStore()).thenReturn(true);
+        when(triggerKeyFinder.findTriggerPage("default", "", 2)).thenReturn(Arrays.asList(first, second));
+        when(triggerKeyFinder.findTriggerPage("default", "sms-2", 2)).thenReturn(Collections.<Trigger>emptyList());
+        when(scheduler.getContext()).thenReturn(new SchedulerContext());
+
+        FireTimeProjection projection = new FireTimeProjector(scheduler, triggerKeyFinder, 2, 1)
+                .project("default", Collections.<String>emptyList(), START, END, HOUR);
+
+        assertArrayEquals(new long[]{2, 0, 0, 0}, projection.getCounts("sms"));
+        verify(triggerKeyFinder).findTriggerPage("default", "sms-2", 2);
+    }
+
+    @Test
+    public void shouldListTriggersWhenFirstPageCanNotBeRead() throws Exception {
+        addTrigger(newTrigger().withIdentity("sms-1", "default").startAt(START).build());
+        when(triggerKeyFinder.isJdbcStore()).thenReturn(true);
+        when(triggerKeyFinder.findTriggerPage("default", "", 2)).thenThrow(new SQLException("no such table"));
+
+        FireTimeProjection projection = new FireTimeProjector(scheduler, triggerKeyFinder, 2, 1)
+                .project("default", Collections.<String>emptyList(), START, END, HOUR);
+
+        assertEquals(1, projection.getTotal("sms"));
+    }
+
+    private Trigger storedTrigger(Trigger trigger) {
+        ((OperableTrigger) trigger).computeFirstFireTime(null);
+        return trigger;
+    }
+
+    private void addTrigger(Trigger trigger) throws SchedulerException {
+        // triggers loaded from the job store have their first fire time computed
+        ((OperableTrigger) trigger).computeFirstFireTime(null);
+        triggerKeys.add(trigger.getKey());
+        when(scheduler.getTrigger(trigger.getKey())).thenReturn(trigger);
+    }
+}
@@ -0,0 +1,312 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.scheduler.TestJobHandler;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.SchedulerConfigException;
+import org.quartz.TriggerKey;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+public class HybridJobStoreTest {
+
+    private static final long TIME_WINDOW = 10000;
+
+    private TestHybridJobStore jobStore;
+
+    private long now;
+
+    @Before
+    public void setUp() throws Exception {
+        jobStore = new TestHybridJobStore();
+        jobStore.setDataSource("testDS");
+        jobStore.setInstanceName("test");
+        jobStore.setInstanceId("test");
+        jobStore.setDoubleCheckLockMisfireHandler(false);
+        jobStore.initialize(mock(ClassLoadHelper.class), mock(SchedulerSignaler.class));
+        HybridJobStore.takeInitialized();
+
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    public void shouldKeepFlaggedJobsInMemoryAndOtherJobsInDatabase() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory", true), trigger("memory", 1000));
+        jobStore.storeJobAndTrigger(job("stored", false), trigger("stored", 1000));
+
+        assertFalse(jobStore.database.checkExists(JobKey.jobKey("memory")));
+        assertTrue(jobStore.database.checkExists(JobKey.jobKey("stored")));
+        assertTrue(jobStore.checkExists(JobKey.jobKey("memory")));
+        assertTrue(jobStore.checkExists(TriggerKey.triggerKey("memory")));
+        assertEquals(2, jobStore.getNumberOfJobs());
+    }
+
+    @Test(expected = ObjectAlreadyExistsException.class)
+    public void shouldNotKeepJobInMemoryWithKeyOfStoredJob() throws Exception {
+        jobStore.storeJobAndTrigger(job("job", false), trigger("job", 1000));
+
+        jobStore.storeJobAndTrigger(job("job", true), trigger("job", 1000));
+    }
+
+    @Test(expected = ObjectAlreadyExistsException.class)
+    public void shouldNotStoreJobWithKeyOfJobInMemory() throws Exception {
+        jobStore.storeJobAndTrigger(job("job", true), trigger("job", 1000));
+
+        jobStore.storeJobAndTrigger(job("job", false), trigger("job", 1000));
+    }
+
+    @Test
+    public void shouldMoveJobBetweenStoresWhenItIsReplaced() throws Exception {
+        jobStore.storeJob(job("job", false), false);
+
+        jobStore.storeJob(job("job", true), true);
+
+        assertFalse(jobStore.database.checkExists(JobKey.jobKey("job")));
+        assertTrue(HybridJobStore.isInMemory(jobStore.retrieveJob(JobKey.jobKey("job"))));
+
+        jobStore.storeJob(job("job", false), true);
+
+        assertTrue(jobStore.database.checkExists(JobKey.jobKey("job")));
+        assertFalse(HybridJobStore.isInMemory(jobStore.retrieveJob(JobKey.jobKey("job"))));
+        assertEquals(1, jobStore.getNumberOfJobs());
+    }
+
+    @Test
+    public void shouldRemoveJobsFromBothStores() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory", true), trigger("memory", 1000));
+        jobStore.storeJobAndTrigger(job("stored", false), trigger("stored", 1000));
+
+        assertTrue(jobStore.removeJobs(Arrays.asList(JobKey.jobKey("memory"), JobKey.jobKey("stored"))));
+
+        assertFalse(jobStore.checkExists(JobKey.jobKey("memory")));
+        assertFalse(jobStore.checkExists(JobKey.jobKey("stored")));
+        assertEquals(0, jobStore.getNumberOfJobs());
+    }
+
+    @Test
+    public void shouldReplaceTriggerInItsStore() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory", true), trigger("memory", 1000));
+        jobStore.storeJobAndTrigger(job("stored", false), trigger("stored", 1000));
+
+        assertTrue(jobStore.replaceTrigger(TriggerKey.triggerKey("memory"), trigger("memory", 2000)));
+        assertTrue(jobStore.replaceTrigger(TriggerKey.triggerKey("stored"), trigger("stored", 3000)));
+
+        assertFalse(jobStore.database.checkExists(TriggerKey.triggerKey("memory")));
+        assertEquals(now + 2000, jobStore.retrieveTrigger(TriggerKey.triggerKey("memory")).getNextFireTime().getTime());
+        assertEquals(now + 3000, jobStore.database.retrieveTrigger(TriggerKey.triggerKey("stored")).getNextFireTime().getTime());
+    }
+
+    @Test
+    public void shouldAcquireTriggersOfBothStoresInOrderOfFireTimesUpToMaxCount() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory1", true), trigger("memory1", 1000));
+        jobStore.storeJobAndTrigger(job("memory2", true), trigger("memory2", 3000));
+        jobStore.storeJobAndTrigger(job("stored", false), trigger("stored", 2000));
+
+        List<OperableTrigger> acquired = jobStore.acquireNextTriggers(now + 5000, 2, TIME_WINDOW);
+
+        assertEquals(Arrays.asList("memory1", "stored"), names(acquired));
+
+        // the trigger cut by the max count is released and acquired again next time
+        assertEquals(Arrays.asList("memory2"), names(jobStore.acquireNextTriggers(now + 5000, 2, TIME_WINDOW)));
+    }
+
+    @Test
+    public void shouldReleaseTriggersOfBothStoresOutsideOfTheBatchTimeWindow() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory", true), trigger("memory", 1000));
+        jobStore.storeJobAndTrigger(job("stored", false), trigger("stored", 4000));
+
+        assertEquals(Arrays.asList("memory"), names(jobStore.acquireNextTriggers(now + 5000, 10, 1000)));
+
+        assertEquals(Arrays.asList("stored"), names(jobStore.database.acquireNextTriggers(now + 5000, 10, 1000)));
+    }
+
+    @Test
+    public void shouldReleaseTriggersAcquiredFromMemoryWhenDatabaseFails() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory", true), trigger("memory", 1000));
+        jobStore.failAcquire = true;
+
+        try {
+            jobStore.acquireNextTriggers(now + 5000, 10, TIME_WINDOW);
+            throw new AssertionError("Expected the acquisition to fail");
+        } catch (JobPersistenceException e) {
+            jobStore.failAcquire = false;
+        }
+
+        assertEquals(Arrays.asList("memory"), names(jobStore.acquireNextTriggers(now + 5000, 10, TIME_WINDOW)));
+    }
+
+    @Test
+    public void shouldNotQueryDatabaseUntilStoredTriggersChange() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory", true), trigger("memory", 1000));
+
+        acquireAndRelease();
+        acquireAndRelease();
+
+        assertEquals(1, jobStore.databaseAcquisitions);
+
+        jobStore.storeJobAndTrigger(job("stored", false), trigger("stored", 1000));
+
+        assertEquals(Arrays.asList("memory", "stored"), names(jobStore.acquireNextTriggers(now + 5000, 10, TIME_WINDOW)));
+        assertEquals(2, jobStore.databaseAcquisitions);
+    }
+
+    @Test
+    public void shouldQueryDatabaseAgainAfterMisfiresWereRecovered() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory", true), trigger("memory", 1000));
+        acquireAndRelease();
+
+        jobStore.recoveredMisfires = 1;
+        jobStore.doRecoverMisfires();
+
+        acquireAndRelease();
+        assertEquals(2, jobStore.databaseAcquisitions);
+    }
+
+    @Test
+    public void shouldKeepQueryingDatabaseWhenNoMisfiresWereRecovered() throws Exception {
+        jobStore.storeJobAndTrigger(job("memory", true), trigger("memory", 1000));
+        acquireAndRelease();
+
+        jobStore.doRecoverMisfires();
+
+        acquireAndRelease();
+        assertEquals(1, jobStore.databaseAcquisitions);
+    }
+
+    private void acquireAndRelease() throws JobPersistenceException {
+        for (OperableTrigger trigger : jobStore.acquireNextTriggers(now + 5000, 10, TIME_WINDOW)) {
+            jobStore.releaseAcquiredTrigger(trigger);
+        }
+    }
+
+    private JobDetail job(String name, boolean inMemory) {
+        return newJob(TestJobHandler.class).withIdentity(name).usingJobData(HybridJobStore.IN_MEMORY_KEY, inMemory)
+                .storeDurably().build();
+    }
+
+    private OperableTrigger trigger(String name, long delay) {
+        OperableTrigger trigger = (OperableTrigger) newTrigger().withIdentity(name).forJob(name)
+                .startAt(new Date(now + delay)).build();
+        trigger.computeFirstFireTime(null);
+        return trigger;
+    }
+
+    private List<String> names(List<OperableTrigger> triggers) {
+        List<String> names = new ArrayList<>(triggers.size());
+        for (OperableTrigger trigger : triggers) {
+            names.add(trigger.getKey().getName());
+        }
+        return names;
+    }
+
+    /**
+     * Hybrid job store keeping its "database" in another in-memory store.
+     */
+    private static class TestHybridJobStore extends HybridJobStore {
+        private final RAMJobStore database = new RAMJobStore();
+        private final Connection connection = mock(Connection.class);
+
+        private boolean failAcquire;
+        private int databaseAcquisitions;
+        private int recoveredMisfires;
+
+        @Override
+        public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler signaler) throws SchedulerConfigException {
+            super.initialize(loadHelper, signaler);
+            database.initialize(loadHelper, signaler);
+        }
+
+        @Override
+        protected Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        protected void storeJob(Connection conn, JobDetail newJob, boolean replaceExisting) throws JobPersistenceException {
+            database.storeJob(newJob, replaceExisting);
+        }
+
+        @Override
+        protected void storeTrigger(Connection conn, OperableTrigger newTrigger, JobDetail job, boolean replaceExisting,
+                                    String state, boolean forceState, boolean recovering) throws JobPersistenceException {
+            database.storeTrigger(newTrigger, replaceExisting);
+        }
+
+        @Override
+        protected boolean removeJob(Connection conn, JobKey jobKey, boolean activeDeleteSafe) throws JobPersistenceException {
+            return database.removeJob(jobKey);
+        }
+
+        @Override
+        protected JobDetail retrieveJob(Connection conn, JobKey jobKey) throws JobPersistenceException {
+            return database.retrieveJob(jobKey);
+        }
+
+        @Override
+        protected boolean replaceTrigger(Connection conn, TriggerKey triggerKey, OperableTrigger newTrigger)
+                throws JobPersistenceException {
+            return database.replaceTrigger(triggerKey, newTrigger);
+        }
+
+        @Override
+        protected OperableTrigger retrieveTrigger(Connection conn, TriggerKey triggerKey) throws JobPersistenceException {
+            return database.retrieveTrigger(triggerKey);
+        }
+
+        @Override
+        protected boolean checkExists(Connection conn, JobKey jobKey) throws JobPersistenceException {
+            return database.checkExists(jobKey);
+        }
+
+        @Override
+        protected boolean checkExists(Connection conn, TriggerKey triggerKey) throws JobPersistenceException {
+            return database.checkExists(triggerKey);
+        }
+
+        @Override
+        protected int getNumberOfJobs(Connection conn) throws JobPersistenceException {
+            return database.getNumberOfJobs();
+        }
+
+        @Override
+        protected List<OperableTrigger> acquireNextTrigger(Connection conn, long noLaterThan, int maxCount,
+                                                           long timeWindow) throws JobPersistenceException {
+            if (failAcquire) {
+                throw new JobPersistenceException("Database unavailable");
+            }
+            databaseAcquisitions++;
+            return database.acquireNextTriggers(noLaterThan, maxCount, timeWindow);
+        }
+
+        @Override
+        protected void releaseAcquiredTrigger(Connection conn, OperableTrigger trigger) throws JobPersistenceException {
+            database.releaseAcquiredTrigger(trigger);
+        }
+
+        @Override
+        protected RecoverMisfiredJobsResult recoverMisfiredJobs(Connection conn, boolean recovering)
+                throws JobPersistenceException, SQLException {
+            return new RecoverMisfiredJobsResult(false, recoveredMisfires, System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.quartz.JobDetail;
+import org.quartz.Trigger;
+import org.quartz.spi.OperableTrigger;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.quartz.CronScheduleBuilder.cronSchedule;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+public class JobChangeTest {
+
+    private final DateTime now = new DateTime(2014, 5, 1, 9, 30);
+
+    @Test
+    public void shouldStoreEverythingForNewJobs() {
+        assertEquals(JobChange.ALL, JobChange.between(null, null, cronTrigger("0 0 10 * * ?", now), job("value"), now.toDate()));
+    }
+
+    @Test
+    public void shouldFindNoChangeInJobsBuiltTheSame() {
+        assertEquals(JobChange.NONE, JobChange.between(scheduled(cronTrigger("0 0 10 * * ?", now)), job("value"),
+                cronTrigger("0 0 10 * * ?", now), job("value"), now.toDate()));
+    }
+
+    @Test
+    public void shouldReplaceOnlyWhatChanged() {
+        Trigger scheduled = scheduled(cronTrigger("0 0 10 * * ?", now));
+
+        assertEquals(JobChange.JOB_DATA, JobChange.between(scheduled, job("value"),
+                cronTrigger("0 0 10 * * ?", now), job("other"), now.toDate()));
+        assertEquals(JobChange.SCHEDULE, JobChange.between(scheduled, job("value"),
+                cronTrigger("0 0 12 * * ?", now), job("value"), now.toDate()));
+        assertEquals(JobChange.ALL, JobChange.between(scheduled, job("value"),
+                cronTrigger("0 0 12 * * ?", now), job("other"), now.toDate()));
+    }
+
+    @Test
+    public void shouldStoreEverythingWhenJobMovesToMemory() {
+        JobDetail inMemory = job("value");
+        inMemory.getJobDataMap().put(HybridJobStore.IN_MEMORY_KEY, true);
+
+        assertEquals(JobChange.ALL, JobChange.between(scheduled(cronTrigger("0 0 10 * * ?", now)), job("value"),
+                cronTrigger("0 0 10 * * ?", now), inMemory, now.toDate()));
+    }
+
+    @Test
+    public void shouldReplaceJobDataWhenJobStartsRequestingRecovery() {
+        JobDetail recoverable = job("value").getJobBuilder().requestRecovery().build();
+
+        assertEquals(JobChange.JOB_DATA, JobChange.between(scheduled(cronTrigger("0 0 10 * * ?", now)), job("value"),
+                cronTrigger("0 0 10 * * ?", now), recoverable, now.toDate()));
+    }
+
+    @Test
+    public void shouldIgnoreStartTimeMovedPastGoneFireTimes() {
+        Trigger scheduled = scheduled(cronTrigger("0 0 10 * * ?", now.minusDays(3)));
+        Trigger sameFires = cronTrigger("0 0 10 * * ?", now.withTime(10, 0, 0, 0));
+        Trigger laterFires = cronTrigger("0 0 10 * * ?", now.plusDays(1));
+
+        assertEquals(JobChange.NONE, JobChange.between(scheduled, job("value"), sameFires, job("value"), now.toDate()));
+        assertEquals(JobChange.SCHEDULE, JobChange.between(scheduled, job("value"), laterFires, job("value"), now.toDate()));
+    }
+
+    @Test
+    public void shouldCompareRemainingRepeatsOfSimpleTriggers() {
+        Trigger scheduled = scheduled(simpleTrigger(now.minusDays(2), 4));
+        Trigger remainingRepeats = simpleTrigger(now.plusDays(1), 1);
+        Trigger moreRepeats = simpleTrigger(now.plusDays(1), 2);
+
+        assertEquals(JobChange.NONE, JobChange.between(scheduled, job("value"), remainingRepeats, job("value"), now.toDate()));
+        assertEquals(JobChange.SCHEDULE, JobChange.between(scheduled, job("value"), moreRepeats, job("value"), now.toDate()));
+    }
+
+    private Trigger cronTrigger(String cronExpression, DateTime startTime) {
+        return newTrigger().withIdentity("subject-id", "default").withSchedule(cronSchedule(cronExpression))
+                .startAt(startTime.toDate()).build();
+    }
+
+    private Trigger simpleTrigger(DateTime startTime, int repeatCount) {
+        return newTrigger().withIdentity("subject-id-repeat", "default").startAt(startTime.withTime(9, 0, 0, 0).toDate())
+                .withSchedule(simpleSchedule().withIntervalInHours(24).withRepeatCount(repeatCount)).build();
+    }
+
+    private Trigger scheduled(Trigger trigger) {
+        OperableTrigger scheduled = (OperableTrigger) trigger;
+        scheduled.computeFirstFireTime(null);
+        Date nextFireTime = scheduled.getNextFireTime();
+        while (nextFireTime != null && !nextFireTime.after(now.toDate())) {
+            scheduled.triggered(null);
+            nextFireTime = scheduled.getNextFireTime();
+        }
+        return scheduled;
+    }
+
+    private JobDetail job(String value) {
+        JobDetail jobDetail = newJob(MotechScheduledJob.class).withIdentity("subject-id", "default").build();
+        jobDetail.getJobDataMap().put("key", value);
+        return jobDetail;
+    }
+}
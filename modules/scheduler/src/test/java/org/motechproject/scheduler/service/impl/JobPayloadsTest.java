@@ -0,0 +1,169 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.impl.StdSchedulerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.JobKey.jobKey;
+import static org.quartz.TriggerBuilder.newTrigger;
+import static org.quartz.TriggerKey.triggerKey;
+
+public class JobPayloadsTest {
+
+    Scheduler scheduler;
+
+    @Before
+    public void setUp() throws SchedulerException {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "JobPayloadsTest");
+        properties.setProperty("org.quartz.threadPool.threadCount", "1");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        scheduler = new StdSchedulerFactory(properties).getScheduler();
+    }
+
+    @After
+    public void tearDown() throws SchedulerException {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void shouldDecodeEncodedParametersToEqualValues() throws SchedulerException {
+        Map<String, Object> parameters = parameters();
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.put(JobPayloads.PAYLOAD_KEY, JobPayloads.newSharedPayload(parameters).getJobDataMap().get(JobPayloads.PAYLOAD_KEY));
+
+        Map<String, Object> decoded = new JobPayloads().getParameters(scheduler, jobDataMap);
+
+        assertEquals(parameters, decoded);
+        assertEquals(DateTimeZone.forID("Asia/Kolkata"), ((DateTime) decoded.get("dateTime")).getZone());
+        assertEquals(LinkedHashMap.class, decoded.get("linkedMap").getClass());
+    }
+
+    @Test
+    public void shouldEncodeParametersSmallerThanJavaSerialization() throws IOException {
+        Map<String, Object> parameters = parameters();
+        parameters.remove("decimal");
+        parameters.remove("dateTime");
+        parameters.remove("linkedMap");
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(new JobDataMap(parameters));
+        }
+
+        byte[] encoded = (byte[]) JobPayloads.newSharedPayload(parameters).getJobDataMap().get(JobPayloads.PAYLOAD_KEY);
+        assertTrue(encoded.length * 3 < serialized.size());
+    }
+
+    @Test
+    public void shouldKeepStringsInJobDataMapInCompactMode() throws SchedulerException {
+        JobDataMap jobDataMap = new JobDataMap();
+        JobPayloads.putCompact(jobDataMap, parameters());
+
+        assertEquals("value", jobDataMap.get("string"));
+        assertFalse(jobDataMap.containsKey("integer"));
+        assertEquals(parameters(), new JobPayloads().getParameters(scheduler, jobDataMap));
+    }
+
+    @Test
+    public void shouldShareIdenticalPayloadsAndDeleteThemWithTheirLastReference() throws SchedulerException {
+        JobDetail payloadJob = JobPayloads.newSharedPayload(parameters());
+        assertEquals(payloadJob.getKey(), JobPayloads.newSharedPayload(new LinkedHashMap<>(parameters())).getKey());
+
+        scheduleJobs(payloadJob, "first", "second");
+
+        Map<String, Object> expected = parameters();
+        expected.put(MotechEvent.EVENT_TYPE_KEY_NAME, "subject");
+        JobDataMap jobDataMap = scheduler.getJobDetail(jobKey("first", "default")).getJobDataMap();
+        assertEquals(expected, new JobPayloads().getParameters(scheduler, jobDataMap));
+
+        scheduler.unscheduleJobs(Arrays.asList(triggerKey("first", "default"), JobPayloads.getReferenceKey("first")));
+        assertTrue(scheduler.checkExists(payloadJob.getKey()));
+        scheduler.unscheduleJobs(Arrays.asList(triggerKey("second", "default"), JobPayloads.getReferenceKey("second")));
+        assertFalse(scheduler.checkExists(payloadJob.getKey()));
+    }
+
+    @Test
+    public void shouldReleasePayloadOnlyOnceNoJobRefersToIt() throws SchedulerException {
+        JobDetail payloadJob = JobPayloads.newSharedPayload(parameters());
+        Map<String, Object> otherParameters = parameters();
+        otherParameters.put("string", "other");
+        JobDetail otherPayloadJob = JobPayloads.newSharedPayload(otherParameters);
+
+        scheduleJobs(payloadJob, "first", "second");
+        scheduleJobs(otherPayloadJob, "first");
+
+        JobPayloads.release(scheduler, payloadJob.getKey().getName());
+        assertTrue(scheduler.checkExists(payloadJob.getKey()));
+        assertEquals(1, scheduler.getTriggersOfJob(payloadJob.getKey()).size());
+
+        scheduleJobs(otherPayloadJob, "second");
+        JobPayloads.release(scheduler, payloadJob.getKey().getName());
+        assertFalse(scheduler.checkExists(payloadJob.getKey()));
+        assertEquals(2, scheduler.getTriggersOfJob(otherPayloadJob.getKey()).size());
+
+        // releasing a payload which is already deleted does nothing
+        JobPayloads.release(scheduler, payloadJob.getKey().getName());
+    }
+
+    private void scheduleJobs(JobDetail payloadJob, String... names) throws SchedulerException {
+        Map<JobDetail, List<Trigger>> triggersAndJobs = new LinkedHashMap<>();
+        List<Trigger> references = new ArrayList<>();
+        triggersAndJobs.put(payloadJob, references);
+        for (String name : names) {
+            JobDetail jobDetail = newJob(MotechScheduledJob.class).withIdentity(name, "default").build();
+            jobDetail.getJobDataMap().put(JobPayloads.PAYLOAD_REF_KEY, payloadJob.getKey().getName());
+            jobDetail.getJobDataMap().put(MotechEvent.EVENT_TYPE_KEY_NAME, "subject");
+            triggersAndJobs.put(jobDetail, Collections.singletonList(newTrigger().withIdentity(name, "default")
+                    .startAt(new DateTime().plusDays(1).toDate()).build()));
+            references.add(JobPayloads.newReference(name, payloadJob));
+        }
+        scheduler.scheduleJobs(triggersAndJobs, true);
+    }
+
+    private Map<String, Object> parameters() {
+        Map<String, Object> linkedMap = new LinkedHashMap<>();
+        linkedMap.put("b", 1L);
+        linkedMap.put("a", null);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("string", "value");
+        parameters.put("integer", 42);
+        parameters.put("long", 4200000000L);
+        parameters.put("boolean", true);
+        parameters.put("double", 0.5);
+        parameters.put("date", new Date(1400000000000L));
+        parameters.put("dateTime", new DateTime(1400000000000L, DateTimeZone.forID("Asia/Kolkata")));
+        parameters.put("list", new ArrayList<>(Arrays.asList("x", 2, new HashMap<>(Collections.singletonMap("k", "v")))));
+        parameters.put("linkedMap", linkedMap);
+        parameters.put("decimal", new BigDecimal("1.25"));
+        return parameters;
+    }
+}
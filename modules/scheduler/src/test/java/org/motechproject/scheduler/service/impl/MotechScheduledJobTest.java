@@ -0,0 +1,146 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.metrics.impl.SchedulerMetricsRegistry;
+import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerContext;
+import org.quartz.SimpleTrigger;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+public class MotechScheduledJobTest {
+
+    private static final String SUBJECT = "test.event";
+
+    @Mock
+    JobExecutionContext jobExecutionContext;
+
+    @Mock
+    Scheduler scheduler;
+
+    @Mock
+    ScheduledEventPublisher eventPublisher;
+
+    SchedulerMetricsRegistry metrics = new SchedulerMetricsRegistry();
+
+    SchedulerContext schedulerContext = new SchedulerContext();
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.put(MotechEvent.EVENT_TYPE_KEY_NAME, SUBJECT);
+
+        SimpleTrigger trigger = newTrigger().withIdentity("test.event-job")
+                .withSchedule(simpleSchedule().withRepeatCount(0)).build();
+
+        schedulerContext.put(MotechScheduledJob.EVENT_PUBLISHER_KEY, eventPublisher);
+        schedulerContext.put(MotechScheduledJob.METRICS_KEY, metrics);
+
+        when(scheduler.getContext()).thenReturn(schedulerContext);
+        when(scheduler.getSchedulerInstanceId()).thenReturn("node");
+        when(jobExecutionContext.getScheduler()).thenReturn(scheduler);
+        when(jobExecutionContext.getJobDetail()).thenReturn(newJob(MotechScheduledJob.class)
+                .withIdentity("test.event-job").usingJobData(jobDataMap).build());
+        when(jobExecutionContext.getTrigger()).thenReturn(trigger);
+    }
+
+    @Test
+    public void shouldRecordLagUntilEventIsSent() throws Exception {
+        long scheduledFireTime = System.currentTimeMillis();
+        when(jobExecutionContext.getScheduledFireTime()).thenReturn(new Date(scheduledFireTime));
+        when(jobExecutionContext.getFireTime()).thenReturn(new Date(scheduledFireTime));
+
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                Thread.sleep(200);
+                return null;
+            }
+        }).when(eventPublisher).publish(isA(MotechEvent.class));
+
+        new MotechScheduledJob().execute(jobExecutionContext);
+
+        assertEquals(1, metrics.getFiredCount());
+        assertTrue(metrics.getFireLag().getMaxMillis() >= 200);
+    }
+
+    @Test
+    public void shouldReleaseSharedPayloadWhenJobFiresForTheLastTime() throws Exception {
+        JobDetail payloadJob = JobPayloads.newSharedPayload(Collections.<String, Object>singletonMap("key", 1));
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.put(MotechEvent.EVENT_TYPE_KEY_NAME, SUBJECT);
+        jobDataMap.put(JobPayloads.PAYLOAD_REF_KEY, payloadJob.getKey().getName());
+
+        when(jobExecutionContext.getJobDetail()).thenReturn(newJob(MotechScheduledJob.class)
+                .withIdentity("test.event-job").usingJobData(jobDataMap).build());
+        when(jobExecutionContext.getScheduledFireTime()).thenReturn(new Date());
+        when(scheduler.getJobDetail(payloadJob.getKey())).thenReturn(payloadJob);
+
+        new MotechScheduledJob().execute(jobExecutionContext);
+
+        verify(eventPublisher).publish(isA(MotechEvent.class));
+        verify(scheduler).unscheduleJob(JobPayloads.getReferenceKey("test.event-job"));
+    }
+
+    @Test
+    public void shouldMarkEventOfRecoveredJob() throws Exception {
+        when(jobExecutionContext.getScheduledFireTime()).thenReturn(new Date());
+        when(jobExecutionContext.isRecovering()).thenReturn(true);
+
+        new MotechScheduledJob().execute(jobExecutionContext);
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventPublisher).publish(captor.capture());
+        assertEquals(true, captor.getValue().getParameters().get(MotechSchedulerService.RECOVERED_KEY));
+    }
+
+    @Test
+    public void shouldNotMarkEventOfJobFiredOnSchedule() throws Exception {
+        when(jobExecutionContext.getScheduledFireTime()).thenReturn(new Date());
+
+        new MotechScheduledJob().execute(jobExecutionContext);
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventPublisher).publish(captor.capture());
+        assertFalse(captor.getValue().getParameters().containsKey(MotechSchedulerService.RECOVERED_KEY));
+    }
+
+    @Test(expected = JobExecutionException.class)
+    public void shouldFailJobIfEventCouldNotBePublished() throws Exception {
+        when(jobExecutionContext.getScheduledFireTime()).thenReturn(new Date());
+        doThrow(new IllegalStateException("broker unavailable")).when(eventPublisher).publish(isA(MotechEvent.class));
+
+        try {
+            new MotechScheduledJob().execute(jobExecutionContext);
+        } finally {
+            assertEquals(1, metrics.getSubjectMetrics().get(0).getFailureCount());
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.CronSchedulableJob;
+import org.motechproject.scheduler.contract.JobBasicInfo;
+import org.motechproject.scheduler.contract.JobsSearchResult;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
+import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.exception.MotechSchedulerException;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.motechproject.server.config.SettingsFacade;
+import org.quartz.CronTrigger;
+import org.quartz.JobDetail;
+import org.quartz.JobPersistenceException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.StdSchedulerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.quartz.JobKey.jobKey;
+import static org.quartz.TriggerKey.triggerKey;
+
+/**
+ * Schedules jobs on a scheduler without a JDBC job store, whose jobs are searched, filtered, sorted and paged in memory.
+ */
+public class MotechSchedulerServiceImplTest {
+
+    Scheduler scheduler;
+    MotechSchedulerServiceImpl schedulerService;
+
+    @Before
+    public void setUp() throws SchedulerException {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "MotechSchedulerServiceImplTest");
+        properties.setProperty("org.quartz.threadPool.threadCount", "1");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        scheduler = new StdSchedulerFactory(properties).getScheduler();
+
+        MotechSchedulerFactoryBean factoryBean = mock(MotechSchedulerFactoryBean.class);
+        when(factoryBean.getQuartzScheduler()).thenReturn(scheduler);
+        schedulerService = new MotechSchedulerServiceImpl(factoryBean, mock(SettingsFacade.class));
+
+        DateTime now = DateTime.now();
+        // active, with an end date
+        schedulerService.scheduleJob(new CronSchedulableJob(event("sms", "1"), "0 0 12 * * ?",
+                now.minusDays(2).toDate(), now.plusDays(10).toDate()));
+        // active, without an end date
+        schedulerService.scheduleJob(new CronSchedulableJob(event("sms", "2"), "0 0 12 * * ?",
+                now.minusDays(1).toDate(), null));
+        // not started, ending when they fire
+        schedulerService.scheduleRunOnceJob(new RunOnceSchedulableJob(event("call", "1"), now.plusDays(3).toDate()));
+        schedulerService.scheduleRunOnceJob(new RunOnceSchedulableJob(event("call", "2"), now.plusDays(1).toDate()));
+
+        scheduler.pauseTrigger(triggerKey("call-2-runonce", "default"));
+    }
+
+    @After
+    public void tearDown() throws SchedulerException {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void shouldResumePausedJobWhenScheduledAgainUnchanged() throws SchedulerException {
+        DateTime now = DateTime.now();
+        scheduler.pauseTrigger(triggerKey("sms-1", "default"));
+
+        schedulerService.scheduleJob(new CronSchedulableJob(event("sms", "1"), "0 0 12 * * ?",
+                now.minusDays(2).toDate(), now.plusDays(10).toDate()));
+
+        assertEquals(Trigger.TriggerState.NORMAL, scheduler.getTriggerState(triggerKey("sms-1", "default")));
+    }
+
+    @Test
+    public void shouldResumePausedJobWhenScheduledAgainWithOtherParameters() throws SchedulerException {
+        DateTime now = DateTime.now();
+        scheduler.pauseTrigger(triggerKey("sms-1", "default"));
+        MotechEvent event = event("sms", "1");
+        event.getParameters().put("message", "changed");
+
+        schedulerService.safeScheduleJob(new CronSchedulableJob(event, "0 0 12 * * ?",
+                now.minusDays(2).toDate(), now.plusDays(10).toDate()));
+
+        assertEquals(Trigger.TriggerState.NORMAL, scheduler.getTriggerState(triggerKey("sms-1", "default")));
+        assertEquals("changed", scheduler.getJobDetail(jobKey("sms-1", "default")).getJobDataMap().get("message"));
+    }
+
+    @Test
+    public void shouldRewriteTriggerInErrorWhenScheduledAgainUnchanged() throws SchedulerException {
+        DateTime now = DateTime.now();
+        Scheduler spiedScheduler = schedulerWithTriggerState("sms-2", Trigger.TriggerState.ERROR);
+
+        schedulerService(spiedScheduler).scheduleJob(new CronSchedulableJob(event("sms", "2"), "0 0 12 * * ?",
+                now.minusDays(1).toDate(), null));
+
+        verify(spiedScheduler).rescheduleJob(eq(triggerKey("sms-2", "default")), any(Trigger.class));
+    }
+
+    @Test
+    public void shouldRewriteJobWithTriggerInErrorWhenScheduledAgainWithOtherParameters() throws SchedulerException {
+        DateTime now = DateTime.now();
+        Scheduler spiedScheduler = schedulerWithTriggerState("sms-2", Trigger.TriggerState.ERROR);
+        MotechEvent event = event("sms", "2");
+        event.getParameters().put("message", "changed");
+
+        schedulerService(spiedScheduler).safeScheduleJob(new CronSchedulableJob(event, "0 0 12 * * ?",
+                now.minusDays(1).toDate(), null));
+
+        verify(spiedScheduler, never()).addJob(any(JobDetail.class), anyBoolean());
+        verify(spiedScheduler).scheduleJobs(anyMap(), eq(true));
+        assertEquals("changed", scheduler.getJobDetail(jobKey("sms-2", "default")).getJobDataMap().get("message"));
+    }
+
+    @Test
+    public void shouldRewriteBlockedTriggerOfJobWhichDoesNotRunWhenScheduledAgainUnchanged() throws SchedulerException {
+        DateTime now = DateTime.now();
+        Scheduler spiedScheduler = schedulerWithTriggerState("sms-2", Trigger.TriggerState.BLOCKED);
+
+        schedulerService(spiedScheduler).scheduleJob(new CronSchedulableJob(event("sms", "2"), "0 0 12 * * ?",
+                now.minusDays(1).toDate(), null));
+
+        verify(spiedScheduler).rescheduleJob(eq(triggerKey("sms-2", "default")), any(Trigger.class));
+    }
+
+    @Test
+    public void shouldKeepTriggerOfUnchangedJob() throws SchedulerException {
+        DateTime now = DateTime.now();
+        Scheduler spiedScheduler = spy(scheduler);
+
+        schedulerService(spiedScheduler).scheduleJob(new CronSchedulableJob(event("sms", "2"), "0 0 12 * * ?",
+                now.minusDays(1).toDate(), null));
+
+        verify(spiedScheduler, never()).rescheduleJob(any(TriggerKey.class), any(Trigger.class));
+    }
+
+    @Test(expected = MotechSchedulerException.class)
+    public void shouldFailToScheduleJobOverExistingJobWhichCanNotBeRead() throws SchedulerException {
+        schedulerWithUnreadableTrigger("sms-1").scheduleJob(new CronSchedulableJob(event("sms", "1"), "0 0 18 * * ?"));
+    }
+
+    @Test
+    public void shouldReplaceExistingJobWhichCanNotBeReadWhenScheduledSafely() throws SchedulerException {
+        schedulerWithUnreadableTrigger("sms-1").safeScheduleJob(new CronSchedulableJob(event("sms", "1"), "0 0 18 * * ?"));
+
+        CronTrigger trigger = (CronTrigger) scheduler.getTrigger(triggerKey("sms-1", "default"));
+        assertEquals("0 0 18 * * ?", trigger.getCronExpression());
+    }
+
+    @Test
+    public void shouldFilterJobsByStatus() {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setStatuses(new HashSet<>(asList(JobBasicInfo.STATUS_BLOCKED, JobBasicInfo.STATUS_ERROR,
+                JobBasicInfo.STATUS_PAUSED)));
+
+        JobsSearchResult result = schedulerService.getScheduledJobsBasicInfo(settings);
+
+        assertEquals(asList("call-2-runonce"), names(result));
+        assertEquals(1, result.getTotal());
+    }
+
+    @Test
+    public void shouldFilterJobsByActivity() {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setActivities(new HashSet<>(asList(JobBasicInfo.ACTIVITY_ACTIVE, JobBasicInfo.ACTIVITY_FINISHED)));
+        settings.setSortColumn("name");
+
+        JobsSearchResult result = schedulerService.getScheduledJobsBasicInfo(settings);
+
+        assertEquals(asList("sms-1", "sms-2"), names(result));
+    }
+
+    @Test
+    public void shouldFilterJobsByNameAndStartDate() {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setName("call");
+        settings.setTimeFrom(DateTime.now().plusDays(2).toDate());
+
+        JobsSearchResult result = schedulerService.getScheduledJobsBasicInfo(settings);
+
+        assertEquals(asList("call-1-runonce"), names(result));
+    }
+
+    @Test
+    public void shouldSortJobsByStartDate() {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setSortColumn("startDate");
+
+        JobsSearchResult result = schedulerService.getScheduledJobsBasicInfo(settings);
+
+        assertEquals(asList("sms-1", "sms-2", "call-2-runonce", "call-1-runonce"), names(result));
+    }
+
+    @Test
+    public void shouldSortJobsByEndDateWithJobsWithoutEndDateLast() {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setSortColumn("endDate");
+
+        JobsSearchResult result = schedulerService.getScheduledJobsBasicInfo(settings);
+
+        assertEquals(asList("call-2-runonce", "call-1-runonce", "sms-1", "sms-2"), names(result));
+    }
+
+    @Test
+    public void shouldReturnRequestedPageWithTotalOfAllMatches() {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setSortColumn("startDate");
+        settings.setAscending(false);
+        settings.setPage(2);
+        settings.setPageSize(3);
+
+        JobsSearchResult result = schedulerService.getScheduledJobsBasicInfo(settings);
+
+        assertEquals(asList("sms-1"), names(result));
+        assertEquals(4, result.getTotal());
+    }
+
+    private MotechSchedulerServiceImpl schedulerWithUnreadableTrigger(String name) throws SchedulerException {
+        Scheduler spiedScheduler = spy(scheduler);
+        doThrow(new JobPersistenceException("Couldn't retrieve trigger")).when(spiedScheduler)
+                .getTrigger(triggerKey(name, "default"));
+        return schedulerService(spiedScheduler);
+    }
+
+    private Scheduler schedulerWithTriggerState(String name, Trigger.TriggerState state) throws SchedulerException {
+        Scheduler spiedScheduler = spy(scheduler);
+        doReturn(state).when(spiedScheduler).getTriggerState(triggerKey(name, "default"));
+        return spiedScheduler;
+    }
+
+    private MotechSchedulerServiceImpl schedulerService(Scheduler quartzScheduler) {
+        MotechSchedulerFactoryBean factoryBean = mock(MotechSchedulerFactoryBean.class);
+        when(factoryBean.getQuartzScheduler()).thenReturn(quartzScheduler);
+        return new MotechSchedulerServiceImpl(factoryBean, mock(SettingsFacade.class));
+    }
+
+    private MotechEvent event(String subject, String jobId) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(MotechSchedulerService.JOB_ID_KEY, jobId);
+        return new MotechEvent(subject, parameters);
+    }
+
+    private List<String> names(JobsSearchResult result) {
+        List<String> names = new ArrayList<>();
+        for (JobBasicInfo job : result.getRows()) {
+            names.add(job.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,139 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.springframework.context.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ScheduledEventPublisherTest {
+
+    @Mock
+    ApplicationContext applicationContext;
+
+    @Mock
+    EventRelay eventRelay;
+
+    ScheduledEventPublisher eventPublisher;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(applicationContext.getBean(EventRelay.class)).thenReturn(eventRelay);
+        eventPublisher = new ScheduledEventPublisher(applicationContext);
+    }
+
+    @Test
+    public void shouldSendEventsThroughEventRelayLookedUpOnce() throws InterruptedException {
+        MotechEvent first = new MotechEvent("first");
+        MotechEvent second = new MotechEvent("second");
+
+        eventPublisher.publish(first);
+        eventPublisher.publish(second);
+
+        verify(eventRelay).sendEventMessages(singletonList(first));
+        verify(eventRelay).sendEventMessages(singletonList(second));
+        verify(applicationContext, times(1)).getBean(EventRelay.class);
+    }
+
+    @Test
+    public void shouldSendEventsPublishedWhileSendingInOneBatch() throws Exception {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Collection<MotechEvent>> batches = new ArrayList<>();
+        doAnswerAndBlockFirstBatch(sending, release, batches);
+
+        Thread first = publishInThread(new MotechEvent("first"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        Thread second = publishInThread(new MotechEvent("second"));
+        Thread third = publishInThread(new MotechEvent("third"));
+        waitUntilWaiting(second);
+        waitUntilWaiting(third);
+
+        release.countDown();
+        first.join(5000);
+        second.join(5000);
+        third.join(5000);
+
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(0).size());
+        assertEquals(new HashSet<>(asList("second", "third")), subjects(batches.get(1)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailWhenEventCanNotBeSent() throws InterruptedException {
+        doThrow(new IllegalStateException("queue down")).when(eventRelay).sendEventMessages(anyCollection());
+
+        eventPublisher.publish(new MotechEvent("subject"));
+    }
+
+    private void doAnswerAndBlockFirstBatch(final CountDownLatch sending, final CountDownLatch release,
+                                            final List<Collection<MotechEvent>> batches) {
+        doAnswer(new Answer<Void>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                synchronized (batches) {
+                    batches.add(new ArrayList<>((Collection<MotechEvent>) invocation.getArguments()[0]));
+                }
+                if (sending.getCount() > 0) {
+                    sending.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        }).when(eventRelay).sendEventMessages(anyCollection());
+    }
+
+    private Thread publishInThread(final MotechEvent motechEvent) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    eventPublisher.publish(motechEvent);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void waitUntilWaiting(Thread thread) throws InterruptedException {
+        for (int i = 0; i < 500 && thread.getState() != Thread.State.WAITING; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+
+    private HashSet<String> subjects(Collection<MotechEvent> events) {
+        HashSet<String> subjects = new HashSet<>();
+        for (MotechEvent event : events) {
+            subjects.add(event.getSubject());
+        }
+        return subjects;
+    }
+}
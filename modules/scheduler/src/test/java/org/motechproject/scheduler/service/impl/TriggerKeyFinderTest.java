@@ -0,0 +1,166 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.scheduler.contract.JobBasicInfo;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
+import org.quartz.Scheduler;
+import org.quartz.TriggerKey;
+import org.quartz.utils.ConnectionProvider;
+import org.quartz.utils.DBConnectionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.quartz.TriggerKey.triggerKey;
+
+/**
+ * Searches the jobs the way a JDBC job store does, checking the query sent to the database.
+ */
+public class TriggerKeyFinderTest {
+
+    private static final String DATA_SOURCE = "triggerKeyFinderTest";
+    private static final long NOW = 1400000000000L;
+
+    @Mock
+    Scheduler scheduler;
+
+    @Mock
+    Connection connection;
+
+    @Mock
+    PreparedStatement statement;
+
+    @Mock
+    ResultSet resultSet;
+
+    TriggerKeyFinder finder;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        DBConnectionManager.getInstance().addConnectionProvider(DATA_SOURCE, new ConnectionProvider() {
+            @Override
+            public Connection getConnection() {
+                return connection;
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        });
+        when(scheduler.getSchedulerName()).thenReturn("scheduler");
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+
+        finder = new TriggerKeyFinder(scheduler, DATA_SOURCE, "QRTZ_");
+    }
+
+    @Test
+    public void shouldFilterJobsByNameStartDateActivityAndStatusInQuery() throws Exception {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setName("sms_1");
+        settings.setTimeFrom(new Date(NOW - 1000));
+        settings.setActivities(new HashSet<>(asList(JobBasicInfo.ACTIVITY_ACTIVE)));
+        settings.setStatuses(new HashSet<>(asList(JobBasicInfo.STATUS_PAUSED)));
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getString(1)).thenReturn("sms_1-a", "sms_1-b");
+        when(resultSet.getString(2)).thenReturn("default");
+
+        List<TriggerKey> triggerKeys = finder.search(settings, NOW);
+
+        String sql = preparedSql();
+        assertTrue(sql, sql.contains("WHERE SCHED_NAME = ? AND TRIGGER_GROUP <> ?"));
+        assertTrue(sql, sql.contains("AND JOB_NAME LIKE ? ESCAPE '!' AND START_TIME > ?"));
+        assertTrue(sql, sql.contains(String.format("AND CASE WHEN START_TIME > %d THEN '%s' WHEN END_TIME > 0 AND END_TIME < %d " +
+                "THEN '%s' ELSE '%s' END IN (?)", NOW, JobBasicInfo.ACTIVITY_NOTSTARTED, NOW,
+                JobBasicInfo.ACTIVITY_FINISHED, JobBasicInfo.ACTIVITY_ACTIVE)));
+        assertTrue(sql, sql.contains("WHEN TRIGGER_STATE IN ('PAUSED', 'PAUSED_BLOCKED') THEN '" + JobBasicInfo.STATUS_PAUSED + "'"));
+        assertTrue(sql, sql.endsWith(" ORDER BY JOB_NAME ASC LIMIT ? OFFSET ?"));
+
+        verify(statement).setObject(1, "scheduler");
+        verify(statement).setObject(2, JobPayloads.PAYLOAD_REF_GROUP);
+        verify(statement).setObject(3, "%sms!_1%");
+        verify(statement).setObject(4, NOW - 1000);
+        verify(statement).setObject(5, JobBasicInfo.ACTIVITY_ACTIVE);
+        verify(statement).setObject(6, JobBasicInfo.STATUS_PAUSED);
+        verify(statement).setObject(7, Integer.MAX_VALUE);
+        verify(statement).setObject(8, 0L);
+        assertEquals(asList(triggerKey("sms_1-a", "default"), triggerKey("sms_1-b", "default")), triggerKeys);
+    }
+
+    @Test
+    public void shouldFindNothingForEmptyFilterLists() throws Exception {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setStatuses(new HashSet<String>());
+
+        finder.search(settings, NOW);
+
+        assertTrue(preparedSql().contains(" AND 1 = 0"));
+    }
+
+    @Test
+    public void shouldSortJobsByStartDateAndPageInQuery() throws Exception {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setSortColumn("startDate");
+        settings.setAscending(false);
+        settings.setPage(3);
+        settings.setPageSize(20);
+
+        finder.search(settings, NOW);
+
+        assertTrue(preparedSql().endsWith(" ORDER BY CASE WHEN START_TIME IS NULL THEN 1 ELSE 0 END DESC, " +
+                "START_TIME DESC, JOB_NAME ASC LIMIT ? OFFSET ?"));
+        verify(statement).setObject(3, 20);
+        verify(statement).setObject(4, 40L);
+    }
+
+    @Test
+    public void shouldSortJobsByEndDateWithRunOnceJobsEndingAtTheirStart() throws Exception {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setSortColumn("endDate");
+
+        finder.search(settings, NOW);
+
+        String endDate = String.format("CASE WHEN END_TIME > %d THEN END_TIME WHEN JOB_NAME LIKE '%%-runonce' THEN START_TIME END", NOW);
+        assertTrue(preparedSql().endsWith(" ORDER BY CASE WHEN " + endDate + " IS NULL THEN 1 ELSE 0 END ASC, " +
+                endDate + " ASC, JOB_NAME ASC LIMIT ? OFFSET ?"));
+    }
+
+    @Test
+    public void shouldCountJobsMatchingFilters() throws Exception {
+        JobsSearchSettings settings = new JobsSearchSettings();
+        settings.setTimeTo(new Date(NOW));
+        settings.setSortColumn("name");
+        settings.setPage(2);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(42L);
+
+        assertEquals(42L, finder.count(settings, NOW));
+
+        String sql = preparedSql();
+        assertTrue(sql, sql.startsWith("SELECT COUNT(*) FROM QRTZ_TRIGGERS WHERE SCHED_NAME = ? AND TRIGGER_GROUP <> ?"));
+        assertTrue(sql, sql.endsWith(" AND START_TIME < ?"));
+        verify(statement).setObject(3, NOW);
+    }
+
+    private String preparedSql() throws Exception {
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(connection).prepareStatement(captor.capture());
+        return captor.getValue();
+    }
+}
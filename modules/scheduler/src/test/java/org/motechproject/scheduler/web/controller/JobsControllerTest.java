@@ -1,18 +1,26 @@
 package org.motechproject.scheduler.web.controller;
 
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.motechproject.scheduler.contract.JobsSearchResult;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.service.MotechSchedulerService;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.web.domain.JobsRecords;
 import org.motechproject.scheduler.web.domain.JobsGridSettings;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -60,105 +68,82 @@ public class JobsControllerTest {
     public void shouldGetJobsRecords() {
         List<JobBasicInfo> jobBasicInfos = getTestJobBasicInfos();
 
-        when(motechSchedulerService.getScheduledJobsBasicInfo()).thenReturn(jobBasicInfos);
+        when(motechSchedulerService.getScheduledJobsBasicInfo(any(JobsSearchSettings.class)))
+                .thenReturn(new JobsSearchResult(jobBasicInfos, 4));
 
         JobsRecords result = jobsController.retrieveJobInfo(getDefaultGridSettings());
 
         assertEquals(jobBasicInfos, result.getRows());
-        verify(motechSchedulerService).getScheduledJobsBasicInfo();
+        assertEquals(Integer.valueOf(4), result.getRecords());
+        assertEquals(Integer.valueOf(1), result.getTotal());
+        verify(motechSchedulerService).getScheduledJobsBasicInfo(any(JobsSearchSettings.class));
     }
 
     @Test
-    public void shouldFilterJobsByStatus() {
-        List<JobBasicInfo> jobBasicInfos = getTestJobBasicInfos();
-        List<JobBasicInfo> jobBasicInfosFiltered = new ArrayList<>();
-        JobsGridSettings jobsGridSettings = getDefaultGridSettings();
-
-        for (JobBasicInfo jobBasicInfo : jobBasicInfos) {
-            if (!jobBasicInfo.getStatus().equals(JobBasicInfo.STATUS_OK)) {
-                jobBasicInfosFiltered.add(jobBasicInfo);
-            }
-        }
-
-        jobsGridSettings.setStatus(String.format("%s,%s,%s",
-                JobBasicInfo.STATUS_BLOCKED,
-                JobBasicInfo.STATUS_ERROR,
-                JobBasicInfo.STATUS_PAUSED
-        ));
-
-        when(motechSchedulerService.getScheduledJobsBasicInfo()).thenReturn(jobBasicInfos);
-
-        JobsRecords result = jobsController.retrieveJobInfo(jobsGridSettings);
-
-        assertEquals(jobBasicInfosFiltered, result.getRows());
-        verify(motechSchedulerService).getScheduledJobsBasicInfo();
-    }
-
-    @Test
-    public void shouldFilterJobsByActivity() {
-        List<JobBasicInfo> jobBasicInfos = getTestJobBasicInfos();
-        List<JobBasicInfo> jobBasicInfosFiltered = new ArrayList<>();
+    public void shouldPassFiltersToSchedulerService() {
         JobsGridSettings jobsGridSettings = getDefaultGridSettings();
+        ArgumentCaptor<JobsSearchSettings> captor = ArgumentCaptor.forClass(JobsSearchSettings.class);
 
-        for (JobBasicInfo jobBasicInfo : jobBasicInfos) {
-            if (!jobBasicInfo.getActivity().equals(JobBasicInfo.ACTIVITY_NOTSTARTED)) {
-                jobBasicInfosFiltered.add(jobBasicInfo);
-            }
-        }
-
+        jobsGridSettings.setName("myCron");
         jobsGridSettings.setActivity(String.format("%s,%s",
                 JobBasicInfo.ACTIVITY_ACTIVE,
                 JobBasicInfo.ACTIVITY_FINISHED
         ));
+        jobsGridSettings.setStatus(JobBasicInfo.STATUS_PAUSED);
+        jobsGridSettings.setTimeFrom("2001-06-01 00:00:00");
+        jobsGridSettings.setTimeTo("2003-06-01 00:00:00");
 
-        when(motechSchedulerService.getScheduledJobsBasicInfo()).thenReturn(jobBasicInfos);
+        when(motechSchedulerService.getScheduledJobsBasicInfo(any(JobsSearchSettings.class)))
+                .thenReturn(new JobsSearchResult(new ArrayList<JobBasicInfo>(), 0));
 
-        JobsRecords result = jobsController.retrieveJobInfo(jobsGridSettings);
+        jobsController.retrieveJobInfo(jobsGridSettings);
+
+        verify(motechSchedulerService).getScheduledJobsBasicInfo(captor.capture());
+        JobsSearchSettings jobsSearchSettings = captor.getValue();
 
-        assertEquals(jobBasicInfosFiltered, result.getRows());
-        verify(motechSchedulerService).getScheduledJobsBasicInfo();
+        assertEquals("myCron", jobsSearchSettings.getName());
+        assertEquals(new HashSet<>(asList(JobBasicInfo.ACTIVITY_ACTIVE, JobBasicInfo.ACTIVITY_FINISHED)),
+                jobsSearchSettings.getActivities());
+        assertEquals(new HashSet<>(asList(JobBasicInfo.STATUS_PAUSED)), jobsSearchSettings.getStatuses());
+        assertEquals(new DateTime(2001, 6, 1, 0, 0, 0).toDate(), jobsSearchSettings.getTimeFrom());
+        assertEquals(new DateTime(2003, 6, 1, 0, 0, 0).toDate(), jobsSearchSettings.getTimeTo());
     }
 
     @Test
-    public void shouldSortJobsByStartDate() {
-        List<JobBasicInfo> jobBasicInfos = getTestJobBasicInfos();
-        List<JobBasicInfo> jobBasicInfosSorted = getTestJobBasicInfosSortedByStartDate();
+    public void shouldRequestSortedPageFromSchedulerService() {
         JobsGridSettings jobsGridSettings = getDefaultGridSettings();
+        ArgumentCaptor<JobsSearchSettings> captor = ArgumentCaptor.forClass(JobsSearchSettings.class);
 
         jobsGridSettings.setSortColumn("startDate");
+        jobsGridSettings.setSortDirection("desc");
+        jobsGridSettings.setPage(3);
+        jobsGridSettings.setRows(2);
 
-        when(motechSchedulerService.getScheduledJobsBasicInfo()).thenReturn(jobBasicInfos);
+        when(motechSchedulerService.getScheduledJobsBasicInfo(any(JobsSearchSettings.class)))
+                .thenReturn(new JobsSearchResult(asList(testJobBasicInfo1, testJobBasicInfo2), 7));
 
         JobsRecords result = jobsController.retrieveJobInfo(jobsGridSettings);
 
-        assertEquals(jobBasicInfosSorted, result.getRows());
-        verify(motechSchedulerService).getScheduledJobsBasicInfo();
-    }
-
-    @Test
-    public void shouldSortJobsByEndDate() {
-        List<JobBasicInfo> jobBasicInfos = getTestJobBasicInfos();
-        List<JobBasicInfo> jobBasicInfosSorted = getTestJobBasicInfosSortedByEndDate();
-        JobsGridSettings jobsGridSettings = getDefaultGridSettings();
+        verify(motechSchedulerService).getScheduledJobsBasicInfo(captor.capture());
+        JobsSearchSettings jobsSearchSettings = captor.getValue();
 
-        jobsGridSettings.setSortColumn("endDate");
+        assertEquals("startDate", jobsSearchSettings.getSortColumn());
+        assertFalse(jobsSearchSettings.isAscending());
+        assertEquals(3, jobsSearchSettings.getPage());
+        assertEquals(2, jobsSearchSettings.getPageSize());
 
-        when(motechSchedulerService.getScheduledJobsBasicInfo()).thenReturn(jobBasicInfos);
-
-        JobsRecords result = jobsController.retrieveJobInfo(jobsGridSettings);
-
-        assertEquals(jobBasicInfosSorted, result.getRows());
-        verify(motechSchedulerService).getScheduledJobsBasicInfo();
+        assertEquals(asList(testJobBasicInfo1, testJobBasicInfo2), result.getRows());
+        assertEquals(Integer.valueOf(3), result.getPage());
+        assertEquals(Integer.valueOf(4), result.getTotal());
+        assertEquals(Integer.valueOf(7), result.getRecords());
     }
 
     @Test
     public void shouldGetJobeDetailedInfo() {
-        List<JobBasicInfo> jobBasicInfos = getTestJobBasicInfos();
         JobsGridSettings jobsGridSettings = getDefaultGridSettings();
 
-        jobsGridSettings.setSortColumn("endDate");
-
-        when(motechSchedulerService.getScheduledJobsBasicInfo()).thenReturn(jobBasicInfos);
+        when(motechSchedulerService.getScheduledJobsBasicInfo(any(JobsSearchSettings.class)))
+                .thenReturn(new JobsSearchResult(asList(testJobBasicInfo3, testJobBasicInfo4), 2));
 
         jobsController.retrieveJobInfo(jobsGridSettings);
         jobsController.retrieveJobDetailedInfo(1);
@@ -201,26 +186,4 @@ public class JobsControllerTest {
 
         return jobBasicInfos;
     }
-
-    private List<JobBasicInfo> getTestJobBasicInfosSortedByStartDate() {
-        List<JobBasicInfo> jobBasicInfos = new ArrayList<>();
-
-        jobBasicInfos.add(testJobBasicInfo2);
-        jobBasicInfos.add(testJobBasicInfo1);
-        jobBasicInfos.add(testJobBasicInfo3);
-        jobBasicInfos.add(testJobBasicInfo4);
-
-        return jobBasicInfos;
-    }
-
-    private List<JobBasicInfo> getTestJobBasicInfosSortedByEndDate() {
-        List<JobBasicInfo> jobBasicInfos = new ArrayList<>();
-
-        jobBasicInfos.add(testJobBasicInfo3);
-        jobBasicInfos.add(testJobBasicInfo2);
-        jobBasicInfos.add(testJobBasicInfo1);
-        jobBasicInfos.add(testJobBasicInfo4);
-
-        return jobBasicInfos;
-    }
 }
@@ -0,0 +1,87 @@
+package org.motechproject.tasks.repository;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.query.CustomOperatorProperty;
+import org.motechproject.mds.query.EqualProperty;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.query.RestrictionProperty;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.SecurityUtil;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This is an abstract base for queries of task activities. It filters the query by the task of the activities and
+ * by the date they were recorded before, if these are given, so that the filtering is done by the database.
+ *
+ * @param <T> the type returned from the query
+ */
+public abstract class AbstractActivityQuery<T> implements QueryExecution<T> {
+
+    protected static final String TASK = "task";
+    protected static final String DATE = "date";
+    protected static final String ID = "id";
+    protected static final String ACTIVITY_TYPE = "activityType";
+
+    private final Long task;
+    private final DateTime before;
+
+    protected AbstractActivityQuery(Long task, DateTime before) {
+        this.task = task;
+        this.before = before;
+    }
+
+    @Override
+    public T execute(Query query, InstanceSecurityRestriction restriction) {
+        List<Property> properties = new ArrayList<>();
+
+        if (task != null) {
+            properties.add(new EqualProperty<>(TASK, task));
+        }
+        if (before != null) {
+            properties.add(new CustomOperatorProperty<>(DATE, before, "<"));
+        }
+        addProperties(properties);
+        if (restriction != null && !restriction.isEmpty()) {
+            properties.add(new RestrictionProperty(restriction, SecurityUtil.getUsername()));
+        }
+
+        QueryUtil.useFilter(query, properties);
+
+        return execute(query, properties);
+    }
+
+    /**
+     * Adds the properties by which a concrete query filters the activities further.
+     *
+     * @param properties the properties of the query
+     */
+    protected void addProperties(List<Property> properties) {
+    }
+
+    protected abstract T execute(Query query, List<Property> properties);
+
+    /**
+     * Returns the values of the parameters declared for the given properties.
+     *
+     * @param properties the properties of the query
+     * @return the values of the parameters
+     */
+    protected static Object[] values(List<Property> properties) {
+        List<Object> values = new ArrayList<>();
+
+        for (Property property : properties) {
+            Collection unwrapped = property.unwrap();
+            if (unwrapped != null) {
+                values.addAll(unwrapped);
+            }
+        }
+
+        return values.toArray();
+    }
+}
@@ -0,0 +1,36 @@
+package org.motechproject.tasks.repository;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecutor;
+
+import javax.jdo.Query;
+import java.util.List;
+
+/**
+ * Query returning the id of the last activity in the first chunk of the given size of the activities of a task, or
+ * of all tasks, recorded before the given date, or at any time if no date is given. Only the id is read. Returns
+ * null if fewer activities than the chunk size are left, so that they can be deleted at once.
+ *
+ * @see ActivityDeleteQuery
+ */
+public class ActivityChunkEndQuery extends AbstractActivityQuery<Long> {
+
+    private final int chunkSize;
+
+    public ActivityChunkEndQuery(Long task, DateTime before, int chunkSize) {
+        super(task, before);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected Long execute(Query query, List<Property> properties) {
+        query.setResult(ID);
+        query.setOrdering(ID + " ascending");
+        query.setRange(chunkSize - 1, chunkSize);
+
+        List<Long> ids = (List<Long>) QueryExecutor.executeWithArray(query, properties);
+
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+}
@@ -0,0 +1,44 @@
+package org.motechproject.tasks.repository;
+
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecutor;
+import org.motechproject.tasks.domain.TaskActivityType;
+
+import javax.jdo.Query;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query returning the number of the activities of each type recorded for each task. The activities are counted
+ * by the database, so that they are not read to be counted.
+ */
+public class ActivityCountsQuery extends AbstractActivityQuery<Map<Long, Map<TaskActivityType, Long>>> {
+
+    public ActivityCountsQuery() {
+        super(null, null);
+    }
+
+    @Override
+    protected Map<Long, Map<TaskActivityType, Long>> execute(Query query, List<Property> properties) {
+        query.setResult(TASK + ", " + ACTIVITY_TYPE + ", count(this)");
+        query.setGrouping(TASK + ", " + ACTIVITY_TYPE);
+
+        List<Object[]> rows = (List<Object[]>) QueryExecutor.executeWithArray(query, properties);
+        Map<Long, Map<TaskActivityType, Long>> counts = new HashMap<>();
+
+        for (Object[] row : rows) {
+            Long task = (Long) row[0];
+            Map<TaskActivityType, Long> taskCounts = counts.get(task);
+
+            if (taskCounts == null) {
+                taskCounts = new HashMap<>();
+                counts.put(task, taskCounts);
+            }
+
+            taskCounts.put((TaskActivityType) row[1], ((Number) row[2]).longValue());
+        }
+
+        return counts;
+    }
+}
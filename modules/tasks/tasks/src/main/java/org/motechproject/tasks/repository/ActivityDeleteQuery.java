@@ -0,0 +1,40 @@
+package org.motechproject.tasks.repository;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.query.CustomOperatorProperty;
+import org.motechproject.mds.query.Property;
+
+import javax.jdo.Query;
+import java.util.List;
+
+/**
+ * Query deleting the activities of a task, or of all tasks, recorded before the given date, or at any time if no
+ * date is given. If the id of the last activity of a chunk is given, only the activities up to that id are deleted.
+ * The activities are deleted by the database, without loading them. Returns the number of the deleted activities.
+ * <p/>
+ * Since the deletion bypasses the data service, the deleted activities are neither recorded in the MDS history nor
+ * moved to the MDS trash.
+ *
+ * @see ActivityChunkEndQuery
+ */
+public class ActivityDeleteQuery extends AbstractActivityQuery<Long> {
+
+    private final Long chunkEnd;
+
+    public ActivityDeleteQuery(Long task, DateTime before, Long chunkEnd) {
+        super(task, before);
+        this.chunkEnd = chunkEnd;
+    }
+
+    @Override
+    protected void addProperties(List<Property> properties) {
+        if (chunkEnd != null) {
+            properties.add(new CustomOperatorProperty<>(ID, chunkEnd, "<="));
+        }
+    }
+
+    @Override
+    protected Long execute(Query query, List<Property> properties) {
+        return query.deletePersistentAll(values(properties));
+    }
+}
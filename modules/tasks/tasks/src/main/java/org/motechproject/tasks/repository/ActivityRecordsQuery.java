@@ -0,0 +1,58 @@
+package org.motechproject.tasks.repository;
+
+import org.motechproject.mds.query.EqualProperty;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecutor;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.Order;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityType;
+
+import javax.jdo.Query;
+import java.util.List;
+
+/**
+ * Query returning a page of the activities of a task, or of all tasks, optionally only the activities of one type.
+ * The activities are ordered as given in the query parameters, the newest first if no order is given. Without
+ * paging in the query parameters all activities are returned.
+ */
+public class ActivityRecordsQuery extends AbstractActivityQuery<List<TaskActivity>> {
+
+    private final TaskActivityType type;
+    private final QueryParams queryParams;
+
+    public ActivityRecordsQuery(Long task, QueryParams queryParams) {
+        this(task, null, queryParams);
+    }
+
+    public ActivityRecordsQuery(Long task, TaskActivityType type, QueryParams queryParams) {
+        super(task, null);
+        this.type = type;
+        this.queryParams = queryParams;
+    }
+
+    @Override
+    protected void addProperties(List<Property> properties) {
+        if (type != null) {
+            properties.add(new EqualProperty<>(ACTIVITY_TYPE, type));
+        }
+    }
+
+    @Override
+    protected List<TaskActivity> execute(Query query, List<Property> properties) {
+        Order order = (queryParams != null && queryParams.isOrderSet())
+                ? queryParams.getOrder()
+                : new Order(DATE, Order.Direction.DESC);
+
+        query.setOrdering(order.toString());
+
+        if (queryParams != null && queryParams.isPagingSet()) {
+            long pageSize = queryParams.getPageSize();
+            long fromIncl = (queryParams.getPage() - 1) * pageSize;
+
+            query.setRange(fromIncl, fromIncl + pageSize);
+        }
+
+        return (List<TaskActivity>) QueryExecutor.executeWithArray(query, properties);
+    }
+}
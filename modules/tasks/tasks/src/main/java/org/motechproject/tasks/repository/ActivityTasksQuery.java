@@ -0,0 +1,25 @@
+package org.motechproject.tasks.repository;
+
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecutor;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Query returning the ids of the tasks which have activities.
+ */
+public class ActivityTasksQuery extends AbstractActivityQuery<List<Long>> {
+
+    public ActivityTasksQuery() {
+        super(null, null);
+    }
+
+    @Override
+    protected List<Long> execute(Query query, List<Property> properties) {
+        query.setResult("distinct " + TASK);
+
+        return new ArrayList<>((List<Long>) QueryExecutor.executeWithArray(query, properties));
+    }
+}
@@ -7,7 +7,7 @@ import org.motechproject.tasks.domain.Task;
 /**
  * Utility class defining filters over some collections.
  */
-final class HandlerPredicates {
+public final class HandlerPredicates {
     private HandlerPredicates() {
     }
 
@@ -0,0 +1,248 @@
+package org.motechproject.tasks.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.WordUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.domain.ManipulationType;
+import org.motechproject.tasks.ex.TaskHandlerException;
+
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * Manipulation of a field value, such as <b>substring(0,5)</b>, parsed once into its type and arguments so that
+ * executing it does not parse it again.
+ * <p/>
+ * A manipulation with arguments which can not be parsed fails when it is executed, in the same way as it would
+ * if it was parsed then.
+ */
+final class Manipulation {
+
+    private static final int JOIN_PATTERN_BEGIN_INDEX = 5;
+    private static final int DATETIME_PATTERN_BEGIN_INDEX = 9;
+    private static final int FORMAT_PATTERN_BEGIN_INDEX = 7;
+    private static final int SUBSTRING_PATTERN_BEGIN_INDEX = 10;
+    private static final int SPLIT_PATTERN_BEGIN_INDEX = 6;
+    private static final int PLUS_DAYS_PATTERN_BEGIN_INDEX = 9;
+
+    private final String manipulation;
+    private final boolean format;
+    private final ManipulationType type;
+
+    private boolean parsed;
+    private String[] formatItems;
+    private KeyInformation[] formatKeys;
+    private String joinSeparator;
+    private DateTimeFormatter dateTimeFormatter;
+    private int[] substringIndexes;
+    private Pattern splitPattern;
+    private int splitIndex;
+    private int days;
+
+    private Manipulation(String manipulation) {
+        this.manipulation = manipulation;
+        this.format = manipulation.contains("format");
+        this.type = findType(manipulation);
+
+        try {
+            parseArguments();
+            parsed = true;
+        } catch (RuntimeException e) {
+            parsed = false;
+        }
+    }
+
+    static Manipulation parse(String manipulation) {
+        return new Manipulation(manipulation);
+    }
+
+    /**
+     * Check if the manipulation formats the value with arguments, which can be other fields.
+     *
+     * @return true if the manipulation is executed by {@link #format(String, KeyEvaluator)}
+     */
+    boolean isFormat() {
+        return format;
+    }
+
+    String getManipulation() {
+        return manipulation;
+    }
+
+    ManipulationType getType() {
+        return type;
+    }
+
+    /**
+     * Formats the value with the arguments of the manipulation, evaluating the arguments which are fields.
+     */
+    String format(String value, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+        ensureParsed();
+
+        if (formatItems == null) {
+            return value;
+        }
+
+        String[] items = formatItems.clone();
+        for (int i = 0; i < items.length; ++i) {
+            if (formatKeys[i] != null) {
+                Object subValue = keyEvaluator.getValue(formatKeys[i]);
+                items[i] = subValue != null ? subValue.toString() : "";
+            }
+        }
+
+        return String.format(value, (Object[]) items);
+    }
+
+    /**
+     * Executes the manipulation, other than format, on the value.
+     *
+     * @throws MotechException if the manipulation is unknown or the value is not a date for a date manipulation
+     */
+    String apply(String value) {
+        if (type == ManipulationType.DATETIME) {
+            try {
+                ensureParsed();
+                return dateTimeFormatter.print(new DateTime(value));
+            } catch (IllegalArgumentException e) {
+                throw new MotechException("error.date.format", e);
+            }
+        }
+
+        ensureParsed();
+
+        switch (type) {
+            case JOIN:
+                return StringUtils.join(value.split(" "), joinSeparator);
+            case SUBSTRING:
+                return (substringIndexes.length == 1)
+                        ? value.substring(substringIndexes[0])
+                        : value.substring(substringIndexes[0], substringIndexes[1]);
+            case SPLIT:
+                return splitPattern.split(value)[splitIndex];
+            case PLUSDAYS:
+                return new DateTime(value).plusDays(days).toString();
+            case TOUPPER:
+                return value.toUpperCase();
+            case TOLOWER:
+                return value.toLowerCase();
+            case CAPITALIZE:
+                return WordUtils.capitalize(value);
+            default:
+                throw new MotechException("task.warning.manipulation");
+        }
+    }
+
+    private void ensureParsed() {
+        if (!parsed) {
+            // fails again, as parsing when the manipulation was created did
+            parseArguments();
+        }
+    }
+
+    private void parseArguments() {
+        if (format) {
+            parseFormatArguments();
+            return;
+        }
+
+        switch (type) {
+            case JOIN:
+                joinSeparator = getArguments(JOIN_PATTERN_BEGIN_INDEX);
+                break;
+            case DATETIME:
+                dateTimeFormatter = DateTimeFormat.forPattern(getArguments(DATETIME_PATTERN_BEGIN_INDEX));
+                break;
+            case SUBSTRING:
+                parseSubstringArguments();
+                break;
+            case SPLIT:
+                String[] splitArguments = getArguments(SPLIT_PATTERN_BEGIN_INDEX).split(",");
+                splitIndex = Integer.parseInt(splitArguments[1]);
+                splitPattern = Pattern.compile(splitArguments[0]);
+                break;
+            case PLUSDAYS:
+                days = Integer.parseInt(getArguments(PLUS_DAYS_PATTERN_BEGIN_INDEX));
+                break;
+            default:
+        }
+    }
+
+    private void parseFormatArguments() {
+        String formatElements = getArguments(FORMAT_PATTERN_BEGIN_INDEX);
+
+        if (isNotBlank(formatElements)) {
+            String[] items = formatElements.split(",");
+            KeyInformation[] keys = new KeyInformation[items.length];
+
+            for (int i = 0; i < items.length; ++i) {
+                String item = items[i];
+
+                if (item.startsWith("{{") && item.endsWith("}}")) {
+                    keys[i] = KeyInformation.parse(item.substring(2, item.length() - 2));
+                }
+            }
+
+            formatItems = items;
+            formatKeys = keys;
+        }
+    }
+
+    private void parseSubstringArguments() {
+        String pattern = getArguments(SUBSTRING_PATTERN_BEGIN_INDEX);
+        String[] splitValue = pattern.contains(",") ? pattern.split(",") : new String[]{pattern};
+        int[] indexes = new int[splitValue.length];
+
+        for (int i = 0; i < splitValue.length; ++i) {
+            indexes[i] = Integer.parseInt(splitValue[i]);
+        }
+
+        if (indexes.length != 1 && indexes.length != 2) {
+            throw new IllegalArgumentException("Incorrect pattern for substring manipulation");
+        }
+
+        substringIndexes = indexes;
+    }
+
+    private String getArguments(int beginIndex) {
+        return manipulation.substring(beginIndex, manipulation.length() - 1);
+    }
+
+    private static ManipulationType findType(String manipulation) {
+        String lowerCase = manipulation.toLowerCase();
+        ManipulationType type;
+
+        if (lowerCase.contains("join")) {
+            type = ManipulationType.JOIN;
+        } else if (lowerCase.contains("datetime")) {
+            type = ManipulationType.DATETIME;
+        } else if (lowerCase.contains("substring")) {
+            type = ManipulationType.SUBSTRING;
+        } else if (lowerCase.contains("split")) {
+            type = ManipulationType.SPLIT;
+        } else if (lowerCase.contains("plusdays")) {
+            type = ManipulationType.PLUSDAYS;
+        } else {
+            switch (lowerCase.replace("()", "")) {
+                case "toupper":
+                    type = ManipulationType.TOUPPER;
+                    break;
+                case "tolower":
+                    type = ManipulationType.TOLOWER;
+                    break;
+                case "capitalize":
+                    type = ManipulationType.CAPITALIZE;
+                    break;
+                default:
+                    type = ManipulationType.UNKNOWN;
+            }
+        }
+
+        return type;
+    }
+}
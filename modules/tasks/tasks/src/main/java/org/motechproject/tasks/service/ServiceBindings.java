@@ -0,0 +1,170 @@
+package org.motechproject.tasks.service;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bindings of the OSGi services called by task actions. The service of each interface is tracked by a
+ * {@link ServiceTracker}, opened the first time an action calls that interface, and each method called on it is
+ * resolved once into a method handle bound to the service. The handles of a service are dropped when it is
+ * modified or unregistered, so calling a service method neither looks up the service registry nor uses reflection.
+ */
+class ServiceBindings {
+
+    private final BundleContext bundleContext;
+    private final ConcurrentMap<String, ServiceBinding> bindings = new ConcurrentHashMap<>();
+
+    ServiceBindings(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Gets the method of the service registered with the given interface. The returned handle is bound to the
+     * service and takes the arguments of the method as an array, its type is <b>(Object[])void</b>.
+     *
+     * @param serviceInterface the interface the service is registered with
+     * @param methodName the name of the method
+     * @param parameterTypes the types of the parameters of the method
+     * @return the method handle, null if no service with the interface is registered
+     * @throws NoSuchMethodException if the service has no public method with the name and parameter types
+     * @throws IllegalAccessException if the method is not accessible
+     */
+    MethodHandle getMethod(String serviceInterface, String methodName, Class[] parameterTypes)
+            throws NoSuchMethodException, IllegalAccessException {
+        return getBinding(serviceInterface).getMethod(methodName, parameterTypes);
+    }
+
+    /**
+     * Stops tracking the services, releasing them.
+     */
+    void close() {
+        synchronized (bindings) {
+            for (ServiceBinding binding : bindings.values()) {
+                binding.close();
+            }
+            bindings.clear();
+        }
+    }
+
+    private ServiceBinding getBinding(String serviceInterface) {
+        ServiceBinding binding = bindings.get(serviceInterface);
+
+        if (binding == null) {
+            synchronized (bindings) {
+                binding = bindings.get(serviceInterface);
+
+                if (binding == null) {
+                    // opened before it is shared, so that no action sees it before it tracks the service
+                    binding = new ServiceBinding(bundleContext, serviceInterface);
+                    binding.open();
+                    bindings.put(serviceInterface, binding);
+                }
+            }
+        }
+
+        return binding;
+    }
+
+    private static class ServiceBinding extends ServiceTracker<Object, Object> {
+        private volatile BoundMethods methods;
+
+        ServiceBinding(BundleContext context, String serviceInterface) {
+            super(context, serviceInterface, null);
+        }
+
+        MethodHandle getMethod(String methodName, Class[] parameterTypes)
+                throws NoSuchMethodException, IllegalAccessException {
+            Object service = getService();
+
+            if (service == null) {
+                return null;
+            }
+
+            BoundMethods bound = methods;
+            if (bound == null || bound.service != service) {
+                bound = new BoundMethods(service);
+                methods = bound;
+            }
+
+            return bound.getMethod(methodName, parameterTypes);
+        }
+
+        @Override
+        public void modifiedService(ServiceReference<Object> reference, Object service) {
+            methods = null;
+            super.modifiedService(reference, service);
+        }
+
+        @Override
+        public void removedService(ServiceReference<Object> reference, Object service) {
+            methods = null;
+            super.removedService(reference, service);
+        }
+    }
+
+    private static class BoundMethods {
+        private final Object service;
+        private final ConcurrentMap<MethodKey, MethodHandle> handles = new ConcurrentHashMap<>();
+
+        BoundMethods(Object service) {
+            this.service = service;
+        }
+
+        MethodHandle getMethod(String methodName, Class[] parameterTypes)
+                throws NoSuchMethodException, IllegalAccessException {
+            MethodKey key = new MethodKey(methodName, parameterTypes);
+            MethodHandle handle = handles.get(key);
+
+            if (handle == null) {
+                Method method = service.getClass().getMethod(methodName, parameterTypes);
+
+                handle = MethodHandles.lookup().unreflect(method).bindTo(service)
+                        .asSpreader(Object[].class, method.getParameterTypes().length)
+                        .asType(MethodType.methodType(void.class, Object[].class));
+
+                handles.putIfAbsent(key, handle);
+            }
+
+            return handle;
+        }
+    }
+
+    private static final class MethodKey {
+        private final String name;
+        private final Class[] parameterTypes;
+
+        MethodKey(String name, Class[] parameterTypes) {
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + Arrays.hashCode(parameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof MethodKey)) {
+                return false;
+            }
+
+            MethodKey other = (MethodKey) obj;
+
+            return name.equals(other.name) && Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+    }
+}
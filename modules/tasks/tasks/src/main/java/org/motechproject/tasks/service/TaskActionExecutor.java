@@ -12,16 +12,15 @@ import org.motechproject.tasks.domain.TaskActionInformation;
 import org.motechproject.tasks.ex.ActionNotFoundException;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.regex.Pattern;
 
 import static org.motechproject.tasks.domain.ParameterType.LIST;
 import static org.motechproject.tasks.domain.ParameterType.MAP;
@@ -32,26 +31,35 @@ import static org.motechproject.tasks.events.constants.TaskFailureCause.TRIGGER;
  * Builds action parameters from  {@link TaskContext} and executes the action by invoking its service or raising its event.
  */
 class TaskActionExecutor {
-    private BundleContext bundleContext;
+    private static final Pattern ROW_SEPARATOR = Pattern.compile("(\\r)?\\n");
+
+    private ServiceBindings serviceBindings;
     private EventRelay eventRelay;
 
     private TaskService taskService;
     private TaskActivityService activityService;
-    private KeyEvaluator keyEvaluator;
+    private final TaskTemplates templates;
 
     TaskActionExecutor(TaskService taskService, TaskActivityService activityService,
                        EventRelay eventRelay) {
+        this(taskService, activityService, eventRelay, new TaskTemplates());
+    }
+
+    TaskActionExecutor(TaskService taskService, TaskActivityService activityService,
+                       EventRelay eventRelay, TaskTemplates templates) {
         this.eventRelay = eventRelay;
         this.taskService = taskService;
         this.activityService = activityService;
+        this.templates = templates;
     }
 
     void execute(Task task, TaskActionInformation actionInformation, TaskContext taskContext) throws TaskHandlerException {
-        this.keyEvaluator = new KeyEvaluator(taskContext);
+        // the executor is shared by all trigger events, so the state of an execution is only passed along
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext, templates);
         ActionEvent action = getActionEvent(actionInformation);
-        Map<String, Object> parameters = createParameters(actionInformation, action);
+        Map<String, Object> parameters = createParameters(actionInformation, action, keyEvaluator);
 
-        if (action.hasService() && bundleContext != null) {
+        if (action.hasService() && serviceBindings != null) {
             if (callActionServiceMethod(action, parameters)) {
                 return;
             }
@@ -76,8 +84,8 @@ class TaskActionExecutor {
         return action;
     }
 
-    Map<String, Object> createParameters(TaskActionInformation info,
-                                         ActionEvent action) throws TaskHandlerException {
+    Map<String, Object> createParameters(TaskActionInformation info, ActionEvent action,
+                                         KeyEvaluator keyEvaluator) throws TaskHandlerException {
         SortedSet<ActionParameter> actionParameters = action.getActionParameters();
         Map<String, Object> parameters = new HashMap<>(actionParameters.size());
 
@@ -95,10 +103,10 @@ class TaskActionExecutor {
 
                 switch (actionParameter.getType()) {
                     case LIST:
-                        parameters.put(key, convertToList((List<String>) LIST.parse(template)));
+                        parameters.put(key, convertToList((List<String>) LIST.parse(template), keyEvaluator));
                         break;
                     case MAP:
-                        parameters.put(key, convertToMap(template));
+                        parameters.put(key, convertToMap(template, keyEvaluator));
                         break;
                     default:
                         try {
@@ -128,8 +136,9 @@ class TaskActionExecutor {
         return parameters;
     }
 
-    private Map<Object, Object> convertToMap(String template) throws TaskHandlerException {
-        String[] rows = template.split("(\\r)?\\n");
+    private Map<Object, Object> convertToMap(String template, KeyEvaluator keyEvaluator)
+            throws TaskHandlerException {
+        String[] rows = ROW_SEPARATOR.split(template);
         Map<Object, Object> tempMap = new HashMap<>(rows.length);
 
         for (String row : rows) {
@@ -140,8 +149,8 @@ class TaskActionExecutor {
             switch (array.length) {
                 case 2:
                     array[1] = array[1].trim();
-                    mapKey = getValue(array[0]);
-                    mapValue = getValue(array[1]);
+                    mapKey = getValue(array[0], keyEvaluator);
+                    mapValue = getValue(array[1], keyEvaluator);
 
                     tempMap.put(
                         ParameterType.getType(mapKey.getClass()).parse(keyEvaluator.evaluateTemplateString(array[0])),
@@ -149,7 +158,7 @@ class TaskActionExecutor {
                     );
                     break;
                 case 1:
-                    mapValue = getValue(array[0]);
+                    mapValue = getValue(array[0], keyEvaluator);
 
                     tempMap.putAll((Map) mapValue);
                     break;
@@ -159,11 +168,12 @@ class TaskActionExecutor {
         return tempMap;
     }
 
-    private List<Object> convertToList(List<String> templates) throws TaskHandlerException {
+    private List<Object> convertToList(List<String> templates, KeyEvaluator keyEvaluator)
+            throws TaskHandlerException {
         List<Object> tempList = new ArrayList<>();
 
         for (String template : templates) {
-            Object value = getValue(template.trim());
+            Object value = getValue(template.trim(), keyEvaluator);
 
             if (value instanceof Collection) {
                 tempList.addAll((Collection) value);
@@ -175,8 +185,8 @@ class TaskActionExecutor {
         return tempList;
     }
 
-    private Object getValue(String row) throws TaskHandlerException {
-        List<KeyInformation> keys = KeyInformation.parseAll(row);
+    private Object getValue(String row, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+        List<KeyInformation> keys = keyEvaluator.compile(row).getKeys();
 
         Object result;
         if (keys.isEmpty()) {
@@ -192,31 +202,36 @@ class TaskActionExecutor {
     private boolean callActionServiceMethod(ActionEvent action, Map<String, Object> parameters)
             throws TaskHandlerException {
         MethodHandler methodHandler = new MethodHandler(action, parameters);
-        ServiceReference reference = bundleContext.getServiceReference(
-                action.getServiceInterface()
-        );
-        boolean serviceAvailable = reference != null;
+        String serviceMethod = action.getServiceMethod();
+        Class[] classes = methodHandler.isParametrized() ? methodHandler.getClasses() : new Class[0];
+        Object[] objects = methodHandler.isParametrized() ? methodHandler.getObjects() : new Object[0];
+        MethodHandle method;
 
-        if (serviceAvailable) {
-            Object service = bundleContext.getService(reference);
-            String serviceMethod = action.getServiceMethod();
-            Class[] classes = methodHandler.isParametrized() ? methodHandler.getClasses() : null;
-            Object[] objects = methodHandler.isParametrized() ? methodHandler.getObjects() : null;
+        try {
+            method = serviceBindings.getMethod(action.getServiceInterface(), serviceMethod, classes);
+        } catch (NoSuchMethodException e) {
+            throw new TaskHandlerException(
+                    ACTION, "task.error.notFoundMethodForService", e,
+                    serviceMethod, action.getServiceInterface()
+            );
+        } catch (IllegalAccessException e) {
+            throw new TaskHandlerException(
+                    ACTION, "task.error.serviceMethodInvokeError", e,
+                    serviceMethod, action.getServiceInterface()
+            );
+        }
 
-            try {
-                Method method = service.getClass().getMethod(serviceMethod, classes);
+        boolean serviceAvailable = method != null;
 
-                try {
-                    method.invoke(service, objects);
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    throw new TaskHandlerException(
-                            ACTION, "task.error.serviceMethodInvokeError", e,
-                            serviceMethod, action.getServiceInterface()
-                    );
-                }
-            } catch (NoSuchMethodException e) {
+        if (serviceAvailable) {
+            try {
+                method.invokeExact(objects);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                // only exceptions are failures of the action, errors are left to the caller
                 throw new TaskHandlerException(
-                        ACTION, "task.error.notFoundMethodForService", e,
+                        ACTION, "task.error.serviceMethodInvokeError", t,
                         serviceMethod, action.getServiceInterface()
                 );
             }
@@ -226,6 +241,16 @@ class TaskActionExecutor {
     }
 
     void setBundleContext(BundleContext bundleContext) {
-        this.bundleContext = bundleContext;
+        close();
+        this.serviceBindings = (bundleContext == null) ? null : new ServiceBindings(bundleContext);
+    }
+
+    /**
+     * Releases the services called by the actions.
+     */
+    void close() {
+        if (serviceBindings != null) {
+            serviceBindings.close();
+        }
     }
 }
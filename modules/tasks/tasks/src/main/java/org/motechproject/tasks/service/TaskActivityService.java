@@ -1,10 +1,14 @@
 package org.motechproject.tasks.service;
 
+import org.joda.time.DateTime;
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
 
 import java.util.List;
+import java.util.Map;
 
 public interface TaskActivityService {
 
@@ -18,11 +22,74 @@ public interface TaskActivityService {
 
     List<TaskActivity> errorsFromLastRun(Task task);
 
+    /**
+     * Returns the number of activities recorded for the given task since it last succeeded or was disabled, the
+     * same as the size of {@link #errorsFromLastRun(Task)}, without reading the stored activities every time.
+     *
+     * @param task the task
+     * @return the number of activities from the last run of the task
+     */
+    int countErrorsFromLastRun(Task task);
+
     void deleteActivitiesForTask(Long taskId);
 
+    /**
+     * Deletes the activities of all tasks recorded before the given date.
+     *
+     * @param date the date of the oldest activities to keep
+     * @return the number of the deleted activities
+     */
+    long deleteActivitiesOlderThan(DateTime date);
+
+    /**
+     * Deletes the oldest activities of each task, so that at most the given number of its newest activities is kept.
+     * Activities recorded at the same time as the oldest kept one are kept as well.
+     *
+     * @param maxActivitiesPerTask the number of the activities to keep for each task, must be positive
+     * @return the number of the deleted activities
+     */
+    long deleteActivitiesExceeding(int maxActivitiesPerTask);
+
     List<TaskActivity> getAllActivities();
 
+    /**
+     * Returns the number of the activities of each type recorded for each task, counted by the database.
+     *
+     * @return the numbers of the activities by type, by the id of their task
+     */
+    Map<Long, Map<TaskActivityType, Long>> countActivitiesByTask();
+
+    /**
+     * Returns a page of the activities of all tasks, the newest first unless the query parameters order them
+     * differently.
+     *
+     * @param queryParams the page and the order of the activities, all activities are returned without paging
+     * @return the activities
+     */
+    List<TaskActivity> getAllActivities(QueryParams queryParams);
+
     List<TaskActivity> getTaskActivities(Long taskId);
 
+    /**
+     * Returns a page of the activities of the given task, the newest first unless the query parameters order them
+     * differently.
+     *
+     * @param taskId the id of the task
+     * @param queryParams the page and the order of the activities, all activities are returned without paging
+     * @return the activities
+     */
+    List<TaskActivity> getTaskActivities(Long taskId, QueryParams queryParams);
+
+    /**
+     * Returns a page of the activities of the given type of the given task, the newest first unless the query
+     * parameters order them differently.
+     *
+     * @param taskId the id of the task
+     * @param type the type of the activities, activities of all types are returned if null
+     * @param queryParams the page and the order of the activities, all activities are returned without paging
+     * @return the activities
+     */
+    List<TaskActivity> getTaskActivities(Long taskId, TaskActivityType type, QueryParams queryParams);
+
     void addWarning(Task task, String key, String field, Exception e);
 }
@@ -29,9 +29,11 @@ import static org.motechproject.tasks.events.constants.TaskFailureCause.FILTER;
 class TaskInitializer {
 
     private TaskContext taskContext;
+    private TaskTemplates templates;
 
-    TaskInitializer(TaskContext taskContext) {
+    TaskInitializer(TaskContext taskContext, TaskTemplates templates) {
         this.taskContext = taskContext;
+        this.templates = templates;
     }
 
     public boolean evalConfigSteps(Map<String, DataProvider> dataProviders) throws TaskHandlerException {
@@ -75,7 +77,7 @@ class TaskInitializer {
             );
         }
 
-        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext, templates);
         Map<String, String> lookupFields = new HashMap<>();
         for (Lookup lookup : dataSource.getLookup()) {
             lookupFields.put(lookup.getField(), keyEvaluator.evaluateTemplateString(lookup.getValue()));
@@ -22,6 +22,17 @@ public interface TaskService {
 
     List<Task> findTasksForTriggerSubject(final String subject);
 
+    /**
+     * Returns the enabled tasks with registered channels which are triggered by the given subject. The tasks are
+     * kept in memory, by subject, and refreshed when tasks or channels change, so the returned tasks must not be
+     * modified other than through {@link #save(Task)}.
+     *
+     * @param subject the subject of the trigger, not case sensitive
+     * @return the active tasks, never null
+     * @throws TriggerNotFoundException if no channel has a trigger with the given subject
+     */
+    List<Task> findActiveTasksForTriggerSubject(String subject) throws TriggerNotFoundException;
+
     List<Task> findTasksDependentOnModule(String moduleName);
 
     TriggerEvent findTrigger(String subject) throws TriggerNotFoundException;
@@ -0,0 +1,91 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+/**
+ * Template of a value compiled into the literal text and the fields between it, with the manipulations of the
+ * fields parsed, so that evaluating it does not parse it again.
+ * <p/>
+ * A template with <i>n</i> fields has <i>n + 1</i> literals: the text before the first field, the text between
+ * each two fields and the text after the last field.
+ */
+final class TaskTemplate {
+
+    private final String template;
+    private final List<String> literals;
+    private final List<KeyInformation> keys;
+    private final List<List<Manipulation>> manipulations;
+
+    private TaskTemplate(String template, List<String> literals, List<KeyInformation> keys,
+                         List<List<Manipulation>> manipulations) {
+        this.template = template;
+        this.literals = Collections.unmodifiableList(literals);
+        this.keys = Collections.unmodifiableList(keys);
+        this.manipulations = Collections.unmodifiableList(manipulations);
+    }
+
+    /**
+     * Compiles the template.
+     *
+     * @param template the template, fields in it are found as by {@link KeyInformation#parseAll(String)}
+     * @return the compiled template
+     * @throws IllegalArgumentException in the same situations as {@link KeyInformation#parseAll(String)}
+     */
+    static TaskTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<KeyInformation> keys = new ArrayList<>();
+        List<List<Manipulation>> manipulations = new ArrayList<>();
+
+        String input = isEmpty(template) ? "" : template;
+        Matcher matcher = KeyInformation.KEY_PATTERN.matcher(input);
+        int literalStart = 0;
+
+        while (matcher.find()) {
+            KeyInformation key = KeyInformation.parse(matcher.group(1));
+            List<Manipulation> keyManipulations = new ArrayList<>(key.getManipulations().size());
+
+            for (String manipulation : key.getManipulations()) {
+                keyManipulations.add(Manipulation.parse(manipulation));
+            }
+
+            literals.add(input.substring(literalStart, matcher.start()));
+            keys.add(key);
+            manipulations.add(Collections.unmodifiableList(keyManipulations));
+            literalStart = matcher.end();
+        }
+
+        literals.add(input.substring(literalStart));
+
+        return new TaskTemplate(template, literals, keys, manipulations);
+    }
+
+    String getTemplate() {
+        return template;
+    }
+
+    List<String> getLiterals() {
+        return literals;
+    }
+
+    List<KeyInformation> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return the manipulations of each field, in the order of {@link #getKeys()}
+     */
+    List<List<Manipulation>> getManipulations() {
+        return manipulations;
+    }
+
+    boolean hasKeys() {
+        return !keys.isEmpty();
+    }
+}
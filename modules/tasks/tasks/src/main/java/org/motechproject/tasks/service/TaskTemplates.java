@@ -0,0 +1,77 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.Task;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled templates of the tasks. The templates of a task are compiled on its first execution and kept as long as
+ * the same task object is executed. Tasks are loaded anew when they are edited, so the templates of an edited task
+ * are compiled again. The task objects are only weakly referenced, and the templates of a task are evicted once its
+ * task object was collected, so that the templates of deleted tasks do not build up.
+ */
+class TaskTemplates {
+
+    private final ConcurrentMap<Long, TaskEntry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Task> collectedTasks = new ReferenceQueue<>();
+
+    /**
+     * Gets the compiled template of the task.
+     *
+     * @param task the task with the template
+     * @param template the template
+     * @return the compiled template
+     * @throws IllegalArgumentException if the template can not be compiled, see {@link TaskTemplate#compile(String)}
+     */
+    TaskTemplate get(Task task, String template) {
+        if (task == null || task.getId() == null || template == null) {
+            return TaskTemplate.compile(template);
+        }
+
+        evictCollected();
+
+        TaskEntry entry = entries.get(task.getId());
+        if (entry == null || entry.get() != task) {
+            entry = new TaskEntry(task, collectedTasks);
+            entries.put(task.getId(), entry);
+        }
+
+        TaskTemplate compiled = entry.templates.get(template);
+        if (compiled == null) {
+            compiled = TaskTemplate.compile(template);
+            entry.templates.putIfAbsent(template, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * @return the number of the tasks with compiled templates
+     */
+    int size() {
+        evictCollected();
+        return entries.size();
+    }
+
+    private void evictCollected() {
+        Reference<? extends Task> collected;
+        while ((collected = collectedTasks.poll()) != null) {
+            TaskEntry entry = (TaskEntry) collected;
+            entries.remove(entry.taskId, entry);
+        }
+    }
+
+    private static class TaskEntry extends WeakReference<Task> {
+        private final Long taskId;
+        private final ConcurrentMap<String, TaskTemplate> templates = new ConcurrentHashMap<>();
+
+        TaskEntry(Task task, ReferenceQueue<Task> queue) {
+            super(task, queue);
+            this.taskId = task.getId();
+        }
+    }
+}
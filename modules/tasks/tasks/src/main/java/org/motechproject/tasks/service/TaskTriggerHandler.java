@@ -13,7 +13,6 @@ import org.motechproject.event.listener.annotations.MotechListenerEventProxy;
 import org.motechproject.server.config.SettingsFacade;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActionInformation;
-import org.motechproject.tasks.domain.TriggerEvent;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.ex.TriggerNotFoundException;
 import org.osgi.framework.BundleContext;
@@ -24,6 +23,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ReflectionUtils;
 
+import javax.annotation.PreDestroy;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
@@ -40,7 +40,6 @@ import static org.motechproject.tasks.events.constants.EventDataKeys.TASK_FAIL_T
 import static org.motechproject.tasks.events.constants.EventSubjects.createHandlerFailureSubject;
 import static org.motechproject.tasks.events.constants.EventSubjects.createHandlerSuccessSubject;
 import static org.motechproject.tasks.events.constants.TaskFailureCause.TRIGGER;
-import static org.motechproject.tasks.service.HandlerPredicates.activeTasks;
 import static org.motechproject.tasks.service.HandlerPredicates.withServiceName;
 
 /**
@@ -61,6 +60,7 @@ public class TaskTriggerHandler implements TriggerHandler {
     private Map<String, DataProvider> dataProviders;
 
     private TaskActionExecutor executor;
+    private final TaskTemplates templates = new TaskTemplates();
 
     @Autowired
     public TaskTriggerHandler(TaskService taskService, TaskActivityService activityService,
@@ -72,7 +72,7 @@ public class TaskTriggerHandler implements TriggerHandler {
         this.eventRelay = eventRelay;
         this.settings = settings;
 
-        this.executor = new TaskActionExecutor(taskService, activityService, eventRelay);
+        this.executor = new TaskActionExecutor(taskService, activityService, eventRelay, templates);
 
         for (Task task : taskService.getAllTasks()) {
             registerHandlerFor(task.getTrigger().getSubject());
@@ -104,13 +104,11 @@ public class TaskTriggerHandler implements TriggerHandler {
 
     @Override
     public void handle(MotechEvent event) throws TriggerNotFoundException {
-        TriggerEvent trigger = taskService.findTrigger(event.getSubject());
-        List<Task> tasks = taskService.findTasksForTrigger(trigger);
+        List<Task> tasks = taskService.findActiveTasksForTriggerSubject(event.getSubject());
 
-        CollectionUtils.filter(tasks, activeTasks());
         for (Task task : tasks) {
             TaskContext taskContext = new TaskContext(task, event, activityService);
-            TaskInitializer initializer = new TaskInitializer(taskContext);
+            TaskInitializer initializer = new TaskInitializer(taskContext, templates);
 
             try {
                 if (initializer.evalConfigSteps(dataProviders)) {
@@ -132,7 +130,7 @@ public class TaskTriggerHandler implements TriggerHandler {
 
         activityService.addError(task, e);
 
-        int failureNumber = activityService.errorsFromLastRun(task).size();
+        int failureNumber = activityService.countErrorsFromLastRun(task);
         int possibleErrorsNumber = getPossibleErrorsNumber();
 
         if (failureNumber >= possibleErrorsNumber) {
@@ -219,4 +217,9 @@ public class TaskTriggerHandler implements TriggerHandler {
         this.executor.setBundleContext(bundleContext);
     }
 
+    @PreDestroy
+    public void releaseServices() {
+        executor.close();
+    }
+
 }
@@ -11,6 +11,7 @@ import org.motechproject.server.api.BundleIcon;
 import org.motechproject.tasks.contract.ActionEventRequest;
 import org.motechproject.tasks.contract.ChannelRequest;
 import org.motechproject.tasks.domain.Channel;
+import org.motechproject.tasks.domain.ChannelRegisterEvent;
 import org.motechproject.tasks.domain.TaskError;
 import org.motechproject.tasks.ex.ValidationException;
 import org.motechproject.tasks.json.ActionEventRequestDeserializer;
@@ -139,6 +140,8 @@ public class ChannelServiceImpl implements ChannelService {
             parameters.put(CHANNEL_MODULE_NAME, channel.getModuleName());
 
             eventRelay.sendEventMessage(new MotechEvent(CHANNEL_UPDATE_SUBJECT, parameters));
+        } else {
+            eventRelay.sendEventMessage(new ChannelRegisterEvent(channel.getModuleName()).toMotechEvent());
         }
     }
 
@@ -0,0 +1,112 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.server.config.SettingsFacade;
+import org.motechproject.tasks.service.TaskActivityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+/**
+ * Purges old task activities every {@value #PURGE_INTERVAL_MINUTES} minutes, so that they do not grow without
+ * bound. The activities of the last <b>task.activity.retention.days</b> days and at most
+ * <b>task.activity.retention.rowsPerTask</b> activities of each task are kept. A blank or zero setting does not
+ * limit the kept activities. Both settings are blank by default, so no activities are deleted until retention is
+ * configured. The settings are read before each purge, so changing them does not need a restart.
+ */
+@Component
+public class TaskActivityRetention {
+    static final String RETENTION_DAYS_KEY = "task.activity.retention.days";
+    static final String RETENTION_ROWS_PER_TASK_KEY = "task.activity.retention.rowsPerTask";
+    static final long PURGE_INTERVAL_MINUTES = 60;
+    static final long INITIAL_DELAY_MINUTES = 5;
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaskActivityRetention.class);
+
+    private TaskActivityService activityService;
+    private SettingsFacade settings;
+    private ScheduledExecutorService purgeScheduler;
+
+    @Autowired
+    public TaskActivityRetention(TaskActivityService activityService,
+                                 @Qualifier("tasksSettings") SettingsFacade settings) {
+        this.activityService = activityService;
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    public void start() {
+        purgeScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "motech-task-activity-retention");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        purgeScheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    purge();
+                } catch (RuntimeException e) {
+                    LOG.error("Failed to purge task activities", e);
+                }
+            }
+        }, INITIAL_DELAY_MINUTES, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (purgeScheduler != null) {
+            purgeScheduler.shutdownNow();
+            purgeScheduler = null;
+        }
+    }
+
+    /**
+     * Deletes the activities which are not kept by the retention settings.
+     */
+    void purge() {
+        int days = getLimit(RETENTION_DAYS_KEY);
+        if (days > 0) {
+            long deleted = activityService.deleteActivitiesOlderThan(DateUtil.now().minusDays(days));
+            LOG.info(String.format("Deleted %d task activities older than %d days", deleted, days));
+        }
+
+        int rowsPerTask = getLimit(RETENTION_ROWS_PER_TASK_KEY);
+        if (rowsPerTask > 0) {
+            long deleted = activityService.deleteActivitiesExceeding(rowsPerTask);
+            LOG.info(String.format("Deleted %d task activities exceeding %d per task", deleted, rowsPerTask));
+        }
+    }
+
+    private int getLimit(String key) {
+        String property = settings.getProperty(key);
+        int limit = 0;
+
+        if (!isBlank(property)) {
+            try {
+                limit = Integer.parseInt(property.trim());
+            } catch (NumberFormatException e) {
+                LOG.error(String.format(
+                        "The value of key: %s is not a number. Task activities are not limited by it.", key
+                ));
+            }
+        }
+
+        return limit;
+    }
+}
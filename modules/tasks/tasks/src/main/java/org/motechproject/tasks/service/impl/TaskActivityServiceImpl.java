@@ -1,26 +1,81 @@
 package org.motechproject.tasks.service.impl;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.joda.time.DateTime;
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.repository.ActivityChunkEndQuery;
+import org.motechproject.tasks.repository.ActivityCountsQuery;
+import org.motechproject.tasks.repository.ActivityDeleteQuery;
+import org.motechproject.tasks.repository.ActivityRecordsQuery;
+import org.motechproject.tasks.repository.ActivityTasksQuery;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Records task activities in batches. Activities are buffered and written together in a single transaction by a
+ * background thread, once {@value #MAX_BATCH_SIZE} of them are buffered or {@value #LINGER_MILLIS} milliseconds
+ * after the first buffered one, so that executing a task does not wait for its activities to be stored. Buffered
+ * activities are written before activities are read or deleted, and are lost if the server stops before they are
+ * written. If a batch cannot be written, its activities are written one by one, so that one failing activity does
+ * not lose the others. Shutting the service down waits up to {@value #SHUTDOWN_TIMEOUT_MILLIS} milliseconds for a
+ * batch being written and then writes the remaining buffered activities. Afterwards activities are written as they
+ * are recorded.
+ * <p/>
+ * Activities are read, ordered and paged by the database. They are deleted by the database in chunks of
+ * {@value #DELETE_CHUNK_SIZE}, each in its own transaction, so that deleting many of them neither loads them nor
+ * holds a long transaction.
+ * <p/>
+ * The number of errors from the last run of each task is counted in memory, so that it is not read from the stored
+ * activities on every failure. It is read from them the first time it is needed for a task, again after an activity
+ * of the task could not be written, and at most every {@value #COUNT_TTL_MILLIS} milliseconds, so that the
+ * activities recorded by other servers are counted as well.
+ */
 @Service
 public class TaskActivityServiceImpl implements TaskActivityService {
+    static final int MAX_BATCH_SIZE = 100;
+    static final long LINGER_MILLIS = 1000;
+    static final int DELETE_CHUNK_SIZE = 1000;
+    static final long COUNT_TTL_MILLIS = 60000;
+    static final long SHUTDOWN_TIMEOUT_MILLIS = 10000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaskActivityServiceImpl.class);
 
     private TaskActivitiesDataService taskActivitiesDataService;
 
+    private final Object bufferLock = new Object();
+    private final Object writeLock = new Object();
+    private List<TaskActivity> buffer = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private ScheduledExecutorService flushScheduler;
+    private boolean stopped;
+
+    private final ConcurrentMap<Long, ErrorCount> errorsFromLastRun = new ConcurrentHashMap<>();
+
     @Autowired
     public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService) {
         this.taskActivitiesDataService = taskActivitiesDataService;
@@ -28,36 +83,54 @@ public class TaskActivityServiceImpl implements TaskActivityService {
 
     @Override
     public void addError(Task task, TaskHandlerException e) {
-        taskActivitiesDataService.create(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
-                TaskActivityType.ERROR, ExceptionUtils.getStackTrace(e)));
+        record(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
+                TaskActivityType.ERROR, ExceptionUtils.getStackTrace(e)), false);
     }
 
     @Override
     public void addSuccess(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.success.ok", task.getId(),
-                TaskActivityType.SUCCESS));
+        record(new TaskActivity("task.success.ok", task.getId(),
+                TaskActivityType.SUCCESS), true);
     }
 
     @Override
     public void addWarning(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.warning.taskDisabled", task.getId(),
-                TaskActivityType.WARNING));
+        record(new TaskActivity("task.warning.taskDisabled", task.getId(),
+                TaskActivityType.WARNING), true);
     }
 
     @Override
     public void addWarning(Task task, String key, String field) {
-        taskActivitiesDataService.create(new TaskActivity(key, field, task.getId(),
-                TaskActivityType.WARNING));
+        record(new TaskActivity(key, field, task.getId(),
+                TaskActivityType.WARNING), false);
     }
 
     @Override
     public void addWarning(Task task, String key, String field, Exception e) {
-        taskActivitiesDataService.create(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
-                task.getId(), TaskActivityType.WARNING, ExceptionUtils.getStackTrace(e.getCause())));
+        record(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
+                task.getId(), TaskActivityType.WARNING, ExceptionUtils.getStackTrace(e.getCause())), false);
+    }
+
+    @Override
+    public int countErrorsFromLastRun(Task task) {
+        if (task.getId() == null) {
+            return errorsFromLastRun(task).size();
+        }
+
+        ErrorCount counter = errorsFromLastRun.get(task.getId());
+
+        if (counter == null || counter.isExpired()) {
+            counter = new ErrorCount(errorsFromLastRun(task).size());
+            errorsFromLastRun.put(task.getId(), counter);
+        }
+
+        return counter.get();
     }
 
     @Override
     public List<TaskActivity> errorsFromLastRun(Task task) {
+        flush();
+
         List<TaskActivity> messages = taskActivitiesDataService.byTask(task.getId());
         Collections.sort(messages);
         List<TaskActivity> result = new ArrayList<>(messages.size());
@@ -78,29 +151,266 @@ public class TaskActivityServiceImpl implements TaskActivityService {
 
     @Override
     public void deleteActivitiesForTask(Long taskId) {
-        for (TaskActivity msg : taskActivitiesDataService.byTask(taskId)) {
-            taskActivitiesDataService.delete(msg);
+        flush();
+        errorsFromLastRun.remove(taskId);
+
+        deleteActivities(taskId, null);
+    }
+
+    @Override
+    public long deleteActivitiesOlderThan(DateTime date) {
+        flush();
+
+        long deleted = deleteActivities(null, date);
+        if (deleted > 0) {
+            // the errors from the last runs may have been deleted, they are counted again from the kept ones
+            errorsFromLastRun.clear();
         }
+
+        return deleted;
+    }
+
+    @Override
+    public long deleteActivitiesExceeding(int maxActivitiesPerTask) {
+        if (maxActivitiesPerTask < 1) {
+            throw new IllegalArgumentException("The number of activities to keep must be positive");
+        }
+
+        flush();
+
+        QueryParams oldestKept = new QueryParams(maxActivitiesPerTask, 1);
+        long deleted = 0;
+
+        for (Long taskId : taskActivitiesDataService.executeQuery(new ActivityTasksQuery())) {
+            List<TaskActivity> activities = taskActivitiesDataService.executeQuery(
+                    new ActivityRecordsQuery(taskId, oldestKept));
+
+            if (!activities.isEmpty()) {
+                deleted += deleteActivities(taskId, activities.get(0).getDate());
+            }
+        }
+
+        if (deleted > 0) {
+            errorsFromLastRun.clear();
+        }
+
+        return deleted;
     }
 
     @Override
     public List<TaskActivity> getAllActivities() {
-        return sort(taskActivitiesDataService.retrieveAll());
+        return getAllActivities(null);
+    }
+
+    @Override
+    public List<TaskActivity> getAllActivities(QueryParams queryParams) {
+        flush();
+        return taskActivitiesDataService.executeQuery(new ActivityRecordsQuery(null, queryParams));
+    }
+
+    @Override
+    public Map<Long, Map<TaskActivityType, Long>> countActivitiesByTask() {
+        flush();
+        return taskActivitiesDataService.executeQuery(new ActivityCountsQuery());
     }
 
     @Override
     public List<TaskActivity> getTaskActivities(Long taskId) {
-        return sort(taskActivitiesDataService.byTask(taskId));
+        return getTaskActivities(taskId, null);
+    }
+
+    @Override
+    public List<TaskActivity> getTaskActivities(Long taskId, QueryParams queryParams) {
+        return getTaskActivities(taskId, null, queryParams);
+    }
+
+    @Override
+    public List<TaskActivity> getTaskActivities(Long taskId, TaskActivityType type, QueryParams queryParams) {
+        flush();
+        return taskActivitiesDataService.executeQuery(new ActivityRecordsQuery(taskId, type, queryParams));
+    }
+
+    private long deleteActivities(Long taskId, DateTime before) {
+        long deleted = 0;
+        Long chunkEnd;
+
+        do {
+            chunkEnd = taskActivitiesDataService.executeQuery(
+                    new ActivityChunkEndQuery(taskId, before, DELETE_CHUNK_SIZE));
+            deleted += taskActivitiesDataService.executeQuery(new ActivityDeleteQuery(taskId, before, chunkEnd));
+        } while (chunkEnd != null);
+
+        return deleted;
     }
 
-    private List<TaskActivity> sort(List<TaskActivity> messages) {
-        Collections.sort(messages, new Comparator<TaskActivity>() {
-            @Override
-            public int compare(TaskActivity o1, TaskActivity o2) {
-                return o2.getDate().compareTo(o1.getDate());
+    /**
+     * Writes all buffered activities.
+     */
+    void flush() {
+        synchronized (writeLock) {
+            final List<TaskActivity> batch;
+            synchronized (bufferLock) {
+                batch = takeBuffer();
             }
-        });
 
-        return messages;
+            if (!batch.isEmpty()) {
+                try {
+                    taskActivitiesDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+                        @Override
+                        protected void doInTransactionWithoutResult(TransactionStatus status) {
+                            for (TaskActivity activity : batch) {
+                                taskActivitiesDataService.create(activity);
+                            }
+                        }
+                    });
+
+                    LOG.debug("Recorded batch of {} task activities", batch.size());
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed to record batch of task activities, recording them one by one", e);
+                    writeOneByOne(batch);
+                }
+            }
+        }
+    }
+
+    private void writeOneByOne(List<TaskActivity> batch) {
+        for (TaskActivity activity : batch) {
+            try {
+                taskActivitiesDataService.create(activity);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to record task activity: " + activity, e);
+                if (activity.getTask() != null) {
+                    // the count no longer matches the stored activities, it is read from them again
+                    errorsFromLastRun.remove(activity.getTask());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ScheduledExecutorService scheduler;
+
+        synchronized (bufferLock) {
+            stopped = true;
+            scheduler = flushScheduler;
+            flushScheduler = null;
+            if (scheduledFlush != null) {
+                // the final flush below writes its activities
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+
+        if (scheduler != null) {
+            // a batch being written is not interrupted, so that it is not lost
+            scheduler.shutdown();
+            try {
+                if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    LOG.warn("Recording task activities did not finish within {} ms", SHUTDOWN_TIMEOUT_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flushQuietly();
+    }
+
+    private void record(TaskActivity activity, boolean endsRun) {
+        Long taskId = activity.getTask();
+
+        if (taskId != null) {
+            if (endsRun) {
+                errorsFromLastRun.put(taskId, new ErrorCount(0));
+            } else {
+                // without a count yet, it is read with this activity the first time it is needed
+                ErrorCount counter = errorsFromLastRun.get(taskId);
+                if (counter != null) {
+                    counter.increment();
+                }
+            }
+        }
+
+        boolean writeNow = false;
+
+        synchronized (bufferLock) {
+            buffer.add(activity);
+
+            if (stopped) {
+                writeNow = true;
+            } else if (buffer.size() == MAX_BATCH_SIZE) {
+                getFlushScheduler().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushQuietly();
+                    }
+                });
+            } else if (scheduledFlush == null) {
+                scheduledFlush = getFlushScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushQuietly();
+                    }
+                }, LINGER_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (writeNow) {
+            flushQuietly();
+        }
+    }
+
+    private List<TaskActivity> takeBuffer() {
+        List<TaskActivity> batch = buffer;
+        buffer = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to record task activities", e);
+        }
+    }
+
+    private ScheduledExecutorService getFlushScheduler() {
+        if (flushScheduler == null) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "motech-task-activity-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return flushScheduler;
+    }
+
+    private static class ErrorCount {
+        private final AtomicInteger count;
+        private final long readAt = System.currentTimeMillis();
+
+        ErrorCount(int count) {
+            this.count = new AtomicInteger(count);
+        }
+
+        int get() {
+            return count.get();
+        }
+
+        void increment() {
+            count.incrementAndGet();
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - readAt > COUNT_TTL_MILLIS;
+        }
     }
 }
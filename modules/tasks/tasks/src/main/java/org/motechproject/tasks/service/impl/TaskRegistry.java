@@ -0,0 +1,157 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.tasks.domain.ActionEvent;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.domain.TriggerEvent;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the active tasks by the lower case subjects of their triggers, and of the action events their actions
+ * resolve to, so that handling an event does not read all tasks and channels. The tasks of a subject are loaded by
+ * the first event with that subject, and dropped whenever a task with that subject is saved or deleted. Everything
+ * is dropped when a channel is registered or updated, or a module is installed or uninstalled, as these change
+ * which triggers and actions exist and which tasks have their channels registered.
+ * <p>
+ * Entries loaded while the registry was being refreshed are not kept, so that they can not overwrite the refresh.
+ * The registry only sees the changes made on this server, so entries are also loaded again once they are older than
+ * {@value #ENTRY_TTL_MILLIS} milliseconds, which bounds how long changes made on other servers go unnoticed.
+ */
+class TaskRegistry implements BundleListener {
+    static final long ENTRY_TTL_MILLIS = 60000;
+
+    private final ConcurrentMap<String, Entry<TriggerTasks>> tasksBySubject = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry<ActionEvent>> actionEvents = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final long entryTtlMillis;
+
+    TaskRegistry() {
+        this(ENTRY_TTL_MILLIS);
+    }
+
+    TaskRegistry(long entryTtlMillis) {
+        this.entryTtlMillis = entryTtlMillis;
+    }
+
+    /**
+     * @return the current generation of the registry, to be passed when the entries loaded from now on are put
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    TriggerTasks getTasks(String subject) {
+        return get(tasksBySubject, key(subject));
+    }
+
+    void putTasks(String subject, TriggerTasks tasks, long loadedGeneration) {
+        if (loadedGeneration == generation.get()) {
+            tasksBySubject.put(key(subject), new Entry<>(tasks));
+        }
+    }
+
+    ActionEvent getActionEvent(TaskActionInformation actionInformation) {
+        return get(actionEvents, key(actionInformation));
+    }
+
+    void putActionEvent(TaskActionInformation actionInformation, ActionEvent actionEvent, long loadedGeneration) {
+        if (loadedGeneration == generation.get()) {
+            actionEvents.put(key(actionInformation), new Entry<>(actionEvent));
+        }
+    }
+
+    /**
+     * Drops the tasks of the given trigger subjects, after a task with one of them changed.
+     */
+    void refresh(String... subjects) {
+        generation.incrementAndGet();
+        for (String subject : subjects) {
+            if (subject != null) {
+                tasksBySubject.remove(key(subject));
+            }
+        }
+    }
+
+    void refreshAll() {
+        generation.incrementAndGet();
+        tasksBySubject.clear();
+        actionEvents.clear();
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        switch (event.getType()) {
+            case BundleEvent.INSTALLED:
+            case BundleEvent.UNINSTALLED:
+            case BundleEvent.UPDATED:
+                refreshAll();
+                break;
+            default:
+        }
+    }
+
+    private <T> T get(ConcurrentMap<String, Entry<T>> entries, String key) {
+        Entry<T> entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - entry.loadedAt > entryTtlMillis) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    private static String key(String subject) {
+        return subject.toLowerCase();
+    }
+
+    private static String key(TaskActionInformation actionInformation) {
+        return String.format("%s:%s:%s:%s", actionInformation.getModuleName(), actionInformation.getServiceInterface(),
+                actionInformation.getServiceMethod(), actionInformation.getSubject());
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long loadedAt = System.currentTimeMillis();
+
+        Entry(T value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The trigger of a subject with its active tasks.
+     */
+    static class TriggerTasks {
+        private final TriggerEvent trigger;
+        private final List<Task> tasks;
+
+        TriggerTasks(TriggerEvent trigger, List<Task> tasks) {
+            this.trigger = trigger;
+            this.tasks = Collections.unmodifiableList(new ArrayList<>(tasks));
+        }
+
+        /**
+         * @return the trigger, null if no channel has a trigger with the subject
+         */
+        TriggerEvent getTrigger() {
+            return trigger;
+        }
+
+        List<Task> getTasks() {
+            return tasks;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.motechproject.tasks.ex.TriggerNotFoundException;
 import org.motechproject.tasks.ex.ValidationException;
 import org.motechproject.tasks.repository.TasksDataService;
 import org.motechproject.tasks.service.ChannelService;
+import org.motechproject.tasks.service.HandlerPredicates;
 import org.motechproject.tasks.service.TaskDataProviderService;
 import org.motechproject.tasks.service.TaskService;
 import org.motechproject.tasks.util.BundleContextUtil;
@@ -60,6 +61,7 @@ import static org.apache.commons.collections.CollectionUtils.isNotEmpty;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.motechproject.tasks.events.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.events.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_REGISTER_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
 import static org.motechproject.tasks.validation.TaskValidator.TASK;
@@ -77,6 +79,7 @@ public class TaskServiceImpl implements TaskService {
     private TaskDataProviderService providerService;
     private EventRelay eventRelay;
     private BundleContext bundleContext;
+    private TaskRegistry registry = new TaskRegistry();
 
     private static final String[] TASK_TRIGGER_VALIDATION_ERRORS = new String[]{"task.validation.error.triggerNotExist",
             "task.validation.error.triggerFieldNotExist"};
@@ -102,6 +105,10 @@ public class TaskServiceImpl implements TaskService {
         this.providerService = providerService;
         this.eventRelay = eventRelay;
         this.bundleContext = bundleContext;
+
+        if (bundleContext != null) {
+            bundleContext.addBundleListener(registry);
+        }
     }
 
     @Override
@@ -133,6 +140,12 @@ public class TaskServiceImpl implements TaskService {
     @Override
     public ActionEvent getActionEventFor(TaskActionInformation taskActionInformation)
             throws ActionNotFoundException {
+        ActionEvent cached = registry.getActionEvent(taskActionInformation);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = registry.getGeneration();
         Channel channel = channelService.getChannel(taskActionInformation.getModuleName());
         ActionEvent event = null;
 
@@ -149,6 +162,7 @@ public class TaskServiceImpl implements TaskService {
             ));
         }
 
+        registry.putActionEvent(taskActionInformation, event, generation);
         return event;
     }
 
@@ -190,6 +204,53 @@ public class TaskServiceImpl implements TaskService {
         return list;
     }
 
+    @Override
+    public List<Task> findActiveTasksForTriggerSubject(String subject) throws TriggerNotFoundException {
+        TaskRegistry.TriggerTasks triggerTasks = registry.getTasks(subject);
+
+        if (triggerTasks == null) {
+            long generation = registry.getGeneration();
+            triggerTasks = loadActiveTasks(subject, generation);
+            registry.putTasks(subject, triggerTasks, generation);
+        }
+
+        if (triggerTasks.getTrigger() == null) {
+            throw new TriggerNotFoundException(format(
+                    "Cant find trigger for subject: %s", subject
+            ));
+        }
+
+        return triggerTasks.getTasks();
+    }
+
+    private TaskRegistry.TriggerTasks loadActiveTasks(String subject, long generation) {
+        TriggerEvent trigger;
+        try {
+            trigger = findTrigger(subject);
+        } catch (TriggerNotFoundException e) {
+            LOG.debug(e.getMessage());
+            return new TaskRegistry.TriggerTasks(null, Collections.<Task>emptyList());
+        }
+
+        List<Task> tasks = new ArrayList<>(findTasksForTrigger(trigger));
+        CollectionUtils.filter(tasks, HandlerPredicates.activeTasks());
+
+        // resolve the actions now, so that handling the event does not read the channels
+        for (Task task : tasks) {
+            for (TaskActionInformation action : task.getActions()) {
+                if (registry.getActionEvent(action) == null) {
+                    try {
+                        getActionEventFor(action);
+                    } catch (ActionNotFoundException | RuntimeException e) {
+                        LOG.debug(format("Action of the task: %s not resolved: %s", task.getId(), e.getMessage()));
+                    }
+                }
+            }
+        }
+
+        return new TaskRegistry.TriggerTasks(trigger, tasks);
+    }
+
     @Override
     public TriggerEvent findTrigger(String subject) throws TriggerNotFoundException {
         List<Channel> channels = channelService.getAllChannels();
@@ -234,6 +295,7 @@ public class TaskServiceImpl implements TaskService {
         }
 
         tasksDataService.delete(t);
+        registry.refresh(getTriggerSubject(t));
     }
 
     @MotechListener(subjects = CHANNEL_UPDATE_SUBJECT)
@@ -241,6 +303,8 @@ public class TaskServiceImpl implements TaskService {
         String moduleName = event.getParameters().get(CHANNEL_MODULE_NAME).toString();
         Channel channel = channelService.getChannel(moduleName);
 
+        registry.refreshAll();
+
         LOG.debug(String.format("Handling Channel update %s for module %s", channel.getDisplayName(), moduleName));
 
         List<Task> tasks = findTasksDependentOnModule(moduleName);
@@ -257,6 +321,13 @@ public class TaskServiceImpl implements TaskService {
         }
     }
 
+    @MotechListener(subjects = CHANNEL_REGISTER_SUBJECT)
+    public void refreshTasksAfterChannelRegistration(MotechEvent event) {
+        LOG.debug(String.format("Handling Channel registration for module %s", event.getParameters().get(CHANNEL_MODULE_NAME)));
+
+        registry.refreshAll();
+    }
+
     @MotechListener(subjects = DATA_PROVIDER_UPDATE_SUBJECT)
     public void validateTasksAfterTaskDataProviderUpdate(MotechEvent event) {
         String providerName = event.getParameters().get(DATA_PROVIDER_NAME).toString();
@@ -564,12 +635,16 @@ public class TaskServiceImpl implements TaskService {
     }
 
     private void addOrUpdate(final Task task) {
+        final String[] previousSubject = new String[1];
+
         tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus status) {
                 Task existing = tasksDataService.findById(task.getId());
 
                 if (null != existing) {
+                    previousSubject[0] = getTriggerSubject(existing);
+
                     existing.setActions(task.getActions());
                     existing.setDescription(task.getDescription());
                     existing.setEnabled(task.isEnabled());
@@ -589,6 +664,13 @@ public class TaskServiceImpl implements TaskService {
                 }
             }
         });
+
+        // after the commit, so that the tasks are not loaded again before the change is visible
+        registry.refresh(previousSubject[0], getTriggerSubject(task));
+    }
+
+    private String getTriggerSubject(Task task) {
+        return (task.getTrigger() == null) ? null : task.getTrigger().getSubject();
     }
 
     private void checkChannelAvailableInTasks(List<Task> tasks) {
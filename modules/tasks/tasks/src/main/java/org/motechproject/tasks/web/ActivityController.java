@@ -1,6 +1,8 @@
 package org.motechproject.tasks.web;
 
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.service.TaskActivityService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -8,10 +10,12 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import java.util.List;
+import java.util.Map;
 
 @Controller
 public class ActivityController {
@@ -28,15 +32,44 @@ public class ActivityController {
         return activityService.getAllActivities();
     }
 
+    @RequestMapping(value = "/activity", method = RequestMethod.GET, params = { "page", "pageSize" })
+    @ResponseBody
+    public List<TaskActivity> getAllActivities(@RequestParam("page") int page,
+                                               @RequestParam("pageSize") int pageSize) {
+        return activityService.getAllActivities(queryParams(page, pageSize));
+    }
+
+    @RequestMapping(value = "/activity/count", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<Long, Map<TaskActivityType, Long>> countActivitiesByTask() {
+        return activityService.countActivitiesByTask();
+    }
+
     @RequestMapping(value = "/activity/{taskId}", method = RequestMethod.GET)
     @ResponseBody
     public List<TaskActivity> getTaskActivities(@PathVariable Long taskId) {
         return activityService.getTaskActivities(taskId);
     }
 
+    @RequestMapping(value = "/activity/{taskId}", method = RequestMethod.GET, params = { "page", "pageSize" })
+    @ResponseBody
+    public List<TaskActivity> getTaskActivities(@PathVariable Long taskId, @RequestParam("page") int page,
+                                                @RequestParam("pageSize") int pageSize,
+                                                @RequestParam(value = "type", required = false) TaskActivityType type) {
+        return activityService.getTaskActivities(taskId, type, queryParams(page, pageSize));
+    }
+
     @RequestMapping(value = "/activity/{taskId}", method = RequestMethod.DELETE)
     @ResponseStatus(HttpStatus.OK)
     public void deleteActivitiesForTask(@PathVariable Long taskId) {
         activityService.deleteActivitiesForTask(taskId);
     }
+
+    private QueryParams queryParams(int page, int pageSize) {
+        if (page < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("Page and page size must be positive");
+        }
+
+        return new QueryParams(page, pageSize);
+    }
 }
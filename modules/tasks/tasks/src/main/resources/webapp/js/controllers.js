@@ -6,8 +6,8 @@
 
     var controllers = angular.module('tasks.controllers', []);
 
-    controllers.controller('DashboardCtrl', function ($scope, $filter, Tasks, Activities, $rootScope) {
-        var tasks, activities = [],
+    controllers.controller('DashboardCtrl', function ($scope, $filter, Tasks, ActivityCounts, $rootScope) {
+        var tasks, counts,
             searchMatch = function (item, method, searchQuery) {
                 var result;
 
@@ -71,25 +71,17 @@
             $scope.allTasks = [];
 
             tasks = Tasks.query(function () {
-                activities = Activities.query(function () {
-                    var item, i, j;
+                counts = ActivityCounts.get(function () {
+                    var item, taskCounts, i;
 
                     for (i = 0; i < tasks.length; i += 1) {
+                        taskCounts = counts[tasks[i].id] || {};
                         item = {
                             task: tasks[i],
-                            success: 0,
-                            error: 0
+                            success: taskCounts.SUCCESS || 0,
+                            error: taskCounts.ERROR || 0
                         };
 
-                        for (j = 0; j < activities.length; j += 1) {
-                            if (activities[j].task === item.task.id && activities[j].activityType === 'SUCCESS') {
-                                item.success += 1;
-                            }
-
-                            if (activities[j].task === item.task.id && activities[j].activityType === 'ERROR') {
-                                item.error += 1;
-                            }
-                        }
                         $scope.allTasks.push(item);
                     }
 
@@ -199,26 +191,8 @@
             $scope.getTasks = function () {
 
                 tasks = Tasks.query(function () {
-                    activities = Activities.query(function () {
-                        var item, i, j;
-
-                        for (i = 0; i < tasks.length; i += 1) {
-                            item = {
-                                task: tasks[i],
-                                success: 0,
-                                error: 0
-                            };
-
-                            for (j = 0; j < activities.length; j += 1) {
-                                if (activities[j].task === item.task.id && activities[j].activityType === 'SUCCESS') {
-                                    item.success += 1;
-                                }
-
-                                if (activities[j].task === item.task.id && activities[j].activityType === 'ERROR') {
-                                    item.error += 1;
-                                }
-                            }
-                        }
+                    activities = Activities.query({ page: 1, pageSize: RECENT_TASK_COUNT }, function () {
+                        var i, j;
 
                         for (i = 0; i < RECENT_TASK_COUNT && i < activities.length; i += 1) {
                             for (j = 0; j < tasks.length; j += 1) {
@@ -1302,21 +1276,14 @@
         };
     });
 
-    controllers.controller('LogCtrl', function ($scope, Tasks, Activities, $routeParams, $filter) {
-        var data, task, searchMatch = function (activity, filterHistory) {
-            var result;
-
-            if (filterHistory === $scope.histories[0]) {
-                result = true;
-            } else {
-                result = activity.activityType === filterHistory;
-            }
-
-            return result;
+    controllers.controller('LogCtrl', function ($scope, Tasks, Activities, ActivityCounts, $routeParams) {
+        var data, task, poll, countMatch = function (type, filterHistory) {
+            return filterHistory === $scope.histories[0] || type === filterHistory;
         };
 
         $scope.resetItemsPagination();
-        $scope.filteredItems = [];
+        $scope.activities = [];
+        $scope.activityCount = 0;
         $scope.limitPages = [10, 20, 50, 100];
         $scope.itemsPerPage = $scope.limitPages[0];
         $scope.histories = ['ALL', 'WARNING', 'SUCCESS', 'ERROR'];
@@ -1328,16 +1295,67 @@
             east__maxSize: 350
         });
 
+        // only the shown page of the history is fetched, the counts give the number of pages
+        $scope.fetchActivities = function () {
+            var params = {
+                taskId: $routeParams.taskId,
+                page: $scope.currentPage + 1,
+                pageSize: $scope.itemsPerPage
+            };
+
+            if ($scope.filterHistory !== $scope.histories[0]) {
+                params.type = $scope.filterHistory;
+            }
+
+            ActivityCounts.get(function (counts) {
+                var taskCounts = counts[$routeParams.taskId] || {}, filtered = 0, i;
+
+                $scope.activityCount = 0;
+
+                angular.forEach(taskCounts, function (count, type) {
+                    $scope.activityCount += count;
+
+                    if (countMatch(type, $scope.filterHistory)) {
+                        filtered += count;
+                    }
+                });
+
+                $scope.pagedItems = [];
+
+                for (i = 0; i < Math.ceil(filtered / $scope.itemsPerPage); i += 1) {
+                    $scope.pagedItems.push([]);
+                }
+
+                if ($scope.currentPage > 0 && $scope.currentPage >= $scope.pagedItems.length) {
+                    $scope.setCurrentPage(Math.max($scope.pagedItems.length - 1, 0));
+                    return;
+                }
+
+                Activities.query(params, function (activities) {
+                    $scope.activities = activities;
+                    $scope.pagedItems[$scope.currentPage] = activities;
+                });
+            });
+        };
+
         if ($routeParams.taskId !== undefined) {
             data = { taskId: $routeParams.taskId };
 
-            task = Tasks.get(data, function () {
-                $scope.activities = Activities.query(data, $scope.search);
+            $scope.$watch(function () {
+                return [$scope.currentPage, $scope.itemsPerPage, $scope.filterHistory].join();
+            }, function () {
+                $scope.fetchActivities();
+            });
+
+            poll = setInterval(function () {
+                $scope.$apply($scope.fetchActivities);
+            }, 30 * 1000);
 
-                setInterval(function () {
-                    $scope.activities = Activities.query(data);
-                }, 30 * 1000);
+            $scope.$on('$destroy', function () {
+                clearInterval(poll);
+            });
 
+            task = Tasks.get(data, function () {
                 if (task.trigger) {
                     $scope.trigger = {
                         channelName: task.trigger.channelName,
@@ -1364,20 +1382,10 @@
 
         $scope.changeItemsPerPage = function () {
             $scope.setCurrentPage(0);
-            $scope.groupToPages($scope.filteredItems, $scope.itemsPerPage);
         };
 
         $scope.changeFilterHistory = function () {
-            $scope.search();
-        };
-
-        $scope.search = function () {
-            $scope.filteredItems = $filter('filter')($scope.activities, function (activity) {
-                return activity && searchMatch(activity, $scope.filterHistory);
-            });
-
             $scope.setCurrentPage(0);
-            $scope.groupToPages($scope.filteredItems, $scope.itemsPerPage);
         };
 
         $scope.clearHistory = function () {
@@ -1385,9 +1393,9 @@
                 if (!r) {
                     return;
                 }
-                Activities.remove({taskId: $routeParams.taskId});
-                $scope.activities = [];
-                $scope.search();
+                Activities.remove({taskId: $routeParams.taskId}, function () {
+                    $scope.fetchActivities();
+                });
             });
         };
     });
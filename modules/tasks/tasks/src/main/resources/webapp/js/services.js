@@ -17,6 +17,10 @@
         return $resource('../tasks/api/activity/:taskId');
     });
 
+    services.factory('ActivityCounts', function ($resource) {
+        return $resource('../tasks/api/activity/count');
+    });
+
     services.factory('DataSources', function ($resource) {
         return $resource('../tasks/api/datasource');
     });
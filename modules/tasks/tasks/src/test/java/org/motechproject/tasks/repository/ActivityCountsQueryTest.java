@@ -0,0 +1,46 @@
+package org.motechproject.tasks.repository;
+
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.tasks.domain.TaskActivityType;
+
+import javax.jdo.Query;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.domain.TaskActivityType.ERROR;
+import static org.motechproject.tasks.domain.TaskActivityType.SUCCESS;
+
+public class ActivityCountsQueryTest {
+
+    @Mock
+    Query query;
+
+    @Test
+    public void shouldCountActivitiesOfEachTypeByTask() {
+        initMocks(this);
+
+        when(query.executeWithArray(anyVararg())).thenReturn(asList(
+                new Object[]{1L, SUCCESS, 5L},
+                new Object[]{1L, ERROR, 2L},
+                new Object[]{2L, ERROR, 1L}
+        ));
+
+        Map<Long, Map<TaskActivityType, Long>> counts = new ActivityCountsQuery()
+                .execute(query, new InstanceSecurityRestriction());
+
+        verify(query).setResult("task, activityType, count(this)");
+        verify(query).setGrouping("task, activityType");
+
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(5), counts.get(1L).get(SUCCESS));
+        assertEquals(Long.valueOf(2), counts.get(1L).get(ERROR));
+        assertEquals(Long.valueOf(1), counts.get(2L).get(ERROR));
+    }
+}
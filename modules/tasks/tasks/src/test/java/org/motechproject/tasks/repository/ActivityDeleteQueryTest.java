@@ -0,0 +1,68 @@
+package org.motechproject.tasks.repository;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ActivityDeleteQueryTest {
+
+    private static final Long TASK_ID = 12345L;
+
+    @Mock
+    Query query;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+    }
+
+    @Test
+    public void shouldDeleteChunkOfActivitiesOfTaskRecordedBeforeDate() {
+        DateTime date = new DateTime(2014, 5, 1, 9, 30);
+
+        when(query.deletePersistentAll(TASK_ID, date, 50L)).thenReturn(2L);
+
+        Long deleted = new ActivityDeleteQuery(TASK_ID, date, 50L).execute(query, new InstanceSecurityRestriction());
+
+        verify(query).setFilter("task == param0 && date < param1 && id <= param2");
+        verify(query).declareParameters("java.lang.Long param0, org.joda.time.DateTime param1, java.lang.Long param2");
+        verify(query, never()).executeWithArray(anyVararg());
+
+        assertEquals(Long.valueOf(2), deleted);
+    }
+
+    @Test
+    public void shouldFindLastActivityOfChunk() {
+        when(query.executeWithArray(anyVararg())).thenReturn(asList(50L));
+
+        Long chunkEnd = new ActivityChunkEndQuery(TASK_ID, null, 100).execute(query, new InstanceSecurityRestriction());
+
+        verify(query).setFilter("task == param0");
+        verify(query).setResult("id");
+        verify(query).setOrdering("id ascending");
+        verify(query).setRange(99, 100);
+
+        assertEquals(Long.valueOf(50), chunkEnd);
+    }
+
+    @Test
+    public void shouldNotFindLastActivityIfLessThanChunkIsLeft() {
+        when(query.executeWithArray(anyVararg())).thenReturn(new ArrayList<Long>());
+
+        assertNull(new ActivityChunkEndQuery(null, null, 100).execute(query, new InstanceSecurityRestriction()));
+    }
+}
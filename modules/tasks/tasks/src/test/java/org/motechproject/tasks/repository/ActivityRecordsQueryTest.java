@@ -0,0 +1,76 @@
+package org.motechproject.tasks.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
+import org.motechproject.tasks.domain.TaskActivity;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.domain.TaskActivityType.ERROR;
+import static org.motechproject.tasks.domain.TaskActivityType.SUCCESS;
+
+public class ActivityRecordsQueryTest {
+
+    private static final Long TASK_ID = 12345L;
+
+    @Mock
+    Query query;
+
+    List<TaskActivity> activities;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        activities = new ArrayList<>();
+        activities.add(new TaskActivity(SUCCESS.getValue(), TASK_ID, SUCCESS));
+
+        when(query.executeWithArray(anyVararg())).thenReturn(activities);
+    }
+
+    @Test
+    public void shouldReturnPageOfNewestActivitiesOfTask() {
+        List<TaskActivity> result = new ActivityRecordsQuery(TASK_ID, new QueryParams(3, 10))
+                .execute(query, new InstanceSecurityRestriction());
+
+        verify(query).setFilter("task == param0");
+        verify(query).declareParameters("java.lang.Long param0");
+        verify(query).setOrdering("date descending");
+        verify(query).setRange(20, 30);
+        verify(query).executeWithArray(TASK_ID);
+
+        assertEquals(activities, result);
+    }
+
+    @Test
+    public void shouldReturnPageOfActivitiesOfTypeOfTask() {
+        new ActivityRecordsQuery(TASK_ID, ERROR, new QueryParams(1, 10)).execute(query, new InstanceSecurityRestriction());
+
+        verify(query).setFilter("task == param0 && activityType == param1");
+        verify(query).declareParameters("java.lang.Long param0, org.motechproject.tasks.domain.TaskActivityType param1");
+        verify(query).setRange(0, 10);
+        verify(query).executeWithArray(TASK_ID, ERROR);
+    }
+
+    @Test
+    public void shouldReturnAllActivitiesInGivenOrder() {
+        new ActivityRecordsQuery(null, QueryParams.ascOrder("date")).execute(query, new InstanceSecurityRestriction());
+
+        verify(query).setFilter("");
+        verify(query).setOrdering("date ascending");
+        verify(query, never()).setRange(anyLong(), anyLong());
+    }
+}
@@ -4,8 +4,16 @@ import org.joda.time.DateTime;
 import org.junit.Test;
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.tasks.domain.Task;
+
+import java.util.HashMap;
+import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class KeyEvaluatorTest {
 
@@ -33,4 +41,43 @@ public class KeyEvaluatorTest {
     public void shouldThrowExceptionWhenManipulationIsUnknown(){
         new KeyEvaluator(null).manipulate("undefined", "something");
     }
+
+    @Test
+    public void shouldEvaluateTemplateString() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "ala");
+        parameters.put("pet", "cat");
+        parameters.put("message", "%s has a %s");
+        KeyEvaluator keyEvaluator = new KeyEvaluator(new TaskContext(new Task(), new MotechEvent("trigger", parameters), null));
+
+        assertEquals("no fields", keyEvaluator.evaluateTemplateString("no fields"));
+        assertEquals("ala", keyEvaluator.evaluateTemplateString("{{trigger.name}}"));
+        assertEquals("ALA has a Cat, ala!", keyEvaluator.evaluateTemplateString("{{trigger.name?toUpper}} has a {{trigger.pet?capitalize}}, {{trigger.name}}!"));
+        assertEquals("ala has a CAT.", keyEvaluator.evaluateTemplateString("{{trigger.message?format({{trigger.name}},{{trigger.pet}})?split( a ,0)}} a {{trigger.pet?toUpper}}."));
+    }
+
+    @Test
+    public void shouldCompileTemplatesOfTaskOnce() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "ala");
+        Task task = new Task();
+        task.setId(1L);
+        TaskTemplates templates = new TaskTemplates();
+        KeyEvaluator keyEvaluator = new KeyEvaluator(new TaskContext(task, new MotechEvent("trigger", parameters), null), templates);
+
+        assertEquals("ala", keyEvaluator.evaluateTemplateString("{{trigger.name}}"));
+        assertSame(keyEvaluator.compile("{{trigger.name}}"), templates.get(task, "{{trigger.name}}"));
+    }
+
+    @Test
+    public void shouldPublishWarningForUnknownManipulationInTemplate() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "ala");
+        TaskActivityService activityService = mock(TaskActivityService.class);
+        Task task = new Task();
+        KeyEvaluator keyEvaluator = new KeyEvaluator(new TaskContext(task, new MotechEvent("trigger", parameters), activityService));
+
+        assertEquals("ALA", keyEvaluator.evaluateTemplateString("{{trigger.name?toUper?toUpper}}"));
+        verify(activityService).addWarning(task, "task.warning.manipulation", "toUper");
+    }
 }
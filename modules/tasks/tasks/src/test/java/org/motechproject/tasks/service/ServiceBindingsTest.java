@@ -0,0 +1,115 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+
+import java.lang.invoke.MethodHandle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ServiceBindingsTest {
+
+    public static class TestService {
+        private String message;
+
+        public void send(Integer phone, String message) {
+            this.message = phone + ": " + message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    @Mock
+    BundleContext bundleContext;
+
+    @Mock
+    ServiceReference serviceReference;
+
+    TestService testService = new TestService();
+
+    ServiceBindings serviceBindings;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+
+        when(bundleContext.getServiceReferences("TestService", null))
+                .thenReturn(new ServiceReference[]{serviceReference});
+        when(bundleContext.getService(serviceReference)).thenReturn(testService);
+
+        serviceBindings = new ServiceBindings(bundleContext);
+    }
+
+    @Test
+    public void shouldCallServiceMethodThroughBoundHandle() throws Throwable {
+        MethodHandle method = serviceBindings.getMethod("TestService", "send",
+                new Class[]{Integer.class, String.class});
+
+        method.invokeExact(new Object[]{123, "message"});
+
+        assertEquals("123: message", testService.getMessage());
+    }
+
+    @Test
+    public void shouldLookUpServiceAndMethodOnce() throws Exception {
+        Class[] parameterTypes = {Integer.class, String.class};
+
+        MethodHandle method = serviceBindings.getMethod("TestService", "send", parameterTypes);
+
+        assertSame(method, serviceBindings.getMethod("TestService", "send", parameterTypes));
+
+        verify(bundleContext).getServiceReferences("TestService", null);
+        verify(bundleContext).getService(serviceReference);
+    }
+
+    @Test
+    public void shouldReturnNullIfServiceIsNotRegistered() throws Exception {
+        assertNull(serviceBindings.getMethod("OtherService", "send", new Class[0]));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void shouldThrowExceptionIfServiceHasNoMethod() throws Exception {
+        serviceBindings.getMethod("TestService", "send", new Class[]{String.class});
+    }
+
+    @Test
+    public void shouldReleaseServiceWhenItIsUnregistered() throws Exception {
+        ArgumentCaptor<ServiceListener> captor = ArgumentCaptor.forClass(ServiceListener.class);
+
+        serviceBindings.getMethod("TestService", "send", new Class[]{Integer.class, String.class});
+
+        verify(bundleContext).addServiceListener(captor.capture(), anyString());
+        captor.getValue().serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, serviceReference));
+
+        verify(bundleContext).ungetService(serviceReference);
+        assertNull(serviceBindings.getMethod("TestService", "send", new Class[]{Integer.class, String.class}));
+    }
+
+    @Test
+    public void shouldReleaseServicesWhenClosed() throws Exception {
+        serviceBindings.getMethod("TestService", "send", new Class[]{Integer.class, String.class});
+
+        serviceBindings.close();
+
+        verify(bundleContext).ungetService(serviceReference);
+
+        serviceBindings.getMethod("TestService", "send", new Class[]{Integer.class, String.class});
+
+        verify(bundleContext, times(2)).getServiceReferences("TestService", null);
+    }
+}
@@ -11,7 +11,6 @@ import org.motechproject.tasks.domain.ActionParameter;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActionInformation;
 import org.motechproject.tasks.domain.TaskBuilder;
-import org.motechproject.tasks.ex.ActionNotFoundException;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
@@ -39,7 +38,7 @@ public class TaskActionExecutorTest {
     private BundleContext bundleContext;
 
     @Test
-    public void shouldRaiseEventIfActionHasSubject() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldRaiseEventIfActionHasSubject() throws Exception {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "actionSubject");
         ActionEvent actionEvent = new ActionEvent("Action", "actionSubject", "", new TreeSet<ActionParameter>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
@@ -56,13 +55,13 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws Exception {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEvent("Action", "actionSubject", "", "serviceInterface", "serviceMethod", new TreeSet<ActionParameter>());
         actionEvent.setActionParameters(new TreeSet<ActionParameter>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(null);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(null);
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
 
@@ -75,13 +74,13 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldNotRaiseEventIfActionHasSubjectAndService_IfServiceIsAvailable() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldNotRaiseEventIfActionHasSubjectAndService_IfServiceIsAvailable() throws Exception {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEvent("Action", "actionSubject", "", "serviceInterface", "serviceMethod", new TreeSet<ActionParameter>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
         ServiceReference serviceReference = mock(ServiceReference.class);
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(new TestService());
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
@@ -95,13 +94,13 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldInvokeServiceIfActionHasService() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldInvokeServiceIfActionHasService() throws Exception {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEvent("Action", "", "serviceInterface", "serviceMethod", new TreeSet<ActionParameter>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
         ServiceReference serviceReference = mock(ServiceReference.class);
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference[]{serviceReference});
         TestService testService = new TestService();
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
@@ -116,7 +115,17 @@ public class TaskActionExecutorTest {
     }
 
     @Test(expected = TaskHandlerException.class)
-    public void shouldThrowExceptionIfBundleContextIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldThrowExceptionIfServiceMethodFails() throws Exception {
+        executeServiceAction(new FailingService(new IllegalStateException("failed")));
+    }
+
+    @Test(expected = AssertionError.class)
+    public void shouldNotWrapErrorsThrownByServiceMethod() throws Exception {
+        executeServiceAction(new FailingService(new AssertionError("failed")));
+    }
+
+    @Test(expected = TaskHandlerException.class)
+    public void shouldThrowExceptionIfBundleContextIsNotAvailable() throws Exception {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEvent("Action", "", "serviceInterface", "serviceMethod", new TreeSet<ActionParameter>());
         actionEvent.setActionParameters(new TreeSet<ActionParameter>());
@@ -130,7 +139,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test(expected = TaskHandlerException.class)
-    public void shouldThrowExceptionIfActionHasNeitherEventNorService() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldThrowExceptionIfActionHasNeitherEventNorService() throws Exception {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEvent("Action", "", "serviceInterface", "serviceMethod", new TreeSet<ActionParameter>());
         actionEvent.setActionParameters(new TreeSet<ActionParameter>());
@@ -144,13 +153,13 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldAddActivityNotificationIfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldAddActivityNotificationIfServiceIsNotAvailable() throws Exception {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEvent("Action", "actionSubject", "", "serviceInterface", "serviceMethod", new TreeSet<ActionParameter>());
         actionEvent.setActionParameters(new TreeSet<ActionParameter>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(null);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(null);
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
 
@@ -162,6 +171,39 @@ public class TaskActionExecutorTest {
         verify(activityService).addWarning(task, "task.warning.serviceUnavailable", "serviceInterface");
     }
 
+    private void executeServiceAction(Object service) throws Exception {
+        TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
+        ActionEvent actionEvent = new ActionEvent("Action", "", "serviceInterface", "serviceMethod", new TreeSet<ActionParameter>());
+        when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
+
+        ServiceReference serviceReference = mock(ServiceReference.class);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference[]{serviceReference});
+        when(bundleContext.getService(serviceReference)).thenReturn(service);
+
+        Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
+
+        TaskActionExecutor taskActionExecutor = new TaskActionExecutor(taskService, activityService, eventRelay);
+        taskActionExecutor.setBundleContext(bundleContext);
+
+        taskActionExecutor.execute(task, actionInformation, new TaskContext(task, new MotechEvent("trigger"), activityService));
+    }
+
+    private class FailingService {
+
+        private final Throwable failure;
+
+        private FailingService(Throwable failure) {
+            this.failure = failure;
+        }
+
+        public void serviceMethod() {
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+    }
+
     private class TestService {
 
         private boolean invoked;
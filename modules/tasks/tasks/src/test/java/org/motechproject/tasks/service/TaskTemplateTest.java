@@ -0,0 +1,78 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Test;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.domain.ManipulationType;
+import org.motechproject.tasks.domain.Task;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TaskTemplateTest {
+
+    @Test
+    public void shouldCompileTemplateIntoLiteralsAndKeys() {
+        String template = "Hello {{trigger.name?toUpper?substring(0,3)}}, your code is {{ad.12345.Patient#1.code}}.";
+
+        TaskTemplate compiled = TaskTemplate.compile(template);
+
+        assertEquals(template, compiled.getTemplate());
+        assertEquals(asList("Hello ", ", your code is ", "."), compiled.getLiterals());
+        assertEquals(KeyInformation.parseAll(template), compiled.getKeys());
+        assertEquals(ManipulationType.TOUPPER, compiled.getManipulations().get(0).get(0).getType());
+        assertEquals(ManipulationType.SUBSTRING, compiled.getManipulations().get(0).get(1).getType());
+        assertEquals(0, compiled.getManipulations().get(1).size());
+    }
+
+    @Test
+    public void shouldNotTreatFieldsInManipulationArgumentsAsKeys() {
+        TaskTemplate compiled = TaskTemplate.compile("{{trigger.message?format({{trigger.name}},cat)}}");
+
+        assertEquals(1, compiled.getKeys().size());
+        assertEquals(asList("", ""), compiled.getLiterals());
+        assertEquals("trigger.message?format({{trigger.name}},cat)", compiled.getKeys().get(0).getOriginalKey());
+    }
+
+    @Test
+    public void shouldCompileTemplateWithoutKeys() {
+        assertFalse(TaskTemplate.compile("no fields").hasKeys());
+        assertFalse(TaskTemplate.compile(null).hasKeys());
+    }
+
+    @Test
+    public void shouldKeepTemplatesUntilTaskIsLoadedAgain() {
+        TaskTemplates templates = new TaskTemplates();
+        Task task = new Task();
+        task.setId(7L);
+        Task loadedAgain = new Task();
+        loadedAgain.setId(7L);
+
+        TaskTemplate compiled = templates.get(task, "{{trigger.name}}");
+
+        assertSame(compiled, templates.get(task, "{{trigger.name}}"));
+        assertNotSame(compiled, templates.get(loadedAgain, "{{trigger.name}}"));
+    }
+
+    @Test
+    public void shouldEvictTemplatesOfCollectedTask() throws InterruptedException {
+        TaskTemplates templates = new TaskTemplates();
+        compileForTask(templates, 8L);
+        assertEquals(1, templates.size());
+
+        for (int i = 0; i < 50 && templates.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        assertEquals(0, templates.size());
+    }
+
+    private void compileForTask(TaskTemplates templates, Long taskId) {
+        Task task = new Task();
+        task.setId(taskId);
+        templates.get(task, "{{trigger.name}}");
+    }
+}
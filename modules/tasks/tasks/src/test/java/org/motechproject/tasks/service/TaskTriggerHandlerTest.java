@@ -207,7 +207,7 @@ public class TaskTriggerHandlerTest {
         Method method = findMethod(getTargetClass(handler), "handle", MotechEvent.class);
 
         Set<EventListener> listeners = new HashSet<>();
-        listeners.add(new MotechListenerEventProxy("taskTriggerHandler", this, method));
+        listeners.add(new MotechListenerEventProxy("taskTriggerHandler", handler, method));
 
         when(registryService.getListeners(subject)).thenReturn(listeners);
 
@@ -224,7 +224,7 @@ public class TaskTriggerHandlerTest {
 
     @Test(expected = TriggerNotFoundException.class)
     public void shouldThrowExceptionWhenTriggerNotFound() throws Exception {
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenThrow(new TriggerNotFoundException(""));
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenThrow(new TriggerNotFoundException(""));
 
         handler.handle(createEvent());
     }
@@ -233,15 +233,13 @@ public class TaskTriggerHandlerTest {
     public void shouldNotSendEventWhenActionNotFound() throws Exception {
         setTriggerEvent();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenThrow(new ActionNotFoundException(""));
 
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
@@ -257,8 +255,7 @@ public class TaskTriggerHandlerTest {
         setTriggerEvent();
         setActionEvent();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().remove("phone");
@@ -266,8 +263,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -284,8 +280,7 @@ public class TaskTriggerHandlerTest {
         setTriggerEvent();
         setActionEvent();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("phone", null);
@@ -293,8 +288,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -311,8 +305,7 @@ public class TaskTriggerHandlerTest {
         setTriggerEvent();
         setActionEvent();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("phone", "1234   d");
@@ -320,8 +313,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -339,8 +331,7 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setLongField();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("long", "1234   d");
@@ -348,8 +339,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -367,8 +357,7 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setDoubleField();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("double", "1234   d");
@@ -376,8 +365,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -395,8 +383,7 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setBooleanField();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("boolean", "abc");
@@ -404,8 +391,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -423,8 +409,7 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setTimeField();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("time", "234543fgf");
@@ -432,8 +417,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -451,8 +435,7 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setDateField();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("date", "234543fgf");
@@ -460,8 +443,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -478,8 +460,7 @@ public class TaskTriggerHandlerTest {
         setTriggerEvent();
         setActionEvent();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("date1", "2012-12-21 21:21 +0100");
@@ -489,8 +470,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addSuccess(eq(task));
 
@@ -529,10 +509,9 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setTaskActivities();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
         task.getActions().get(0).getValues().put("message", null);
 
         assertTrue(task.isEnabled());
@@ -540,11 +519,10 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
-        verify(taskActivityService).errorsFromLastRun(task);
+        verify(taskActivityService).countErrorsFromLastRun(task);
         verify(taskService).save(task);
         verify(taskActivityService).addWarning(task);
 
@@ -571,12 +549,6 @@ public class TaskTriggerHandlerTest {
         providers.put(TASK_DATA_PROVIDER_NAME, provider);
         handler.setDataProviders(providers);
 
-        TriggerEvent trigger = new TriggerEvent();
-        trigger.setSubject("trigger");
-        List<EventParameter> triggerEventParameters = new ArrayList<>();
-        triggerEventParameters.add(new EventParameter("patientId", "123"));
-        trigger.setEventParameters(triggerEventParameters);
-
         ActionEvent action = new ActionEvent();
         action.setSubject("action");
         SortedSet<ActionParameter> actionEventParameters = new TreeSet<>();
@@ -599,12 +571,11 @@ public class TaskTriggerHandlerTest {
 
         List<Task> tasks = asList(task);
 
-        when(taskService.findTrigger("trigger")).thenReturn(trigger);
-        when(taskService.findTasksForTrigger(trigger)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject("trigger")).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(action);
 
         setTaskActivities();
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
 
         Map<String, Object> param = new HashMap<>(4);
         param.put("patientId", "123");
@@ -626,12 +597,6 @@ public class TaskTriggerHandlerTest {
         providers.put(TASK_DATA_PROVIDER_NAME, provider);
         handler.setDataProviders(providers);
 
-        TriggerEvent trigger = new TriggerEvent();
-        trigger.setSubject("trigger");
-        List<EventParameter> triggerEventParameters = new ArrayList<>();
-        triggerEventParameters.add(new EventParameter("patientId", "123"));
-        trigger.setEventParameters(triggerEventParameters);
-
         ActionEvent action = new ActionEvent();
         action.setSubject("action");
         SortedSet<ActionParameter> actionEventParameters = new TreeSet<>();
@@ -653,12 +618,11 @@ public class TaskTriggerHandlerTest {
 
         List<Task> tasks = asList(task);
 
-        when(taskService.findTrigger("trigger")).thenReturn(trigger);
-        when(taskService.findTasksForTrigger(trigger)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject("trigger")).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(action);
 
         setTaskActivities();
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
 
         Map<String, Object> param = new HashMap<>(4);
         param.put("patientId", "123");
@@ -677,12 +641,6 @@ public class TaskTriggerHandlerTest {
         providers.put(TASK_DATA_PROVIDER_NAME, provider);
         handler.setDataProviders(providers);
 
-        TriggerEvent trigger = new TriggerEvent();
-        trigger.setSubject("trigger");
-        List<EventParameter> triggerEventParameters = new ArrayList<>();
-        triggerEventParameters.add(new EventParameter("patientId", "123"));
-        trigger.setEventParameters(triggerEventParameters);
-
         Task task = new Task();
         task.setName("task");
         task.setId(77l);
@@ -698,11 +656,10 @@ public class TaskTriggerHandlerTest {
 
         List<Task> tasks = asList(task);
 
-        when(taskService.findTrigger("trigger")).thenReturn(trigger);
-        when(taskService.findTasksForTrigger(trigger)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject("trigger")).thenReturn(tasks);
 
         setTaskActivities();
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
 
         Map<String, Object> param = new HashMap<>(4);
         param.put("patientId", "123");
@@ -724,12 +681,6 @@ public class TaskTriggerHandlerTest {
         providers.put(TASK_DATA_PROVIDER_NAME, provider);
         handler.setDataProviders(providers);
 
-        TriggerEvent trigger = new TriggerEvent();
-        trigger.setSubject("trigger");
-        List<EventParameter> triggerEventParameters = new ArrayList<>();
-        triggerEventParameters.add(new EventParameter("patientId", "123"));
-        trigger.setEventParameters(triggerEventParameters);
-
         Task task = new Task();
         task.setName("task");
         task.setId(44l);
@@ -745,11 +696,10 @@ public class TaskTriggerHandlerTest {
 
         List<Task> tasks = asList(task);
 
-        when(taskService.findTrigger("trigger")).thenReturn(trigger);
-        when(taskService.findTasksForTrigger(trigger)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject("trigger")).thenReturn(tasks);
 
         setTaskActivities();
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
 
         Map<String, Object> param = new HashMap<>(4);
         param.put("patientId", "123");
@@ -765,9 +715,8 @@ public class TaskTriggerHandlerTest {
         setTaskActivities();
         setAdditionalData(true);
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
 
         assertTrue(task.isEnabled());
 
@@ -775,8 +724,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskActivityService).addError(eq(task), captor.capture());
 
         verify(dataProvider, never()).supports(anyString());
@@ -801,9 +749,8 @@ public class TaskTriggerHandlerTest {
         setTaskActivities();
         setAdditionalData(true);
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
 
         assertTrue(task.isEnabled());
 
@@ -811,8 +758,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskActivityService).addError(eq(task), captor.capture());
 
         verify(dataProvider, never()).supports(anyString());
@@ -840,10 +786,9 @@ public class TaskTriggerHandlerTest {
         Map<String, String> lookupFields = new HashMap<>();
         lookupFields.put("id", "123456789");
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
 
         when(dataProvider.getName()).thenReturn("TEST");
         when(dataProvider.supports("TestObjectField")).thenReturn(true);
@@ -854,8 +799,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(dataProvider).lookup("TestObjectField", "id", lookupFields);
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -882,10 +826,9 @@ public class TaskTriggerHandlerTest {
         Map<String, String> lookupFields = new HashMap<>();
         lookupFields.put("id", "123456789");
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(taskActivityService.errorsFromLastRun(task)).thenReturn(taskActivities);
+        when(taskActivityService.countErrorsFromLastRun(task)).thenReturn(taskActivities.size());
 
         when(dataProvider.getName()).thenReturn("TEST");
         when(dataProvider.supports("TestObjectField")).thenReturn(true);
@@ -896,8 +839,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(dataProvider).lookup("TestObjectField", "id", lookupFields);
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -914,50 +856,13 @@ public class TaskTriggerHandlerTest {
         assertEquals("task.error.objectNotContainsField", captor.getValue().getMessage());
     }
 
-    @Test
-    public void shouldNotSendEventWhenTaskIsDisabled() throws Exception {
-        setTriggerEvent();
-
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
-
-        task.setEnabled(false);
-
-        handler.handle(createEvent());
-
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
-        verify(taskService, never()).getActionEventFor(task.getActions().get(0));
-        verify(eventRelay, never()).sendEventMessage(any(MotechEvent.class));
-        verify(taskActivityService, never()).addSuccess(task);
-    }
-
-    @Test
-    public void shouldNotSendEventWhenTasksChannelIsDeregistered() throws Exception {
-        setTriggerEvent();
-
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
-
-        task.setHasRegisteredChannel(false);
-
-        handler.handle(createEvent());
-
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
-        verify(taskService, never()).getActionEventFor(task.getActions().get(0));
-        verify(eventRelay, never()).sendEventMessage(any(MotechEvent.class));
-        verify(taskActivityService, never()).addSuccess(task);
-    }
-
     @Test
     public void shouldNotSendEventIfDateFormatInManipulationIsNotValid() throws Exception {
         setTriggerEvent();
         setActionEvent();
         setManipulation();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("manipulations", "{{trigger.startDate?dateTime(BadFormat)}}");
@@ -965,8 +870,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -984,15 +888,13 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setManipulation();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         task.getActions().get(0).getValues().put("manipulations", "{{trigger.eventName?toUper}}");
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
 
         verify(eventRelay, times(2)).sendEventMessage(any(MotechEvent.class));
@@ -1005,14 +907,12 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setFilters();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(eventRelay, times(2)).sendEventMessage(any(MotechEvent.class));
         verify(taskActivityService).addSuccess(task);
@@ -1026,14 +926,12 @@ public class TaskTriggerHandlerTest {
 
         task.getTaskConfig().add(new FilterSet(asList(new Filter(new EventParameter("ExternalID", "externalId", INTEGER), false, EXIST.getValue(), ""))));
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService, never()).getActionEventFor(task.getActions().get(0));
         verify(eventRelay, never()).sendEventMessage(any(MotechEvent.class));
     }
@@ -1066,8 +964,7 @@ public class TaskTriggerHandlerTest {
         Map<String, String> testObjectFieldLookup = new HashMap<>();
         testObjectFieldLookup.put("id", "123456789");
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         when(dataProvider.getName()).thenReturn("TEST");
@@ -1081,8 +978,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(eventRelay, times(2)).sendEventMessage(captor.capture());
         verify(taskActivityService).addSuccess(task);
@@ -1128,15 +1024,13 @@ public class TaskTriggerHandlerTest {
         actionEvent.setServiceMethod("throwException");
         actionEvent.setSubject(null);
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
 
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -1157,17 +1051,15 @@ public class TaskTriggerHandlerTest {
         actionEvent.setServiceMethod("throwException");
         actionEvent.setSubject(null);
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference(anyString())).thenReturn(null);
+        when(bundleContext.getServiceReferences(anyString(), anyString())).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", "TestService");
         verify(taskActivityService).addError(eq(task), captor.capture());
@@ -1190,18 +1082,16 @@ public class TaskTriggerHandlerTest {
         actionEvent.setServiceMethod("throwException");
         actionEvent.setSubject(null);
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -1223,18 +1113,16 @@ public class TaskTriggerHandlerTest {
         actionEvent.setServiceMethod("abc");
         actionEvent.setSubject(null);
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
         ArgumentCaptor<TaskHandlerException> captor = ArgumentCaptor.forClass(TaskHandlerException.class);
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), captor.capture());
 
@@ -1256,17 +1144,15 @@ public class TaskTriggerHandlerTest {
         actionEvent.setServiceMethod("execute");
         actionEvent.setSubject(null);
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addSuccess(task);
 
@@ -1285,16 +1171,14 @@ public class TaskTriggerHandlerTest {
         actionEvent.setServiceInterface("TestService");
         actionEvent.setServiceMethod("abc");
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", actionEvent.getServiceInterface());
         verify(taskActivityService, times(2)).addWarning(task, "task.warning.notFoundObjectForType", "TestObjectField");
@@ -1315,16 +1199,14 @@ public class TaskTriggerHandlerTest {
         actionEvent.setServiceInterface("TestService");
         actionEvent.setServiceMethod("abc");
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", actionEvent.getServiceInterface());
         verify(taskActivityService).addSuccess(task);
@@ -1344,8 +1226,7 @@ public class TaskTriggerHandlerTest {
         actionEvent.setServiceInterface("TestService");
         actionEvent.setServiceMethod("abc");
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenThrow(new RuntimeException());
 
         handler.setBundleContext(bundleContext);
@@ -1363,16 +1244,14 @@ public class TaskTriggerHandlerTest {
         setActionEvent();
         setSecondAction();
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(any(TaskActionInformation.class))).thenReturn(actionEvent);
 
         ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
 
         handler.handle(createEvent());
 
-        verify(taskService).findTrigger(TRIGGER_SUBJECT);
-        verify(taskService).findTasksForTrigger(triggerEvent);
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskService).getActionEventFor(task.getActions().get(1));
         verify(eventRelay, times(3)).sendEventMessage(captor.capture());
@@ -1418,8 +1297,7 @@ public class TaskTriggerHandlerTest {
         Map<String, String> testObjectFieldLookup = new HashMap<>();
         testObjectFieldLookup.put("id", "123456789");
 
-        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
-        when(taskService.findTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(any(TaskActionInformation.class))).thenReturn(actionEvent);
 
         when(dataProvider.getName()).thenReturn("TEST");
@@ -54,6 +54,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.motechproject.tasks.events.constants.EventDataKeys.CHANNEL_MODULE_NAME;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_REGISTER_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 
 public class ChannelServiceImplTest {
@@ -129,6 +130,12 @@ public class ChannelServiceImplTest {
         assertEquals(VERSION, c.getModuleVersion());
         assertEquals(1, c.getTriggerTaskEvents().size());
         assertEquals(new TriggerEvent("displayName", "subject", null, asList(new EventParameter("displayName", "eventKey"))), c.getTriggerTaskEvents().get(0));
+
+        ArgumentCaptor<MotechEvent> eventCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay).sendEventMessage(eventCaptor.capture());
+
+        assertEquals(CHANNEL_REGISTER_SUBJECT, eventCaptor.getValue().getSubject());
+        assertEquals(BUNDLE_SYMBOLIC_NAME, eventCaptor.getValue().getParameters().get(CHANNEL_MODULE_NAME));
     }
 
     @Test
@@ -0,0 +1,65 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.server.config.SettingsFacade;
+import org.motechproject.tasks.service.TaskActivityService;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.service.impl.TaskActivityRetention.RETENTION_DAYS_KEY;
+import static org.motechproject.tasks.service.impl.TaskActivityRetention.RETENTION_ROWS_PER_TASK_KEY;
+
+public class TaskActivityRetentionTest {
+
+    @Mock
+    TaskActivityService activityService;
+
+    @Mock
+    SettingsFacade settings;
+
+    TaskActivityRetention retention;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        retention = new TaskActivityRetention(activityService, settings);
+    }
+
+    @Test
+    public void shouldDeleteActivitiesNotKeptBySettings() {
+        when(settings.getProperty(RETENTION_DAYS_KEY)).thenReturn("30");
+        when(settings.getProperty(RETENTION_ROWS_PER_TASK_KEY)).thenReturn(" 500 ");
+
+        ArgumentCaptor<DateTime> captor = ArgumentCaptor.forClass(DateTime.class);
+
+        retention.purge();
+
+        verify(activityService).deleteActivitiesOlderThan(captor.capture());
+        verify(activityService).deleteActivitiesExceeding(500);
+
+        DateTime date = captor.getValue();
+        assertTrue(date.isBefore(new DateTime().minusDays(29)));
+        assertTrue(date.isAfter(new DateTime().minusDays(31)));
+    }
+
+    @Test
+    public void shouldNotDeleteActivitiesWithoutValidSettings() {
+        when(settings.getProperty(RETENTION_DAYS_KEY)).thenReturn("");
+        when(settings.getProperty(RETENTION_ROWS_PER_TASK_KEY)).thenReturn("many");
+
+        retention.purge();
+
+        verify(activityService, never()).deleteActivitiesOlderThan(any(DateTime.class));
+        verify(activityService, never()).deleteActivitiesExceeding(anyInt());
+    }
+}
@@ -1,25 +1,42 @@
 package org.motechproject.tasks.service.impl;
 
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.repository.ActivityChunkEndQuery;
+import org.motechproject.tasks.repository.ActivityDeleteQuery;
+import org.motechproject.tasks.repository.ActivityRecordsQuery;
+import org.motechproject.tasks.repository.ActivityTasksQuery;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
-import org.motechproject.tasks.service.TaskActivityService;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang.exception.ExceptionUtils.getStackTrace;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -40,7 +57,7 @@ public class TaskActivityServiceImplTest {
     @Mock
     TaskActivitiesDataService taskActivitiesDataService;
 
-    TaskActivityService activityService;
+    TaskActivityServiceImpl activityService;
 
     Task task;
 
@@ -53,6 +70,13 @@ public class TaskActivityServiceImplTest {
 
         task = new Task();
         task.setId(TASK_ID);
+
+        when(taskActivitiesDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
     }
 
     @Test
@@ -87,6 +111,7 @@ public class TaskActivityServiceImplTest {
 
         activityService.addError(task, exception);
 
+        activityService.flush();
         verify(taskActivitiesDataService).create(captor.capture());
 
         assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.ERROR, getStackTrace(exception), captor.getValue());
@@ -101,6 +126,7 @@ public class TaskActivityServiceImplTest {
 
         activityService.addSuccess(task);
 
+        activityService.flush();
         verify(taskActivitiesDataService).create(captor.capture());
 
         assertActivity(messageKey, Collections.<String>emptyList(), TASK_ID,
@@ -115,6 +141,7 @@ public class TaskActivityServiceImplTest {
 
         activityService.addWarning(task);
 
+        activityService.flush();
         verify(taskActivitiesDataService).create(captor.capture());
 
         assertActivity(messageKey, Collections.<String>emptyList(), TASK_ID,
@@ -129,6 +156,7 @@ public class TaskActivityServiceImplTest {
 
         activityService.addWarning(task, messageKey, ERROR_FIELD.get(0));
 
+        activityService.flush();
         verify(taskActivitiesDataService).create(captor.capture());
 
         assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.WARNING, null, captor.getValue());
@@ -143,32 +171,63 @@ public class TaskActivityServiceImplTest {
 
         activityService.addWarning(task, messageKey, ERROR_FIELD.get(0), exception);
 
+        activityService.flush();
         verify(taskActivitiesDataService).create(captor.capture());
 
         assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.WARNING, getStackTrace(exception.getCause()), captor.getValue());
     }
 
     @Test
-    public void shouldDeleteAllTaskActivitiesForGivenTask() {
-        when(taskActivitiesDataService.byTask(TASK_ID)).thenReturn(activities);
+    public void shouldDeleteAllTaskActivitiesForGivenTaskInChunks() {
+        when(taskActivitiesDataService.executeQuery(isA(ActivityChunkEndQuery.class))).thenReturn(1000L, null);
+        when(taskActivitiesDataService.executeQuery(isA(ActivityDeleteQuery.class)))
+                .thenReturn((long) TaskActivityServiceImpl.DELETE_CHUNK_SIZE, 5L);
 
         activityService.deleteActivitiesForTask(TASK_ID);
 
-        verify(taskActivitiesDataService, times(activities.size())).delete(any(TaskActivity.class));
+        verify(taskActivitiesDataService, times(2)).executeQuery(isA(ActivityChunkEndQuery.class));
+        verify(taskActivitiesDataService, times(2)).executeQuery(isA(ActivityDeleteQuery.class));
+        verify(taskActivitiesDataService, never()).delete(any(TaskActivity.class));
     }
 
     @Test
     public void shouldNotRemoveAnyActivitiesWhenTaskHasNotActivities() {
-        when(taskActivitiesDataService.byTask(TASK_ID)).thenReturn(new ArrayList<TaskActivity>());
+        when(taskActivitiesDataService.executeQuery(isA(ActivityDeleteQuery.class))).thenReturn(0L);
 
         activityService.deleteActivitiesForTask(TASK_ID);
 
+        verify(taskActivitiesDataService).executeQuery(isA(ActivityDeleteQuery.class));
         verify(taskActivitiesDataService, never()).delete(any(TaskActivity.class));
     }
 
+    @Test
+    public void shouldDeleteActivitiesOlderThanGivenDate() {
+        when(taskActivitiesDataService.executeQuery(isA(ActivityDeleteQuery.class))).thenReturn(7L);
+
+        assertEquals(7, activityService.deleteActivitiesOlderThan(new DateTime().minusDays(30)));
+    }
+
+    @Test
+    public void shouldDeleteActivitiesExceedingLimitOfEachTask() {
+        when(taskActivitiesDataService.executeQuery(isA(ActivityTasksQuery.class))).thenReturn(asList(TASK_ID, 2L));
+        when(taskActivitiesDataService.executeQuery(isA(ActivityRecordsQuery.class)))
+                .thenReturn(activities.subList(0, 1), new ArrayList<TaskActivity>());
+        when(taskActivitiesDataService.executeQuery(isA(ActivityDeleteQuery.class))).thenReturn(3L);
+
+        assertEquals(3, activityService.deleteActivitiesExceeding(10));
+
+        verify(taskActivitiesDataService, times(2)).executeQuery(isA(ActivityRecordsQuery.class));
+        verify(taskActivitiesDataService).executeQuery(isA(ActivityDeleteQuery.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDeleteAllActivitiesOfTasks() {
+        activityService.deleteActivitiesExceeding(0);
+    }
+
     @Test
     public void shouldReturnAllActivities() {
-        when(taskActivitiesDataService.retrieveAll()).thenReturn(activities);
+        when(taskActivitiesDataService.executeQuery(isA(ActivityRecordsQuery.class))).thenReturn(activities);
 
         List<TaskActivity> actual = activityService.getAllActivities();
 
@@ -178,7 +237,7 @@ public class TaskActivityServiceImplTest {
 
     @Test
     public void shouldReturnAllActivitiesForGivenTask() {
-        when(taskActivitiesDataService.byTask(TASK_ID)).thenReturn(activities);
+        when(taskActivitiesDataService.executeQuery(isA(ActivityRecordsQuery.class))).thenReturn(activities);
 
         List<TaskActivity> actual = activityService.getTaskActivities(TASK_ID);
 
@@ -186,6 +245,110 @@ public class TaskActivityServiceImplTest {
         assertEquals(activities, actual);
     }
 
+    @Test
+    public void shouldWriteBufferedActivitiesInOneTransaction() {
+        activityService.addError(task, new TaskHandlerException(TRIGGER, "error.notFoundTrigger"));
+        activityService.addWarning(task, "warning.manipulation", ERROR_FIELD.get(0));
+        activityService.addSuccess(task);
+
+        verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+
+        activityService.flush();
+
+        verify(taskActivitiesDataService).doInTransaction(any(TransactionCallback.class));
+        verify(taskActivitiesDataService, times(3)).create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldWriteBufferedActivitiesBeforeReadingThem() {
+        when(taskActivitiesDataService.executeQuery(isA(ActivityRecordsQuery.class))).thenReturn(activities);
+
+        activityService.addSuccess(task);
+        activityService.getTaskActivities(TASK_ID);
+
+        InOrder inOrder = inOrder(taskActivitiesDataService);
+        inOrder.verify(taskActivitiesDataService).create(any(TaskActivity.class));
+        inOrder.verify(taskActivitiesDataService).executeQuery(isA(ActivityRecordsQuery.class));
+    }
+
+    @Test
+    public void shouldCountErrorsFromLastRunInMemory() {
+        when(taskActivitiesDataService.byTask(TASK_ID)).thenReturn(activities);
+
+        assertEquals(4, activityService.countErrorsFromLastRun(task));
+
+        activityService.addError(task, new TaskHandlerException(TRIGGER, "error.notFoundTrigger"));
+        assertEquals(5, activityService.countErrorsFromLastRun(task));
+
+        activityService.addWarning(task);
+        assertEquals(0, activityService.countErrorsFromLastRun(task));
+
+        verify(taskActivitiesDataService).byTask(TASK_ID);
+    }
+
+    @Test
+    public void shouldRecordActivitiesOneByOneIfBatchCannotBeWritten() {
+        when(taskActivitiesDataService.byTask(TASK_ID)).thenReturn(activities);
+        doThrow(new IllegalStateException("deadlock"))
+                .when(taskActivitiesDataService).doInTransaction(any(TransactionCallback.class));
+        doThrow(new IllegalStateException("constraint violation")).doReturn(null)
+                .when(taskActivitiesDataService).create(any(TaskActivity.class));
+
+        assertEquals(4, activityService.countErrorsFromLastRun(task));
+
+        activityService.addError(task, new TaskHandlerException(TRIGGER, "error.notFoundTrigger"));
+        activityService.addWarning(task, "warning.manipulation", ERROR_FIELD.get(0));
+        activityService.flush();
+
+        verify(taskActivitiesDataService, times(2)).create(any(TaskActivity.class));
+
+        // the activity which could not be written is not counted, the count is read from the stored activities
+        assertEquals(4, activityService.countErrorsFromLastRun(task));
+        verify(taskActivitiesDataService, times(2)).byTask(TASK_ID);
+    }
+
+    @Test
+    public void shouldFinishBatchBeingWrittenAndWriteBufferedActivitiesOnShutdown() throws InterruptedException {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                if (writing.getCount() > 0) {
+                    writing.countDown();
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                    }
+                }
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        }).when(taskActivitiesDataService).doInTransaction(any(TransactionCallback.class));
+
+        for (int i = 0; i < TaskActivityServiceImpl.MAX_BATCH_SIZE; i++) {
+            activityService.addSuccess(task);
+        }
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        activityService.addSuccess(task);
+
+        activityService.shutdown();
+
+        assertFalse(interrupted.get());
+        verify(taskActivitiesDataService, times(TaskActivityServiceImpl.MAX_BATCH_SIZE + 1))
+                .create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldWriteActivitiesAsTheyAreRecordedAfterShutdown() {
+        activityService.shutdown();
+
+        activityService.addSuccess(task);
+
+        verify(taskActivitiesDataService).create(any(TaskActivity.class));
+    }
+
     private void assertActivity(String messageKey, List<String> field, Long taskId, TaskActivityType activityType,
                                 String stackTraceElement, TaskActivity activity) {
         assertNotNull(activity);
@@ -0,0 +1,50 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Test;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TriggerEvent;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TaskRegistryTest {
+
+    private static final String SUBJECT = "Trigger.Subject";
+
+    private TaskRegistry.TriggerTasks tasks = new TaskRegistry.TriggerTasks(new TriggerEvent(),
+            Collections.singletonList(new Task()));
+
+    @Test
+    public void shouldKeepTasksBySubject() {
+        TaskRegistry registry = new TaskRegistry();
+
+        registry.putTasks(SUBJECT, tasks, registry.getGeneration());
+
+        assertSame(tasks, registry.getTasks(SUBJECT.toLowerCase()));
+    }
+
+    @Test
+    public void shouldNotKeepTasksLoadedWhileRefreshing() {
+        TaskRegistry registry = new TaskRegistry();
+        long generation = registry.getGeneration();
+
+        registry.refresh(SUBJECT);
+        registry.putTasks(SUBJECT, tasks, generation);
+
+        assertNull(registry.getTasks(SUBJECT));
+    }
+
+    @Test
+    public void shouldLoadTasksAgainOnceTheyExpire() throws InterruptedException {
+        TaskRegistry registry = new TaskRegistry(50);
+
+        registry.putTasks(SUBJECT, tasks, registry.getGeneration());
+        assertSame(tasks, registry.getTasks(SUBJECT));
+
+        Thread.sleep(100);
+
+        assertNull(registry.getTasks(SUBJECT));
+    }
+}
@@ -75,6 +75,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 import static org.motechproject.tasks.domain.ParameterType.UNICODE;
 import static org.motechproject.tasks.events.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.events.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_REGISTER_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
 
@@ -361,6 +362,67 @@ public class TaskServiceImplTest {
         assertEquals(triggerEvent, actual);
     }
 
+    @Test
+    public void shouldFindOnlyActiveTasksForTriggerSubject() throws TriggerNotFoundException {
+        Task active = new Task("active", trigger, asList(action), new TaskConfig(), true, false);
+        Task disabled = new Task("disabled", trigger, asList(action), new TaskConfig(), false, false);
+        Task deregistered = new Task("deregistered", trigger, asList(new TaskActionInformation("receive", "test", "test-other", "0.14", "RECEIVE")), new TaskConfig(), true, false);
+
+        setTriggerAndActionChannels();
+        when(tasksDataService.retrieveAll()).thenReturn(new ArrayList<>(asList(active, disabled, deregistered)));
+
+        assertEquals(asList(active), taskService.findActiveTasksForTriggerSubject(trigger.getSubject()));
+    }
+
+    @Test
+    public void shouldKeepActiveTasksForTriggerSubjectUntilTaskIsDeleted() throws Exception {
+        Task task = new Task("name", trigger, asList(action), new TaskConfig(), true, false);
+        task.setId(12345L);
+
+        setTriggerAndActionChannels();
+        when(tasksDataService.retrieveAll()).thenReturn(new ArrayList<>(asList(task)));
+        when(tasksDataService.findById(task.getId())).thenReturn(task);
+
+        assertEquals(asList(task), taskService.findActiveTasksForTriggerSubject(trigger.getSubject()));
+        assertEquals(asList(task), taskService.findActiveTasksForTriggerSubject(trigger.getSubject().toLowerCase()));
+        taskService.getActionEventFor(action);
+
+        verify(tasksDataService).retrieveAll();
+        verify(channelService).getAllChannels();
+        verify(channelService).getChannel(action.getModuleName());
+
+        when(tasksDataService.retrieveAll()).thenReturn(new ArrayList<Task>());
+        taskService.deleteTask(task.getId());
+
+        assertTrue(taskService.findActiveTasksForTriggerSubject(trigger.getSubject()).isEmpty());
+        verify(tasksDataService, times(2)).retrieveAll();
+    }
+
+    @Test
+    public void shouldReloadActiveTasksForTriggerSubjectAfterChannelUpdate() throws TriggerNotFoundException {
+        Task task = new Task("name", trigger, asList(action), new TaskConfig(), true, false);
+
+        setTriggerAndActionChannels();
+        when(tasksDataService.retrieveAll()).thenReturn(new ArrayList<>(asList(task)));
+
+        taskService.findActiveTasksForTriggerSubject(trigger.getSubject());
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(CHANNEL_MODULE_NAME, action.getModuleName());
+        taskService.refreshTasksAfterChannelRegistration(new MotechEvent(CHANNEL_REGISTER_SUBJECT, parameters));
+
+        taskService.findActiveTasksForTriggerSubject(trigger.getSubject());
+
+        verify(tasksDataService, times(2)).retrieveAll();
+    }
+
+    @Test(expected = TriggerNotFoundException.class)
+    public void shouldThrowTriggerNotFoundExceptionWhenFindingActiveTasksForUnknownSubject() throws TriggerNotFoundException {
+        when(channelService.getAllChannels()).thenReturn(new ArrayList<Channel>());
+
+        taskService.findActiveTasksForTriggerSubject(trigger.getSubject());
+    }
+
     @Test
     public void shouldGetTaskById() {
         long taskId = 12345L;
@@ -756,4 +818,13 @@ public class TaskServiceImplTest {
 
         return new MotechEvent(DATA_PROVIDER_UPDATE_SUBJECT, parameters);
     }
+
+    private void setTriggerAndActionChannels() {
+        Channel triggerChannel = new Channel("test", "test-trigger", "0.15", "", asList(new TriggerEvent("send", "SEND", "", asList(new EventParameter("test", "value")))), null);
+        Channel actionChannel = new Channel("test", "test-action", "0.14", "", null, asList(new ActionEvent("receive", "RECEIVE", "", null)));
+
+        when(channelService.getAllChannels()).thenReturn(asList(triggerChannel, actionChannel));
+        when(channelService.getChannel(trigger.getModuleName())).thenReturn(triggerChannel);
+        when(channelService.getChannel(action.getModuleName())).thenReturn(actionChannel);
+    }
 }
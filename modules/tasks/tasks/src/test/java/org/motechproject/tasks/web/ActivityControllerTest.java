@@ -2,14 +2,20 @@ package org.motechproject.tasks.web;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.service.TaskActivityService;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -60,6 +66,35 @@ public class ActivityControllerTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void shouldCountActivitiesByTask() {
+        Map<TaskActivityType, Long> taskCounts = new HashMap<>();
+        taskCounts.put(SUCCESS, 3L);
+        Map<Long, Map<TaskActivityType, Long>> counts = new HashMap<>();
+        counts.put(TASK_ID, taskCounts);
+
+        when(activityService.countActivitiesByTask()).thenReturn(counts);
+
+        assertEquals(counts, controller.countActivitiesByTask());
+    }
+
+    @Test
+    public void shouldGetPageOfTaskActivities() {
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        when(activityService.getTaskActivities(eq(TASK_ID), eq(ERROR), captor.capture())).thenReturn(expected);
+
+        List<TaskActivity> actual = controller.getTaskActivities(TASK_ID, 2, 20, ERROR);
+
+        assertEquals(expected, actual);
+        assertEquals(Integer.valueOf(2), captor.getValue().getPage());
+        assertEquals(Integer.valueOf(20), captor.getValue().getPageSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotGetPageOfActivitiesWithInvalidPage() {
+        controller.getAllActivities(0, 20);
+    }
+
     @Test
     public void shouldRemoveAllActivitiesForTask() {
         controller.deleteActivitiesForTask(TASK_ID);
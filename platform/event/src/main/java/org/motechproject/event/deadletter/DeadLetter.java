@@ -0,0 +1,55 @@
+package org.motechproject.event.deadletter;
+
+import org.motechproject.event.MotechEvent;
+
+import java.util.Date;
+
+/**
+ * An event discarded after a listener failed to handle it the maximum number of times.
+ */
+public class DeadLetter {
+
+    private final long id;
+    private final String subject;
+    private final String listener;
+    private final Date discardedAt;
+    private final int redeliveryCount;
+    private final MotechEvent event;
+
+    public DeadLetter(long id, String subject, String listener, Date discardedAt, int redeliveryCount,
+                      MotechEvent event) {
+        this.id = id;
+        this.subject = subject;
+        this.listener = listener;
+        this.discardedAt = (discardedAt == null) ? null : new Date(discardedAt.getTime());
+        this.redeliveryCount = redeliveryCount;
+        this.event = event;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the identifier of the listener which failed to handle the event
+     */
+    public String getListener() {
+        return listener;
+    }
+
+    public Date getDiscardedAt() {
+        return (discardedAt == null) ? null : new Date(discardedAt.getTime());
+    }
+
+    public int getRedeliveryCount() {
+        return redeliveryCount;
+    }
+
+    public MotechEvent getEvent() {
+        return event;
+    }
+}
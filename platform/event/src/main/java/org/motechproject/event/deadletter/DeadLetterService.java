@@ -0,0 +1,60 @@
+package org.motechproject.event.deadletter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Gives access to the events discarded after reaching the maximum redelivery count, and replays them through
+ * the event relay. Every filter argument is optional, pass null to match all dead letters. Dead letters
+ * already replayed are not returned.
+ */
+public interface DeadLetterService {
+
+    /**
+     * Returns a page of the dead letters matching the given filter, oldest first.
+     *
+     * @param subject  the subject of the events
+     * @param listener the identifier of the listener which failed to handle the events
+     * @param from     the earliest discard time, inclusive
+     * @param to       the latest discard time, exclusive
+     * @param page     the number of the page, starting with 1
+     * @param pageSize the maximum number of dead letters returned
+     * @return the dead letters on the given page
+     */
+    List<DeadLetter> getDeadLetters(String subject, String listener, Date from, Date to, int page, int pageSize);
+
+    /**
+     * Counts the dead letters matching the given filter.
+     *
+     * @param subject  the subject of the events
+     * @param listener the identifier of the listener which failed to handle the events
+     * @param from     the earliest discard time, inclusive
+     * @param to       the latest discard time, exclusive
+     * @return the number of matching dead letters
+     */
+    long countDeadLetters(String subject, String listener, Date from, Date to);
+
+    /**
+     * Starts replaying the dead letters matching the given filter in the background. Every event is sent again
+     * to the listener which failed to handle it, at most <code>eventsPerSecond</code> events per second.
+     *
+     * @param subject         the subject of the events
+     * @param listener        the identifier of the listener which failed to handle the events
+     * @param from            the earliest discard time, inclusive
+     * @param to              the latest discard time, exclusive
+     * @param eventsPerSecond the replay rate, the configured default is used if not positive
+     * @return the status of the started replay
+     * @throws IllegalStateException if a replay is already running
+     */
+    ReplayStatus replay(String subject, String listener, Date from, Date to, int eventsPerSecond);
+
+    /**
+     * @return the status of the running or the last replay
+     */
+    ReplayStatus getReplayStatus();
+
+    /**
+     * Stops the running replay. Dead letters not replayed yet stay in the store.
+     */
+    void cancelReplay();
+}
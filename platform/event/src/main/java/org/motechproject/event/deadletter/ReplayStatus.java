@@ -0,0 +1,52 @@
+package org.motechproject.event.deadletter;
+
+import java.util.Date;
+
+/**
+ * Progress of replaying dead letters.
+ */
+public class ReplayStatus {
+
+    private final boolean running;
+    private final Date startedAt;
+    private final int eventsPerSecond;
+    private final long total;
+    private final long replayed;
+    private final long failed;
+
+    public ReplayStatus(boolean running, Date startedAt, int eventsPerSecond, long total, long replayed, long failed) {
+        this.running = running;
+        this.startedAt = (startedAt == null) ? null : new Date(startedAt.getTime());
+        this.eventsPerSecond = eventsPerSecond;
+        this.total = total;
+        this.replayed = replayed;
+        this.failed = failed;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public Date getStartedAt() {
+        return (startedAt == null) ? null : new Date(startedAt.getTime());
+    }
+
+    public int getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /**
+     * @return the number of dead letters selected for the replay
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getReplayed() {
+        return replayed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+}
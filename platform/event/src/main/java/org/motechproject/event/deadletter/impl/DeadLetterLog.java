@@ -0,0 +1,490 @@
+package org.motechproject.event.deadletter.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.queue.BinaryMotechEventCodec;
+import org.motechproject.event.queue.MotechEventCodec;
+import org.motechproject.event.queue.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only file log of discarded events. Every discarded event is appended as a record holding its subject,
+ * the listener which failed to handle it, the discard time and the encoded event; replaying it appends a marker
+ * record. The id of a dead letter is the position of its record in the file. Every record is forced to disk
+ * before it is indexed, so that a dead letter which was returned is not lost on a crash.
+ * <p/>
+ * Only the record headers of the dead letters not replayed yet are kept in memory, indexed by subject and
+ * listener, events are read from the file when requested. The index is rebuilt from the file when the log is
+ * first used; a record cut short by a crash is dropped. If the replayed dead letters take at least half of the
+ * file then, the file is compacted to the remaining dead letters, which changes their ids.
+ */
+@Component
+public class DeadLetterLog {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final byte RECORD_DISCARDED = 1;
+    private static final byte RECORD_REPLAYED = 2;
+
+    private static final int LENGTH_SIZE = 4;
+
+    private final MotechEventConfig motechEventConfig;
+    private final MotechEventCodec codec = new BinaryMotechEventCodec();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new TreeMap<>();
+    private final Map<String, Map<Long, Entry>> entriesBySubject = new HashMap<>();
+    private final Map<String, Map<Long, Entry>> entriesByListener = new HashMap<>();
+
+    private volatile FileChannel channel;
+    private long position;
+
+    @Autowired
+    public DeadLetterLog(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    public boolean isEnabled() {
+        return motechEventConfig.isDeadLetterEnabled();
+    }
+
+    /**
+     * Appends the given discarded event to the log.
+     *
+     * @param event    the discarded event
+     * @param listener the identifier of the listener which failed to handle the event
+     * @return the id of the dead letter
+     */
+    public long append(MotechEvent event, String listener) {
+        long discardedAt = System.currentTimeMillis();
+        String subject = StringUtils.defaultString(event.getSubject());
+        String listenerIdentifier = StringUtils.defaultString(listener);
+        byte[] eventBytes = codec.encode(event);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(eventBytes.length + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeByte(RECORD_DISCARDED);
+            out.writeLong(discardedAt);
+            out.writeUTF(subject);
+            out.writeUTF(listenerIdentifier);
+            out.writeInt(event.getMessageRedeliveryCount());
+            out.writeInt(eventBytes.length);
+            out.write(eventBytes);
+        } catch (IOException e) {
+            throw new MotechException("Unable to write dead letter for event " + event, e);
+        }
+
+        lock.writeLock().lock();
+        try {
+            byte[] record = bytes.toByteArray();
+            long id = write(record);
+            index(new Entry(id, record.length - LENGTH_SIZE, discardedAt, subject, listenerIdentifier,
+                    event.getMessageRedeliveryCount()));
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the given dead letter as replayed, so that it is no longer returned, and drops it from the index.
+     *
+     * @param id the id of the dead letter
+     */
+    public void markReplayed(long id) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(LENGTH_SIZE + 9);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeByte(RECORD_REPLAYED);
+            out.writeLong(id);
+        } catch (IOException e) {
+            throw new MotechException("Unable to mark dead letter " + id + " as replayed", e);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                write(bytes.toByteArray());
+                drop(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the dead letters not replayed yet, matching the given filter, in the order they were discarded.
+     * Null filter arguments match all dead letters.
+     */
+    public List<Entry> find(String subject, String listener, Date from, Date to) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+
+            Collection<Entry> candidates = entries.values();
+            if (subject != null) {
+                candidates = valuesOf(entriesBySubject.get(subject));
+            }
+            if (listener != null) {
+                Collection<Entry> listenerEntries = valuesOf(entriesByListener.get(listener));
+                if (listenerEntries.size() < candidates.size()) {
+                    candidates = listenerEntries;
+                }
+            }
+
+            List<Entry> result = new ArrayList<>();
+            for (Entry entry : candidates) {
+                if (!entry.replayed && matches(entry, subject, listener, from, to)) {
+                    result.add(entry);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the event of the given dead letter from the file.
+     *
+     * @param id the id of the dead letter
+     * @return the discarded event
+     */
+    public MotechEvent readEvent(long id) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+
+            ByteBuffer header = ByteBuffer.allocate(LENGTH_SIZE);
+            readFully(header, id);
+            ByteBuffer record = ByteBuffer.allocate(header.getInt(0));
+            readFully(record, id + LENGTH_SIZE);
+
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()))) {
+                if (in.readByte() != RECORD_DISCARDED) {
+                    throw new MotechException("No dead letter with id " + id);
+                }
+                in.readLong();
+                in.readUTF();
+                in.readUTF();
+                in.readInt();
+                byte[] eventBytes = new byte[in.readInt()];
+                in.readFully(eventBytes);
+                return codec.decode(eventBytes);
+            }
+        } catch (IOException e) {
+            throw new MotechException("Unable to read dead letter " + id, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            log.error("Unable to close dead letter log", e);
+        } finally {
+            entries.clear();
+            entriesBySubject.clear();
+            entriesByListener.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long write(byte[] record) {
+        ensureOpen();
+
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(0, record.length - LENGTH_SIZE);
+
+        long id = position;
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new MotechException("Unable to write to dead letter log", e);
+        }
+        return id;
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        long current = offset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of dead letter log at " + current);
+            }
+            current += read;
+        }
+    }
+
+    // called under the read lock by readers, the index is built only once under its own monitor
+    private void ensureOpen() {
+        if (channel != null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (channel == null) {
+                open();
+            }
+        }
+    }
+
+    private void open() {
+        File file = getFile();
+        try {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Unable to create directory " + directory);
+            }
+
+            long validLength = file.exists() ? loadIndex(file) : 0;
+            if (validLength > 0 && 2 * (validLength - getLiveLength()) >= validLength) {
+                validLength = compact(file);
+            }
+
+            FileChannel fileChannel = new RandomAccessFile(file, "rw").getChannel();
+            if (fileChannel.size() > validLength) {
+                log.warn("Dropping incomplete record at the end of dead letter log " + file);
+                fileChannel.truncate(validLength);
+            }
+            position = validLength;
+            channel = fileChannel;
+        } catch (IOException e) {
+            throw new MotechException("Unable to open dead letter log " + file, e);
+        }
+    }
+
+    private long loadIndex(File file) throws IOException {
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long fileLength = file.length();
+            while (offset + LENGTH_SIZE <= fileLength) {
+                int length = in.readInt();
+                if (length <= 0 || offset + LENGTH_SIZE + length > fileLength) {
+                    break;
+                }
+
+                byte type = in.readByte();
+                if (type == RECORD_DISCARDED) {
+                    long discardedAt = in.readLong();
+                    String subject = in.readUTF().intern();
+                    String listener = in.readUTF().intern();
+                    int redeliveryCount = in.readInt();
+                    int eventLength = in.readInt();
+                    skipFully(in, eventLength);
+                    index(new Entry(offset, length, discardedAt, subject, listener, redeliveryCount));
+                } else if (type == RECORD_REPLAYED) {
+                    Entry entry = entries.get(in.readLong());
+                    if (entry != null) {
+                        drop(entry);
+                    }
+                } else {
+                    skipFully(in, length - 1);
+                }
+
+                offset += LENGTH_SIZE + length;
+            }
+        } catch (EOFException e) {
+            log.warn("Unexpected end of dead letter log " + file + " at " + offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Rewrites the file with the records of the dead letters not replayed yet, and indexes them again under their
+     * new positions. The file is replaced only once the compacted copy is on disk, so a crash leaves either of them.
+     *
+     * @return the length of the compacted file
+     */
+    private long compact(File file) throws IOException {
+        File compacted = new File(file.getPath() + ".compact");
+        List<Entry> liveEntries = new ArrayList<>(entries.values());
+        long offset = 0;
+
+        try (FileChannel source = new RandomAccessFile(file, "r").getChannel();
+             FileChannel target = new RandomAccessFile(compacted, "rw").getChannel()) {
+            target.truncate(0);
+            for (Entry entry : liveEntries) {
+                long recordLength = LENGTH_SIZE + entry.length;
+                long copied = 0;
+                while (copied < recordLength) {
+                    copied += source.transferTo(entry.getId() + copied, recordLength - copied, target);
+                }
+            }
+            target.force(true);
+        }
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        entries.clear();
+        entriesBySubject.clear();
+        entriesByListener.clear();
+        for (Entry entry : liveEntries) {
+            index(new Entry(offset, entry.length, entry.getDiscardedAt(), entry.getSubject(), entry.getListener(),
+                    entry.getRedeliveryCount()));
+            offset += LENGTH_SIZE + entry.length;
+        }
+
+        log.info(String.format("Compacted dead letter log %s to %d dead letters", file, liveEntries.size()));
+        return offset;
+    }
+
+    private long getLiveLength() {
+        long length = 0;
+        for (Entry entry : entries.values()) {
+            length += LENGTH_SIZE + entry.length;
+        }
+        return length;
+    }
+
+    private void skipFully(DataInputStream in, int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int n = in.skipBytes(length - skipped);
+            if (n <= 0) {
+                throw new EOFException();
+            }
+            skipped += n;
+        }
+    }
+
+    private void index(Entry entry) {
+        entries.put(entry.getId(), entry);
+        add(entriesBySubject, entry.getSubject(), entry);
+        add(entriesByListener, entry.getListener(), entry);
+    }
+
+    private void drop(Entry entry) {
+        entry.replayed = true;
+        entries.remove(entry.getId());
+        remove(entriesBySubject, entry.getSubject(), entry);
+        remove(entriesByListener, entry.getListener(), entry);
+    }
+
+    private void add(Map<String, Map<Long, Entry>> index, String key, Entry entry) {
+        // entries are appended in the order of their position in the file
+        Map<Long, Entry> keyEntries = index.get(key);
+        if (keyEntries == null) {
+            keyEntries = new LinkedHashMap<>();
+            index.put(key, keyEntries);
+        }
+        keyEntries.put(entry.getId(), entry);
+    }
+
+    private void remove(Map<String, Map<Long, Entry>> index, String key, Entry entry) {
+        Map<Long, Entry> keyEntries = index.get(key);
+        if (keyEntries != null) {
+            keyEntries.remove(entry.getId());
+            if (keyEntries.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private boolean matches(Entry entry, String subject, String listener, Date from, Date to) {
+        return (subject == null || subject.equals(entry.getSubject()))
+                && (listener == null || listener.equals(entry.getListener()))
+                && (from == null || entry.getDiscardedAt() >= from.getTime())
+                && (to == null || entry.getDiscardedAt() < to.getTime());
+    }
+
+    private Collection<Entry> valuesOf(Map<Long, Entry> keyEntries) {
+        return (keyEntries == null) ? Collections.<Entry>emptyList() : keyEntries.values();
+    }
+
+    private File getFile() {
+        String configured = motechEventConfig.getDeadLetterFile();
+        if (StringUtils.isNotBlank(configured)) {
+            return new File(configured.trim());
+        }
+        return new File(new File(new File(System.getProperty("user.home"), ".motech"), "deadletter"), "events.log");
+    }
+
+    /**
+     * Header of a dead letter record.
+     */
+    public static class Entry {
+        private final long id;
+        private final int length;
+        private final long discardedAt;
+        private final String subject;
+        private final String listener;
+        private final int redeliveryCount;
+        private volatile boolean replayed;
+
+        Entry(long id, int length, long discardedAt, String subject, String listener, int redeliveryCount) {
+            this.id = id;
+            this.length = length;
+            this.discardedAt = discardedAt;
+            this.subject = subject;
+            this.listener = listener;
+            this.redeliveryCount = redeliveryCount;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getDiscardedAt() {
+            return discardedAt;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getListener() {
+            return listener;
+        }
+
+        public int getRedeliveryCount() {
+            return redeliveryCount;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.motechproject.event.deadletter.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.deadletter.DeadLetter;
+import org.motechproject.event.deadletter.DeadLetterService;
+import org.motechproject.event.deadletter.ReplayStatus;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.queue.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link DeadLetterService} backed by the {@link DeadLetterLog}. Replays run on a background thread, which
+ * sends the events through the {@link EventRelay} one by one, spaced evenly to keep the requested rate.
+ */
+@Service("deadLetterService")
+public class DeadLetterServiceImpl implements DeadLetterService {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final DeadLetterLog deadLetterLog;
+    private final EventRelay eventRelay;
+    private final MotechEventConfig motechEventConfig;
+
+    private volatile Replay replay;
+
+    @Autowired
+    public DeadLetterServiceImpl(DeadLetterLog deadLetterLog, EventRelay eventRelay, MotechEventConfig motechEventConfig) {
+        this.deadLetterLog = deadLetterLog;
+        this.eventRelay = eventRelay;
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    @Override
+    public List<DeadLetter> getDeadLetters(String subject, String listener, Date from, Date to, int page, int pageSize) {
+        if (page < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("Page and page size must be positive");
+        }
+
+        List<DeadLetterLog.Entry> entries = deadLetterLog.find(subject, listener, from, to);
+
+        long start = (long) (page - 1) * pageSize;
+        List<DeadLetter> deadLetters = new ArrayList<>();
+        for (long i = start; i < entries.size() && i < start + pageSize; i++) {
+            DeadLetterLog.Entry entry = entries.get((int) i);
+            deadLetters.add(new DeadLetter(entry.getId(), entry.getSubject(), entry.getListener(),
+                    new Date(entry.getDiscardedAt()), entry.getRedeliveryCount(), deadLetterLog.readEvent(entry.getId())));
+        }
+        return deadLetters;
+    }
+
+    @Override
+    public long countDeadLetters(String subject, String listener, Date from, Date to) {
+        return deadLetterLog.find(subject, listener, from, to).size();
+    }
+
+    @Override
+    public synchronized ReplayStatus replay(String subject, String listener, Date from, Date to, int eventsPerSecond) {
+        if (replay != null && replay.isRunning()) {
+            throw new IllegalStateException("A replay of dead letters is already running");
+        }
+
+        int rate = (eventsPerSecond > 0) ? eventsPerSecond : Math.max(1, motechEventConfig.getDeadLetterReplayRate());
+        List<DeadLetterLog.Entry> entries = deadLetterLog.find(subject, listener, from, to);
+
+        replay = new Replay(entries, rate);
+        Thread thread = new Thread(replay, "motech-dead-letter-replay");
+        thread.setDaemon(true);
+        thread.start();
+
+        log.info(String.format("Replaying %d dead letters at %d events per second", entries.size(), rate));
+
+        return replay.getStatus();
+    }
+
+    @Override
+    public ReplayStatus getReplayStatus() {
+        Replay current = replay;
+        return (current == null) ? new ReplayStatus(false, null, 0, 0, 0, 0) : current.getStatus();
+    }
+
+    @Override
+    @PreDestroy
+    public void cancelReplay() {
+        Replay current = replay;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    /**
+     * Builds the event sent again to the listener which failed to handle it, with the redelivery state cleared.
+     */
+    private MotechEvent toReplayedEvent(MotechEvent event) {
+        Map<String, Object> parameters = new HashMap<>(event.getParameters());
+        parameters.remove(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+        parameters.remove(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT);
+        parameters.remove(MotechEvent.PARAM_REDELIVERY_COUNT);
+        return event.copy(event.getSubject(), parameters);
+    }
+
+    private class Replay implements Runnable {
+        private final List<DeadLetterLog.Entry> entries;
+        private final int eventsPerSecond;
+        private final Date startedAt = new Date();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile boolean running = true;
+
+        Replay(List<DeadLetterLog.Entry> entries, int eventsPerSecond) {
+            this.entries = entries;
+            this.eventsPerSecond = eventsPerSecond;
+        }
+
+        @Override
+        public void run() {
+            long interval = NANOS_PER_SECOND / eventsPerSecond;
+            long next = System.nanoTime();
+
+            try {
+                for (DeadLetterLog.Entry entry : entries) {
+                    if (!running) {
+                        log.info("Replay of dead letters cancelled");
+                        break;
+                    }
+                    if (entry.isReplayed()) {
+                        continue;
+                    }
+
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    next = Math.max(next, System.nanoTime() - NANOS_PER_SECOND) + interval;
+
+                    replayEntry(entry);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running = false;
+            }
+
+            log.info(String.format("Replay of dead letters finished: %d replayed, %d failed", replayed.get(), failed.get()));
+        }
+
+        private void replayEntry(DeadLetterLog.Entry entry) {
+            try {
+                eventRelay.sendEventMessage(toReplayedEvent(deadLetterLog.readEvent(entry.getId())));
+                deadLetterLog.markReplayed(entry.getId());
+                replayed.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("Unable to replay dead letter " + entry.getId(), e);
+            }
+        }
+
+        boolean isRunning() {
+            return running;
+        }
+
+        void cancel() {
+            running = false;
+        }
+
+        ReplayStatus getStatus() {
+            return new ReplayStatus(running, startedAt, eventsPerSecond, entries.size(), replayed.get(), failed.get());
+        }
+    }
+}
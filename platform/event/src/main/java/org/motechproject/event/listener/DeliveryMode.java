@@ -0,0 +1,13 @@
+package org.motechproject.event.listener;
+
+/**
+ * Defines how events are delivered to a listener.
+ * <p/>
+ * <code>QUEUED</code> events travel through the JMS event queue, which makes them durable and lets any node
+ * in the cluster handle them. <code>LOCAL</code> events are handed straight to the listener on a bounded
+ * in-process executor, skipping the broker round-trip. Local events are lost on restart, so this mode should
+ * only be used for high-rate subjects that do not need durability.
+ */
+public enum DeliveryMode {
+    QUEUED, LOCAL
+}
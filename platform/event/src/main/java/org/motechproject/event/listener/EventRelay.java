@@ -2,6 +2,28 @@ package org.motechproject.event.listener;
 
 import org.motechproject.event.MotechEvent;
 
+import java.util.Collection;
+import java.util.Date;
+
 public interface EventRelay {
     void sendEventMessage(MotechEvent motechEvent);
+
+    /**
+     * Sends all the given events. Events going through the event queue are committed in batches, which is
+     * much faster than sending them one by one.
+     *
+     * @param motechEvents the events to send
+     */
+    void sendEventMessages(Collection<MotechEvent> motechEvents);
+
+    /**
+     * Sends the given event to be handled at the given time, without creating a scheduler job. Events going
+     * through the event queue are held back by the broker, which requires its scheduler support
+     * (<code>schedulerSupport="true"</code>). Events dispatched in-process wait in memory, so they are lost
+     * on restart. Events with no delivery time, or a delivery time in the past, are sent right away.
+     *
+     * @param motechEvent the event to send
+     * @param deliverAt   the time at which the event should be delivered
+     */
+    void sendEventMessage(MotechEvent motechEvent, Date deliverAt);
 }
@@ -1,5 +1,7 @@
 package org.motechproject.event.listener.annotations;
 
+import org.motechproject.event.listener.DeliveryMode;
+
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -16,4 +18,10 @@ public @interface MotechListener {
     String[] subjects();
 
     MotechListenerType type() default MotechListenerType.MOTECH_EVENT;
+
+    /**
+     * How events are delivered to this listener. Events for {@link DeliveryMode#LOCAL} listeners are dispatched
+     * in-process, without going through the event queue.
+     */
+    DeliveryMode deliveryMode() default DeliveryMode.QUEUED;
 }
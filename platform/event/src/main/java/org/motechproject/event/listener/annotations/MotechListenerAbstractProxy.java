@@ -2,10 +2,16 @@ package org.motechproject.event.listener.annotations;
 
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.DeliveryMode;
 import org.motechproject.event.listener.EventListener;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
 
 /**
  * Event Listener Proxy base abstract class
@@ -17,6 +23,7 @@ public abstract class MotechListenerAbstractProxy implements EventListener {
     private final String name;
     private final Object bean;
     private final Method method;
+    private final DeliveryMode deliveryMode;
 
     /**
      * @param name
@@ -24,9 +31,20 @@ public abstract class MotechListenerAbstractProxy implements EventListener {
      * @param method
      */
     public MotechListenerAbstractProxy(String name, Object bean, Method method) {
+        this(name, bean, method, DeliveryMode.QUEUED);
+    }
+
+    /**
+     * @param name
+     * @param bean
+     * @param method
+     * @param deliveryMode
+     */
+    public MotechListenerAbstractProxy(String name, Object bean, Method method, DeliveryMode deliveryMode) {
         this.name = name;
         this.bean = bean;
         this.method = method;
+        this.deliveryMode = deliveryMode;
     }
 
     /**
@@ -45,7 +63,7 @@ public abstract class MotechListenerAbstractProxy implements EventListener {
         try {
             callHandler(event);
         } catch (Exception e) {
-            LoggerFactory.getLogger(bean.getClass()).error("Failed to handle event", e);
+            LoggerFactory.getLogger((bean == null) ? getClass() : bean.getClass()).error("Failed to handle event", e);
             throw new MotechException("Failed to handle event", e);
         }
     }
@@ -65,4 +83,60 @@ public abstract class MotechListenerAbstractProxy implements EventListener {
     public Method getMethod() {
         return method;
     }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    /**
+     * Creates a method handle for the handler method bound to the bean, so that concrete proxies can invoke
+     * the handler without going through reflection on every event.
+     *
+     * @return the bound method handle, or null if there is no bean or method to bind
+     * @throws IllegalArgumentException if the bean does not declare the method, so that the listener is rejected
+     * when it is registered rather than when an event arrives
+     */
+    protected MethodHandle createMethodHandle() {
+        if (bean == null || method == null) {
+            return null;
+        }
+        Assert.isTrue(method.getDeclaringClass().isInstance(bean), String.format("Listener bean %s does not declare the method %s.",
+                bean.getClass().getName(), method.toGenericString()));
+
+        ReflectionUtils.makeAccessible(method);
+        try {
+            return MethodHandles.lookup().unreflect(method).bindTo(bean);
+        } catch (IllegalAccessException e) {
+            throw new MotechException("Unable to access listener method " + method.toGenericString(), e);
+        }
+    }
+
+    /**
+     * Checks that a handler method is bound to the listener, which is not the case for a proxy created without a
+     * bean or method.
+     *
+     * @param invoker the handle created by {@link #createMethodHandle()}, adapted by the concrete proxy
+     * @throws IllegalStateException if no handler method is bound to the listener
+     */
+    protected void checkBound(MethodHandle invoker) {
+        if (invoker == null) {
+            throw new IllegalStateException("No handler method bound to listener " + name);
+        }
+    }
+
+    /**
+     * Rethrows a failure of the handler method the same way reflective invocation would: unchecked exceptions
+     * as they are, checked ones wrapped in an {@link UndeclaredThrowableException}.
+     *
+     * @param t the failure thrown by the handler method
+     */
+    protected static void rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new UndeclaredThrowableException(t);
+    }
 }
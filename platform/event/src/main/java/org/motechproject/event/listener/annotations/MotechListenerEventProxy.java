@@ -1,8 +1,10 @@
 package org.motechproject.event.listener.annotations;
 
 import org.motechproject.event.MotechEvent;
-import org.springframework.util.ReflectionUtils;
+import org.motechproject.event.listener.DeliveryMode;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
 /**
@@ -12,13 +14,29 @@ import java.lang.reflect.Method;
  */
 public class MotechListenerEventProxy extends MotechListenerAbstractProxy {
 
+    private final MethodHandle invoker;
+
     /**
      * @param name
      * @param bean
      * @param method
      */
     public MotechListenerEventProxy(String name, Object bean, Method method) {
-        super(name, bean, method);
+        this(name, bean, method, DeliveryMode.QUEUED);
+    }
+
+    /**
+     * @param name
+     * @param bean
+     * @param method
+     * @param deliveryMode
+     */
+    public MotechListenerEventProxy(String name, Object bean, Method method, DeliveryMode deliveryMode) {
+        super(name, bean, method, deliveryMode);
+
+        MethodHandle methodHandle = createMethodHandle();
+        this.invoker = (methodHandle == null) ? null
+                : methodHandle.asType(MethodType.methodType(void.class, MotechEvent.class));
     }
 
     /* (non-Javadoc)
@@ -26,7 +44,12 @@ public class MotechListenerEventProxy extends MotechListenerAbstractProxy {
       */
     @Override
     public void callHandler(MotechEvent event) {
-        ReflectionUtils.invokeMethod(getMethod(), getBean(), event);
+        checkBound(invoker);
+        try {
+            invoker.invokeExact(event);
+        } catch (Throwable t) {
+            rethrow(t);
+        }
     }
 
 }
@@ -1,26 +1,61 @@
 package org.motechproject.event.listener.annotations;
 
 import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.DeliveryMode;
 import org.springframework.util.Assert;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.util.ClassUtils;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 
 /**
+ * Responsible for dispatching to handlers taking {@link MotechParam} annotated parameters. The names and types
+ * of the parameters are resolved once, when the proxy is created.
+ *
  * @author yyonkov
  */
 public class MotechListenerNamedParametersProxy extends MotechListenerAbstractProxy {
 
+    private final String[] paramNames;
+    private final Class<?>[] paramTypes;
+    private final MethodHandle invoker;
+
     /**
      * @param name
      * @param bean
      * @param method
      */
     public MotechListenerNamedParametersProxy(String name, Object bean, Method method) {
-        super(name, bean, method);
+        this(name, bean, method, DeliveryMode.QUEUED);
+    }
+
+    /**
+     * @param name
+     * @param bean
+     * @param method
+     * @param deliveryMode
+     */
+    public MotechListenerNamedParametersProxy(String name, Object bean, Method method, DeliveryMode deliveryMode) {
+        super(name, bean, method, deliveryMode);
+
+        Class<?>[] types = (method == null) ? new Class<?>[0] : method.getParameterTypes();
+        Annotation[][] paramAnnotations = (method == null) ? new Annotation[0][] : method.getParameterAnnotations();
+
+        this.paramNames = new String[types.length];
+        this.paramTypes = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            MotechParam annotation = findMotechParam(paramAnnotations[i]);
+            Assert.notNull(annotation, "MotechParam(name) annotation is required for each parameter.");
+            paramNames[i] = annotation.value();
+            paramTypes[i] = ClassUtils.resolvePrimitiveIfNecessary(types[i]);
+        }
+
+        MethodHandle methodHandle = createMethodHandle();
+        this.invoker = (methodHandle == null) ? null : methodHandle.asSpreader(Object[].class, types.length)
+                .asType(MethodType.methodType(void.class, Object[].class));
     }
 
     /* (non-Javadoc)
@@ -28,22 +63,33 @@ public class MotechListenerNamedParametersProxy extends MotechListenerAbstractPr
       */
     @Override
     public void callHandler(MotechEvent event) {
-        List<Object> args = new ArrayList<Object>();
-        Class<?>[] paramTypes = getMethod().getParameterTypes();
-        Annotation[][] paramAnnotations = getMethod().getParameterAnnotations();
-        Assert.isTrue(paramTypes.length == paramAnnotations.length);
-        for (int i = 0; i < paramTypes.length; i++) {
-            Class<?> t = paramTypes[i];
-            Assert.notEmpty(paramAnnotations[i], "MotechParam(name) annotation is required for each parameter.");
-            //TODO now assuming only MotechParam annotation is present...
-            Assert.isAssignable(MotechParam.class, paramAnnotations[i][0].getClass());
-            MotechParam annotation = (MotechParam) paramAnnotations[i][0];
-            Object arg = event.getParameters().get(annotation.value());
-            Assert.notNull(arg, String.format("parameter #%d with name:\"%s\" not found or null prameter passed.", i, annotation.value()));
-            Assert.isAssignable(t, arg.getClass(), String.format("Parameter #%d expected subtypes of %s passed %s.", i, t.getName(), arg.getClass().getName()));
-            args.add(arg);
+        checkBound(invoker);
+
+        Map<String, Object> parameters = event.getParameters();
+        Object[] args = new Object[paramNames.length];
+        for (int i = 0; i < paramNames.length; i++) {
+            Object arg = parameters.get(paramNames[i]);
+            Assert.notNull(arg, String.format("parameter #%d with name:\"%s\" not found or null prameter passed.", i, paramNames[i]));
+            if (!paramTypes[i].isInstance(arg)) {
+                throw new IllegalArgumentException(String.format("Parameter #%d expected subtypes of %s passed %s.",
+                        i, paramTypes[i].getName(), arg.getClass().getName()));
+            }
+            args[i] = arg;
         }
-        ReflectionUtils.invokeMethod(getMethod(), getBean(), args.toArray());
 
+        try {
+            invoker.invokeExact(args);
+        } catch (Throwable t) {
+            rethrow(t);
+        }
+    }
+
+    private static MotechParam findMotechParam(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof MotechParam) {
+                return (MotechParam) annotation;
+            }
+        }
+        return null;
     }
 }
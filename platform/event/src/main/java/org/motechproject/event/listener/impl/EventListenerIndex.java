@@ -0,0 +1,288 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.listener.EventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of event listeners by subject. Registered subjects are kept in an immutable trie which is replaced as a
+ * whole (copy-on-write) whenever listeners are added or removed, so lookups never take a lock. Listeners resolved
+ * for a concrete subject are cached until the next modification of the index.
+ * <p/>
+ * Subject matching follows the same rules as {@link EventListenerTree}: a subject ending with <code>.*</code>
+ * matches the prefix itself and all subjects below it, and the <code>*</code> subject matches every event.
+ */
+public class EventListenerIndex {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final char SEPARATOR = '.';
+    private static final String WILDCARD = "*";
+    private static final int MAX_CACHED_SUBJECTS = 10000;
+
+    private final Object writeLock = new Object();
+
+    private volatile Snapshot snapshot = new Snapshot(Node.EMPTY);
+
+    /**
+     * Given a full path create the trie structure to store it
+     *
+     * @param listener
+     * @param subject
+     */
+    public void addListener(EventListener listener, String subject) {
+        String[] path = parseSubject(subject);
+
+        synchronized (writeLock) {
+            Node root = snapshot.root;
+            Node newRoot = root.withListener(path, 0, listener);
+
+            if (newRoot == root) {
+                log.info(String.format("Ignoring second request to register listener %s for subject %s",
+                        listener.getIdentifier(), subject));
+            } else {
+                snapshot = new Snapshot(newRoot);
+            }
+        }
+    }
+
+    /**
+     * Given a subject path return all listeners registered for it. The returned set can not be modified.
+     *
+     * @param subject
+     * @return
+     */
+    public Set<EventListener> getListeners(String subject) {
+        Snapshot current = snapshot;
+
+        Set<EventListener> listeners = current.cache.get(subject);
+        if (listeners == null) {
+            listeners = current.root.findListeners(subject);
+            if (current.cache.size() < MAX_CACHED_SUBJECTS) {
+                current.cache.put(subject, listeners);
+            }
+        }
+
+        return listeners;
+    }
+
+    public boolean hasListener(String subject) {
+        return !getListeners(subject).isEmpty();
+    }
+
+    public int getListenerCount(String subject) {
+        return getListeners(subject).size();
+    }
+
+    /**
+     * Removes all listeners with the given identifier
+     *
+     * @param beanName
+     */
+    public void removeAllListeners(String beanName) {
+        synchronized (writeLock) {
+            Node root = snapshot.root;
+            Node newRoot = root.withoutListeners(beanName);
+
+            if (newRoot != root) {
+                snapshot = new Snapshot(newRoot == null ? Node.EMPTY : newRoot);
+            }
+        }
+    }
+
+    private String[] parseSubject(String subject) {
+        if (subject == null) {
+            throw new IllegalArgumentException("Cannot add listener for null subject");
+        }
+
+        int asteriskLocation = subject.indexOf('*');
+        if (asteriskLocation != -1 && (asteriskLocation + 1) != subject.length()) {
+            throw new IllegalArgumentException("Wildcard must be last element of subject: " + subject);
+        }
+
+        if (subject.contains("..")) {
+            throw new IllegalArgumentException("Subject can not contain an empty path segment: " + subject);
+        }
+
+        if (WILDCARD.equals(subject)) {
+            return new String[] {WILDCARD};
+        }
+
+        String[] path = split(subject);
+
+        if (path[path.length - 1].contains(WILDCARD) && path[path.length - 1].length() > 1) {
+            throw new IllegalArgumentException("Wildcard can not be mixed with characters");
+        }
+
+        return path;
+    }
+
+    private static String[] split(String subject) {
+        int count = 1;
+        for (int i = 0; i < subject.length(); i++) {
+            if (subject.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+
+        String[] path = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = subject.indexOf(SEPARATOR, start);
+            if (end == -1) {
+                end = subject.length();
+            }
+            path[i] = subject.substring(start, end);
+            start = end + 1;
+        }
+        return path;
+    }
+
+    /**
+     * Immutable trie together with the lookup cache built on top of it
+     */
+    private static final class Snapshot {
+        private final Node root;
+        private final Map<String, Set<EventListener>> cache = new ConcurrentHashMap<>();
+
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+    }
+
+    /**
+     * Immutable trie node. Modifications return a new node sharing all unchanged children.
+     */
+    private static final class Node {
+        private static final Node EMPTY = new Node(Collections.<String, Node>emptyMap(),
+                Collections.<EventListener>emptySet(), Collections.<EventListener>emptySet());
+
+        private final Map<String, Node> children;
+        private final Set<EventListener> listeners;
+        private final Set<EventListener> wildcardListeners;
+
+        private Node(Map<String, Node> children, Set<EventListener> listeners, Set<EventListener> wildcardListeners) {
+            this.children = children;
+            this.listeners = listeners;
+            this.wildcardListeners = wildcardListeners;
+        }
+
+        private boolean isEmpty() {
+            return children.isEmpty() && listeners.isEmpty() && wildcardListeners.isEmpty();
+        }
+
+        private Node withListener(String[] path, int pathLevel, EventListener listener) {
+            if (pathLevel == path.length) {
+                if (listeners.contains(listener)) {
+                    return this;
+                }
+                return new Node(children, add(listeners, listener), wildcardListeners);
+            }
+
+            if (pathLevel + 1 == path.length && WILDCARD.equals(path[pathLevel])) {
+                if (wildcardListeners.contains(listener)) {
+                    return this;
+                }
+                return new Node(children, listeners, add(wildcardListeners, listener));
+            }
+
+            Node child = children.get(path[pathLevel]);
+            Node newChild = (child == null ? EMPTY : child).withListener(path, pathLevel + 1, listener);
+            if (newChild == child) {
+                return this;
+            }
+
+            Map<String, Node> newChildren = new HashMap<>(children);
+            newChildren.put(path[pathLevel], newChild);
+            return new Node(Collections.unmodifiableMap(newChildren), listeners, wildcardListeners);
+        }
+
+        /**
+         * @return this node if nothing was removed, null if the node became empty, a new node otherwise
+         */
+        private Node withoutListeners(String identifier) {
+            Set<EventListener> newListeners = remove(listeners, identifier);
+            Set<EventListener> newWildcardListeners = remove(wildcardListeners, identifier);
+
+            Map<String, Node> newChildren = null;
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                Node newChild = entry.getValue().withoutListeners(identifier);
+                if (newChild != entry.getValue()) {
+                    if (newChildren == null) {
+                        newChildren = new HashMap<>(children);
+                    }
+                    if (newChild == null) {
+                        newChildren.remove(entry.getKey());
+                    } else {
+                        newChildren.put(entry.getKey(), newChild);
+                    }
+                }
+            }
+
+            if (newChildren == null && newListeners == listeners && newWildcardListeners == wildcardListeners) {
+                return this;
+            }
+
+            Node node = new Node(newChildren == null ? children : Collections.unmodifiableMap(newChildren),
+                    newListeners, newWildcardListeners);
+            return node.isEmpty() ? null : node;
+        }
+
+        private Set<EventListener> findListeners(String subject) {
+            Set<EventListener> result = new LinkedHashSet<>();
+
+            // the root node keeps listeners registered for "*"
+            result.addAll(wildcardListeners);
+
+            Node node = this;
+            int start = 0;
+            while (node != null) {
+                int end = subject.indexOf(SEPARATOR, start);
+                String element = end == -1 ? subject.substring(start) : subject.substring(start, end);
+
+                node = node.children.get(element);
+                if (node == null) {
+                    break;
+                }
+
+                result.addAll(node.wildcardListeners);
+                if (end == -1) {
+                    result.addAll(node.listeners);
+                    break;
+                }
+                start = end + 1;
+            }
+
+            return result.isEmpty() ? Collections.<EventListener>emptySet() : Collections.unmodifiableSet(result);
+        }
+
+        private static Set<EventListener> add(Set<EventListener> set, EventListener listener) {
+            Set<EventListener> newSet = new LinkedHashSet<>(set);
+            newSet.add(listener);
+            return Collections.unmodifiableSet(newSet);
+        }
+
+        private static Set<EventListener> remove(Set<EventListener> set, String identifier) {
+            Set<EventListener> newSet = null;
+            for (EventListener listener : set) {
+                if (identifier.equals(listener.getIdentifier())) {
+                    if (newSet == null) {
+                        newSet = new LinkedHashSet<>(set);
+                    }
+                    newSet.remove(listener);
+                }
+            }
+
+            if (newSet == null) {
+                return set;
+            }
+            return newSet.isEmpty() ? Collections.<EventListener>emptySet() : Collections.unmodifiableSet(newSet);
+        }
+    }
+}
@@ -11,14 +11,15 @@ import java.util.Set;
 
 /**
  * Implementation of {@link EventListenerRegistryService} interface.
- * Acts as a registry for all scheduled event listeners
+ * Acts as a registry for all scheduled event listeners. Listeners are kept in an {@link EventListenerIndex},
+ * so lookups done for every relayed event are lock-free and served from a per-subject cache.
  */
 
 @Service
 public class EventListenerRegistry implements EventListenerRegistryService {
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
-    private EventListenerTree listenerTree = new EventListenerTree();
+    private EventListenerIndex listenerIndex = new EventListenerIndex();
 
     public EventListenerRegistry() { }
 
@@ -59,13 +60,13 @@ public class EventListenerRegistry implements EventListenerRegistryService {
             log.debug("registering handler for " + subject + " to " + this.toString());
         }
 
-        listenerTree.addListener(listener, subject);
+        listenerIndex.addListener(listener, subject);
     }
 
     public Set<EventListener> getListeners(String subject) {
         Set<EventListener> ret;
 
-       ret = listenerTree.getListeners(subject);
+       ret = listenerIndex.getListeners(subject);
 
         return ret;
     }
@@ -73,7 +74,7 @@ public class EventListenerRegistry implements EventListenerRegistryService {
     public boolean hasListener(String subject) {
         boolean ret;
 
-        ret = listenerTree.hasListener(subject);
+        ret = listenerIndex.hasListener(subject);
 
         return ret;
     }
@@ -81,12 +82,12 @@ public class EventListenerRegistry implements EventListenerRegistryService {
     public int getListenerCount(String subject) {
         int ret;
 
-        ret = listenerTree.getListenerCount(subject);
+        ret = listenerIndex.getListenerCount(subject);
 
         return ret;
     }
 
     public void clearListenersForBean(String beanName) {
-        listenerTree.removeAllListeners(beanName);
+        listenerIndex.removeAllListeners(beanName);
     }
 }
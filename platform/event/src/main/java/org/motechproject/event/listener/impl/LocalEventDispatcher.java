@@ -0,0 +1,203 @@
+package org.motechproject.event.listener.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.DeliveryMode;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.queue.MotechEventConfig;
+import org.motechproject.event.utils.MotechProxyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatches events in-process for listeners and subjects using {@link DeliveryMode#LOCAL} delivery.
+ * Events are handled on a bounded thread pool. When the pool queue is full, the publishing thread handles
+ * the event itself, which slows down producers instead of dropping events. Redeliveries are delayed the same
+ * way the event queue delays them. Events sent for later delivery wait on a {@link TimingWheel}.
+ */
+public class LocalEventDispatcher {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final long MILLIS_PER_SEC = 1000L;
+    private static final String WILDCARD_SUFFIX = ".*";
+
+    private final MotechEventConfig motechEventConfig;
+
+    private volatile ThreadPoolExecutor executor;
+    private volatile ScheduledExecutorService redeliveryScheduler;
+    private volatile TimingWheel deliveryTimer;
+
+    private volatile Set<String> localSubjects;
+    private volatile List<String> localSubjectPrefixes;
+
+    public LocalEventDispatcher(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Checks whether events of the given subject should be dispatched in-process to the given listener.
+     *
+     * @param subject  the subject of the event
+     * @param listener the listener receiving the event
+     * @return true if the event should skip the event queue
+     */
+    public boolean isLocal(String subject, EventListener listener) {
+        if (DeliveryMode.LOCAL == MotechProxyUtils.getDeliveryMode(listener)) {
+            return true;
+        }
+
+        initLocalSubjects();
+
+        if (localSubjects.contains(subject)) {
+            return true;
+        }
+        for (String prefix : localSubjectPrefixes) {
+            if (subject.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands the event over to the local thread pool. Redelivered events are delayed depending on their
+     * redelivery count.
+     *
+     * @param task  the task handling the event
+     * @param event the event being dispatched
+     */
+    public void dispatch(final Runnable task, MotechEvent event) {
+        Boolean isFailedMessage = (Boolean) event.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+
+        if (isFailedMessage != null && isFailedMessage) {
+            long redeliveryCount = event.getMessageRedeliveryCount();
+            Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
+                    ((Math.pow(2, redeliveryCount - 1)));
+            log.debug("Redelivering " + event + " locally after " + delay + " millis.");
+
+            getRedeliveryScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    execute(task);
+                }
+            }, delay.longValue(), TimeUnit.MILLISECONDS);
+        } else {
+            execute(task);
+        }
+    }
+
+    /**
+     * Hands the event over to the local thread pool once the given time is reached.
+     *
+     * @param task      the task handling the event
+     * @param deliverAt the time, in milliseconds since the epoch, at which the event should be handled
+     */
+    public void dispatchAt(final Runnable task, long deliverAt) {
+        getDeliveryTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                execute(task);
+            }
+        }, deliverAt);
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (redeliveryScheduler != null) {
+            redeliveryScheduler.shutdownNow();
+        }
+        if (deliveryTimer != null) {
+            deliveryTimer.shutdown();
+        }
+    }
+
+    private void execute(final Runnable task) {
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Error while handling event locally", e);
+                }
+            }
+        });
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    int poolSize = Math.max(1, motechEventConfig.getLocalPoolSize());
+                    int queueCapacity = Math.max(1, motechEventConfig.getLocalQueueCapacity());
+
+                    executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory("motech-local-event"),
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+                }
+            }
+        }
+        return executor;
+    }
+
+    private ScheduledExecutorService getRedeliveryScheduler() {
+        if (redeliveryScheduler == null) {
+            synchronized (this) {
+                if (redeliveryScheduler == null) {
+                    redeliveryScheduler = Executors.newSingleThreadScheduledExecutor(
+                            new NamedThreadFactory("motech-local-event-redelivery"));
+                }
+            }
+        }
+        return redeliveryScheduler;
+    }
+
+    private TimingWheel getDeliveryTimer() {
+        if (deliveryTimer == null) {
+            synchronized (this) {
+                if (deliveryTimer == null) {
+                    deliveryTimer = new TimingWheel(Math.max(1, motechEventConfig.getLocalTimerTickMillis()),
+                            Math.max(1, motechEventConfig.getLocalTimerWheelSize()), "motech-local-event-timer");
+                }
+            }
+        }
+        return deliveryTimer;
+    }
+
+    private void initLocalSubjects() {
+        if (localSubjects != null) {
+            return;
+        }
+
+        Set<String> subjects = new HashSet<>();
+        List<String> prefixes = new ArrayList<>();
+
+        String configured = motechEventConfig.getLocalSubjects();
+        if (StringUtils.isNotBlank(configured)) {
+            for (String subject : StringUtils.split(configured, ',')) {
+                String trimmed = subject.trim();
+                if (trimmed.endsWith(WILDCARD_SUFFIX)) {
+                    prefixes.add(trimmed.substring(0, trimmed.length() - 1));
+                } else if (StringUtils.isNotEmpty(trimmed)) {
+                    subjects.add(trimmed);
+                }
+            }
+        }
+
+        localSubjectPrefixes = Collections.unmodifiableList(prefixes);
+        localSubjects = Collections.unmodifiableSet(subjects);
+    }
+}
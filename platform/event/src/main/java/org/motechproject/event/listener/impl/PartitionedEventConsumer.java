@@ -0,0 +1,156 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.queue.MotechEventConfig;
+import org.motechproject.event.queue.SubjectGroups;
+import org.motechproject.event.queue.SubjectGroups.SubjectGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consumes events received from the event queue. Events are relayed on the thread of the queue consumer which
+ * received them, and acknowledged to the broker only after they were handled, so that a failure rolls them back
+ * for redelivery.
+ * <p/>
+ * With <code>motech.event.consumer.partitioned</code> enabled, every subject group from
+ * <code>motech.event.consumer.groups</code> is consumed by its own listener container, with as many consumers as
+ * the group has threads, which only receives the events selected for the group by {@link SubjectGroups}. The
+ * queue consumers of the default group receive all other events. A slow group therefore only holds its own
+ * consumers, and its events wait on the broker. Events with the same partition key are sent in the same message
+ * group, which the broker delivers in order to a single consumer, while events with different keys are handled in
+ * parallel. Redelivered events may be handled after later events with the same key.
+ */
+@Component("eventConsumer")
+public class PartitionedEventConsumer {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    public static final String DEFAULT_GROUP = SubjectGroups.DEFAULT_GROUP;
+
+    private final ServerEventRelay eventRelay;
+    private final MotechEventConfig motechEventConfig;
+    private final SubjectGroups subjectGroups;
+    private final ConnectionFactory connectionFactory;
+    private final Destination eventQueue;
+    private final MessageConverter messageConverter;
+
+    private final List<DefaultMessageListenerContainer> containers = new ArrayList<>();
+
+    @Autowired
+    public PartitionedEventConsumer(ServerEventRelay eventRelay, MotechEventConfig motechEventConfig,
+                                    SubjectGroups subjectGroups,
+                                    @Qualifier("connectionFactory") ConnectionFactory connectionFactory,
+                                    @Qualifier("eventQueue") Destination eventQueue,
+                                    @Qualifier("motechEventMessageConverter") MessageConverter messageConverter) {
+        this.eventRelay = eventRelay;
+        this.motechEventConfig = motechEventConfig;
+        this.subjectGroups = subjectGroups;
+        this.connectionFactory = connectionFactory;
+        this.eventQueue = eventQueue;
+        this.messageConverter = messageConverter;
+    }
+
+    /**
+     * Starts the listener containers of the configured subject groups, if the consumption is partitioned.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!motechEventConfig.isPartitionedConsumption() || !containers.isEmpty()) {
+            return;
+        }
+
+        for (SubjectGroup group : subjectGroups.getGroups()) {
+            DefaultMessageListenerContainer container = new DefaultMessageListenerContainer();
+            container.setBeanName("eventConsumer-" + group.getName());
+            container.setConnectionFactory(connectionFactory);
+            container.setDestination(eventQueue);
+            container.setMessageSelector(subjectGroups.getSelector(group));
+            container.setSessionTransacted(true);
+            container.setConcurrentConsumers(group.getThreads());
+            container.setMaxConcurrentConsumers(group.getThreads());
+            container.setMessageListener(new GroupListener());
+            container.afterPropertiesSet();
+            container.start();
+            containers.add(container);
+
+            if (log.isDebugEnabled()) {
+                log.debug("Consuming events of group " + group.getName() + " with selector " + container.getMessageSelector());
+            }
+        }
+    }
+
+    /**
+     * Relays the given event, received by the queue consumers of the default group. Returns once the event was
+     * handled, so that it is acknowledged to the broker only then.
+     *
+     * @param event the event received from the event queue
+     * @throws RuntimeException if handling the event failed, so that the event is rolled back for redelivery
+     */
+    public void consume(MotechEvent event) {
+        eventRelay.relayEvent(event);
+    }
+
+    /**
+     * Returns the message selector of the queue consumers of the default group.
+     *
+     * @return the selector, null if all events are received by the default group
+     */
+    public String getDefaultSelector() {
+        return subjectGroups.getDefaultSelector();
+    }
+
+    /**
+     * Returns the name of the subject group handling events of the given subject.
+     *
+     * @param subject the subject of the event
+     * @return the name of the group
+     */
+    public String getGroupName(String subject) {
+        return subjectGroups.getGroupName(subject);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        for (DefaultMessageListenerContainer container : containers) {
+            container.shutdown();
+        }
+        containers.clear();
+    }
+
+    /**
+     * Relays the events received by the consumers of a subject group. Failures are rethrown, so that the
+     * transacted session of the consumer is rolled back and the event redelivered.
+     */
+    private class GroupListener implements MessageListener {
+
+        @Override
+        public void onMessage(Message message) {
+            Object payload;
+            try {
+                payload = messageConverter.fromMessage(message);
+            } catch (JMSException e) {
+                throw new IllegalStateException("Unable to read event from message " + message, e);
+            }
+            if (!(payload instanceof MotechEvent)) {
+                log.error("Discarding message without an event: " + message);
+                return;
+            }
+
+            consume((MotechEvent) payload);
+        }
+    }
+}
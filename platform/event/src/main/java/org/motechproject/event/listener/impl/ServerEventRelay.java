@@ -2,8 +2,11 @@ package org.motechproject.event.listener.impl;
 
 import com.google.common.collect.Iterables;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.event.deadletter.impl.DeadLetterLog;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.metrics.impl.EventMetricsRegistry;
+import org.motechproject.event.queue.EventBatchPublisher;
 import org.motechproject.event.queue.MotechEventConfig;
 import org.motechproject.event.queue.OutboundEventGateway;
 import org.motechproject.event.utils.MotechProxyUtils;
@@ -12,12 +15,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
- * This class handled incoming scheduled events and relays those events to the appropriate event listeners
+ * This class handled incoming scheduled events and relays those events to the appropriate event listeners.
+ * Events for listeners or subjects configured with {@link org.motechproject.event.listener.DeliveryMode#LOCAL}
+ * delivery are handed to the {@link LocalEventDispatcher} instead of the event queue.
  */
 @Component("eventRelay")
 public class ServerEventRelay implements EventRelay {
@@ -25,35 +35,88 @@ public class ServerEventRelay implements EventRelay {
 
     private EventListenerRegistry eventListenerRegistry;
     private OutboundEventGateway outboundEventGateway;
+    private EventBatchPublisher eventBatchPublisher;
     private MotechEventConfig motechEventConfig;
+    private LocalEventDispatcher localEventDispatcher;
+    private EventMetricsRegistry eventMetrics = new EventMetricsRegistry();
+    private DeadLetterLog deadLetterLog;
 
     private static final String MESSAGE_DESTINATION = "message-destination";
+    private static final long IMMEDIATELY = 0L;
 
-    @Autowired
     public ServerEventRelay(OutboundEventGateway outboundEventGateway, EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig) {
+        this(outboundEventGateway, null, eventListenerRegistry, motechEventConfig);
+    }
+
+    @Autowired
+    public ServerEventRelay(OutboundEventGateway outboundEventGateway, EventBatchPublisher eventBatchPublisher,
+                            EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig) {
         this.outboundEventGateway = outboundEventGateway;
+        this.eventBatchPublisher = eventBatchPublisher;
         this.eventListenerRegistry = eventListenerRegistry;
         this.motechEventConfig = motechEventConfig;
+        this.localEventDispatcher = new LocalEventDispatcher(motechEventConfig);
+    }
+
+    @Autowired(required = false)
+    public void setEventMetrics(EventMetricsRegistry eventMetrics) {
+        this.eventMetrics = eventMetrics;
+    }
+
+    @Autowired(required = false)
+    public void setDeadLetterLog(DeadLetterLog deadLetterLog) {
+        this.deadLetterLog = deadLetterLog;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        localEventDispatcher.shutdown();
     }
 
     // @TODO either relayEvent should be made private, or this method moved out to it's own class.
     @Override
     public void sendEventMessage(MotechEvent event) {
-        Set<EventListener> listeners = eventListenerRegistry.getListeners(event.getSubject());
-        if (log.isDebugEnabled()) {
-            log.debug("found " + listeners.size() + " for " + event.getSubject() + " in " + eventListenerRegistry.toString());
+        eventMetrics.recordPublished(event.getSubject());
+        publishEvent(event);
+    }
+
+    @Override
+    public void sendEventMessages(Collection<MotechEvent> events) {
+        List<MotechEvent> queuedEvents = new ArrayList<>(events.size());
+        for (MotechEvent event : events) {
+            eventMetrics.recordPublished(event.getSubject());
+            routeEvent(event, queuedEvents, IMMEDIATELY);
         }
+        sendToQueue(queuedEvents);
+    }
 
-        if (!listeners.isEmpty()) {
-            try {
-                outboundEventGateway.sendEventMessage(event);
-            } catch (Exception e) {
-                log.error(e.getMessage());
-                throw e;
+    @Override
+    public void sendEventMessage(MotechEvent event, Date deliverAt) {
+        if (deliverAt == null || deliverAt.getTime() <= System.currentTimeMillis()) {
+            sendEventMessage(event);
+            return;
+        }
+
+        eventMetrics.recordPublished(event.getSubject());
+
+        List<MotechEvent> queuedEvents = new ArrayList<>(1);
+        routeEvent(event, queuedEvents, deliverAt.getTime());
+        try {
+            for (MotechEvent queuedEvent : queuedEvents) {
+                outboundEventGateway.sendEventMessage(queuedEvent, deliverAt.getTime());
             }
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            throw e;
         }
     }
 
+    private void publishEvent(MotechEvent event) {
+        List<MotechEvent> queuedEvents = new ArrayList<>(1);
+        routeEvent(event, queuedEvents, IMMEDIATELY);
+        sendToQueue(queuedEvents);
+    }
+
     /**
      * Relay an event to all the listeners of that event.
      *
@@ -73,6 +136,7 @@ public class ServerEventRelay implements EventRelay {
             throw new IllegalArgumentException(errorMessage);
         }
 
+        eventMetrics.recordConsumed(event.getSubject());
         Set<EventListener> listeners = eventListenerRegistry.getListeners(event.getSubject());
 
         if (log.isDebugEnabled()) {
@@ -95,11 +159,13 @@ public class ServerEventRelay implements EventRelay {
         } else {
 
             // Is there a single listener?
-            if (listeners.size() > 1) {
+            if (listeners.size() > 1 && motechEventConfig.isSplitFanout()) {
                 // We need to split the message for each listener to ensure the work units
                 // are completed individually. Therefore, if a message fails it will be
                 // re-distributed to another server without being lost
                 splitEvent(event, listeners);
+            } else if (listeners.size() > 1) {
+                fanOut(event, listeners);
             } else {
                 handleEvent(Iterables.getOnlyElement(listeners), event);
             }
@@ -110,6 +176,28 @@ public class ServerEventRelay implements EventRelay {
         parameters.put("listeners", String.format("%d", listeners.size()));
     }
 
+    /**
+     * Hands a copy of the event to every listener on the current thread. Each listener is still a separate
+     * unit of work: a failing listener gets its copy queued for redelivery to it alone, so only failures cause
+     * additional messages, and a discarded copy does not affect the other listeners.
+     *
+     * @param event     Event message to be handled
+     * @param listeners The listeners of the event
+     */
+    private void fanOut(MotechEvent event, Collection<EventListener> listeners) {
+        for (EventListener listener : listeners) {
+            MotechEvent e = event.copy(event.getSubject(), new HashMap<>(event.getParameters()));
+            e.setId(event.getId());
+            try {
+                handleEvent(listener, e);
+            } catch (RuntimeException ex) {
+                // handleEvent only throws once the copy is stored as a dead letter, either because it reached the
+                // max retry count or could not be queued for redelivery; rethrowing would redeliver it to all listeners
+                log.error("Discarded event " + e + " for listener " + listener.getIdentifier(), ex);
+            }
+        }
+    }
+
     /**
      * Split a given message into multiple messages with specific message destination
      * parameters. Message destinations will route the message to the specific message
@@ -118,7 +206,13 @@ public class ServerEventRelay implements EventRelay {
      * @param event     Event message to be split
      * @param listeners A list of listeners for this given message that will be used as message destinations
      */
-    private void splitEvent(MotechEvent event, Set<EventListener> listeners) {
+    private void splitEvent(MotechEvent event, Collection<EventListener> listeners) {
+        List<MotechEvent> enrichedEventMessages = new ArrayList<>(listeners.size());
+        addSplitEvents(event, listeners, enrichedEventMessages);
+        sendToQueue(enrichedEventMessages);
+    }
+
+    private void addSplitEvents(MotechEvent event, Collection<EventListener> listeners, List<MotechEvent> queuedEvents) {
         MotechEvent enrichedEventMessage;
         Map<String, Object> parameters;
 
@@ -127,18 +221,106 @@ public class ServerEventRelay implements EventRelay {
             parameters.putAll(event.getParameters());
             parameters.put(MESSAGE_DESTINATION, listener.getIdentifier());
             enrichedEventMessage = event.copy(event.getSubject(), parameters);
-            outboundEventGateway.sendEventMessage(enrichedEventMessage);
+            queuedEvents.add(enrichedEventMessage);
+        }
+    }
+
+    /**
+     * Dispatches the event to its local listeners and adds the messages that have to go through the event queue
+     * to the given list. Local listeners get delayed events at the given delivery time.
+     */
+    private void routeEvent(MotechEvent event, List<MotechEvent> queuedEvents, long deliverAt) {
+        Set<EventListener> listeners = eventListenerRegistry.getListeners(event.getSubject());
+        if (log.isDebugEnabled()) {
+            log.debug("found " + listeners.size() + " for " + event.getSubject() + " in " + eventListenerRegistry.toString());
+        }
+
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        // Redelivery of an event destined for a single listener
+        if (event.getParameters().containsKey(MESSAGE_DESTINATION)) {
+            String messageDestination = (String) event.getParameters().get(MESSAGE_DESTINATION);
+            EventListener listener = findListener(listeners, messageDestination);
+
+            if (listener != null && localEventDispatcher.isLocal(event.getSubject(), listener)) {
+                dispatchLocally(listener, event, deliverAt);
+            } else {
+                queuedEvents.add(event);
+            }
+            return;
+        }
+
+        List<EventListener> queuedListeners = new ArrayList<>(listeners.size());
+        for (EventListener listener : listeners) {
+            if (localEventDispatcher.isLocal(event.getSubject(), listener)) {
+                MotechEvent e = event.copy(event.getSubject(), new HashMap<>(event.getParameters()));
+                dispatchLocally(listener, e, deliverAt);
+            } else {
+                queuedListeners.add(listener);
+            }
+        }
+
+        if (queuedListeners.size() == listeners.size()) {
+            queuedEvents.add(event);
+        } else if (!queuedListeners.isEmpty()) {
+            // Some listeners were served locally, so the queued message must not reach them again
+            addSplitEvents(event, queuedListeners, queuedEvents);
+        }
+    }
+
+    private void sendToQueue(List<MotechEvent> events) {
+        try {
+            if (events.size() > 1 && eventBatchPublisher != null) {
+                eventBatchPublisher.publish(events);
+            } else {
+                for (MotechEvent event : events) {
+                    outboundEventGateway.sendEventMessage(event);
+                }
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            throw e;
+        }
+    }
+
+    private void dispatchLocally(final EventListener listener, final MotechEvent event, long deliverAt) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                eventMetrics.recordConsumed(event.getSubject());
+                handleEvent(listener, event);
+            }
+        };
+
+        if (deliverAt == IMMEDIATELY) {
+            localEventDispatcher.dispatch(task, event);
+        } else {
+            localEventDispatcher.dispatchAt(task, deliverAt);
         }
     }
 
+    private EventListener findListener(Set<EventListener> listeners, String identifier) {
+        for (EventListener listener : listeners) {
+            if (listener.getIdentifier().equals(identifier)) {
+                return listener;
+            }
+        }
+        return null;
+    }
+
     private void handleEvent(EventListener listener, MotechEvent event) {
         ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        long start = System.nanoTime();
         try {
             Object target = MotechProxyUtils.getTargetIfProxied(listener);
             Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
             listener.handle(event);
+            eventMetrics.recordExecution(listener.getIdentifier(), System.nanoTime() - start, false);
 
         } catch (Exception e) {
+            eventMetrics.recordExecution(listener.getIdentifier(), System.nanoTime() - start, true);
             log.debug("Handling error - " + e.getMessage());
             event.getParameters().put(MotechEvent.PARAM_INVALID_MOTECH_EVENT, Boolean.TRUE);
             event.getParameters().put(MESSAGE_DESTINATION, listener.getIdentifier());
@@ -146,12 +328,37 @@ public class ServerEventRelay implements EventRelay {
             if (event.getMessageRedeliveryCount() == motechEventConfig.getMessageMaxRedeliveryCount()) {
                 event.getParameters().put(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT, Boolean.TRUE);
                 log.info("Discarding Motech event " + event + ". Max retry count reached.");
+                eventMetrics.recordDiscard(event.getSubject(), listener.getIdentifier());
+                storeDeadLetter(event, listener);
                 throw e;
             }
             event.incrementMessageRedeliveryCount();
-            sendEventMessage(event);
+            try {
+                publishEvent(event);
+            } catch (RuntimeException requeueFailure) {
+                // an event which can not be redelivered is discarded, as if it reached the max retry count
+                event.getParameters().put(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT, Boolean.TRUE);
+                log.error("Discarding Motech event " + event + ". It could not be queued for redelivery.",
+                        requeueFailure);
+                eventMetrics.recordDiscard(event.getSubject(), listener.getIdentifier());
+                storeDeadLetter(event, listener);
+                throw requeueFailure;
+            }
+            eventMetrics.recordRedelivery(event.getSubject(), listener.getIdentifier());
         } finally {
             Thread.currentThread().setContextClassLoader(oldClassLoader);
         }
     }
+
+    private void storeDeadLetter(MotechEvent event, EventListener listener) {
+        if (deadLetterLog == null || !deadLetterLog.isEnabled()) {
+            return;
+        }
+
+        try {
+            deadLetterLog.append(event, listener.getIdentifier());
+        } catch (RuntimeException e) {
+            log.error("Unable to store discarded event " + event + " in the dead letter log", e);
+        }
+    }
 }
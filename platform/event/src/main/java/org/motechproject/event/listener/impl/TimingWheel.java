@@ -0,0 +1,153 @@
+package org.motechproject.event.listener.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel running tasks at a given time. Scheduling and expiring a task takes constant time, no
+ * matter how many tasks are waiting, which makes it suitable for large numbers of delayed events. Tasks are run
+ * on the thread of the wheel, so they should only hand the work over to another executor. Tasks are run at most
+ * one tick late, and tasks waiting when the wheel is stopped are dropped.
+ */
+public class TimingWheel {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final long tickNanos;
+    private final List<Queue<Timeout>> buckets;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+
+    private final long startTime;
+    private long currentTick;
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts the wheel.
+     *
+     * @param tickMillis the time (in milliseconds) between two runs of the wheel
+     * @param wheelSize  the number of buckets, rounded up to a power of two
+     * @param threadName the name of the wheel thread
+     */
+    public TimingWheel(long tickMillis, int wheelSize, String threadName) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            String errorMessage = "Tick duration and wheel size must be positive";
+            log.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        int size = Integer.highestOneBit(Math.min(wheelSize, 1 << 30));
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayDeque<Timeout>());
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+
+        worker = new NamedThreadFactory(threadName).newThread(new Runnable() {
+            @Override
+            public void run() {
+                runWheel();
+            }
+        });
+        worker.start();
+    }
+
+    /**
+     * Runs the given task once the given time is reached. Tasks due already are run on the next tick.
+     *
+     * @param task      the task to run
+     * @param deliverAt the time, in milliseconds since the epoch, at which the task should run
+     */
+    public void schedule(Runnable task, long deliverAt) {
+        if (!running) {
+            throw new IllegalStateException("Timing wheel is stopped");
+        }
+
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, deliverAt - System.currentTimeMillis()));
+        pending.add(new Timeout(task, System.nanoTime() - startTime + delayNanos));
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void runWheel() {
+        while (running) {
+            long deadline = (currentTick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+            }
+
+            transferPending();
+            expire(buckets.get((int) (currentTick & mask)));
+            currentTick++;
+        }
+
+        pending.clear();
+        for (Queue<Timeout> bucket : buckets) {
+            bucket.clear();
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            // the tick in which the task becomes due, never a tick which has already passed
+            long tick = Math.max(timeout.deadline / tickNanos, currentTick);
+            timeout.rounds = (tick - currentTick) / buckets.size();
+            buckets.get((int) (tick & mask)).add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                continue;
+            }
+
+            iterator.remove();
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                log.error("Error while running delayed task", e);
+            }
+        }
+    }
+
+    private static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long rounds;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+}
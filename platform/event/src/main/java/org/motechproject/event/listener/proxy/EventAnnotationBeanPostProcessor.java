@@ -79,17 +79,19 @@ public class EventAnnotationBeanPostProcessor implements DestructionAwareBeanPos
                         MotechListenerAbstractProxy proxy = null;
                         switch (annotation.type()) {
                             case MOTECH_EVENT:
-                                proxy = new MotechListenerEventProxy(getFullyQualifiedBeanName(bean.getClass(), beanName), bean, method);
+                                proxy = new MotechListenerEventProxy(getFullyQualifiedBeanName(bean.getClass(), beanName), bean, method,
+                                        annotation.deliveryMode());
                                 break;
                             case NAMED_PARAMETERS:
-                                proxy = new MotechListenerNamedParametersProxy(getFullyQualifiedBeanName(bean.getClass(), beanName), bean, method);
+                                proxy = new MotechListenerNamedParametersProxy(getFullyQualifiedBeanName(bean.getClass(), beanName), bean, method,
+                                        annotation.deliveryMode());
                                 break;
                             default:
                         }
 
                         logger.info(String.format("Registering listener type(%20s) bean: %s, method: %s, for subjects: "
-                                + "%s", annotation.type().toString() + ":" + beanName, bean.getClass().getName(),
-                                method.toGenericString(), subjects));
+                                + "%s, delivery: %s", annotation.type().toString() + ":" + beanName, bean.getClass().getName(),
+                                method.toGenericString(), subjects, annotation.deliveryMode()));
 
                         if (eventListenerRegistry != null) {
                             eventListenerRegistry.registerListener(proxy, subjects);
@@ -0,0 +1,34 @@
+package org.motechproject.event.metrics;
+
+import javax.management.MXBean;
+import java.util.List;
+
+/**
+ * Provides statistics of the event pipeline: how many events of each subject were published and consumed,
+ * how long they waited in the event queue, how long listeners took to handle them and how often handling
+ * failed. The statistics are also available over JMX, under {@link #OBJECT_NAME}.
+ */
+@MXBean
+public interface EventMetricsService {
+
+    String OBJECT_NAME = "org.motechproject.event:type=EventMetrics";
+
+    /**
+     * Returns the statistics of every subject seen since the start or the last reset.
+     *
+     * @return the statistics, one entry per subject
+     */
+    List<SubjectMetrics> getSubjectMetrics();
+
+    /**
+     * Returns the statistics of every listener which handled events since the start or the last reset.
+     *
+     * @return the statistics, one entry per listener identifier
+     */
+    List<ListenerMetrics> getListenerMetrics();
+
+    /**
+     * Clears all statistics.
+     */
+    void reset();
+}
@@ -0,0 +1,67 @@
+package org.motechproject.event.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of durations, in milliseconds. The histogram holds the number of durations up to each of the
+ * bucket bounds, the last entry counts durations longer than the last bound.
+ */
+public class LatencyMetrics {
+
+    private static final long[] BUCKET_BOUNDS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+    private final long count;
+    private final long totalMillis;
+    private final long maxMillis;
+    private final long[] histogram;
+
+    public LatencyMetrics(long count, long totalMillis, long maxMillis, long[] histogram) {
+        this.count = count;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.histogram = Arrays.copyOf(histogram, histogram.length);
+    }
+
+    /**
+     * Returns the index of the histogram bucket for the given duration.
+     *
+     * @param millis the duration in milliseconds
+     * @return the index of the bucket
+     */
+    public static int getBucket(long millis) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (millis <= BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length;
+    }
+
+    public static int getBucketCount() {
+        return BUCKET_BOUNDS.length + 1;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public double getMeanMillis() {
+        return (count == 0) ? 0 : (double) totalMillis / count;
+    }
+
+    public long[] getBucketBounds() {
+        return Arrays.copyOf(BUCKET_BOUNDS, BUCKET_BOUNDS.length);
+    }
+
+    public long[] getHistogram() {
+        return Arrays.copyOf(histogram, histogram.length);
+    }
+}
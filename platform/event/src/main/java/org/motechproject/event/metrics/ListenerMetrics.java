@@ -0,0 +1,61 @@
+package org.motechproject.event.metrics;
+
+/**
+ * Statistics of a single event listener.
+ */
+public class ListenerMetrics {
+
+    private final String identifier;
+    private final long failureCount;
+    private final long redeliveryCount;
+    private final long discardCount;
+    private final LatencyMetrics executionTime;
+
+    public ListenerMetrics(String identifier, long failureCount, long redeliveryCount, long discardCount,
+                           LatencyMetrics executionTime) {
+        this.identifier = identifier;
+        this.failureCount = failureCount;
+        this.redeliveryCount = redeliveryCount;
+        this.discardCount = discardCount;
+        this.executionTime = executionTime;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the number of events the listener handled, successfully or not
+     */
+    public long getInvocationCount() {
+        return executionTime.getCount();
+    }
+
+    /**
+     * @return the number of events the listener failed to handle
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return the number of failed events scheduled for redelivery to the listener
+     */
+    public long getRedeliveryCount() {
+        return redeliveryCount;
+    }
+
+    /**
+     * @return the number of events discarded after the listener failed to handle them too many times
+     */
+    public long getDiscardCount() {
+        return discardCount;
+    }
+
+    /**
+     * @return the time the listener took to handle events
+     */
+    public LatencyMetrics getExecutionTime() {
+        return executionTime;
+    }
+}
@@ -0,0 +1,63 @@
+package org.motechproject.event.metrics;
+
+/**
+ * Statistics of events with a single subject.
+ */
+public class SubjectMetrics {
+
+    private final String subject;
+    private final long publishedCount;
+    private final long consumedCount;
+    private final long redeliveryCount;
+    private final long discardCount;
+    private final LatencyMetrics queueDwellTime;
+
+    public SubjectMetrics(String subject, long publishedCount, long consumedCount, long redeliveryCount,
+                          long discardCount, LatencyMetrics queueDwellTime) {
+        this.subject = subject;
+        this.publishedCount = publishedCount;
+        this.consumedCount = consumedCount;
+        this.redeliveryCount = redeliveryCount;
+        this.discardCount = discardCount;
+        this.queueDwellTime = queueDwellTime;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the number of events published through the event relay
+     */
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * @return the number of events relayed to listeners, from the event queue or in-process
+     */
+    public long getConsumedCount() {
+        return consumedCount;
+    }
+
+    /**
+     * @return the number of times handling an event failed and the event was scheduled for redelivery
+     */
+    public long getRedeliveryCount() {
+        return redeliveryCount;
+    }
+
+    /**
+     * @return the number of events discarded after reaching the maximum redelivery count
+     */
+    public long getDiscardCount() {
+        return discardCount;
+    }
+
+    /**
+     * @return the time events spent in the event queue, from sending to receiving them
+     */
+    public LatencyMetrics getQueueDwellTime() {
+        return queueDwellTime;
+    }
+}
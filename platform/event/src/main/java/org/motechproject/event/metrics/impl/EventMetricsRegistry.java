@@ -0,0 +1,203 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.metrics.EventMetricsService;
+import org.motechproject.event.metrics.LatencyMetrics;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects the event pipeline statistics in memory and registers them with the platform MBean server.
+ * Recording only updates atomic counters, so it can be called on every event. The number of tracked subjects
+ * and listeners is bounded; once the limit is reached, statistics of new ones are recorded under
+ * {@link #OTHER}.
+ */
+@Component("eventMetricsRegistry")
+public class EventMetricsRegistry implements EventMetricsService {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    public static final String OTHER = "other";
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private final ConcurrentMap<String, SubjectCounters> subjects = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ListenerCounters> listeners = new ConcurrentHashMap<>();
+
+    private ObjectName objectName;
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            mBeanServer.registerMBean(new StandardMBean(this, EventMetricsService.class, true), name);
+            objectName = name;
+        } catch (InstanceAlreadyExistsException e) {
+            log.warn("Event metrics MBean already registered as " + OBJECT_NAME);
+        } catch (JMException e) {
+            log.error("Unable to register event metrics MBean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.error("Unable to unregister event metrics MBean", e);
+            }
+            objectName = null;
+        }
+    }
+
+    public void recordPublished(String subject) {
+        getSubject(subject).published.incrementAndGet();
+    }
+
+    public void recordConsumed(String subject) {
+        getSubject(subject).consumed.incrementAndGet();
+    }
+
+    public void recordQueueDwellTime(String subject, long millis) {
+        getSubject(subject).dwellTime.record(Math.max(0, millis));
+    }
+
+    public void recordExecution(String listenerIdentifier, long nanos, boolean failed) {
+        ListenerCounters counters = getListener(listenerIdentifier);
+        counters.executionTime.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+        if (failed) {
+            counters.failures.incrementAndGet();
+        }
+    }
+
+    public void recordRedelivery(String subject, String listenerIdentifier) {
+        getSubject(subject).redeliveries.incrementAndGet();
+        getListener(listenerIdentifier).redeliveries.incrementAndGet();
+    }
+
+    public void recordDiscard(String subject, String listenerIdentifier) {
+        getSubject(subject).discards.incrementAndGet();
+        getListener(listenerIdentifier).discards.incrementAndGet();
+    }
+
+    @Override
+    public List<SubjectMetrics> getSubjectMetrics() {
+        List<SubjectMetrics> metrics = new ArrayList<>(subjects.size());
+        for (Map.Entry<String, SubjectCounters> entry : subjects.entrySet()) {
+            SubjectCounters counters = entry.getValue();
+            metrics.add(new SubjectMetrics(entry.getKey(), counters.published.get(), counters.consumed.get(),
+                    counters.redeliveries.get(), counters.discards.get(), counters.dwellTime.snapshot()));
+        }
+        return metrics;
+    }
+
+    @Override
+    public List<ListenerMetrics> getListenerMetrics() {
+        List<ListenerMetrics> metrics = new ArrayList<>(listeners.size());
+        for (Map.Entry<String, ListenerCounters> entry : listeners.entrySet()) {
+            ListenerCounters counters = entry.getValue();
+            metrics.add(new ListenerMetrics(entry.getKey(), counters.failures.get(), counters.redeliveries.get(),
+                    counters.discards.get(), counters.executionTime.snapshot()));
+        }
+        return metrics;
+    }
+
+    @Override
+    public void reset() {
+        subjects.clear();
+        listeners.clear();
+    }
+
+    private SubjectCounters getSubject(String subject) {
+        String key = (subject == null) ? OTHER : subject;
+        SubjectCounters counters = subjects.get(key);
+        if (counters == null) {
+            if (subjects.size() >= MAX_ENTRIES) {
+                key = OTHER;
+            }
+            SubjectCounters created = new SubjectCounters();
+            counters = subjects.putIfAbsent(key, created);
+            if (counters == null) {
+                counters = created;
+            }
+        }
+        return counters;
+    }
+
+    private ListenerCounters getListener(String identifier) {
+        String key = (identifier == null) ? OTHER : identifier;
+        ListenerCounters counters = listeners.get(key);
+        if (counters == null) {
+            if (listeners.size() >= MAX_ENTRIES) {
+                key = OTHER;
+            }
+            ListenerCounters created = new ListenerCounters();
+            counters = listeners.putIfAbsent(key, created);
+            if (counters == null) {
+                counters = created;
+            }
+        }
+        return counters;
+    }
+
+    private static class SubjectCounters {
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong consumed = new AtomicLong();
+        private final AtomicLong redeliveries = new AtomicLong();
+        private final AtomicLong discards = new AtomicLong();
+        private final Latency dwellTime = new Latency();
+    }
+
+    private static class ListenerCounters {
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong redeliveries = new AtomicLong();
+        private final AtomicLong discards = new AtomicLong();
+        private final Latency executionTime = new Latency();
+    }
+
+    private static class Latency {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(LatencyMetrics.getBucketCount());
+
+        void record(long millis) {
+            count.incrementAndGet();
+            total.addAndGet(millis);
+            buckets.incrementAndGet(LatencyMetrics.getBucket(millis));
+
+            long currentMax = max.get();
+            while (millis > currentMax && !max.compareAndSet(currentMax, millis)) {
+                currentMax = max.get();
+            }
+        }
+
+        LatencyMetrics snapshot() {
+            long[] histogram = new long[buckets.length()];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = buckets.get(i);
+            }
+            return new LatencyMetrics(count.get(), total.get(), max.get(), histogram);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package org.motechproject.event.queue;
+
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary {@link MotechEventCodec}. The event and its parameters are written as tagged fields, without
+ * any schema. Strings, boxed primitives, dates, UUIDs and nested <code>ArrayList</code>s and
+ * <code>HashMap</code>s of those are written natively, every other parameter value falls back to Java
+ * serialization.
+ */
+public class BinaryMotechEventCodec implements MotechEventCodec {
+
+    public static final String NAME = "motech-binary-v1";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte FORMAT_BINARY = 1;
+    private static final byte FORMAT_SERIALIZED = 2;
+
+    private static final int FLAG_ID = 1;
+    private static final int FLAG_END_TIME = 1 << 1;
+    private static final int FLAG_LAST_EVENT = 1 << 2;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INTEGER = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_BOOLEAN = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_FLOAT = 6;
+    private static final byte TAG_SHORT = 7;
+    private static final byte TAG_BYTE = 8;
+    private static final byte TAG_CHARACTER = 9;
+    private static final byte TAG_DATE = 10;
+    private static final byte TAG_UUID = 11;
+    private static final byte TAG_LIST = 12;
+    private static final byte TAG_MAP = 13;
+    private static final byte TAG_SERIALIZED = 14;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(MotechEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (event.getSubject() == null) {
+                // events created with the default constructor can not be rebuilt field by field
+                out.writeByte(FORMAT_SERIALIZED);
+                writeSerialized(out, event);
+            } else {
+                out.writeByte(FORMAT_BINARY);
+                writeEvent(out, event);
+            }
+        } catch (IOException e) {
+            throw new MotechException("Unable to encode event " + event, e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public MotechEvent decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte format = in.readByte();
+            switch (format) {
+                case FORMAT_BINARY:
+                    return readEvent(in);
+                case FORMAT_SERIALIZED:
+                    return (MotechEvent) readSerialized(in);
+                default:
+                    throw new MotechException("Unknown event format: " + format);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new MotechException("Unable to decode event", e);
+        }
+    }
+
+    private void writeEvent(DataOutputStream out, MotechEvent event) throws IOException {
+        int flags = 0;
+        if (event.getId() != null) {
+            flags |= FLAG_ID;
+        }
+        if (event.getEndTime() != null) {
+            flags |= FLAG_END_TIME;
+        }
+        if (event.isLastEvent()) {
+            flags |= FLAG_LAST_EVENT;
+        }
+        out.writeByte(flags);
+
+        if (event.getId() != null) {
+            out.writeLong(event.getId().getMostSignificantBits());
+            out.writeLong(event.getId().getLeastSignificantBits());
+        }
+        writeString(out, event.getSubject());
+        if (event.getEndTime() != null) {
+            out.writeLong(event.getEndTime().getTime());
+        }
+
+        Map<String, Object> parameters = event.getParameters();
+        out.writeInt(parameters.size());
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private MotechEvent readEvent(DataInputStream in) throws IOException, ClassNotFoundException {
+        int flags = in.readByte();
+
+        UUID id = null;
+        if ((flags & FLAG_ID) != 0) {
+            id = new UUID(in.readLong(), in.readLong());
+        }
+        String subject = readString(in);
+        Date endTime = null;
+        if ((flags & FLAG_END_TIME) != 0) {
+            endTime = new Date(in.readLong());
+        }
+
+        int size = in.readInt();
+        Map<String, Object> parameters = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            parameters.put(key, readValue(in));
+        }
+
+        MotechEvent event = new MotechEvent(subject, parameters);
+        event.setId(id);
+        event.setEndTime(endTime);
+        event.setLastEvent((flags & FLAG_LAST_EVENT) != 0);
+        return event;
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+
+        // exact class checks, so that subclasses (e.g. java.sql.Timestamp) keep their type
+        Class<?> clazz = value.getClass();
+        if (clazz == String.class) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (clazz == Integer.class) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (clazz == Long.class) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (clazz == Boolean.class) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (clazz == Double.class) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (clazz == Float.class) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (clazz == Short.class) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (clazz == Byte.class) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (clazz == Character.class) {
+            out.writeByte(TAG_CHARACTER);
+            out.writeChar((Character) value);
+        } else if (clazz == Date.class) {
+            out.writeByte(TAG_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (clazz == UUID.class) {
+            out.writeByte(TAG_UUID);
+            out.writeLong(((UUID) value).getMostSignificantBits());
+            out.writeLong(((UUID) value).getLeastSignificantBits());
+        } else if (clazz == ArrayList.class) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TAG_LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (clazz == HashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            out.writeByte(TAG_SERIALIZED);
+            writeSerialized(out, value);
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INTEGER:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_CHARACTER:
+                return in.readChar();
+            case TAG_DATE:
+                return new Date(in.readLong());
+            case TAG_UUID:
+                return new UUID(in.readLong(), in.readLong());
+            case TAG_LIST:
+                return readList(in);
+            case TAG_MAP:
+                return readMap(in);
+            case TAG_SERIALIZED:
+                return readSerialized(in);
+            default:
+                throw new IOException("Unknown parameter tag: " + tag);
+        }
+    }
+
+    private List<Object> readList(DataInputStream in) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readValue(in));
+        }
+        return list;
+    }
+
+    private Map<Object, Object> readMap(DataInputStream in) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private void writeSerialized(DataOutputStream out, Object value) throws IOException {
+        if (!(value instanceof Serializable)) {
+            throw new IOException("Parameter of type " + value.getClass().getName() + " is not serializable");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+            objectOut.writeObject(value);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private Object readSerialized(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        try (ObjectInputStream objectIn = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectIn.readObject();
+        }
+    }
+
+    /**
+     * Resolves classes using the thread context class loader first, like ActiveMQ does for object messages,
+     * so that parameter types from other bundles can be deserialized.
+     */
+    private static class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ContextClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc);
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
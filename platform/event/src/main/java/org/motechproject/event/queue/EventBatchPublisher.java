@@ -0,0 +1,203 @@
+package org.motechproject.event.queue;
+
+import org.motechproject.event.MotechEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes events to the event queue in batches. All events of a batch are sent through a single transacted
+ * session and committed together, instead of using a session and a commit per event.
+ * <p/>
+ * {@link #publish(java.util.Collection)} sends the events right away, committing every
+ * <code>motech.event.batch.max.size</code> events. {@link #offer(org.motechproject.event.MotechEvent)} buffers
+ * events and sends them once the batch is full or <code>motech.event.batch.linger.ms</code> milliseconds after
+ * the first buffered event, whichever comes first. Buffered events are lost if the server stops before they
+ * are flushed.
+ */
+public class EventBatchPublisher {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final JmsTemplate jmsTemplate;
+    private final Destination destination;
+    private final MessageConverter messageConverter;
+    private final MotechEventHeaderMapper headerMapper;
+    private final MotechEventTransformer transformer;
+
+    @Autowired
+    private MotechEventConfig motechEventConfig;
+
+    private final Object bufferLock = new Object();
+    private List<MotechEvent> buffer = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private ScheduledExecutorService flushScheduler;
+
+    public EventBatchPublisher(ConnectionFactory connectionFactory, Destination destination,
+                               MessageConverter messageConverter, MotechEventHeaderMapper headerMapper,
+                               MotechEventTransformer transformer) {
+        this.destination = destination;
+        this.messageConverter = messageConverter;
+        this.headerMapper = headerMapper;
+        this.transformer = transformer;
+
+        this.jmsTemplate = new JmsTemplate(connectionFactory);
+        this.jmsTemplate.setSessionTransacted(true);
+    }
+
+    /**
+     * Sends the given events to the event queue, committing them in batches.
+     *
+     * @param events the events to send
+     */
+    public void publish(Collection<MotechEvent> events) {
+        int maxBatchSize = getMaxBatchSize();
+        List<MotechEvent> batch = new ArrayList<>(Math.min(events.size(), maxBatchSize));
+
+        for (MotechEvent event : events) {
+            batch.add(event);
+            if (batch.size() == maxBatchSize) {
+                sendBatch(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            sendBatch(batch);
+        }
+    }
+
+    /**
+     * Buffers the given event. It will be sent together with other buffered events when the batch is full
+     * or the linger time passes.
+     *
+     * @param event the event to send
+     */
+    public void offer(MotechEvent event) {
+        List<MotechEvent> fullBatch = null;
+
+        synchronized (bufferLock) {
+            buffer.add(event);
+
+            if (buffer.size() >= getMaxBatchSize()) {
+                fullBatch = takeBuffer();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = getFlushScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushQuietly();
+                    }
+                }, motechEventConfig.getBatchLingerMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (fullBatch != null) {
+            publish(fullBatch);
+        }
+    }
+
+    /**
+     * Sends all buffered events.
+     */
+    public void flush() {
+        List<MotechEvent> batch;
+        synchronized (bufferLock) {
+            batch = takeBuffer();
+        }
+
+        if (!batch.isEmpty()) {
+            publish(batch);
+        }
+    }
+
+    public void shutdown() {
+        flushQuietly();
+        synchronized (bufferLock) {
+            if (flushScheduler != null) {
+                flushScheduler.shutdownNow();
+                flushScheduler = null;
+            }
+        }
+    }
+
+    private void sendBatch(final List<MotechEvent> batch) {
+        jmsTemplate.execute(new SessionCallback<Object>() {
+            @Override
+            public Object doInJms(Session session) throws JMSException {
+                MessageProducer producer = session.createProducer(destination);
+                try {
+                    for (MotechEvent event : batch) {
+                        Message message = messageConverter.toMessage(transformer.transform(event), session);
+                        headerMapper.setRedeliveryDelay(message);
+                        producer.send(message);
+                    }
+                    JmsUtils.commitIfNecessary(session);
+                } catch (JMSException | RuntimeException e) {
+                    JmsUtils.rollbackIfNecessary(session);
+                    throw e;
+                } finally {
+                    JmsUtils.closeMessageProducer(producer);
+                }
+                return null;
+            }
+        }, false);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Published batch of " + batch.size() + " events");
+        }
+    }
+
+    private List<MotechEvent> takeBuffer() {
+        List<MotechEvent> batch = buffer;
+        buffer = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to publish buffered events", e);
+        }
+    }
+
+    private int getMaxBatchSize() {
+        return Math.max(1, motechEventConfig.getBatchMaxSize());
+    }
+
+    private ScheduledExecutorService getFlushScheduler() {
+        if (flushScheduler == null) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "motech-event-batch-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return flushScheduler;
+    }
+}
@@ -0,0 +1,33 @@
+package org.motechproject.event.queue;
+
+import org.motechproject.event.MotechEvent;
+
+/**
+ * Strategy for turning a {@link MotechEvent} into the bytes sent over the event queue and back.
+ */
+public interface MotechEventCodec {
+
+    /**
+     * Returns the name of this codec. It is sent along with every message, so that the consumer can tell
+     * whether it is able to decode it.
+     *
+     * @return the name of the codec
+     */
+    String getName();
+
+    /**
+     * Encodes the given event.
+     *
+     * @param event the event to encode
+     * @return the encoded event
+     */
+    byte[] encode(MotechEvent event);
+
+    /**
+     * Decodes an event previously encoded by {@link #encode(MotechEvent)}.
+     *
+     * @param bytes the encoded event
+     * @return the decoded event
+     */
+    MotechEvent decode(byte[] bytes);
+}
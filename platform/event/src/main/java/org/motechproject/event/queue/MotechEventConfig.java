@@ -21,6 +21,104 @@ public class MotechEventConfig {
     @Value("${motech.message.redelivery.delay:1}")
     private long messageRedeliveryDelay;
 
+    /**
+     * Comma separated list of subjects whose events are dispatched in-process instead of through the event queue.
+     * A subject ending with ".*" matches all subjects starting with the given prefix.
+     */
+    @Value("${motech.event.local.subjects:}")
+    private String localSubjects;
+
+    /**
+     * Number of threads used for dispatching in-process events
+     */
+    @Value("${motech.event.local.pool.size:5}")
+    private int localPoolSize;
+
+    /**
+     * Maximum number of in-process events waiting for a free thread. When the queue is full, the thread
+     * publishing the event handles it itself.
+     */
+    @Value("${motech.event.local.queue.capacity:1000}")
+    private int localQueueCapacity;
+
+    /**
+     * Time (in milliseconds) between two runs of the timer delivering delayed in-process events. Delayed events
+     * are delivered at most this late.
+     */
+    @Value("${motech.event.local.timer.tick.ms:100}")
+    private long localTimerTickMillis;
+
+    /**
+     * Number of buckets of the timer delivering delayed in-process events
+     */
+    @Value("${motech.event.local.timer.wheel.size:512}")
+    private int localTimerWheelSize;
+
+    /**
+     * Maximum number of events committed together when publishing events in batches
+     */
+    @Value("${motech.event.batch.max.size:500}")
+    private int batchMaxSize;
+
+    /**
+     * Time (in milliseconds) buffered events wait for more events before their batch is published
+     */
+    @Value("${motech.event.batch.linger.ms:100}")
+    private long batchLingerMillis;
+
+    /**
+     * Whether the event queue is consumed partitioned, keeping events with the same partition key in order and
+     * giving every subject group its own queue consumers
+     */
+    @Value("${motech.event.consumer.partitioned:false}")
+    private boolean partitionedConsumption;
+
+    /**
+     * Comma separated names of the event parameters used as the partition key. The first parameter present
+     * in an event is used.
+     */
+    @Value("${motech.event.partition.keys:}")
+    private String partitionKeys;
+
+    /**
+     * Semicolon separated subject groups consumed by their own queue consumers, each given as
+     * <code>name:threads:subject1,subject2</code>. Subjects ending with ".*" match all subjects with that prefix.
+     */
+    @Value("${motech.event.consumer.groups:}")
+    private String consumerGroups;
+
+    /**
+     * Number of queue consumers of subject groups not specifying it. The default group is consumed by the
+     * <code>jms.concurrentConsumers</code> of the event queue.
+     */
+    @Value("${motech.event.consumer.threads:5}")
+    private int consumerThreads;
+
+    /**
+     * Whether events discarded after reaching the maximum redelivery count are written to the dead letter store
+     */
+    @Value("${motech.event.deadletter.enabled:true}")
+    private boolean deadLetterEnabled;
+
+    /**
+     * File of the dead letter store, <code>.motech/deadletter/events.log</code> in the user home if empty
+     */
+    @Value("${motech.event.deadletter.file:}")
+    private String deadLetterFile;
+
+    /**
+     * Default number of dead letters replayed per second
+     */
+    @Value("${motech.event.deadletter.replay.rate:100}")
+    private int deadLetterReplayRate;
+
+    /**
+     * Whether events with many listeners are split into one queued message per listener when they are consumed,
+     * instead of being handed to all listeners by the consuming server
+     */
+    @Value("${motech.event.split.fanout:false}")
+    private boolean splitFanout;
+
     public int getMessageMaxRedeliveryCount() {
         return messageMaxRedeliveryCount;
     }
@@ -28,4 +126,64 @@ public class MotechEventConfig {
     public long getMessageRedeliveryDelay() {
         return messageRedeliveryDelay;
     }
+
+    public String getLocalSubjects() {
+        return localSubjects;
+    }
+
+    public int getLocalPoolSize() {
+        return localPoolSize;
+    }
+
+    public int getLocalQueueCapacity() {
+        return localQueueCapacity;
+    }
+
+    public long getLocalTimerTickMillis() {
+        return localTimerTickMillis;
+    }
+
+    public int getLocalTimerWheelSize() {
+        return localTimerWheelSize;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public long getBatchLingerMillis() {
+        return batchLingerMillis;
+    }
+
+    public boolean isPartitionedConsumption() {
+        return partitionedConsumption;
+    }
+
+    public String getPartitionKeys() {
+        return partitionKeys;
+    }
+
+    public String getConsumerGroups() {
+        return consumerGroups;
+    }
+
+    public int getConsumerThreads() {
+        return consumerThreads;
+    }
+
+    public boolean isDeadLetterEnabled() {
+        return deadLetterEnabled;
+    }
+
+    public String getDeadLetterFile() {
+        return deadLetterFile;
+    }
+
+    public int getDeadLetterReplayRate() {
+        return deadLetterReplayRate;
+    }
+
+    public boolean isSplitFanout() {
+        return splitFanout;
+    }
 }
@@ -1,7 +1,6 @@
 package org.motechproject.event.queue;
 
 import org.apache.activemq.ScheduledMessage;
-import org.apache.activemq.command.ActiveMQObjectMessage;
 import org.apache.log4j.Logger;
 import org.motechproject.event.MotechEvent;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +9,10 @@ import org.springframework.integration.jms.DefaultJmsHeaderMapper;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.ObjectMessage;
 
 /**
+ * Delays the delivery of failed events and of events sent for later delivery.
  * For the delay to work, set attribute schedulerSupport="true" in the broker element of the activemq.xml
  * Ref: http://activemq.apache.org/delay-and-schedule-message-delivery.html
  */
@@ -20,21 +21,72 @@ public class MotechEventHeaderMapper extends DefaultJmsHeaderMapper {
     private static Logger logger = Logger.getLogger(MotechEventHeaderMapper.class);
     private static final long MILLIS_PER_SEC = 1000L;
 
+    /**
+     * Message header holding the time, in milliseconds since the epoch, at which the message should be delivered
+     */
+    public static final String DELIVER_AT_HEADER = "motechDeliverAt";
+
     @Autowired
     private MotechEventConfig motechEventConfig;
 
     @Override
     public void fromHeaders(MessageHeaders messageHeaders, Message message) {
         super.fromHeaders(messageHeaders, message);
+        setDeliveryDelay(messageHeaders.get(DELIVER_AT_HEADER, Long.class), message);
+        setRedeliveryDelay(message);
+    }
+
+    /**
+     * Delays the delivery of the given message until the given time.
+     *
+     * @param deliverAt the time, in milliseconds since the epoch, at which the message should be delivered
+     * @param message   the message carrying the event
+     */
+    public void setDeliveryDelay(Long deliverAt, Message message) {
+        if (deliverAt == null) {
+            return;
+        }
+
+        long delay = deliverAt - System.currentTimeMillis();
+        if (delay > 0) {
+            try {
+                message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay);
+            } catch (JMSException e) {
+                logger.error("Failed to set header", e);
+            }
+        }
+    }
+
+    /**
+     * Delays the delivery of the given message if it carries a failed event, depending on its redelivery count.
+     *
+     * @param message the message carrying the event
+     */
+    public void setRedeliveryDelay(Message message) {
         try {
-            MotechEvent motechEvent = (MotechEvent) ((ActiveMQObjectMessage) message).getObject();
-            Boolean isFailedMessage = (Boolean) motechEvent.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+            boolean isFailedMessage;
+            long redeliveryCount;
+            Object description;
+
+            if (message instanceof ObjectMessage) {
+                MotechEvent motechEvent = (MotechEvent) ((ObjectMessage) message).getObject();
+                Boolean isInvalid = (Boolean) motechEvent.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+
+                isFailedMessage = isInvalid != null && isInvalid;
+                redeliveryCount = motechEvent.getMessageRedeliveryCount();
+                description = motechEvent;
+            } else {
+                // events encoded by the MotechEventMessageConverter carry the redelivery data as properties
+                isFailedMessage = message.propertyExists(MotechEventMessageConverter.INVALID_EVENT_PROPERTY)
+                        && message.getBooleanProperty(MotechEventMessageConverter.INVALID_EVENT_PROPERTY);
+                redeliveryCount = isFailedMessage ? message.getIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY) : 0;
+                description = message;
+            }
 
-            if (isFailedMessage != null && isFailedMessage) {
-                long redeliveryCount = motechEvent.getMessageRedeliveryCount();
+            if (isFailedMessage) {
                 Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
                         ((Math.pow(2, redeliveryCount - 1)));
-                logger.debug("Redelivering " + motechEvent + " after " + delay + " millis.");
+                logger.debug("Redelivering " + description + " after " + delay + " millis.");
                 message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay.longValue());
             }
         } catch (JMSException e) {
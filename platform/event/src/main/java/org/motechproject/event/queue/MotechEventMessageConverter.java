@@ -0,0 +1,144 @@
+package org.motechproject.event.queue;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.metrics.impl.EventMetricsRegistry;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+/**
+ * Converts {@link MotechEvent}s to JMS <code>BytesMessage</code>s using a {@link MotechEventCodec}.
+ * Other payloads, as well as object messages queued before the codec was introduced, are handled by a
+ * {@link SimpleMessageConverter}. Without a codec, events are sent as object messages.
+ * <p/>
+ * Events carry their subject as a message property, selected by the consumers of their subject group. Events with
+ * a partition key are sent in the message group of that key, so that the broker delivers them in order to a single
+ * consumer.
+ * <p/>
+ * The time received events spent in the queue is taken from the <code>JMSTimestamp</code> header, stamped by
+ * the producer, and recorded in the {@link EventMetricsRegistry}.
+ */
+public class MotechEventMessageConverter implements MessageConverter {
+
+    /**
+     * Name of the message property holding the name of the codec used for encoding the event
+     */
+    public static final String CODEC_PROPERTY = "motechEventCodec";
+
+    /**
+     * Message properties copied from the event, used when setting up redelivery of failed events
+     */
+    public static final String INVALID_EVENT_PROPERTY = "motechInvalidEvent";
+    public static final String REDELIVERY_COUNT_PROPERTY = "motechRedeliveryCount";
+
+    /**
+     * ActiveMQ message group property. Messages of the same group are delivered, in order, to the same consumer.
+     */
+    public static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+
+    private final MessageConverter fallbackConverter = new SimpleMessageConverter();
+
+    private MotechEventCodec codec;
+    private PartitionKeyResolver partitionKeyResolver;
+    private EventMetricsRegistry eventMetrics;
+
+    public MotechEventMessageConverter() {
+    }
+
+    public MotechEventMessageConverter(MotechEventCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        if (!(object instanceof MotechEvent)) {
+            return fallbackConverter.toMessage(object, session);
+        }
+
+        MotechEvent event = (MotechEvent) object;
+        if (codec == null) {
+            return setGroupProperties(fallbackConverter.toMessage(object, session), event);
+        }
+
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(codec.encode(event));
+        message.setStringProperty(CODEC_PROPERTY, codec.getName());
+
+        Boolean isFailedMessage = (Boolean) event.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+        if (isFailedMessage != null && isFailedMessage) {
+            message.setBooleanProperty(INVALID_EVENT_PROPERTY, true);
+            message.setIntProperty(REDELIVERY_COUNT_PROPERTY, event.getMessageRedeliveryCount());
+        }
+
+        return setGroupProperties(message, event);
+    }
+
+    private Message setGroupProperties(Message message, MotechEvent event) throws JMSException {
+        message.setStringProperty(SubjectGroups.SUBJECT_PROPERTY, event.getSubject());
+
+        String messageGroup = (partitionKeyResolver == null) ? null : partitionKeyResolver.getMessageGroup(event);
+        if (messageGroup != null) {
+            message.setStringProperty(GROUP_ID_PROPERTY, messageGroup);
+        }
+
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        Object object = decode(message);
+
+        if (eventMetrics != null && object instanceof MotechEvent && message.getJMSTimestamp() > 0) {
+            eventMetrics.recordQueueDwellTime(((MotechEvent) object).getSubject(),
+                    System.currentTimeMillis() - message.getJMSTimestamp());
+        }
+
+        return object;
+    }
+
+    private Object decode(Message message) throws JMSException {
+        if (!(message instanceof BytesMessage) || !message.propertyExists(CODEC_PROPERTY)) {
+            return fallbackConverter.fromMessage(message);
+        }
+
+        String codecName = message.getStringProperty(CODEC_PROPERTY);
+        if (codec == null || !codec.getName().equals(codecName)) {
+            throw new MessageConversionException("No codec available for decoding events encoded with " + codecName);
+        }
+
+        BytesMessage bytesMessage = (BytesMessage) message;
+        byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(bytes);
+
+        return codec.decode(bytes);
+    }
+
+    public MotechEventCodec getCodec() {
+        return codec;
+    }
+
+    public void setCodec(MotechEventCodec codec) {
+        this.codec = codec;
+    }
+
+    public PartitionKeyResolver getPartitionKeyResolver() {
+        return partitionKeyResolver;
+    }
+
+    public void setPartitionKeyResolver(PartitionKeyResolver partitionKeyResolver) {
+        this.partitionKeyResolver = partitionKeyResolver;
+    }
+
+    public EventMetricsRegistry getEventMetrics() {
+        return eventMetrics;
+    }
+
+    public void setEventMetrics(EventMetricsRegistry eventMetrics) {
+        this.eventMetrics = eventMetrics;
+    }
+}
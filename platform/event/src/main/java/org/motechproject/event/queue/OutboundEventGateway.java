@@ -1,6 +1,7 @@
 package org.motechproject.event.queue;
 
 import org.motechproject.event.MotechEvent;
+import org.springframework.integration.annotation.Header;
 
 public interface OutboundEventGateway {
 
@@ -11,4 +12,12 @@ public interface OutboundEventGateway {
      * @param motechEvent
      */
     void sendEventMessage(MotechEvent motechEvent);
+
+    /**
+     * Sends the given MotechEvent message to be delivered by the broker at the given time.
+     *
+     * @param motechEvent
+     * @param deliverAt the time, in milliseconds since the epoch, at which the message should be delivered
+     */
+    void sendEventMessage(MotechEvent motechEvent, @Header(MotechEventHeaderMapper.DELIVER_AT_HEADER) long deliverAt);
 }
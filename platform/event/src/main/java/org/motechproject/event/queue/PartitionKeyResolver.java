@@ -0,0 +1,81 @@
+package org.motechproject.event.queue;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.event.MotechEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolves the partition key of events, used for keeping events of the same key in order when the
+ * partitioned consumption of the event queue is enabled. The key is the value of the first configured
+ * partition key parameter present in the event.
+ * <p/>
+ * Events with a key are sent in a message group of their subject group and key, which the broker delivers in
+ * order to a single consumer of the subject group.
+ */
+@Component
+public class PartitionKeyResolver {
+
+    private final MotechEventConfig motechEventConfig;
+    private final SubjectGroups subjectGroups;
+
+    private volatile List<String> keyParameters;
+
+    @Autowired
+    public PartitionKeyResolver(MotechEventConfig motechEventConfig, SubjectGroups subjectGroups) {
+        this.motechEventConfig = motechEventConfig;
+        this.subjectGroups = subjectGroups;
+    }
+
+    /**
+     * Returns the partition key of the given event.
+     *
+     * @param event the event
+     * @return the partition key, or null if the event has no key or partitioned consumption is disabled
+     */
+    public String getPartitionKey(MotechEvent event) {
+        if (!motechEventConfig.isPartitionedConsumption()) {
+            return null;
+        }
+
+        for (String keyParameter : getKeyParameters()) {
+            Object value = event.getParameters().get(keyParameter);
+            if (value != null) {
+                return value.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the message group of the given event. Every message group belongs to a single subject group, as
+     * a message group whose messages are received by the consumers of different subject groups could get stuck.
+     *
+     * @param event the event
+     * @return the message group, or null if the event has no partition key
+     */
+    public String getMessageGroup(MotechEvent event) {
+        String partitionKey = getPartitionKey(event);
+        return (partitionKey == null) ? null : subjectGroups.getGroupName(event.getSubject()) + ":" + partitionKey;
+    }
+
+    private List<String> getKeyParameters() {
+        if (keyParameters == null) {
+            List<String> parameters = new ArrayList<>();
+            String configured = motechEventConfig.getPartitionKeys();
+            if (StringUtils.isNotBlank(configured)) {
+                for (String parameter : StringUtils.split(configured, ',')) {
+                    if (StringUtils.isNotBlank(parameter)) {
+                        parameters.add(parameter.trim());
+                    }
+                }
+            }
+            keyParameters = Collections.unmodifiableList(parameters);
+        }
+        return keyParameters;
+    }
+}
@@ -0,0 +1,213 @@
+package org.motechproject.event.queue;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Subject groups of the partitioned consumption of the event queue, configured through
+ * <code>motech.event.consumer.groups</code>. Every group is consumed from the event queue by its own consumers,
+ * which receive only the messages matching the selector of the group, so a slow group never holds up the others.
+ * Subjects outside of all groups belong to the {@link #DEFAULT_GROUP}. A subject matching several groups belongs
+ * to the first of them.
+ */
+@Component
+public class SubjectGroups {
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    public static final String DEFAULT_GROUP = "default";
+
+    /**
+     * Name of the message property holding the subject of the event, matched by the selectors of the groups
+     */
+    public static final String SUBJECT_PROPERTY = "motechEventSubject";
+
+    private static final String WILDCARD_SUFFIX = ".*";
+
+    private final MotechEventConfig motechEventConfig;
+
+    private volatile List<SubjectGroup> groups;
+
+    @Autowired
+    public SubjectGroups(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Returns the configured groups, without the default group.
+     *
+     * @return the groups, in the order they were configured
+     */
+    public List<SubjectGroup> getGroups() {
+        if (groups == null) {
+            List<SubjectGroup> configuredGroups = new ArrayList<>();
+            String configured = motechEventConfig.getConsumerGroups();
+            if (StringUtils.isNotBlank(configured)) {
+                for (String groupDefinition : StringUtils.split(configured, ';')) {
+                    if (StringUtils.isNotBlank(groupDefinition)) {
+                        configuredGroups.add(parseGroup(groupDefinition.trim()));
+                    }
+                }
+            }
+            groups = Collections.unmodifiableList(configuredGroups);
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the name of the group of the given subject.
+     *
+     * @param subject the subject of the event
+     * @return the name of the group, {@link #DEFAULT_GROUP} if no configured group matches the subject
+     */
+    public String getGroupName(String subject) {
+        for (SubjectGroup group : getGroups()) {
+            if (group.matches(subject)) {
+                return group.getName();
+            }
+        }
+        return DEFAULT_GROUP;
+    }
+
+    /**
+     * Returns the message selector matching the events of the given configured group, and of no group before it.
+     *
+     * @param group the configured group
+     * @return the selector of the group
+     */
+    public String getSelector(SubjectGroup group) {
+        StringBuilder selector = new StringBuilder("(").append(group.getCondition()).append(')');
+        for (SubjectGroup earlier : getGroups()) {
+            if (earlier == group) {
+                break;
+            }
+            selector.append(" AND NOT (").append(earlier.getCondition()).append(')');
+        }
+        return selector.toString();
+    }
+
+    /**
+     * Returns the message selector matching the events of no configured group, including messages without a
+     * subject.
+     *
+     * @return the selector of the default group, null if the consumption is not partitioned or there are no groups
+     */
+    public String getDefaultSelector() {
+        if (!motechEventConfig.isPartitionedConsumption() || getGroups().isEmpty()) {
+            return null;
+        }
+
+        List<String> conditions = new ArrayList<>();
+        for (SubjectGroup group : getGroups()) {
+            conditions.add(group.getCondition());
+        }
+        return SUBJECT_PROPERTY + " IS NULL OR NOT (" + StringUtils.join(conditions, " OR ") + ")";
+    }
+
+    private SubjectGroup parseGroup(String definition) {
+        String[] parts = StringUtils.splitPreserveAllTokens(definition, ':');
+        if (parts.length != 3 || StringUtils.isBlank(parts[0])) {
+            String errorMessage = "Invalid event consumer group: " + definition + ", expected name:threads:subjects";
+            log.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        int threads = Math.max(1, motechEventConfig.getConsumerThreads());
+        if (StringUtils.isNotBlank(parts[1])) {
+            try {
+                threads = Math.max(1, Integer.parseInt(parts[1].trim()));
+            } catch (NumberFormatException e) {
+                String errorMessage = "Invalid number of threads for event consumer group: " + definition;
+                log.error(errorMessage);
+                throw new IllegalArgumentException(errorMessage, e);
+            }
+        }
+
+        List<String> subjects = new ArrayList<>();
+        List<String> subjectPrefixes = new ArrayList<>();
+        for (String subject : StringUtils.split(parts[2], ',')) {
+            if (StringUtils.isBlank(subject)) {
+                continue;
+            }
+            subject = subject.trim();
+            if (subject.endsWith(WILDCARD_SUFFIX)) {
+                subjectPrefixes.add(subject.substring(0, subject.length() - 1));
+            } else {
+                subjects.add(subject);
+            }
+        }
+        if (subjects.isEmpty() && subjectPrefixes.isEmpty()) {
+            String errorMessage = "No subjects given for event consumer group: " + definition;
+            log.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        return new SubjectGroup(parts[0].trim(), threads, subjects, subjectPrefixes);
+    }
+
+    /**
+     * Group of subjects consumed by its own consumers.
+     */
+    public static final class SubjectGroup {
+        private final String name;
+        private final int threads;
+        private final List<String> subjects;
+        private final List<String> subjectPrefixes;
+
+        SubjectGroup(String name, int threads, List<String> subjects, List<String> subjectPrefixes) {
+            this.name = name;
+            this.threads = threads;
+            this.subjects = subjects;
+            this.subjectPrefixes = subjectPrefixes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of consumers of the group, handling its events in parallel
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        boolean matches(String subject) {
+            if (subjects.contains(subject)) {
+                return true;
+            }
+            for (String prefix : subjectPrefixes) {
+                if (subject.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String getCondition() {
+            List<String> conditions = new ArrayList<>();
+            if (!subjects.isEmpty()) {
+                List<String> literals = new ArrayList<>();
+                for (String subject : subjects) {
+                    literals.add(literal(subject));
+                }
+                conditions.add(SUBJECT_PROPERTY + " IN (" + StringUtils.join(literals, ", ") + ")");
+            }
+            for (String prefix : subjectPrefixes) {
+                String pattern = prefix.replace("!", "!!").replace("_", "!_").replace("%", "!%");
+                conditions.add(SUBJECT_PROPERTY + " LIKE " + literal(pattern + "%") + " ESCAPE '!'");
+            }
+            return StringUtils.join(conditions, " OR ");
+        }
+
+        private static String literal(String value) {
+            return "'" + value.replace("'", "''") + "'";
+        }
+    }
+}
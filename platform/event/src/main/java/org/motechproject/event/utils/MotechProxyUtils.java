@@ -1,5 +1,6 @@
 package org.motechproject.event.utils;
 
+import org.motechproject.event.listener.DeliveryMode;
 import org.motechproject.event.listener.annotations.MotechListenerAbstractProxy;
 
 public final class MotechProxyUtils {
@@ -18,4 +19,11 @@ public final class MotechProxyUtils {
         }
         return proxy;
     }
+
+    public static DeliveryMode getDeliveryMode(Object listener) {
+        if (isMotechListenerProxy(listener)) {
+            return ((MotechListenerAbstractProxy) listener).getDeliveryMode();
+        }
+        return DeliveryMode.QUEUED;
+    }
 }
@@ -0,0 +1,162 @@
+package org.motechproject.event.deadletter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.deadletter.impl.DeadLetterLog;
+import org.motechproject.event.queue.MotechEventConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class DeadLetterLogTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private File file;
+    private DeadLetterLog deadLetterLog;
+
+    @Before
+    public void setUp() throws IOException {
+        initMocks(this);
+
+        file = File.createTempFile("deadletters", ".log");
+        assertTrue(file.delete());
+        when(motechEventConfig.getDeadLetterFile()).thenReturn(file.getAbsolutePath());
+
+        deadLetterLog = new DeadLetterLog(motechEventConfig);
+    }
+
+    @After
+    public void tearDown() {
+        deadLetterLog.close();
+        file.delete();
+    }
+
+    @Test
+    public void shouldFindAndReadDeadLetters() {
+        MotechEvent event = createEvent("subject-1");
+        long id = deadLetterLog.append(event, "listener-1");
+        deadLetterLog.append(createEvent("subject-2"), "listener-1");
+        deadLetterLog.append(createEvent("subject-1"), "listener-2");
+
+        List<DeadLetterLog.Entry> entries = deadLetterLog.find("subject-1", "listener-1", null, null);
+
+        assertEquals(1, entries.size());
+        assertEquals(id, entries.get(0).getId());
+        assertEquals(2, entries.get(0).getRedeliveryCount());
+        assertEquals(event, deadLetterLog.readEvent(id));
+
+        assertEquals(2, deadLetterLog.find("subject-1", null, null, null).size());
+        assertEquals(2, deadLetterLog.find(null, "listener-1", null, null).size());
+        assertEquals(3, deadLetterLog.find(null, null, new Date(0), null).size());
+        assertEquals(0, deadLetterLog.find(null, null, null, new Date(0)).size());
+    }
+
+    @Test
+    public void shouldRebuildIndexFromFile() {
+        long first = deadLetterLog.append(createEvent("subject-1"), "listener-1");
+        long second = deadLetterLog.append(createEvent("subject-2"), "listener-1");
+        deadLetterLog.append(createEvent("subject-3"), "listener-1");
+        deadLetterLog.markReplayed(first);
+        deadLetterLog.close();
+
+        DeadLetterLog reopened = new DeadLetterLog(motechEventConfig);
+        try {
+            List<DeadLetterLog.Entry> entries = reopened.find(null, null, null, null);
+            assertEquals(2, entries.size());
+            assertEquals(second, entries.get(0).getId());
+            assertEquals("subject-2", reopened.readEvent(second).getSubject());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldCompactReplayedDeadLettersWhenReopened() {
+        long first = deadLetterLog.append(createEvent("subject-1"), "listener-1");
+        long second = deadLetterLog.append(createEvent("subject-2"), "listener-1");
+        long third = deadLetterLog.append(createEvent("subject-3"), "listener-2");
+        deadLetterLog.markReplayed(first);
+        deadLetterLog.markReplayed(third);
+
+        assertTrue(deadLetterLog.find("subject-1", null, null, null).isEmpty());
+        assertTrue(deadLetterLog.find(null, "listener-2", null, null).isEmpty());
+        deadLetterLog.close();
+
+        DeadLetterLog reopened = new DeadLetterLog(motechEventConfig);
+        try {
+            List<DeadLetterLog.Entry> entries = reopened.find(null, null, null, null);
+            assertEquals(1, entries.size());
+            assertEquals(0, entries.get(0).getId());
+            assertEquals(third - second, file.length());
+            assertEquals("subject-2", reopened.readEvent(0).getSubject());
+
+            long appended = reopened.append(createEvent("subject-4"), "listener-1");
+            assertEquals(third - second, appended);
+            assertEquals("subject-4", reopened.readEvent(appended).getSubject());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldKeepFileWhenFewDeadLettersWereReplayed() {
+        deadLetterLog.append(createEvent("subject-1"), "listener-1");
+        long second = deadLetterLog.append(createEvent("subject-2"), "listener-1");
+        deadLetterLog.append(createEvent("subject-3"), "listener-1");
+        deadLetterLog.markReplayed(second);
+        deadLetterLog.close();
+        long length = file.length();
+
+        DeadLetterLog reopened = new DeadLetterLog(motechEventConfig);
+        try {
+            assertEquals(2, reopened.find(null, null, null, null).size());
+            assertEquals(length, file.length());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldDropIncompleteRecord() throws IOException {
+        deadLetterLog.append(createEvent("subject-1"), "listener-1");
+        deadLetterLog.append(createEvent("subject-2"), "listener-1");
+        deadLetterLog.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        DeadLetterLog reopened = new DeadLetterLog(motechEventConfig);
+        try {
+            assertEquals(1, reopened.find(null, null, null, null).size());
+
+            reopened.append(createEvent("subject-3"), "listener-1");
+            List<DeadLetterLog.Entry> entries = reopened.find(null, null, null, null);
+            assertEquals(2, entries.size());
+            assertEquals("subject-3", reopened.readEvent(entries.get(1).getId()).getSubject());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private MotechEvent createEvent(String subject) {
+        MotechEvent event = new MotechEvent(subject);
+        event.getParameters().put("ExternalID", "patient-1");
+        event.incrementMessageRedeliveryCount();
+        event.incrementMessageRedeliveryCount();
+        return event;
+    }
+}
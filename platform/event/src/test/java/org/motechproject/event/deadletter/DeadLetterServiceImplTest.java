@@ -0,0 +1,113 @@
+package org.motechproject.event.deadletter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.deadletter.impl.DeadLetterLog;
+import org.motechproject.event.deadletter.impl.DeadLetterServiceImpl;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.queue.MotechEventConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class DeadLetterServiceImplTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private EventRelay eventRelay;
+
+    private File file;
+    private DeadLetterLog deadLetterLog;
+    private DeadLetterServiceImpl deadLetterService;
+
+    @Before
+    public void setUp() throws IOException {
+        initMocks(this);
+
+        file = File.createTempFile("deadletters", ".log");
+        assertTrue(file.delete());
+        when(motechEventConfig.getDeadLetterFile()).thenReturn(file.getAbsolutePath());
+        when(motechEventConfig.getDeadLetterReplayRate()).thenReturn(1000);
+
+        deadLetterLog = new DeadLetterLog(motechEventConfig);
+        deadLetterService = new DeadLetterServiceImpl(deadLetterLog, eventRelay, motechEventConfig);
+    }
+
+    @After
+    public void tearDown() {
+        deadLetterService.cancelReplay();
+        deadLetterLog.close();
+        file.delete();
+    }
+
+    @Test
+    public void shouldPageDeadLetters() {
+        for (int i = 0; i < 5; i++) {
+            deadLetterLog.append(createEvent(i), "listener-1");
+        }
+
+        List<DeadLetter> page = deadLetterService.getDeadLetters("subject", null, null, null, 2, 2);
+
+        assertEquals(2, page.size());
+        assertEquals(2, page.get(0).getEvent().getParameters().get("sequence"));
+        assertEquals(3, page.get(1).getEvent().getParameters().get("sequence"));
+        assertEquals("listener-1", page.get(0).getListener());
+        assertEquals(5, deadLetterService.countDeadLetters("subject", "listener-1", null, null));
+        assertEquals(1, deadLetterService.getDeadLetters(null, null, null, null, 3, 2).size());
+    }
+
+    @Test
+    public void shouldReplayDeadLettersToTheirListener() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            deadLetterLog.append(createEvent(i), "listener-1");
+        }
+
+        deadLetterService.replay(null, "listener-1", null, null, 0);
+        waitForReplay();
+
+        ReplayStatus status = deadLetterService.getReplayStatus();
+        assertEquals(3, status.getReplayed());
+        assertEquals(1000, status.getEventsPerSecond());
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay, times(3)).sendEventMessage(captor.capture());
+        MotechEvent replayed = captor.getAllValues().get(0);
+        assertEquals("listener-1", replayed.getParameters().get("message-destination"));
+        assertFalse(replayed.getParameters().containsKey(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT));
+        assertFalse(replayed.getParameters().containsKey(MotechEvent.PARAM_REDELIVERY_COUNT));
+
+        assertEquals(0, deadLetterService.countDeadLetters(null, null, null, null));
+    }
+
+    private void waitForReplay() throws InterruptedException {
+        for (int i = 0; i < 100 && deadLetterService.getReplayStatus().isRunning(); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(deadLetterService.getReplayStatus().isRunning());
+    }
+
+    private MotechEvent createEvent(int sequence) {
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put("sequence", sequence);
+        event.getParameters().put("message-destination", "listener-1");
+        event.getParameters().put(MotechEvent.PARAM_INVALID_MOTECH_EVENT, true);
+        event.getParameters().put(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT, true);
+        event.incrementMessageRedeliveryCount();
+        return event;
+    }
+}
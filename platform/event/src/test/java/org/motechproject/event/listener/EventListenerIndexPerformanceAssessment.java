@@ -0,0 +1,116 @@
+package org.motechproject.event.listener;
+
+import org.junit.Test;
+import org.motechproject.commons.api.NanoStopWatch;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.impl.EventListenerIndex;
+import org.motechproject.event.listener.impl.EventListenerTree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares subject lookups of the {@link EventListenerTree} with the {@link EventListenerIndex}.
+ * Not part of the regular test run, execute it by hand.
+ */
+public class EventListenerIndexPerformanceAssessment {
+
+    private static final int LISTENERS = 10000;
+    private static final int MODULES = 50;
+    private static final int LOOKUPS = 1000000;
+    private static final int DISTINCT_SUBJECTS = 1000;
+    private static final int WARMUP_LOOKUPS = 100000;
+
+    @Test
+    public void compareLookups() {
+        EventListenerTree tree = new EventListenerTree();
+        EventListenerIndex index = new EventListenerIndex();
+
+        NanoStopWatch timeToRegister = new NanoStopWatch().start();
+        register(tree);
+        System.out.println(format("Tree: time to register %d listeners : %dms", LISTENERS, timeToRegister.duration() / 1000000L));
+
+        timeToRegister.start();
+        register(index);
+        System.out.println(format("Index: time to register %d listeners : %dms", LISTENERS, timeToRegister.duration() / 1000000L));
+
+        List<String> subjects = new ArrayList<>();
+        for (int i = 0; i < DISTINCT_SUBJECTS; i++) {
+            subjects.add(subject(i * (LISTENERS / DISTINCT_SUBJECTS)));
+        }
+
+        for (String subject : subjects) {
+            assertEquals(tree.getListeners(subject).size(), index.getListeners(subject).size());
+        }
+
+        lookupTree(tree, subjects, WARMUP_LOOKUPS);
+        NanoStopWatch timeToLookup = new NanoStopWatch().start();
+        long treeMatches = lookupTree(tree, subjects, LOOKUPS);
+        System.out.println(format("Tree: time for %d lookups : %dms", LOOKUPS, timeToLookup.duration() / 1000000L));
+
+        lookupIndex(index, subjects, WARMUP_LOOKUPS);
+        timeToLookup.start();
+        long indexMatches = lookupIndex(index, subjects, LOOKUPS);
+        System.out.println(format("Index: time for %d lookups : %dms", LOOKUPS, timeToLookup.duration() / 1000000L));
+
+        assertEquals(treeMatches, indexMatches);
+    }
+
+    private void register(EventListenerTree tree) {
+        for (int i = 0; i < LISTENERS; i++) {
+            tree.addListener(new NoOpListener("listener" + i), subject(i));
+        }
+        for (int i = 0; i < MODULES; i++) {
+            tree.addListener(new NoOpListener("wildcard" + i), "org.motechproject.module" + i + ".*");
+        }
+    }
+
+    private void register(EventListenerIndex index) {
+        for (int i = 0; i < LISTENERS; i++) {
+            index.addListener(new NoOpListener("listener" + i), subject(i));
+        }
+        for (int i = 0; i < MODULES; i++) {
+            index.addListener(new NoOpListener("wildcard" + i), "org.motechproject.module" + i + ".*");
+        }
+    }
+
+    private long lookupTree(EventListenerTree tree, List<String> subjects, int lookups) {
+        long matches = 0;
+        for (int i = 0; i < lookups; i++) {
+            matches += tree.getListeners(subjects.get(i % subjects.size())).size();
+        }
+        return matches;
+    }
+
+    private long lookupIndex(EventListenerIndex index, List<String> subjects, int lookups) {
+        long matches = 0;
+        for (int i = 0; i < lookups; i++) {
+            matches += index.getListeners(subjects.get(i % subjects.size())).size();
+        }
+        return matches;
+    }
+
+    private String subject(int i) {
+        return "org.motechproject.module" + (i % MODULES) + ".event" + i;
+    }
+
+    private static class NoOpListener implements EventListener {
+        private final String identifier;
+
+        NoOpListener(String identifier) {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public void handle(MotechEvent event) {
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.motechproject.event.listener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.impl.EventListenerIndex;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventListenerIndexTest {
+    private EventListenerIndex index;
+    private EventListener listener = new SampleEventListener();
+
+    private String SUBJECT_0 = "org.motechproject.server";
+    private String SUBJECT_1 = "org.motechproject.server.some-event";
+    private String SUBJECT_2 = "org.motechproject.server.some-other-event";
+    private String WILDCARD_SUBJECT = "org.motechproject.server.*";
+
+    @Before
+    public void setUp() {
+        index = new EventListenerIndex();
+    }
+
+    @Test
+    public void testAddListener_SingleListener() {
+        index.addListener(listener, SUBJECT_1);
+
+        assertTrue(index.hasListener(SUBJECT_1));
+        assertFalse(index.hasListener(SUBJECT_2));
+    }
+
+    @Test
+    public void testAddListener_DoubleListener() {
+        index.addListener(listener, SUBJECT_1);
+
+        assertTrue(index.hasListener(SUBJECT_1));
+        Set<EventListener> listeners = index.getListeners(SUBJECT_1);
+
+        assertNotNull(listeners);
+        assertTrue(listeners.size() == 1);
+        assertEquals(listeners.iterator().next(), listener);
+    }
+
+    @Test
+    public void testAddListener_WildcardListener() {
+        index.addListener(listener, WILDCARD_SUBJECT);
+        assertTrue(index.hasListener(SUBJECT_1));
+        assertTrue(index.hasListener(SUBJECT_2));
+
+        Set<EventListener> listeners = index.getListeners(SUBJECT_1);
+        assertNotNull(listeners);
+        assertTrue(listeners.size() == 1);
+        assertEquals(listeners.iterator().next(), listener);
+    }
+
+    @Test
+    public void testAddListener_WildcardListener2() {
+        index.addListener(listener, WILDCARD_SUBJECT);
+        assertEquals(1, index.getListeners(SUBJECT_0).size());
+
+        Set<EventListener> listeners = index.getListeners(SUBJECT_0);
+        assertNotNull(listeners);
+        assertTrue(listeners.size() == 1);
+        assertEquals(listeners.iterator().next(), listener);
+    }
+
+    @Test
+    public void testAddListener_UniversalListener() {
+        EventListener listener1 = new SampleEventListener();
+        EventListener listener2 = new SampleEventListener();
+        index.addListener(listener1, "*");
+        index.addListener(listener2, "org.test");
+
+        Set<EventListener> listeners = index.getListeners("*");
+        assertTrue(listeners.size() == 1);
+        assertTrue(listeners.contains(listener1));
+
+        listeners = index.getListeners("org.test");
+        assertTrue(listeners.size() == 2);
+        assertTrue(listeners.contains(listener1));
+        assertTrue(listeners.contains(listener2));
+
+        listeners = index.getListeners("com.pqr.xyz");
+        assertTrue(listeners.size() == 1);
+        assertTrue(listeners.contains(listener1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddListener_InvalidSubjectWildcardInMiddle() {
+        index.addListener(listener, "org.motechproject.*.event");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddListener_InvalidSubjectEmptyPath() {
+        index.addListener(listener, "org.motechproject..event");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddListener_InvalidSubjectWildcard() {
+        index.addListener(listener, "org.motechproject.event*");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddListener_Nullsubject() {
+        index.addListener(listener, null);
+    }
+
+    @Test
+    public void getListenerCount_Simple() {
+        index.addListener(listener, SUBJECT_1);
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(0, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void getListenerCount_Wildcard() {
+        index.addListener(listener, WILDCARD_SUBJECT);
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void getListenerCount_Multiple() {
+        index.addListener(listener, WILDCARD_SUBJECT);
+        index.addListener(new FooEventListener(), SUBJECT_1);
+
+        assertEquals(2, index.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void testRemoveAllListeners() {
+        index.addListener(new FooEventListener(), SUBJECT_1);
+        index.addListener(new FooEventListener(), SUBJECT_2);
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_2));
+
+        index.removeAllListeners("FooEventListener");
+
+        assertEquals(0, index.getListenerCount(SUBJECT_1));
+        assertEquals(0, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void testRemoveAllNonWildcardListeners() {
+        index.addListener(new FooEventListener(), SUBJECT_1);
+        index.addListener(new FooEventListener(), SUBJECT_2);
+        index.addListener(new BarEventListener(), WILDCARD_SUBJECT);
+
+        assertEquals(2, index.getListenerCount(SUBJECT_1));
+        assertEquals(2, index.getListenerCount(SUBJECT_2));
+
+        index.removeAllListeners("FooEventListener");
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void shouldInvalidateCachedListenersOnRegistration() {
+        index.addListener(listener, SUBJECT_1);
+        assertEquals(1, index.getListeners(SUBJECT_1).size());
+
+        EventListener wildcardListener = new FooEventListener();
+        index.addListener(wildcardListener, WILDCARD_SUBJECT);
+
+        Set<EventListener> listeners = index.getListeners(SUBJECT_1);
+        assertEquals(2, listeners.size());
+        assertTrue(listeners.contains(wildcardListener));
+
+        index.removeAllListeners("FooEventListener");
+
+        listeners = index.getListeners(SUBJECT_1);
+        assertEquals(1, listeners.size());
+        assertFalse(listeners.contains(wildcardListener));
+    }
+
+    @Test
+    public void shouldReturnSameResultForRepeatedLookups() {
+        index.addListener(listener, SUBJECT_1);
+
+        assertSame(index.getListeners(SUBJECT_1), index.getListeners(SUBJECT_1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowModifyingReturnedListeners() {
+        index.addListener(listener, SUBJECT_1);
+
+        index.getListeners(SUBJECT_1).add(new FooEventListener());
+    }
+
+    class FooEventListener implements EventListener {
+
+        @Override
+        public void handle(MotechEvent event) {
+        }
+
+        @Override
+        public String getIdentifier() {
+            return "FooEventListener";
+        }
+    }
+
+    class BarEventListener implements EventListener {
+
+        @Override
+        public void handle(MotechEvent event) {
+        }
+
+        @Override
+        public String getIdentifier() {
+            return "BarEventListener";
+        }
+    }
+}
+
@@ -6,7 +6,7 @@ import org.junit.Test;
 import org.mockito.Matchers;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.impl.EventListenerRegistry;
-import org.motechproject.event.listener.impl.EventListenerTree;
+import org.motechproject.event.listener.impl.EventListenerIndex;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -47,12 +47,12 @@ public class EventListenerRegistryTest {
         List<String> subjects = new ArrayList<String>();
         EventListener sel = new SampleEventListener();
 
-        EventListenerTree mockTree = mock(EventListenerTree.class);
-        PrivateAccessor.setField(registry, "listenerTree", mockTree);
+        EventListenerIndex mockIndex = mock(EventListenerIndex.class);
+        PrivateAccessor.setField(registry, "listenerIndex", mockIndex);
 
         registry.registerListener(sel, subjects);
 
-        verify(mockTree, times(0)).addListener(Matchers.<EventListener>anyObject(), anyString());
+        verify(mockIndex, times(0)).addListener(Matchers.<EventListener>anyObject(), anyString());
     }
 
     @Test
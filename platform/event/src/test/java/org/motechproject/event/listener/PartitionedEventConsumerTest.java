@@ -0,0 +1,245 @@
+package org.motechproject.event.listener;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.impl.PartitionedEventConsumer;
+import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.queue.BinaryMotechEventCodec;
+import org.motechproject.event.queue.MotechEventConfig;
+import org.motechproject.event.queue.MotechEventMessageConverter;
+import org.motechproject.event.queue.PartitionKeyResolver;
+import org.motechproject.event.queue.SubjectGroups;
+import org.springframework.jms.core.JmsTemplate;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+/**
+ * Consumes the subject groups from a queue of an embedded broker.
+ */
+public class PartitionedEventConsumerTest {
+
+    private static final String BROKER_URL = "vm://partitionedEventConsumerTest?broker.persistent=false&broker.useJmx=false";
+
+    @Mock
+    private ServerEventRelay eventRelay;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private ActiveMQConnectionFactory connectionFactory;
+    private ActiveMQQueue eventQueue = new ActiveMQQueue("partitionedEventConsumerTest");
+    private MotechEventMessageConverter messageConverter;
+    private SubjectGroups subjectGroups;
+    private JmsTemplate jmsTemplate;
+    private Connection connection;
+
+    private PartitionedEventConsumer consumer;
+
+    @Before
+    public void setUp() throws JMSException {
+        initMocks(this);
+
+        when(motechEventConfig.isPartitionedConsumption()).thenReturn(true);
+        when(motechEventConfig.getPartitionKeys()).thenReturn("ExternalID");
+        when(motechEventConfig.getConsumerGroups()).thenReturn("email:1:org.motechproject.email.*;scheduler::org.motechproject.scheduler.*");
+        when(motechEventConfig.getConsumerThreads()).thenReturn(4);
+
+        connectionFactory = new ActiveMQConnectionFactory(BROKER_URL);
+        connectionFactory.getRedeliveryPolicy().setInitialRedeliveryDelay(0);
+        // keeps the broker up between the consumers of a test
+        connection = connectionFactory.createConnection();
+        connection.start();
+
+        subjectGroups = new SubjectGroups(motechEventConfig);
+        messageConverter = new MotechEventMessageConverter(new BinaryMotechEventCodec());
+        messageConverter.setPartitionKeyResolver(new PartitionKeyResolver(motechEventConfig, subjectGroups));
+        jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.setMessageConverter(messageConverter);
+    }
+
+    @After
+    public void tearDown() throws JMSException {
+        if (consumer != null) {
+            consumer.shutdown();
+        }
+        connection.close();
+    }
+
+    @Test
+    public void shouldRelayEventsOfDefaultGroupDirectly() {
+        consumer = createConsumer(eventRelay);
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+
+        consumer.consume(event);
+
+        verify(eventRelay).relayEvent(event);
+    }
+
+    @Test
+    public void shouldResolveSubjectGroups() {
+        consumer = createConsumer(eventRelay);
+
+        assertEquals("email", consumer.getGroupName("org.motechproject.email.send"));
+        assertEquals("scheduler", consumer.getGroupName("org.motechproject.scheduler.fired"));
+        assertEquals(PartitionedEventConsumer.DEFAULT_GROUP, consumer.getGroupName("org.motechproject.scheduler"));
+    }
+
+    @Test
+    public void shouldHandleEventsOfTheSameKeyInOrder() throws InterruptedException {
+        final int keys = 8;
+        final int eventsPerKey = 25;
+        final Map<String, List<Integer>> handled = new HashMap<>();
+        final CountDownLatch latch = new CountDownLatch(keys * eventsPerKey);
+
+        consumer = createConsumer(new TestEventRelay(motechEventConfig) {
+            @Override
+            public void relayEvent(MotechEvent event) {
+                String key = (String) event.getParameters().get("ExternalID");
+                synchronized (handled) {
+                    if (!handled.containsKey(key)) {
+                        handled.put(key, new ArrayList<Integer>());
+                    }
+                    handled.get(key).add((Integer) event.getParameters().get("sequence"));
+                }
+                latch.countDown();
+            }
+        });
+
+        for (int i = 0; i < eventsPerKey; i++) {
+            for (int key = 0; key < keys; key++) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("ExternalID", "patient-" + key);
+                params.put("sequence", i);
+                jmsTemplate.convertAndSend(eventQueue, new MotechEvent("org.motechproject.scheduler.fired", params));
+            }
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(keys, handled.size());
+        for (List<Integer> sequence : handled.values()) {
+            List<Integer> sorted = new ArrayList<>(sequence);
+            Collections.sort(sorted);
+            assertEquals(sorted, sequence);
+        }
+    }
+
+    @Test
+    public void shouldNotDelayOtherGroupsWhileAGroupIsSlow() throws InterruptedException {
+        final CountDownLatch emailReleased = new CountDownLatch(1);
+        final CountDownLatch emailHandled = new CountDownLatch(5);
+        final CountDownLatch schedulerHandled = new CountDownLatch(20);
+
+        consumer = createConsumer(new TestEventRelay(motechEventConfig) {
+            @Override
+            public void relayEvent(MotechEvent event) {
+                if (event.getSubject().startsWith("org.motechproject.email")) {
+                    try {
+                        emailReleased.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    emailHandled.countDown();
+                } else {
+                    schedulerHandled.countDown();
+                }
+            }
+        });
+
+        // the email events come first, and hold the only consumer of their group
+        for (int i = 0; i < 5; i++) {
+            jmsTemplate.convertAndSend(eventQueue, new MotechEvent("org.motechproject.email.send"));
+        }
+        for (int i = 0; i < 20; i++) {
+            jmsTemplate.convertAndSend(eventQueue, new MotechEvent("org.motechproject.scheduler.fired"));
+        }
+
+        assertTrue(schedulerHandled.await(5, TimeUnit.SECONDS));
+        assertEquals(5, emailHandled.getCount());
+
+        emailReleased.countDown();
+        assertTrue(emailHandled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldRedeliverEventWhoseHandlingFailed() throws InterruptedException {
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch handled = new CountDownLatch(1);
+
+        consumer = createConsumer(new TestEventRelay(motechEventConfig) {
+            @Override
+            public void relayEvent(MotechEvent event) {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new IllegalStateException("handling failed");
+                }
+                handled.countDown();
+            }
+        });
+
+        jmsTemplate.convertAndSend(eventQueue, new MotechEvent("org.motechproject.email.send"));
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void shouldLeaveEventsOfNoGroupToDefaultConsumers() throws InterruptedException, JMSException {
+        final CountDownLatch handled = new CountDownLatch(1);
+        consumer = createConsumer(new TestEventRelay(motechEventConfig) {
+            @Override
+            public void relayEvent(MotechEvent event) {
+                handled.countDown();
+            }
+        });
+
+        jmsTemplate.convertAndSend(eventQueue, new MotechEvent("org.motechproject.scheduler"));
+
+        assertFalse(handled.await(1, TimeUnit.SECONDS));
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer defaultConsumer = session.createConsumer(eventQueue, consumer.getDefaultSelector());
+        Message message = defaultConsumer.receive(5000);
+        assertNotNull(message);
+        assertEquals("org.motechproject.scheduler", ((MotechEvent) messageConverter.fromMessage(message)).getSubject());
+        session.close();
+    }
+
+    private PartitionedEventConsumer createConsumer(ServerEventRelay relay) {
+        PartitionedEventConsumer partitionedEventConsumer = new PartitionedEventConsumer(relay, motechEventConfig,
+                subjectGroups, connectionFactory, eventQueue, messageConverter);
+        partitionedEventConsumer.start();
+        return partitionedEventConsumer;
+    }
+
+    // Mockito answers of a mock are not run concurrently, so concurrent handling is tested with a subclass
+    private static class TestEventRelay extends ServerEventRelay {
+
+        TestEventRelay(MotechEventConfig motechEventConfig) {
+            super(null, null, motechEventConfig);
+        }
+    }
+}
@@ -5,16 +5,24 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.event.queue.EventBatchPublisher;
 import org.motechproject.event.queue.MotechEventConfig;
 import org.motechproject.event.queue.OutboundEventGateway;
+import org.motechproject.event.deadletter.impl.DeadLetterLog;
 import org.motechproject.event.domain.BuggyListener;
+import org.motechproject.event.listener.annotations.MotechListenerEventProxy;
 import org.motechproject.event.listener.impl.EventListenerRegistry;
 import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.motechproject.event.metrics.impl.EventMetricsRegistry;
 
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
 import static org.hamcrest.core.Is.is;
@@ -24,6 +32,9 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -67,6 +78,7 @@ public class ServerEventRelayTest {
 
     @Test
     public void testSplittingRelay() throws Exception {
+        when(motechEventConfig.isSplitFanout()).thenReturn(true);
         ArgumentCaptor<MotechEvent> argument = ArgumentCaptor.forClass(MotechEvent.class);
         String firstListener;
         String secondListener;
@@ -100,6 +112,129 @@ public class ServerEventRelayTest {
         assertFalse(firstListener.equals(secondListener));
     }
 
+    @Test
+    public void shouldHandMultiListenerEventToAllListenersWithoutRequeueing() throws Exception {
+        EventListener firstListener = mock(EventListener.class);
+        when(firstListener.getIdentifier()).thenReturn("SampleEventListener");
+        registry.registerListener(firstListener, "org.motechproject.server.someevent");
+
+        EventListener secondListener = mock(EventListener.class);
+        when(secondListener.getIdentifier()).thenReturn("FooEventListener");
+        registry.registerListener(secondListener, "org.motechproject.server.someevent");
+
+        eventRelay.relayEvent(motechEvent);
+
+        ArgumentCaptor<MotechEvent> firstEvent = ArgumentCaptor.forClass(MotechEvent.class);
+        ArgumentCaptor<MotechEvent> secondEvent = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(firstListener).handle(firstEvent.capture());
+        verify(secondListener).handle(secondEvent.capture());
+        assertEquals(motechEvent.getParameters(), firstEvent.getValue().getParameters());
+        assertEquals(motechEvent.getParameters(), secondEvent.getValue().getParameters());
+        assertNotSame(firstEvent.getValue(), secondEvent.getValue());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldRequeueEventOnlyForFailedListener() throws Exception {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+
+        EventListener goodListener = mock(EventListener.class);
+        when(goodListener.getIdentifier()).thenReturn("SampleEventListener");
+        registry.registerListener(goodListener, "org.motechproject.server.someevent");
+
+        EventListener failingListener = mock(EventListener.class);
+        when(failingListener.getIdentifier()).thenReturn("FooEventListener");
+        doThrow(new RuntimeException("failure")).when(failingListener).handle(any(MotechEvent.class));
+        registry.registerListener(failingListener, "org.motechproject.server.someevent");
+
+        eventRelay.relayEvent(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argument = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(goodListener).handle(any(MotechEvent.class));
+        verify(outboundEventGateway).sendEventMessage(argument.capture());
+        MotechEvent requeued = argument.getValue();
+        assertEquals("FooEventListener", requeued.getParameters().get("message-destination"));
+        assertEquals(1, requeued.getMessageRedeliveryCount());
+        assertFalse(motechEvent.getParameters().containsKey("message-destination"));
+    }
+
+    @Test
+    public void shouldHandleOtherListenersWhenEventIsDiscardedForOne() throws Exception {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(0);
+
+        EventListener failingListener = mock(EventListener.class);
+        when(failingListener.getIdentifier()).thenReturn("FooEventListener");
+        doThrow(new RuntimeException("failure")).when(failingListener).handle(any(MotechEvent.class));
+        registry.registerListener(failingListener, "org.motechproject.server.someevent");
+
+        EventListener goodListener = mock(EventListener.class);
+        when(goodListener.getIdentifier()).thenReturn("SampleEventListener");
+        registry.registerListener(goodListener, "org.motechproject.server.someevent");
+
+        eventRelay.relayEvent(motechEvent);
+
+        verify(goodListener).handle(any(MotechEvent.class));
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldStoreEventInDeadLetterLogIfItCanNotBeQueuedForRedelivery() throws Exception {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        DeadLetterLog deadLetterLog = mock(DeadLetterLog.class);
+        when(deadLetterLog.isEnabled()).thenReturn(true);
+        eventRelay.setDeadLetterLog(deadLetterLog);
+        doThrow(new IllegalStateException("broker unavailable"))
+                .when(outboundEventGateway).sendEventMessage(any(MotechEvent.class));
+
+        EventListener failingListener = mock(EventListener.class);
+        when(failingListener.getIdentifier()).thenReturn("FooEventListener");
+        doThrow(new RuntimeException("failure")).when(failingListener).handle(any(MotechEvent.class));
+        registry.registerListener(failingListener, "org.motechproject.server.someevent");
+
+        EventListener goodListener = mock(EventListener.class);
+        when(goodListener.getIdentifier()).thenReturn("SampleEventListener");
+        registry.registerListener(goodListener, "org.motechproject.server.someevent");
+
+        eventRelay.relayEvent(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argument = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(goodListener).handle(any(MotechEvent.class));
+        verify(deadLetterLog).append(argument.capture(), eq("FooEventListener"));
+        assertEquals(Boolean.TRUE, argument.getValue().getParameters().get(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT));
+    }
+
+    @Test
+    public void shouldPublishEventsInOneBatch() {
+        EventBatchPublisher batchPublisher = mock(EventBatchPublisher.class);
+        eventRelay = new ServerEventRelay(outboundEventGateway, batchPublisher, registry, motechEventConfig);
+
+        EventListener listener = mock(EventListener.class);
+        when(listener.getIdentifier()).thenReturn("SampleEventListener");
+        registry.registerListener(listener, "org.motechproject.server.someevent");
+
+        MotechEvent otherEvent = new MotechEvent("org.motechproject.server.someevent");
+        MotechEvent unhandledEvent = new MotechEvent("org.motechproject.server.unhandled");
+
+        eventRelay.sendEventMessages(asList(motechEvent, unhandledEvent, otherEvent));
+
+        verify(batchPublisher).publish(asList(motechEvent, otherEvent));
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldSendEventsOneByOneWithoutBatchPublisher() {
+        EventListener listener = mock(EventListener.class);
+        when(listener.getIdentifier()).thenReturn("SampleEventListener");
+        registry.registerListener(listener, "org.motechproject.server.someevent");
+
+        MotechEvent otherEvent = new MotechEvent("org.motechproject.server.someevent");
+
+        eventRelay.sendEventMessages(asList(motechEvent, otherEvent));
+
+        verify(outboundEventGateway).sendEventMessage(motechEvent);
+        verify(outboundEventGateway).sendEventMessage(otherEvent);
+    }
+
     private MotechEvent createEvent(MotechEvent motechEvent, String destination) {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put("message-destination", destination);
@@ -130,6 +265,49 @@ public class ServerEventRelayTest {
 
     }
 
+    @Test
+    public void shouldRecordMetricsOfFailedEvents() {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        EventMetricsRegistry eventMetrics = new EventMetricsRegistry();
+        eventRelay.setEventMetrics(eventMetrics);
+
+        BuggyListener buggyListener = new BuggyListener(1);
+        registry.registerListener(buggyListener, "TEST-FOO");
+
+        eventRelay.relayEvent(new MotechEvent("TEST-FOO"));
+
+        SubjectMetrics subjectMetrics = eventMetrics.getSubjectMetrics().get(0);
+        assertEquals("TEST-FOO", subjectMetrics.getSubject());
+        assertEquals(1, subjectMetrics.getConsumedCount());
+        assertEquals(1, subjectMetrics.getRedeliveryCount());
+        assertEquals(0, subjectMetrics.getPublishedCount());
+
+        ListenerMetrics listenerMetrics = eventMetrics.getListenerMetrics().get(0);
+        assertEquals(buggyListener.getIdentifier(), listenerMetrics.getIdentifier());
+        assertEquals(1, listenerMetrics.getInvocationCount());
+        assertEquals(1, listenerMetrics.getFailureCount());
+    }
+
+    @Test
+    public void shouldStoreDiscardedEventsInDeadLetterLog() {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(0);
+        DeadLetterLog deadLetterLog = mock(DeadLetterLog.class);
+        when(deadLetterLog.isEnabled()).thenReturn(true);
+        eventRelay.setDeadLetterLog(deadLetterLog);
+
+        BuggyListener buggyListener = new BuggyListener(1);
+        registry.registerListener(buggyListener, "TEST-FOO");
+        MotechEvent event = new MotechEvent("TEST-FOO");
+
+        try {
+            eventRelay.relayEvent(event);
+        } catch (RuntimeException e) {
+            verify(deadLetterLog).append(event, buggyListener.getIdentifier());
+            return;
+        }
+        throw new AssertionError("Expected the discarded event to be rethrown");
+    }
+
     @Test
     public void testThatOnlyListenerIdentifiedByMessageDestinationHandlesEvent() throws Exception {
 
@@ -154,6 +332,105 @@ public class ServerEventRelayTest {
         verify(badListener, never()).handle(any(MotechEvent.class));
     }
 
+    @Test
+    public void shouldDispatchLocalSubjectsWithoutQueue() throws Exception {
+        when(motechEventConfig.getLocalSubjects()).thenReturn("org.motechproject.server.*");
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        EventListener listener = new EventListener() {
+            @Override
+            public void handle(MotechEvent event) {
+                latch.countDown();
+            }
+
+            @Override
+            public String getIdentifier() {
+                return "LocalListener";
+            }
+        };
+        registry.registerListener(listener, "org.motechproject.server.someevent");
+
+        eventRelay.sendEventMessage(motechEvent);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldQueueOnlyForNonLocalListeners() throws Exception {
+        ArgumentCaptor<MotechEvent> argument = ArgumentCaptor.forClass(MotechEvent.class);
+
+        LatchHandler bean = new LatchHandler();
+        EventListener localListener = new MotechListenerEventProxy("LocalListener", bean,
+                bean.getClass().getMethod("handle", MotechEvent.class), DeliveryMode.LOCAL);
+        registry.registerListener(localListener, "org.motechproject.server.someevent");
+
+        EventListener queuedListener = mock(EventListener.class);
+        when(queuedListener.getIdentifier()).thenReturn("QueuedListener");
+        registry.registerListener(queuedListener, "org.motechproject.server.someevent");
+
+        eventRelay.sendEventMessage(motechEvent);
+
+        assertTrue(bean.latch.await(5, TimeUnit.SECONDS));
+        verify(outboundEventGateway).sendEventMessage(argument.capture());
+        assertEquals("QueuedListener", argument.getValue().getParameters().get(MESSAGE_DESTINATION));
+    }
+
+    @Test
+    public void shouldSendDelayedEventsToQueueWithDeliveryTime() {
+        EventListener listener = mock(EventListener.class);
+        when(listener.getIdentifier()).thenReturn("SampleEventListener");
+        registry.registerListener(listener, "org.motechproject.server.someevent");
+
+        Date deliverAt = new Date(System.currentTimeMillis() + 60000);
+        eventRelay.sendEventMessage(motechEvent, deliverAt);
+
+        verify(outboundEventGateway).sendEventMessage(motechEvent, deliverAt.getTime());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldSendEventsWithPastDeliveryTimeRightAway() {
+        EventListener listener = mock(EventListener.class);
+        when(listener.getIdentifier()).thenReturn("SampleEventListener");
+        registry.registerListener(listener, "org.motechproject.server.someevent");
+
+        eventRelay.sendEventMessage(motechEvent, new Date(System.currentTimeMillis() - 1000));
+
+        verify(outboundEventGateway).sendEventMessage(motechEvent);
+    }
+
+    @Test
+    public void shouldDelayLocalEventsUntilDeliveryTime() throws Exception {
+        when(motechEventConfig.getLocalSubjects()).thenReturn("org.motechproject.server.*");
+        when(motechEventConfig.getLocalTimerTickMillis()).thenReturn(10L);
+        when(motechEventConfig.getLocalTimerWheelSize()).thenReturn(64);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long[] handledAt = new long[1];
+        EventListener listener = new EventListener() {
+            @Override
+            public void handle(MotechEvent event) {
+                handledAt[0] = System.currentTimeMillis();
+                latch.countDown();
+            }
+
+            @Override
+            public String getIdentifier() {
+                return "LocalListener";
+            }
+        };
+        registry.registerListener(listener, "org.motechproject.server.someevent");
+
+        Date deliverAt = new Date(System.currentTimeMillis() + 200);
+        eventRelay.sendEventMessage(motechEvent, deliverAt);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(handledAt[0] >= deliverAt.getTime());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class), anyLong());
+        eventRelay.shutdown();
+    }
+
     private void assertEvent(MotechEvent expected, MotechEvent copy) {
         assertEquals(expected.getSubject(), copy.getSubject());
         assertEquals(expected.getParameters(), copy.getParameters());
@@ -167,4 +444,11 @@ public class ServerEventRelayTest {
             assertNotSame(endDate, copy.getEndTime());
     }
 
+    public static class LatchHandler {
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        public void handle(MotechEvent event) {
+            latch.countDown();
+        }
+    }
 }
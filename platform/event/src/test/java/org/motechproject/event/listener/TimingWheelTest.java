@@ -0,0 +1,82 @@
+package org.motechproject.event.listener;
+
+import org.junit.After;
+import org.junit.Test;
+import org.motechproject.event.listener.impl.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    private TimingWheel timingWheel;
+
+    @After
+    public void tearDown() {
+        if (timingWheel != null) {
+            timingWheel.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRunTasksInOrderOfTheirTime() throws InterruptedException {
+        timingWheel = new TimingWheel(10, 4, "test-timer");
+
+        final List<Integer> order = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        long now = System.currentTimeMillis();
+
+        // delays longer than a full turn of the wheel wait for more rounds
+        timingWheel.schedule(new RecordingTask(order, latch, 3), now + 250);
+        timingWheel.schedule(new RecordingTask(order, latch, 1), now + 20);
+        timingWheel.schedule(new RecordingTask(order, latch, 2), now + 120);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(asList(1, 2, 3), order);
+        assertTrue(System.currentTimeMillis() - now >= 250);
+    }
+
+    @Test
+    public void shouldRunTasksDueAlreadyOnNextTick() throws InterruptedException {
+        timingWheel = new TimingWheel(10, 8, "test-timer");
+
+        CountDownLatch latch = new CountDownLatch(1);
+        timingWheel.schedule(new RecordingTask(new ArrayList<Integer>(), latch, 1), System.currentTimeMillis() - 1000);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotAcceptTasksWhenStopped() {
+        timingWheel = new TimingWheel(10, 8, "test-timer");
+        timingWheel.shutdown();
+
+        timingWheel.schedule(new RecordingTask(new ArrayList<Integer>(), new CountDownLatch(1), 1), System.currentTimeMillis());
+    }
+
+    private static class RecordingTask implements Runnable {
+        private final List<Integer> order;
+        private final CountDownLatch latch;
+        private final int number;
+
+        RecordingTask(List<Integer> order, CountDownLatch latch, int number) {
+            this.order = order;
+            this.latch = latch;
+            this.number = number;
+        }
+
+        @Override
+        public void run() {
+            synchronized (order) {
+                order.add(number);
+            }
+            latch.countDown();
+        }
+    }
+}
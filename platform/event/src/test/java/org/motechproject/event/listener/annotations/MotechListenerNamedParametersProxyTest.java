@@ -0,0 +1,116 @@
+package org.motechproject.event.listener.annotations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.MotechEvent;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MotechListenerNamedParametersProxyTest {
+
+    private Handler handler;
+
+    @Before
+    public void setUp() {
+        handler = new Handler();
+    }
+
+    @Test
+    public void shouldPassNamedParameters() throws Exception {
+        MotechListenerNamedParametersProxy proxy = new MotechListenerNamedParametersProxy("handler", handler,
+                Handler.class.getMethod("named", String.class, int.class));
+
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put("count", 3);
+        event.getParameters().put("id", "abc");
+        proxy.handle(event);
+
+        assertEquals("abc", handler.id);
+        assertEquals(3, handler.count);
+    }
+
+    @Test
+    public void shouldFailWhenParameterIsMissing() throws Exception {
+        MotechListenerNamedParametersProxy proxy = new MotechListenerNamedParametersProxy("handler", handler,
+                Handler.class.getMethod("named", String.class, int.class));
+
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put("id", "abc");
+
+        assertHandlingFails(proxy, event, IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldFailWhenParameterHasWrongType() throws Exception {
+        MotechListenerNamedParametersProxy proxy = new MotechListenerNamedParametersProxy("handler", handler,
+                Handler.class.getMethod("named", String.class, int.class));
+
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put("id", "abc");
+        event.getParameters().put("count", 3L);
+
+        assertHandlingFails(proxy, event, IllegalArgumentException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectParametersWithoutName() throws Exception {
+        new MotechListenerNamedParametersProxy("handler", handler, Handler.class.getMethod("unnamed", String.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBeanWhichDoesNotDeclareMethod() throws Exception {
+        new MotechListenerNamedParametersProxy("handler", new Object(), Handler.class.getMethod("named", String.class, int.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEventHandlerWhoseBeanDoesNotDeclareMethod() throws Exception {
+        new MotechListenerEventProxy("handler", new Object(), Handler.class.getMethod("failing", MotechEvent.class));
+    }
+
+    @Test
+    public void shouldFailToHandleEventWithoutBoundHandler() {
+        assertHandlingFails(new MotechListenerEventProxy("handler", null, null), new MotechEvent("subject"),
+                IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldWrapCheckedExceptionsOfHandler() throws Exception {
+        MotechListenerEventProxy proxy = new MotechListenerEventProxy("handler", handler,
+                Handler.class.getMethod("failing", MotechEvent.class));
+
+        assertHandlingFails(proxy, new MotechEvent("subject"), UndeclaredThrowableException.class);
+    }
+
+    private void assertHandlingFails(MotechListenerAbstractProxy proxy, MotechEvent event, Class<?> cause) {
+        try {
+            proxy.handle(event);
+        } catch (MotechException e) {
+            assertTrue(cause.isInstance(e.getCause()));
+            return;
+        }
+        throw new AssertionError("Expected handling to fail");
+    }
+
+    public static class Handler {
+        private String id;
+        private int count;
+
+        public void named(@MotechParam("id") String id, @MotechParam("count") int count) {
+            this.id = id;
+            this.count = count;
+        }
+
+        public void unnamed(String id) {
+        }
+
+        public void failing(MotechEvent event) throws IOException {
+            throw new IOException("failed");
+        }
+    }
+}
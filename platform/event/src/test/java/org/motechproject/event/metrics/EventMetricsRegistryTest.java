@@ -0,0 +1,100 @@
+package org.motechproject.event.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.metrics.impl.EventMetricsRegistry;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventMetricsRegistryTest {
+
+    private EventMetricsRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new EventMetricsRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        registry.unregisterMBean();
+    }
+
+    @Test
+    public void shouldCountEventsPerSubject() {
+        registry.recordPublished("subject");
+        registry.recordPublished("subject");
+        registry.recordConsumed("subject");
+        registry.recordRedelivery("subject", "listener");
+        registry.recordDiscard("subject", "listener");
+        registry.recordQueueDwellTime("subject", 7);
+        registry.recordQueueDwellTime("subject", 700);
+
+        List<SubjectMetrics> metrics = registry.getSubjectMetrics();
+
+        assertEquals(1, metrics.size());
+        SubjectMetrics subject = metrics.get(0);
+        assertEquals("subject", subject.getSubject());
+        assertEquals(2, subject.getPublishedCount());
+        assertEquals(1, subject.getConsumedCount());
+        assertEquals(1, subject.getRedeliveryCount());
+        assertEquals(1, subject.getDiscardCount());
+        assertEquals(2, subject.getQueueDwellTime().getCount());
+        assertEquals(700, subject.getQueueDwellTime().getMaxMillis());
+        assertEquals(353.5, subject.getQueueDwellTime().getMeanMillis(), 0.001);
+        assertArrayEquals(new long[]{0, 0, 1, 0, 0, 0, 1, 0, 0, 0}, subject.getQueueDwellTime().getHistogram());
+    }
+
+    @Test
+    public void shouldRecordListenerExecutions() {
+        registry.recordExecution("listener", TimeUnit.MILLISECONDS.toNanos(3), false);
+        registry.recordExecution("listener", TimeUnit.MILLISECONDS.toNanos(20000), true);
+        registry.recordRedelivery("subject", "listener");
+
+        List<ListenerMetrics> metrics = registry.getListenerMetrics();
+
+        assertEquals(1, metrics.size());
+        ListenerMetrics listener = metrics.get(0);
+        assertEquals("listener", listener.getIdentifier());
+        assertEquals(2, listener.getInvocationCount());
+        assertEquals(1, listener.getFailureCount());
+        assertEquals(1, listener.getRedeliveryCount());
+        assertEquals(0, listener.getDiscardCount());
+        assertArrayEquals(new long[]{0, 1, 0, 0, 0, 0, 0, 0, 0, 1}, listener.getExecutionTime().getHistogram());
+    }
+
+    @Test
+    public void shouldClearMetricsOnReset() {
+        registry.recordPublished("subject");
+        registry.recordExecution("listener", 1, false);
+
+        registry.reset();
+
+        assertTrue(registry.getSubjectMetrics().isEmpty());
+        assertTrue(registry.getListenerMetrics().isEmpty());
+    }
+
+    @Test
+    public void shouldExposeMetricsOverJmx() throws Exception {
+        registry.registerMBean();
+        registry.recordPublished("subject");
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        CompositeData[] subjects = (CompositeData[]) mBeanServer.getAttribute(
+                new ObjectName(EventMetricsService.OBJECT_NAME), "SubjectMetrics");
+
+        assertEquals(1, subjects.length);
+        assertEquals("subject", subjects[0].get("subject"));
+        assertEquals(1L, subjects[0].get("publishedCount"));
+    }
+}
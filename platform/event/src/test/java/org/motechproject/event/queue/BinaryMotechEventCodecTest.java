@@ -0,0 +1,102 @@
+package org.motechproject.event.queue;
+
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.domain.TestEventPayload;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryMotechEventCodecTest {
+
+    private BinaryMotechEventCodec codec = new BinaryMotechEventCodec();
+
+    @Test
+    public void shouldEncodeAndDecodeEvent() {
+        Map<Object, Object> nested = new HashMap<>();
+        nested.put("key", 1L);
+        nested.put(2, asList("a", "b"));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("string", "value \u0105\u0119");
+        params.put("integer", 1);
+        params.put("long", 2L);
+        params.put("boolean", true);
+        params.put("double", 3.5);
+        params.put("float", 4.5f);
+        params.put("short", (short) 5);
+        params.put("byte", (byte) 6);
+        params.put("char", 'c');
+        params.put("date", new Date());
+        params.put("uuid", UUID.randomUUID());
+        params.put("list", new ArrayList<>(asList(1, "two", null)));
+        params.put("map", new HashMap<>(nested));
+        params.put("null", null);
+
+        MotechEvent event = new MotechEvent("org.motechproject.test", params);
+        event.setId(UUID.randomUUID());
+        event.setEndTime(new Date());
+        event.setLastEvent(true);
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertEquals(event.getId(), decoded.getId());
+        assertEquals(event.getEndTime(), decoded.getEndTime());
+        assertTrue(decoded.isLastEvent());
+    }
+
+    @Test
+    public void shouldDecodeEventWithoutOptionalFields() {
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertNull(decoded.getId());
+        assertNull(decoded.getEndTime());
+        assertFalse(decoded.isLastEvent());
+    }
+
+    @Test
+    public void shouldFallBackToSerializationForOtherTypes() {
+        List<String> linkedList = new LinkedList<>(asList("a", "b"));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("decimal", new BigDecimal("1.25"));
+        params.put("timestamp", new Timestamp(1000L));
+        params.put("linkedList", linkedList);
+
+        MotechEvent event = new MotechEvent("org.motechproject.test", new HashMap<>(params));
+        event.getParameters().put("payload", new TestEventPayload());
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(TestEventPayload.class, decoded.getParameters().remove("payload").getClass());
+        assertEquals(params, decoded.getParameters());
+        assertEquals(Timestamp.class, decoded.getParameters().get("timestamp").getClass());
+        assertEquals(linkedList.getClass(), decoded.getParameters().get("linkedList").getClass());
+    }
+
+    @Test
+    public void shouldEncodeEventWithoutSubject() {
+        MotechEvent event = new MotechEvent();
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertNull(decoded.getSubject());
+    }
+}
@@ -0,0 +1,115 @@
+package org.motechproject.event.queue;
+
+import junitx.util.PrivateAccessor;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class EventBatchPublisherTest {
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MessageProducer producer;
+
+    @Mock
+    private Destination destination;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private EventBatchPublisher publisher;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(true, Session.AUTO_ACKNOWLEDGE)).thenReturn(session);
+        when(session.createProducer(destination)).thenReturn(producer);
+        when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage());
+        when(session.getTransacted()).thenReturn(true);
+        when(motechEventConfig.getBatchMaxSize()).thenReturn(3);
+        when(motechEventConfig.getBatchLingerMillis()).thenReturn(60000L);
+
+        publisher = new EventBatchPublisher(connectionFactory, destination,
+                new MotechEventMessageConverter(new BinaryMotechEventCodec()), new MotechEventHeaderMapper(),
+                new MotechEventTransformer());
+        PrivateAccessor.setField(publisher, "motechEventConfig", motechEventConfig);
+    }
+
+    @Test
+    public void shouldCommitOncePerBatch() throws JMSException {
+        publisher.publish(createEvents(7));
+
+        verify(producer, times(7)).send(any(Message.class));
+        verify(session, times(3)).commit();
+        verify(session, never()).rollback();
+    }
+
+    @Test
+    public void shouldRollbackFailedBatch() throws JMSException {
+        doThrow(new JMSException("broker unavailable")).when(producer).send(any(Message.class));
+
+        try {
+            publisher.publish(createEvents(2));
+        } catch (RuntimeException e) {
+            verify(session).rollback();
+            verify(session, never()).commit();
+            return;
+        }
+        throw new AssertionError("Expected the failure to be propagated");
+    }
+
+    @Test
+    public void shouldSendBufferedEventsWhenBatchIsFull() throws JMSException {
+        List<MotechEvent> events = createEvents(4);
+
+        for (MotechEvent event : events) {
+            publisher.offer(event);
+        }
+
+        verify(producer, times(3)).send(any(Message.class));
+        verify(session).commit();
+
+        publisher.flush();
+
+        verify(producer, times(4)).send(any(Message.class));
+        verify(session, times(2)).commit();
+    }
+
+    private List<MotechEvent> createEvents(int count) {
+        List<MotechEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(new MotechEvent("org.motechproject.test." + i));
+        }
+        return events;
+    }
+}
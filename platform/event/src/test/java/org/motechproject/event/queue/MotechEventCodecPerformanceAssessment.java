@@ -0,0 +1,107 @@
+package org.motechproject.event.queue;
+
+import org.junit.Test;
+import org.motechproject.commons.api.NanoStopWatch;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the size and the encoding/decoding throughput of the {@link BinaryMotechEventCodec} with the Java
+ * serialization used for object messages. Not part of the regular test run, execute it by hand.
+ */
+public class MotechEventCodecPerformanceAssessment {
+
+    private static final int EVENTS = 200000;
+    private static final int WARMUP_EVENTS = 50000;
+
+    @Test
+    public void compareCodecs() throws Exception {
+        MotechEvent event = createEvent();
+        BinaryMotechEventCodec codec = new BinaryMotechEventCodec();
+
+        byte[] serialized = serialize(event);
+        byte[] encoded = codec.encode(event);
+        assertEquals(event, deserialize(serialized));
+        assertEquals(event, codec.decode(encoded));
+
+        System.out.println(format("Java serialization: %d bytes per event", serialized.length));
+        System.out.println(format("Binary codec: %d bytes per event", encoded.length));
+
+        for (int i = 0; i < WARMUP_EVENTS; i++) {
+            deserialize(serialize(event));
+            codec.decode(codec.encode(event));
+        }
+
+        NanoStopWatch timer = new NanoStopWatch().start();
+        for (int i = 0; i < EVENTS; i++) {
+            serialized = serialize(event);
+        }
+        report("Java serialization: encode", timer.duration());
+
+        timer.start();
+        for (int i = 0; i < EVENTS; i++) {
+            deserialize(serialized);
+        }
+        report("Java serialization: decode", timer.duration());
+
+        timer.start();
+        for (int i = 0; i < EVENTS; i++) {
+            encoded = codec.encode(event);
+        }
+        report("Binary codec: encode", timer.duration());
+
+        timer.start();
+        for (int i = 0; i < EVENTS; i++) {
+            codec.decode(encoded);
+        }
+        report("Binary codec: decode", timer.duration());
+    }
+
+    private MotechEvent createEvent() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("JobID", "org.motechproject.messagecampaign.fired-campaign-message-" + UUID.randomUUID());
+        params.put("ExternalID", "patient-1234567");
+        params.put("CampaignName", "Pregnancy Campaign");
+        params.put("MessageKey", "week-12");
+        params.put("motechEventRedeliveryCount", 0);
+        params.put("deliverAt", new Date());
+        params.put("repeatCount", 12L);
+
+        MotechEvent event = new MotechEvent("org.motechproject.messagecampaign.fired-campaign-message", params);
+        event.setId(UUID.randomUUID());
+        event.setEndTime(new Date());
+        return event;
+    }
+
+    private void report(String operation, long duration) {
+        long millis = duration / 1000000L;
+        System.out.println(format("%s %d events : %dms (%d events/s)", operation, EVENTS, millis,
+                EVENTS * 1000L / Math.max(1, millis)));
+    }
+
+    private byte[] serialize(MotechEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        }
+        return bytes.toByteArray();
+    }
+
+    private MotechEvent deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (MotechEvent) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.motechproject.event.queue;
+
+import junitx.util.PrivateAccessor;
+import org.apache.activemq.ScheduledMessage;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.integration.MessageHeaders;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class MotechEventHeaderMapperTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private MotechEventHeaderMapper headerMapper = new MotechEventHeaderMapper();
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        initMocks(this);
+        PrivateAccessor.setField(headerMapper, "motechEventConfig", motechEventConfig);
+        when(motechEventConfig.getMessageRedeliveryDelay()).thenReturn(1L);
+    }
+
+    @Test
+    public void shouldDelayMessagesUntilDeliveryTime() throws JMSException {
+        Message message = new ActiveMQBytesMessage();
+
+        headerMapper.fromHeaders(headers(System.currentTimeMillis() + 60000), message);
+
+        long delay = message.getLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY);
+        assertTrue(delay > 55000 && delay <= 60000);
+    }
+
+    @Test
+    public void shouldNotDelayMessagesWithDeliveryTimeInThePast() throws JMSException {
+        Message message = new ActiveMQBytesMessage();
+
+        headerMapper.fromHeaders(headers(System.currentTimeMillis() - 1000), message);
+
+        assertFalse(message.propertyExists(ScheduledMessage.AMQ_SCHEDULED_DELAY));
+    }
+
+    @Test
+    public void shouldDelayRedeliveryOfFailedMessagesByRedeliveryCount() throws JMSException {
+        Message message = new ActiveMQBytesMessage();
+        message.setBooleanProperty(MotechEventMessageConverter.INVALID_EVENT_PROPERTY, true);
+        message.setIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY, 3);
+
+        headerMapper.fromHeaders(new MessageHeaders(new HashMap<String, Object>()), message);
+
+        assertEquals(4000L, message.getLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY));
+    }
+
+    private MessageHeaders headers(long deliverAt) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(MotechEventHeaderMapper.DELIVER_AT_HEADER, deliverAt);
+        return new MessageHeaders(headers);
+    }
+}
@@ -0,0 +1,98 @@
+package org.motechproject.event.queue;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQObjectMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class MotechEventMessageConverterTest {
+
+    @Mock
+    private Session session;
+
+    private MotechEventMessageConverter converter = new MotechEventMessageConverter(new BinaryMotechEventCodec());
+
+    @Before
+    public void setUp() throws JMSException {
+        initMocks(this);
+        when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage());
+    }
+
+    @Test
+    public void shouldSendEventsAsBytesMessages() throws JMSException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("foo", "bar");
+        MotechEvent event = new MotechEvent("org.motechproject.test", params);
+
+        Message message = converter.toMessage(event, session);
+
+        assertTrue(message instanceof BytesMessage);
+        assertEquals(BinaryMotechEventCodec.NAME, message.getStringProperty(MotechEventMessageConverter.CODEC_PROPERTY));
+        assertFalse(message.propertyExists(MotechEventMessageConverter.INVALID_EVENT_PROPERTY));
+
+        ((ActiveMQBytesMessage) message).reset();
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    @Test
+    public void shouldCopyRedeliveryDataOfFailedEvents() throws JMSException {
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+        event.getParameters().put(MotechEvent.PARAM_INVALID_MOTECH_EVENT, true);
+        event.incrementMessageRedeliveryCount();
+        event.incrementMessageRedeliveryCount();
+
+        Message message = converter.toMessage(event, session);
+
+        assertTrue(message.getBooleanProperty(MotechEventMessageConverter.INVALID_EVENT_PROPERTY));
+        assertEquals(2, message.getIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY));
+    }
+
+    @Test
+    public void shouldSendEventsWithPartitionKeyInMessageGroup() throws JMSException {
+        MotechEventConfig motechEventConfig = mock(MotechEventConfig.class);
+        when(motechEventConfig.isPartitionedConsumption()).thenReturn(true);
+        when(motechEventConfig.getPartitionKeys()).thenReturn("patientId,ExternalID");
+        when(motechEventConfig.getConsumerGroups()).thenReturn("email:1:org.motechproject.email.*");
+        converter.setPartitionKeyResolver(new PartitionKeyResolver(motechEventConfig, new SubjectGroups(motechEventConfig)));
+        when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage(), new ActiveMQBytesMessage(), new ActiveMQBytesMessage());
+
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+        event.getParameters().put("ExternalID", "patient-1");
+
+        Message message = converter.toMessage(event, session);
+
+        assertEquals("default:patient-1", message.getStringProperty(MotechEventMessageConverter.GROUP_ID_PROPERTY));
+        assertEquals("org.motechproject.test", message.getStringProperty(SubjectGroups.SUBJECT_PROPERTY));
+        // message groups are kept within a subject group, whose consumers select the messages by subject
+        MotechEvent emailEvent = new MotechEvent("org.motechproject.email.send");
+        emailEvent.getParameters().put("ExternalID", "patient-1");
+        assertEquals("email:patient-1", converter.toMessage(emailEvent, session).getStringProperty(MotechEventMessageConverter.GROUP_ID_PROPERTY));
+        assertFalse(converter.toMessage(new MotechEvent("org.motechproject.test"), session)
+                .propertyExists(MotechEventMessageConverter.GROUP_ID_PROPERTY));
+    }
+
+    @Test
+    public void shouldReadObjectMessagesQueuedBefore() throws JMSException {
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+        ActiveMQObjectMessage message = new ActiveMQObjectMessage();
+        message.setObject(event);
+
+        assertEquals(event, converter.fromMessage(message));
+    }
+}
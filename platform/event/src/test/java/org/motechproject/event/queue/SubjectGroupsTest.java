@@ -0,0 +1,70 @@
+package org.motechproject.event.queue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class SubjectGroupsTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private SubjectGroups subjectGroups;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(motechEventConfig.isPartitionedConsumption()).thenReturn(true);
+        when(motechEventConfig.getConsumerGroups()).thenReturn("email:2:org.motechproject.email.*, o'clock;scheduler::org.motechproject.sched_x.*");
+        when(motechEventConfig.getConsumerThreads()).thenReturn(5);
+
+        subjectGroups = new SubjectGroups(motechEventConfig);
+    }
+
+    @Test
+    public void shouldParseGroupsInOrder() {
+        List<SubjectGroups.SubjectGroup> groups = subjectGroups.getGroups();
+
+        assertEquals(2, groups.size());
+        assertEquals("email", groups.get(0).getName());
+        assertEquals(2, groups.get(0).getThreads());
+        assertEquals("scheduler", groups.get(1).getName());
+        assertEquals(5, groups.get(1).getThreads());
+    }
+
+    @Test
+    public void shouldSelectEventsOfGroupAndOfNoEarlierGroup() {
+        List<SubjectGroups.SubjectGroup> groups = subjectGroups.getGroups();
+
+        assertEquals("(motechEventSubject IN ('o''clock') OR motechEventSubject LIKE 'org.motechproject.email.%' ESCAPE '!')",
+                subjectGroups.getSelector(groups.get(0)));
+        assertEquals("(motechEventSubject LIKE 'org.motechproject.sched!_x.%' ESCAPE '!') AND NOT " +
+                "(motechEventSubject IN ('o''clock') OR motechEventSubject LIKE 'org.motechproject.email.%' ESCAPE '!')",
+                subjectGroups.getSelector(groups.get(1)));
+    }
+
+    @Test
+    public void shouldSelectEventsOfNoGroupForDefaultGroup() {
+        assertEquals("motechEventSubject IS NULL OR NOT (motechEventSubject IN ('o''clock') OR " +
+                "motechEventSubject LIKE 'org.motechproject.email.%' ESCAPE '!' OR " +
+                "motechEventSubject LIKE 'org.motechproject.sched!_x.%' ESCAPE '!')", subjectGroups.getDefaultSelector());
+
+        when(motechEventConfig.isPartitionedConsumption()).thenReturn(false);
+        assertNull(subjectGroups.getDefaultSelector());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectGroupWithoutSubjects() {
+        when(motechEventConfig.getConsumerGroups()).thenReturn("email:2:");
+
+        new SubjectGroups(motechEventConfig).getGroups();
+    }
+}